@@ -0,0 +1,73 @@
+package com.github.yantzu.bsv;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Fields scanned per second by {@link BsvByteMatcher}, by word tests against
+ * the plain table scan. It is in the package of the matcher, which is not
+ * public.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ByteMatcherBenchmark {
+
+    private static final int FIELDS = 1024;
+
+    @Param({ "true", "false" })
+    public boolean           words;
+
+    /**
+     * bytes of a field before its delimiter
+     */
+    @Param({ "8", "32", "256" })
+    public int               length;
+
+    /**
+     * CONTROL tests for bytes less than a threshold, COMMA tests for a pattern
+     */
+    @Param({ "CONTROL", "COMMA" })
+    public String            delimiters;
+
+    private BsvByteMatcher   matcher;
+    private byte[]           buffer;
+
+    @Setup
+    public void setup() {
+        int delimiter = "CONTROL".equals(delimiters) ? 0x01 : ',';
+        matcher = "CONTROL".equals(delimiters) ? new BsvByteMatcher(words, 0x01, 0x02, 0x03)
+                : new BsvByteMatcher(words, delimiter);
+        buffer = new byte[FIELDS * (length + 1)];
+        Arrays.fill(buffer, (byte) 'x');
+        for (int i = length; i < buffer.length; i += length + 1) {
+            buffer[i] = (byte) delimiter;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FIELDS)
+    public int scan() {
+        int found = 0;
+        for (int i = 0; i < buffer.length; i = matcher.indexOf(buffer, i, buffer.length) + 1) {
+            found++;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,236 @@
+package com.github.yantzu.bsv.benchmark;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.github.yantzu.bsv.BsvContext;
+import com.github.yantzu.bsv.BsvContextBuilder;
+import com.github.yantzu.bsv.BsvDeserializer;
+import com.github.yantzu.bsv.BsvException;
+import com.github.yantzu.bsv.BsvSerializer;
+
+/**
+ * Contexts and records shared by benchmarks. Records of a field type are of
+ * one schema variant, strings are either ascii or Chinese and emoji, as the
+ * samples of unit tests are.
+ */
+public final class BenchmarkData {
+
+    public static final String  MAJOR_VERSION = "01";
+    public static final char    MINOR_VERSION = '0';
+    //records serialized or deserialized by one benchmark invocation
+    public static final int     RECORDS       = 1024;
+    public static final Charset UTF_8         = Charset.forName("UTF-8");
+
+    public enum FieldType {
+        STRING('0'),
+        INTEGER('1'),
+        LONG('2'),
+        DOUBLE('3'),
+        LIST('4'),
+        MAP('5'),
+        FLOAT('6');
+
+        private final char variantNumber;
+
+        FieldType(char variantNumber) {
+            this.variantNumber = variantNumber;
+        }
+
+        public char getVariantNumber() {
+            return variantNumber;
+        }
+    }
+
+    public enum Payload {
+        ASCII,
+        MULTIBYTE
+    }
+
+    private static final String[] ASCII_WORDS     = { "user", "click", "/index.html", "ABC", "session",
+            "Mozilla/5.0", "referer", "true" };
+    private static final String[] MULTIBYTE_WORDS = { "诶比系", "中文", "😀", "用户", "点击", "🚀", "会话", "浏览器" };
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * @param transcoding true to transcode tab, which strings contain now and then
+     */
+    public static BsvContext context(boolean transcoding) throws IOException {
+        return context(transcoding, false);
+    }
+
+    /**
+     * @param binaryNumbers true to write numbers as binary varints instead of decimal text
+     */
+    public static BsvContext context(boolean transcoding, boolean binaryNumbers) throws IOException {
+        BsvContextBuilder builder = new BsvContextBuilder().binaryNumbers(binaryNumbers);
+        for (FieldType fieldType : FieldType.values()) {
+            builder.yamlSchema("classpath:com/github/yantzu/bsv/benchmark/benchmark01.0."
+                    + fieldType.getVariantNumber() + ".yaml");
+        }
+        if (transcoding) {
+            builder.transcoding('\t', (char) 0x1F);
+        }
+        return builder.build();
+    }
+
+    /**
+     * JSON mapper of records, fields of other variants are left out
+     */
+    public static ObjectMapper jsonMapper() {
+        ObjectMapper mapper = new ObjectMapper();
+        mapper.setSerializationInclusion(JsonInclude.Include.NON_DEFAULT);
+        mapper.disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return mapper;
+    }
+
+    public static List<BenchmarkRecord> records(FieldType fieldType, Payload payload) {
+        Random random = new Random(fieldType.ordinal() * 31 + payload.ordinal());
+        String[] words = payload == Payload.ASCII ? ASCII_WORDS : MULTIBYTE_WORDS;
+        List<BenchmarkRecord> records = new ArrayList<BenchmarkRecord>(RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            BenchmarkRecord record = new BenchmarkRecord();
+            record.setVersion(MAJOR_VERSION + '.' + MINOR_VERSION + '.' + fieldType.getVariantNumber());
+            switch (fieldType) {
+                case STRING:
+                    record.setS0(text(random, words, 2));
+                    record.setS1(text(random, words, 4));
+                    record.setS2(text(random, words, 8));
+                    record.setS3(text(random, words, 1));
+                    break;
+                case INTEGER:
+                    record.setI0(random.nextInt(100));
+                    record.setI1(random.nextInt(100000));
+                    record.setI2(random.nextInt());
+                    record.setI3(-random.nextInt(1000));
+                    break;
+                case LONG:
+                    record.setL0(1500000000000L + random.nextInt(1000000000));
+                    record.setL1(random.nextLong());
+                    record.setL2(random.nextInt(1000));
+                    record.setL3(-random.nextInt(100000));
+                    break;
+                case DOUBLE:
+                    record.setD0(random.nextInt(100000) / 100.0);
+                    record.setD1(random.nextDouble());
+                    record.setD2(random.nextInt(1000) / 10.0);
+                    record.setD3(-random.nextDouble() * 1e6);
+                    break;
+                case FLOAT:
+                    record.setF0(random.nextInt(100000) / 100.0f);
+                    record.setF1(random.nextFloat());
+                    record.setF2(random.nextInt(1000) / 10.0f);
+                    record.setF3(-random.nextFloat() * 1e4f);
+                    break;
+                case LIST:
+                    record.setList0(Arrays.asList(text(random, words, 1), text(random, words, 1),
+                            text(random, words, 2), text(random, words, 1)));
+                    record.setList1(Arrays.asList(text(random, words, 2), text(random, words, 1)));
+                    break;
+                case MAP:
+                    record.setMap0(map(random, words, 4));
+                    record.setMap1(map(random, words, 2));
+                    break;
+            }
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static String text(Random random, String[] words, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                text.append(random.nextInt(8) == 0 ? '\t' : ' ');
+            }
+            text.append(words[random.nextInt(words.length)]).append(random.nextInt(1000));
+        }
+        return text.toString();
+    }
+
+    private static Map<String, String> map(Random random, String[] words, int count) {
+        Map<String, String> map = new LinkedHashMap<String, String>();
+        for (int i = 0; i < count; i++) {
+            map.put("key" + i, text(random, words, 1));
+        }
+        return map;
+    }
+
+    public static OutputStream output(OutputStream outputStream, boolean gzip) throws IOException {
+        return gzip ? new GZIPOutputStream(outputStream, 64 * 1024) : outputStream;
+    }
+
+    public static InputStream input(byte[] bytes, boolean gzip) throws IOException {
+        InputStream inputStream = new ByteArrayInputStream(bytes);
+        return gzip ? new GZIPInputStream(inputStream, 64 * 1024) : inputStream;
+    }
+
+    public static byte[] serialize(BsvContext context, List<BenchmarkRecord> records, boolean gzip)
+            throws IOException, BsvException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BsvSerializer serializer = context.createSerializer(output(bytes, gzip), MAJOR_VERSION, MINOR_VERSION);
+        for (BenchmarkRecord record : records) {
+            serializer.next(record);
+        }
+        serializer.close();
+        return bytes.toByteArray();
+    }
+
+    public static byte[] serializeJson(ObjectMapper mapper, List<BenchmarkRecord> records, boolean gzip)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream outputStream = output(bytes, gzip);
+        writeJson(mapper, records, outputStream);
+        outputStream.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * write records as a sequence of JSON objects, without closing output stream
+     */
+    public static void writeJson(ObjectMapper mapper, List<BenchmarkRecord> records, OutputStream outputStream)
+            throws IOException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(outputStream);
+        for (BenchmarkRecord record : records) {
+            mapper.writeValue(generator, record);
+        }
+        generator.flush();
+    }
+
+    public static int countJson(ObjectMapper mapper, InputStream inputStream) throws IOException {
+        MappingIterator<BenchmarkRecord> iterator = mapper.reader(BenchmarkRecord.class).readValues(inputStream);
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        return count;
+    }
+
+    public static int count(BsvDeserializer deserializer) throws IOException, BsvException {
+        int count = 0;
+        while (deserializer.next() != null) {
+            count++;
+        }
+        return count;
+    }
+}
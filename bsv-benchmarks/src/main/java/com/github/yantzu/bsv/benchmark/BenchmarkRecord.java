@@ -0,0 +1,240 @@
+package com.github.yantzu.bsv.benchmark;
+
+import java.util.List;
+import java.util.Map;
+
+import com.github.yantzu.bsv.BsvObject;
+
+/**
+ * Record of benchmarks, each schema variant holds fields of one type.
+ */
+public class BenchmarkRecord implements BsvObject {
+
+    private String              version;
+    private String              s0;
+    private String              s1;
+    private String              s2;
+    private String              s3;
+    private int                 i0;
+    private int                 i1;
+    private int                 i2;
+    private int                 i3;
+    private long                l0;
+    private long                l1;
+    private long                l2;
+    private long                l3;
+    private double              d0;
+    private double              d1;
+    private double              d2;
+    private double              d3;
+    private float               f0;
+    private float               f1;
+    private float               f2;
+    private float               f3;
+    private List<String>        list0;
+    private List<String>        list1;
+    private Map<String, String> map0;
+    private Map<String, String> map1;
+
+    @Override
+    public String getVersion() {
+        return version;
+    }
+
+    @Override
+    public void setVersion(String version) {
+        this.version = version;
+    }
+
+    public String getS0() {
+        return s0;
+    }
+
+    public void setS0(String s0) {
+        this.s0 = s0;
+    }
+
+    public String getS1() {
+        return s1;
+    }
+
+    public void setS1(String s1) {
+        this.s1 = s1;
+    }
+
+    public String getS2() {
+        return s2;
+    }
+
+    public void setS2(String s2) {
+        this.s2 = s2;
+    }
+
+    public String getS3() {
+        return s3;
+    }
+
+    public void setS3(String s3) {
+        this.s3 = s3;
+    }
+
+    public int getI0() {
+        return i0;
+    }
+
+    public void setI0(int i0) {
+        this.i0 = i0;
+    }
+
+    public int getI1() {
+        return i1;
+    }
+
+    public void setI1(int i1) {
+        this.i1 = i1;
+    }
+
+    public int getI2() {
+        return i2;
+    }
+
+    public void setI2(int i2) {
+        this.i2 = i2;
+    }
+
+    public int getI3() {
+        return i3;
+    }
+
+    public void setI3(int i3) {
+        this.i3 = i3;
+    }
+
+    public long getL0() {
+        return l0;
+    }
+
+    public void setL0(long l0) {
+        this.l0 = l0;
+    }
+
+    public long getL1() {
+        return l1;
+    }
+
+    public void setL1(long l1) {
+        this.l1 = l1;
+    }
+
+    public long getL2() {
+        return l2;
+    }
+
+    public void setL2(long l2) {
+        this.l2 = l2;
+    }
+
+    public long getL3() {
+        return l3;
+    }
+
+    public void setL3(long l3) {
+        this.l3 = l3;
+    }
+
+    public double getD0() {
+        return d0;
+    }
+
+    public void setD0(double d0) {
+        this.d0 = d0;
+    }
+
+    public double getD1() {
+        return d1;
+    }
+
+    public void setD1(double d1) {
+        this.d1 = d1;
+    }
+
+    public double getD2() {
+        return d2;
+    }
+
+    public void setD2(double d2) {
+        this.d2 = d2;
+    }
+
+    public double getD3() {
+        return d3;
+    }
+
+    public void setD3(double d3) {
+        this.d3 = d3;
+    }
+
+    public float getF0() {
+        return f0;
+    }
+
+    public void setF0(float f0) {
+        this.f0 = f0;
+    }
+
+    public float getF1() {
+        return f1;
+    }
+
+    public void setF1(float f1) {
+        this.f1 = f1;
+    }
+
+    public float getF2() {
+        return f2;
+    }
+
+    public void setF2(float f2) {
+        this.f2 = f2;
+    }
+
+    public float getF3() {
+        return f3;
+    }
+
+    public void setF3(float f3) {
+        this.f3 = f3;
+    }
+
+    public List<String> getList0() {
+        return list0;
+    }
+
+    public void setList0(List<String> list0) {
+        this.list0 = list0;
+    }
+
+    public List<String> getList1() {
+        return list1;
+    }
+
+    public void setList1(List<String> list1) {
+        this.list1 = list1;
+    }
+
+    public Map<String, String> getMap0() {
+        return map0;
+    }
+
+    public void setMap0(Map<String, String> map0) {
+        this.map0 = map0;
+    }
+
+    public Map<String, String> getMap1() {
+        return map1;
+    }
+
+    public void setMap1(Map<String, String> map1) {
+        this.map1 = map1;
+    }
+}
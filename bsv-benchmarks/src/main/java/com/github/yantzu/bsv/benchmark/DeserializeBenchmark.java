@@ -0,0 +1,75 @@
+package com.github.yantzu.bsv.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.yantzu.bsv.BsvContext;
+import com.github.yantzu.bsv.BsvDeserializer;
+import com.github.yantzu.bsv.BsvException;
+import com.github.yantzu.bsv.benchmark.BenchmarkData.FieldType;
+import com.github.yantzu.bsv.benchmark.BenchmarkData.Payload;
+
+/**
+ * Records deserialized per second, a stream of {@link BenchmarkData#RECORDS}
+ * records per invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeserializeBenchmark {
+
+    @Param({ "STRING", "INTEGER", "LONG", "DOUBLE", "LIST", "MAP", "FLOAT" })
+    public FieldType              fieldType;
+
+    @Param({ "ASCII", "MULTIBYTE" })
+    public Payload                payload;
+
+    @Param({ "false", "true" })
+    public boolean                transcoding;
+
+    @Param({ "false", "true" })
+    public boolean                gzip;
+
+    @Param({ "false", "true" })
+    public boolean                binaryNumbers;
+
+    @Param({ "CHAR", "BYTE" })
+    public BsvDeserializer.Engine engine;
+
+    private BsvContext             context;
+    private byte[]                 bytes;
+
+    @Setup
+    public void setup() throws IOException, BsvException {
+        context = BenchmarkData.context(transcoding, binaryNumbers);
+        bytes = BenchmarkData.serialize(context, BenchmarkData.records(fieldType, payload), gzip);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.RECORDS)
+    public int deserialize() throws IOException, BsvException {
+        BsvDeserializer deserializer = context.createDeserializer(BenchmarkData.input(bytes, gzip),
+                BenchmarkData.UTF_8, engine);
+        try {
+            return BenchmarkData.count(deserializer);
+        } finally {
+            deserializer.close();
+        }
+    }
+}
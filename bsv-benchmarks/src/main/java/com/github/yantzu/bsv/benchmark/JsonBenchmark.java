@@ -0,0 +1,75 @@
+package com.github.yantzu.bsv.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.yantzu.bsv.benchmark.BenchmarkData.FieldType;
+import com.github.yantzu.bsv.benchmark.BenchmarkData.Payload;
+
+/**
+ * Jackson baseline, the records of {@link SerializeBenchmark} and
+ * {@link DeserializeBenchmark} written and read as a sequence of JSON objects.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({ "STRING", "INTEGER", "LONG", "DOUBLE", "LIST", "MAP", "FLOAT" })
+    public FieldType             fieldType;
+
+    @Param({ "ASCII", "MULTIBYTE" })
+    public Payload               payload;
+
+    @Param({ "false", "true" })
+    public boolean               gzip;
+
+    private ObjectMapper          mapper;
+    private List<BenchmarkRecord> records;
+    private byte[]                bytes;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setup() throws IOException {
+        mapper = BenchmarkData.jsonMapper();
+        records = BenchmarkData.records(fieldType, payload);
+        bytes = BenchmarkData.serializeJson(mapper, records, gzip);
+        output = new ByteArrayOutputStream(1024 * 1024);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.RECORDS)
+    public int serialize() throws IOException {
+        output.reset();
+        OutputStream outputStream = BenchmarkData.output(output, gzip);
+        BenchmarkData.writeJson(mapper, records, outputStream);
+        outputStream.close();
+        return output.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.RECORDS)
+    public int deserialize() throws IOException {
+        return BenchmarkData.countJson(mapper, BenchmarkData.input(bytes, gzip));
+    }
+}
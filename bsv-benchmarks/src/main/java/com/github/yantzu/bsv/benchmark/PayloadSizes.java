@@ -0,0 +1,39 @@
+package com.github.yantzu.bsv.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.yantzu.bsv.BsvContext;
+import com.github.yantzu.bsv.BsvException;
+import com.github.yantzu.bsv.benchmark.BenchmarkData.FieldType;
+import com.github.yantzu.bsv.benchmark.BenchmarkData.Payload;
+
+/**
+ * Prints bytes of benchmark records as BSV, BSV of binary numbers and JSON,
+ * plain and gzipped, to go with the throughput of benchmarks.
+ */
+public class PayloadSizes {
+
+    public static void main(String[] args) throws IOException, BsvException {
+        BsvContext context = BenchmarkData.context(false);
+        BsvContext binaryContext = BenchmarkData.context(false, true);
+        ObjectMapper mapper = BenchmarkData.jsonMapper();
+        System.out.println(String.format("%-8s %-9s %10s %10s %10s %6s %10s %10s %10s %6s", "field", "payload",
+                "bsv", "bsv.bin", "json", "ratio", "bsv.gz", "bin.gz", "json.gz", "ratio"));
+        for (FieldType fieldType : FieldType.values()) {
+            for (Payload payload : Payload.values()) {
+                List<BenchmarkRecord> records = BenchmarkData.records(fieldType, payload);
+                int bsv = BenchmarkData.serialize(context, records, false).length;
+                int binary = BenchmarkData.serialize(binaryContext, records, false).length;
+                int json = BenchmarkData.serializeJson(mapper, records, false).length;
+                int bsvGzip = BenchmarkData.serialize(context, records, true).length;
+                int binaryGzip = BenchmarkData.serialize(binaryContext, records, true).length;
+                int jsonGzip = BenchmarkData.serializeJson(mapper, records, true).length;
+                System.out.println(String.format("%-8s %-9s %10d %10d %10d %6.2f %10d %10d %10d %6.2f", fieldType,
+                        payload, bsv, binary, json, (double) bsv / json, bsvGzip, binaryGzip, jsonGzip,
+                        (double) bsvGzip / jsonGzip));
+            }
+        }
+    }
+}
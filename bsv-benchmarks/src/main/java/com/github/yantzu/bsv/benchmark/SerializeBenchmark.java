@@ -0,0 +1,77 @@
+package com.github.yantzu.bsv.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.yantzu.bsv.BsvContext;
+import com.github.yantzu.bsv.BsvException;
+import com.github.yantzu.bsv.BsvSerializer;
+import com.github.yantzu.bsv.benchmark.BenchmarkData.FieldType;
+import com.github.yantzu.bsv.benchmark.BenchmarkData.Payload;
+
+/**
+ * Records serialized per second, a stream of {@link BenchmarkData#RECORDS}
+ * records per invocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializeBenchmark {
+
+    @Param({ "STRING", "INTEGER", "LONG", "DOUBLE", "LIST", "MAP", "FLOAT" })
+    public FieldType             fieldType;
+
+    @Param({ "ASCII", "MULTIBYTE" })
+    public Payload               payload;
+
+    @Param({ "false", "true" })
+    public boolean               transcoding;
+
+    @Param({ "false", "true" })
+    public boolean               gzip;
+
+    @Param({ "false", "true" })
+    public boolean               binaryNumbers;
+
+    private BsvContext            context;
+    private List<BenchmarkRecord> records;
+    private ByteArrayOutputStream output;
+
+    @Setup
+    public void setup() throws IOException {
+        context = BenchmarkData.context(transcoding, binaryNumbers);
+        records = BenchmarkData.records(fieldType, payload);
+        output = new ByteArrayOutputStream(1024 * 1024);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.RECORDS)
+    public int serialize() throws IOException, BsvException {
+        output.reset();
+        BsvSerializer serializer = context.createSerializer(BenchmarkData.output(output, gzip),
+                BenchmarkData.MAJOR_VERSION, BenchmarkData.MINOR_VERSION);
+        for (int i = 0; i < records.size(); i++) {
+            serializer.next(records.get(i));
+        }
+        serializer.close();
+        return output.size();
+    }
+}
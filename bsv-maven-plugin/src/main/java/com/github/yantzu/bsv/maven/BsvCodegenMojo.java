@@ -0,0 +1,132 @@
+package com.github.yantzu.bsv.maven;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.maven.artifact.DependencyResolutionRequiredException;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+
+import com.github.yantzu.bsv.BsvCodecGenerator;
+import com.github.yantzu.bsv.BsvSchema;
+import com.github.yantzu.bsv.BsvYamlSchemaParser;
+
+/**
+ * Generates a codec per YAML schema once bean classes are compiled, compiles
+ * codecs into classes directory and lists them in the services file, so
+ * BsvContextBuilder finds them on class path.
+ */
+@Mojo(name = "generate", defaultPhase = LifecyclePhase.PROCESS_CLASSES,
+        requiresDependencyResolution = ResolutionScope.COMPILE, threadSafe = true)
+public class BsvCodegenMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true)
+    private MavenProject project;
+
+    /**
+     * YAML files of schemas
+     */
+    @Parameter(required = true)
+    private File[]       schemas;
+
+    @Parameter(defaultValue = "${project.build.directory}/generated-sources/bsv")
+    private File         sourceDirectory;
+
+    @Parameter(defaultValue = "${project.build.outputDirectory}")
+    private File         classesDirectory;
+
+    @Override
+    public void execute() throws MojoExecutionException {
+        List<String> classPath;
+        try {
+            classPath = project.getCompileClasspathElements();
+        } catch (DependencyResolutionRequiredException dependencyResolutionRequiredException) {
+            throw new MojoExecutionException("Class path of project is not resolved",
+                    dependencyResolutionRequiredException);
+        }
+
+        URLClassLoader classLoader = new URLClassLoader(toUrls(classPath), getClass().getClassLoader());
+        try {
+            BsvYamlSchemaParser parser = new BsvYamlSchemaParser(classLoader);
+            List<BsvSchema> parsed = new ArrayList<BsvSchema>();
+            for (File schema : schemas) {
+                InputStream inputStream = new FileInputStream(schema);
+                try {
+                    parsed.add(parser.parse(inputStream));
+                } finally {
+                    inputStream.close();
+                }
+            }
+
+            BsvCodecGenerator generator = new BsvCodecGenerator();
+            List<File> sources = generator.writeSources(parsed, sourceDirectory);
+            compile(sources, classPath);
+            generator.writeServices(parsed, classesDirectory);
+            getLog().info("Generated " + sources.size() + " codecs into " + classesDirectory);
+        } catch (IOException ioException) {
+            throw new MojoExecutionException("Failed to generate codecs", ioException);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            throw new MojoExecutionException(illegalArgumentException.getMessage(), illegalArgumentException);
+        } finally {
+            try {
+                classLoader.close();
+            } catch (IOException ioException) {
+                getLog().debug(ioException);
+            }
+        }
+    }
+
+    private void compile(List<File> sources, List<String> classPath) throws MojoExecutionException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new MojoExecutionException("No Java compiler, codecs have to be generated by a JDK");
+        }
+        StringBuilder path = new StringBuilder();
+        for (String element : classPath) {
+            if (path.length() > 0) {
+                path.append(File.pathSeparatorChar);
+            }
+            path.append(element);
+        }
+        List<String> arguments = new ArrayList<String>();
+        arguments.add("-d");
+        arguments.add(classesDirectory.getPath());
+        arguments.add("-classpath");
+        arguments.add(path.toString());
+        arguments.add("-encoding");
+        arguments.add("UTF-8");
+        for (File source : sources) {
+            arguments.add(source.getPath());
+        }
+        if (compiler.run(null, null, null, arguments.toArray(new String[arguments.size()])) != 0) {
+            throw new MojoExecutionException("Failed to compile codecs in " + sourceDirectory);
+        }
+    }
+
+    private static URL[] toUrls(List<String> classPath) throws MojoExecutionException {
+        URL[] urls = new URL[classPath.size()];
+        for (int i = 0; i < urls.length; i++) {
+            try {
+                urls[i] = new File(classPath.get(i)).toURI().toURL();
+            } catch (MalformedURLException malformedURLException) {
+                throw new MojoExecutionException("Invalid class path " + classPath.get(i), malformedURLException);
+            }
+        }
+        return urls;
+    }
+}
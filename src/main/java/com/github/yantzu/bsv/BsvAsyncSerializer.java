@@ -0,0 +1,364 @@
+package com.github.yantzu.bsv;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serializer which encodes records on the calling thread into the current of
+ * a fixed set of buffers, and leaves writing to a dedicated I/O thread. A
+ * buffer is handed to the I/O thread once it holds bufferSize bytes, so a
+ * stall of output stream only blocks callers once all buffers are full, or
+ * with {@link FullPolicy#DROP} drops records instead.
+ * <p>
+ * {@link #flush()} and {@link #close()} wait until the records before them
+ * are written and output stream is flushed, and with syncOnFlush forced to
+ * disk if it is a file. A failure of output stream is thrown by the next call
+ * after it, records handed to I/O thread since are lost.
+ */
+public class BsvAsyncSerializer implements BsvSerializer {
+
+    protected static final int  DEFAULT_BUFFER_COUNT = 4;
+    protected static final int  DEFAULT_BUFFER_SIZE  = 256 * 1024;
+
+    private static final AtomicInteger SERIALIZERS   = new AtomicInteger();
+
+    /**
+     * what {@link BsvAsyncSerializer#next(BsvObject)} does when all buffers are
+     * waiting to be written
+     */
+    public enum FullPolicy {
+        //wait for I/O thread to write a buffer
+        BLOCK,
+        //drop the record, counted by getDroppedRecords
+        DROP
+    }
+
+    private final OutputStream      outputStream;
+    private final FullPolicy        fullPolicy;
+    private final int               bufferSize;
+    private final BsvSerializerImpl serializer;
+    private final Thread            writer;
+    private boolean                 syncOnFlush;
+
+    private final BlockingQueue<Buffer> free;
+    //buffers and flush requests to be written, in order
+    private final BlockingQueue<Buffer> full;
+    //buffer records are encoded into, null if none is free
+    private Buffer                  current;
+    private volatile IOException    failure;
+    private boolean                 closed;
+
+    private final AtomicLong        droppedRecords   = new AtomicLong();
+    private final AtomicLong        blockedNanos     = new AtomicLong();
+    private final AtomicLong        writtenBytes     = new AtomicLong();
+    private final AtomicLong        writeCount       = new AtomicLong();
+    private final AtomicLong        writeNanos       = new AtomicLong();
+    private volatile long           maxWriteNanos;
+    private volatile int            maxQueueDepth;
+
+
+    protected BsvAsyncSerializer(BsvContext context, OutputStream outputStream, String majorVersion,
+            char minorVersion, Charset charset, int bufferCount, int bufferSize, FullPolicy fullPolicy)
+            throws IOException, BsvException {
+        if (bufferCount < 2) {
+            throw new IllegalArgumentException("Invalid buffer count " + bufferCount);
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("Invalid buffer size " + bufferSize);
+        }
+        this.outputStream = outputStream;
+        this.fullPolicy = fullPolicy;
+        this.bufferSize = bufferSize;
+        this.free = new ArrayBlockingQueue<Buffer>(bufferCount);
+        for (int i = 0; i < bufferCount; i++) {
+            free.add(new Buffer(bufferSize, null));
+        }
+        //flush requests are queued besides buffers
+        this.full = new ArrayBlockingQueue<Buffer>(bufferCount * 2);
+        this.current = free.poll();
+        this.serializer = new BsvSerializerImpl(context, new CurrentBufferStream(), majorVersion, minorVersion,
+                charset);
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeBuffers();
+            }
+        }, "bsv-async-serializer-" + SERIALIZERS.incrementAndGet());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public boolean isSyncOnFlush() {
+        return syncOnFlush;
+    }
+
+    /**
+     * false by default, true to force data to disk on flush and close when
+     * output stream is a {@link FileOutputStream}
+     */
+    public void setSyncOnFlush(boolean syncOnFlush) {
+        this.syncOnFlush = syncOnFlush;
+    }
+
+    @Override
+    public void next(BsvObject bean) throws IOException, BsvException {
+        checkOpen();
+        if (current == null) {
+            current = acquire();
+            if (current == null) {
+                droppedRecords.incrementAndGet();
+                return;
+            }
+        }
+
+        int mark = current.length;
+        try {
+            serializer.next(bean);
+            serializer.flush();
+        } catch (BsvException bsvException) {
+            serializer.flush();
+            current.length = mark;
+            throw bsvException;
+        }
+        if (current.length >= bufferSize) {
+            handOff(current);
+            current = null;
+        }
+    }
+
+    /**
+     * @return a free buffer, null if there is none and policy is DROP
+     */
+    private Buffer acquire() throws IOException {
+        Buffer buffer = free.poll();
+        if (buffer != null || fullPolicy == FullPolicy.DROP) {
+            return buffer;
+        }
+        long start = System.nanoTime();
+        try {
+            return free.take();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for free buffer");
+        } finally {
+            blockedNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    private void handOff(Buffer buffer) throws IOException {
+        try {
+            full.put(buffer);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while handing off buffer");
+        }
+        int depth = full.size();
+        if (depth > maxQueueDepth) {
+            maxQueueDepth = depth;
+        }
+    }
+
+    /**
+     * hand off current buffer and wait until all records are written and output stream is flushed
+     */
+    @Override
+    public void flush() throws IOException, BsvException {
+        checkOpen();
+        awaitFlushed(false);
+    }
+
+    private void awaitFlushed(boolean last) throws IOException {
+        if (current != null && current.length > 0) {
+            handOff(current);
+            current = null;
+        }
+        Buffer request = new Buffer(0, new CountDownLatch(1));
+        request.last = last;
+        handOff(request);
+        try {
+            request.done.await();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for flush");
+        }
+        if (failure != null) {
+            throw new IOException("Failed to write records", failure);
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Serializer is closed");
+        }
+        if (failure != null) {
+            throw new IOException("Failed to write records", failure);
+        }
+    }
+
+    /**
+     * loop of I/O thread, until a flush request of close
+     */
+    private void writeBuffers() {
+        while (true) {
+            Buffer buffer;
+            try {
+                buffer = full.take();
+            } catch (InterruptedException interruptedException) {
+                return;
+            }
+
+            if (buffer.done != null) {
+                if (failure == null) {
+                    try {
+                        outputStream.flush();
+                        if (syncOnFlush && outputStream instanceof FileOutputStream) {
+                            ((FileOutputStream) outputStream).getChannel().force(false);
+                        }
+                    } catch (IOException ioException) {
+                        failure = ioException;
+                    }
+                }
+                if (buffer.last) {
+                    try {
+                        outputStream.close();
+                    } catch (IOException ioException) {
+                        if (failure == null) {
+                            failure = ioException;
+                        }
+                    }
+                }
+                buffer.done.countDown();
+                if (buffer.last) {
+                    return;
+                }
+                continue;
+            }
+
+            if (failure == null) {
+                long start = System.nanoTime();
+                try {
+                    outputStream.write(buffer.bytes, 0, buffer.length);
+                } catch (IOException ioException) {
+                    failure = ioException;
+                }
+                long nanos = System.nanoTime() - start;
+                writeCount.incrementAndGet();
+                writeNanos.addAndGet(nanos);
+                writtenBytes.addAndGet(buffer.length);
+                if (nanos > maxWriteNanos) {
+                    maxWriteNanos = nanos;
+                }
+            }
+            buffer.length = 0;
+            free.add(buffer);
+        }
+    }
+
+    /**
+     * write remaining records, then flush and close output stream
+     */
+    @Override
+    public void close() throws IOException, BsvException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            awaitFlushed(true);
+        } finally {
+            writer.interrupt();
+        }
+    }
+
+    /**
+     * @return buffers waiting to be written
+     */
+    public int getQueueDepth() {
+        return full.size();
+    }
+
+    public int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    public long getDroppedRecords() {
+        return droppedRecords.get();
+    }
+
+    /**
+     * @return nanoseconds callers waited for a free buffer
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.get();
+    }
+
+    public long getWrittenBytes() {
+        return writtenBytes.get();
+    }
+
+    /**
+     * @return buffers written by I/O thread
+     */
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    /**
+     * @return mean nanoseconds of writing a buffer to output stream, 0 if none is written
+     */
+    public long getMeanWriteNanos() {
+        long count = writeCount.get();
+        return count == 0 ? 0 : writeNanos.get() / count;
+    }
+
+    public long getMaxWriteNanos() {
+        return maxWriteNanos;
+    }
+
+
+    private static final class Buffer {
+        private byte[]               bytes;
+        private int                  length;
+        //not null for a flush request
+        private final CountDownLatch done;
+        private boolean              last;
+
+        Buffer(int capacity, CountDownLatch done) {
+            this.bytes = new byte[capacity];
+            this.done = done;
+        }
+
+        void write(byte[] source, int offset, int count) {
+            if (length + count > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + count));
+            }
+            System.arraycopy(source, offset, bytes, length, count);
+            length += count;
+        }
+    }
+
+    /**
+     * stream of encoder, writing into current buffer
+     */
+    private final class CurrentBufferStream extends OutputStream {
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            current.write(bytes, offset, length);
+        }
+    }
+}
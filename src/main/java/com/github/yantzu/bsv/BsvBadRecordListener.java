@@ -0,0 +1,24 @@
+package com.github.yantzu.bsv;
+
+/**
+ * Receives every bad record skipped by deserializers of a context. It is
+ * called by threads of parallel readers at the same time, so it must be thread
+ * safe.
+ *
+ * @see BsvContextBuilder#badRecordListener(BsvBadRecordListener)
+ */
+public interface BsvBadRecordListener {
+
+    /**
+     * The byte engine passes the whole line of record. The char engine has
+     * already decoded a part of it, so it passes at most 1024 chars of the rest,
+     * and no offset.
+     *
+     * @param schema schema of record, null if its variant is unknown
+     * @param offset byte offset of record in input, -1 if not known
+     * @param raw buffer holding raw bytes of record, only valid during the call
+     * @param start start of record in raw
+     * @param end end of record in raw, line delimiter excluded
+     */
+    void onBadRecord(BsvException exception, BsvSchema schema, long offset, byte[] raw, int start, int end);
+}
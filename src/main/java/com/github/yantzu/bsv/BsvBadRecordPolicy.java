@@ -0,0 +1,57 @@
+package com.github.yantzu.bsv;
+
+import java.util.Collection;
+
+/**
+ * What a stream of records does with a bad record
+ */
+public abstract class BsvBadRecordPolicy {
+
+    private static final BsvBadRecordPolicy SKIP = new BsvBadRecordPolicy() {
+        @Override
+        public void onBadRecord(BsvException exception) {
+        }
+    };
+
+    private static final BsvBadRecordPolicy FAIL = new BsvBadRecordPolicy() {
+        @Override
+        public void onBadRecord(BsvException exception) {
+            throw new BsvUncheckedException(exception);
+        }
+    };
+
+
+    /**
+     * drop bad records silently, they are still logged by deserializer
+     */
+    public static BsvBadRecordPolicy skip() {
+        return SKIP;
+    }
+
+    /**
+     * stop the stream by throwing {@link BsvUncheckedException}
+     */
+    public static BsvBadRecordPolicy fail() {
+        return FAIL;
+    }
+
+    /**
+     * drop bad records and add their exceptions to sink, sink is locked while
+     * adding, so that it can be shared by a parallel stream
+     */
+    public static BsvBadRecordPolicy collect(final Collection<? super BsvException> sink) {
+        return new BsvBadRecordPolicy() {
+            @Override
+            public void onBadRecord(BsvException exception) {
+                synchronized (sink) {
+                    sink.add(exception);
+                }
+            }
+        };
+    }
+
+    /**
+     * called with exception of every bad record, the record is skipped if this returns normally
+     */
+    public abstract void onBadRecord(BsvException exception);
+}
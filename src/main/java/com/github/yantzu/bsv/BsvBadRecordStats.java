@@ -0,0 +1,121 @@
+package com.github.yantzu.bsv;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Default bad record listener. It counts bad records per kind of error and per
+ * variant, and logs a sample of them: the first few, then one of every
+ * logEvery, with at most maxLoggedBytes of raw data. Every bad record is also
+ * passed to an optional dead letter listener, which gets offset and raw bytes
+ * of the whole record.
+ */
+public class BsvBadRecordStats implements BsvBadRecordListener {
+
+    private final static Logger LOG                      = LoggerFactory.getLogger(BsvBadRecordStats.class);
+
+    protected static final int  DEFAULT_LOG_FIRST        = 10;
+    protected static final int  DEFAULT_LOG_EVERY        = 1000;
+    protected static final int  DEFAULT_MAX_LOGGED_BYTES = 256;
+
+    private static final Charset LOG_CHARSET             = Charset.forName("UTF-8");
+
+    private final BsvBadRecordListener deadLetter;
+    private int                 logFirst                 = DEFAULT_LOG_FIRST;
+    private int                 logEvery                 = DEFAULT_LOG_EVERY;
+    private int                 maxLoggedBytes           = DEFAULT_MAX_LOGGED_BYTES;
+
+    private final AtomicLong    count                    = new AtomicLong();
+    private final AtomicLongArray countsOfKind           = new AtomicLongArray(BsvException.Kind.values().length);
+    private final ConcurrentMap<BsvSchema, AtomicLong> countsOfVariant = new ConcurrentHashMap<BsvSchema, AtomicLong>();
+
+
+    public BsvBadRecordStats() {
+        this(null);
+    }
+
+    /**
+     * @param deadLetter listener of every bad record, null if none
+     */
+    public BsvBadRecordStats(BsvBadRecordListener deadLetter) {
+        this.deadLetter = deadLetter;
+    }
+
+    /**
+     * bad records logged before sampling starts, 10 by default
+     */
+    public BsvBadRecordStats logFirst(int logFirst) {
+        this.logFirst = logFirst;
+        return this;
+    }
+
+    /**
+     * one of every logEvery bad records is logged after the first ones, 1000 by default
+     */
+    public BsvBadRecordStats logEvery(int logEvery) {
+        if (logEvery <= 0) {
+            throw new IllegalArgumentException("Invalid log every " + logEvery);
+        }
+        this.logEvery = logEvery;
+        return this;
+    }
+
+    /**
+     * raw data logged per bad record, 256 bytes by default
+     */
+    public BsvBadRecordStats maxLoggedBytes(int maxLoggedBytes) {
+        this.maxLoggedBytes = maxLoggedBytes;
+        return this;
+    }
+
+    @Override
+    public void onBadRecord(BsvException exception, BsvSchema schema, long offset, byte[] raw, int start, int end) {
+        long total = count.incrementAndGet();
+        countsOfKind.incrementAndGet(exception.getKind().ordinal());
+        if (schema != null) {
+            AtomicLong countOfVariant = countsOfVariant.get(schema);
+            if (countOfVariant == null) {
+                AtomicLong created = new AtomicLong();
+                countOfVariant = countsOfVariant.putIfAbsent(schema, created);
+                if (countOfVariant == null) {
+                    countOfVariant = created;
+                }
+            }
+            countOfVariant.incrementAndGet();
+        }
+
+        if ((total <= logFirst || total % logEvery == 0) && LOG.isErrorEnabled()) {
+            int length = Math.min(end - start, maxLoggedBytes);
+            LOG.error("Discard bad record " + total + " of " + (schema == null ? "unknown variant"
+                    : schema.getFullVersion()) + (offset < 0 ? "" : " at offset " + offset) + ": "
+                    + exception.getMessage() + ", raw data:" + new String(raw, start, length, LOG_CHARSET)
+                    + (length < end - start ? "..." : ""));
+        }
+
+        if (deadLetter != null) {
+            deadLetter.onBadRecord(exception, schema, offset, raw, start, end);
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getCount(BsvException.Kind kind) {
+        return countsOfKind.get(kind.ordinal());
+    }
+
+    /**
+     * @return bad records of variant, not including records of unknown variant
+     */
+    public long getCount(BsvSchema schema) {
+        AtomicLong countOfVariant = countsOfVariant.get(schema);
+        return countOfVariant == null ? 0 : countOfVariant.get();
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.yantzu.bsv;
+
+/**
+ * Creates beans of one schema and reads or writes their fields by field index.
+ * Primitive setters take primitive values and primitive getters return them,
+ * so a primitive property is accessed without boxing. A primitive getter reads
+ * a null boxed property as 0 or false.
+ * <p>
+ * Failures of the bean itself are thrown as is, a null value written into a
+ * primitive property fails with a RuntimeException.
+ */
+public interface BsvBeanAccessor {
+
+    BsvObject newInstance() throws BsvException;
+
+    Object get(BsvObject bean, int field) throws BsvException;
+
+    void set(BsvObject bean, int field, Object value) throws BsvException;
+
+    void setInt(BsvObject bean, int field, int value) throws BsvException;
+
+    void setLong(BsvObject bean, int field, long value) throws BsvException;
+
+    void setFloat(BsvObject bean, int field, float value) throws BsvException;
+
+    void setDouble(BsvObject bean, int field, double value) throws BsvException;
+
+    void setBoolean(BsvObject bean, int field, boolean value) throws BsvException;
+
+    int getInt(BsvObject bean, int field) throws BsvException;
+
+    long getLong(BsvObject bean, int field) throws BsvException;
+
+    float getFloat(BsvObject bean, int field) throws BsvException;
+
+    double getDouble(BsvObject bean, int field) throws BsvException;
+
+    boolean getBoolean(BsvObject bean, int field) throws BsvException;
+}
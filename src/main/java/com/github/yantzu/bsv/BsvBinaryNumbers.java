@@ -0,0 +1,243 @@
+package com.github.yantzu.bsv;
+
+/**
+ * Binary numbers of a stream whose header has the binary numbers flag.
+ * Integers are zigzag encoded, floats and doubles are IEEE 754 bits reversed,
+ * so that the trailing zero bits of a round mantissa come first. Either is
+ * written as a varint, least significant bits first: 6 bits per char in
+ * 0x40-0x7F while more bits follow, then the last 5 bits in 0x20-0x3F.
+ * <p>
+ * A short decimal such as 0.1 takes up to 11 chars as bits, so a finite float
+ * or double is written as text instead when its text is shorter. Text always
+ * has 3 chars at least and starts with a digit or '-', below 0x40, where a
+ * varint of more than one char starts at 0x40, so the first char tells them
+ * apart.
+ * <p>
+ * Varint chars are printable ascii, the same bytes in any ascii compatible
+ * charset, and never one of the delimiters or transcoded chars, which are
+ * required to be out of 0x20-0x7F. A field is still located by its
+ * delimiters, and its length tells where the number ends. An empty field is
+ * null, as it is in text.
+ */
+class BsvBinaryNumbers {
+
+    //chars holding 6 bits with more to follow
+    static final int  MORE       = 0x40;
+    //chars holding the last 5 bits
+    static final int  LAST       = 0x20;
+    //chars of a varint of 64 bits at most
+    static final int  MAX_LENGTH = 11;
+
+    private BsvBinaryNumbers() {
+    }
+
+    static boolean isReserved(char c) {
+        return c >= LAST && c < 0x80;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a delimiter or transcoded char may be taken for a varint char
+     */
+    static void check(BsvContext context) {
+        char[] delimiters = { context.getFieldsDelimiter(), context.getItemsDelimiter(),
+                context.getKeyValueDelimiter(), context.getLineDelimiter() };
+        for (char delimiter : delimiters) {
+            if (isReserved(delimiter)) {
+                throw new IllegalArgumentException("Delimiter " + (int) delimiter
+                        + " is printable ascii, not supported by binary numbers");
+            }
+        }
+        char[] transcodes = context.getCharTranscodesDeser();
+        for (int c = 0; c < transcodes.length; c++) {
+            if (transcodes[c] != c && isReserved((char) c)) {
+                throw new IllegalArgumentException("Transcoding to " + c
+                        + " is printable ascii, not supported by binary numbers");
+            }
+        }
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long doubleBits(double value) {
+        return Long.reverse(Double.doubleToRawLongBits(value));
+    }
+
+    static long floatBits(float value) {
+        return Integer.reverse(Float.floatToRawIntBits(value)) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * @return chars of value as varint
+     */
+    static int length(long value) {
+        //5 bits in last char, 6 in each char before
+        return 1 + (64 - Long.numberOfLeadingZeros(value)) / 6;
+    }
+
+    /**
+     * @return offset after varint, bytes has room for {@link #MAX_LENGTH} more
+     */
+    static int write(long value, byte[] bytes, int offset) {
+        while ((value >>> 5) != 0) {
+            bytes[offset++] = (byte) (MORE | (value & 0x3F));
+            value >>>= 6;
+        }
+        bytes[offset++] = (byte) (LAST | value);
+        return offset;
+    }
+
+    static int decodeInt(byte[] bytes, int start, int end) {
+        long zigzag = decode(bytes, start, end);
+        if ((zigzag >>> 32) != 0) {
+            throw numberFormatException(start, end, "out of int range");
+        }
+        return (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+    }
+
+    static long decodeLong(byte[] bytes, int start, int end) {
+        long zigzag = decode(bytes, start, end);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    static float decodeFloat(byte[] bytes, int start, int end) {
+        if (end - start > 1 && bytes[start] < MORE) {
+            return BsvNumberParser.parseFloat(bytes, start, end);
+        }
+        long bits = decode(bytes, start, end);
+        if ((bits >>> 32) != 0) {
+            throw numberFormatException(start, end, "out of float range");
+        }
+        return Float.intBitsToFloat(Integer.reverse((int) bits));
+    }
+
+    static double decodeDouble(byte[] bytes, int start, int end) {
+        if (end - start > 1 && bytes[start] < MORE) {
+            return BsvNumberParser.parseDouble(bytes, start, end);
+        }
+        return Double.longBitsToDouble(Long.reverse(decode(bytes, start, end)));
+    }
+
+    static int decodeInt(CharSequence chars, int start, int end) {
+        long zigzag = decode(chars, start, end);
+        if ((zigzag >>> 32) != 0) {
+            throw numberFormatException(start, end, "out of int range");
+        }
+        return (int) ((zigzag >>> 1) ^ -(zigzag & 1));
+    }
+
+    static long decodeLong(CharSequence chars, int start, int end) {
+        long zigzag = decode(chars, start, end);
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    static float decodeFloat(CharSequence chars, int start, int end) {
+        if (end - start > 1 && chars.charAt(start) < MORE) {
+            return BsvNumberParser.parseFloat(chars, start, end);
+        }
+        long bits = decode(chars, start, end);
+        if ((bits >>> 32) != 0) {
+            throw numberFormatException(start, end, "out of float range");
+        }
+        return Float.intBitsToFloat(Integer.reverse((int) bits));
+    }
+
+    static double decodeDouble(CharSequence chars, int start, int end) {
+        if (end - start > 1 && chars.charAt(start) < MORE) {
+            return BsvNumberParser.parseDouble(chars, start, end);
+        }
+        return Double.longBitsToDouble(Long.reverse(decode(chars, start, end)));
+    }
+
+    /**
+     * value of an INTEGER or LONG field as long
+     * @throws NumberFormatException if field is of another type
+     */
+    static long decodeAsLong(byte[] bytes, int start, int end, BsvSchema.FieldType type) {
+        switch (type) {
+            case INTEGER:
+                return decodeInt(bytes, start, end);
+            case LONG:
+                return decodeLong(bytes, start, end);
+            default:
+                throw numberFormatException(start, end, "not an integer");
+        }
+    }
+
+    /**
+     * value of a number field as double
+     * @throws NumberFormatException if field is not a number
+     */
+    static double decodeAsDouble(byte[] bytes, int start, int end, BsvSchema.FieldType type) {
+        switch (type) {
+            case INTEGER:
+                return decodeInt(bytes, start, end);
+            case LONG:
+                return decodeLong(bytes, start, end);
+            case FLOAT:
+                return decodeFloat(bytes, start, end);
+            case DOUBLE:
+                return decodeDouble(bytes, start, end);
+            default:
+                throw numberFormatException(start, end, "not a number");
+        }
+    }
+
+    static boolean isNumber(BsvSchema.FieldType type) {
+        return type == BsvSchema.FieldType.INTEGER || type == BsvSchema.FieldType.LONG
+                || type == BsvSchema.FieldType.FLOAT || type == BsvSchema.FieldType.DOUBLE;
+    }
+
+    private static long decode(byte[] bytes, int start, int end) {
+        long value = 0;
+        int shift = 0;
+        for (int i = start; i < end; i++) {
+            int c = bytes[i];
+            if (c >= MORE) {
+                if (shift > 54) {
+                    throw numberFormatException(start, end, "too long");
+                }
+                value |= (long) (c & 0x3F) << shift;
+                shift += 6;
+            } else if (c >= LAST && i == end - 1) {
+                return last(value, c - LAST, shift, start, end);
+            } else {
+                throw numberFormatException(start, end, "invalid char " + c + " at " + (i - start));
+            }
+        }
+        throw numberFormatException(start, end, "no last char");
+    }
+
+    private static long decode(CharSequence chars, int start, int end) {
+        long value = 0;
+        int shift = 0;
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c >= MORE && c < 0x80) {
+                if (shift > 54) {
+                    throw numberFormatException(start, end, "too long");
+                }
+                value |= (long) (c & 0x3F) << shift;
+                shift += 6;
+            } else if (c >= LAST && c < MORE && i == end - 1) {
+                return last(value, c - LAST, shift, start, end);
+            } else {
+                throw numberFormatException(start, end, "invalid char " + (int) c + " at " + (i - start));
+            }
+        }
+        throw numberFormatException(start, end, "no last char");
+    }
+
+    private static long last(long value, long bits, int shift, int start, int end) {
+        //only 4 bits are left after 10 chars of 6 bits
+        if (shift == 60 && bits > 0xF) {
+            throw numberFormatException(start, end, "too long");
+        }
+        return value | bits << shift;
+    }
+
+    private static NumberFormatException numberFormatException(int start, int end, String reason) {
+        return new NumberFormatException("Invalid binary number of " + (end - start) + " chars, " + reason);
+    }
+}
@@ -0,0 +1,24 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+
+/**
+ * Compression of blocks of a block container. A codec is registered to the
+ * context by {@link BsvContextBuilder#blockCodec(BsvBlockCodec)}, and found by
+ * the name written in container header. Codecs are called by several threads
+ * at the same time.
+ */
+public interface BsvBlockCodec {
+
+    /**
+     * @return name in container header, ascii and at most 255 chars
+     */
+    String getName();
+
+    byte[] compress(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * @param uncompressedLength length of data before compression
+     */
+    byte[] decompress(byte[] data, int offset, int length, int uncompressedLength) throws IOException;
+}
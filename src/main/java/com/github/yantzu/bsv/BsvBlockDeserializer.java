@@ -0,0 +1,258 @@
+package com.github.yantzu.bsv;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Reads a block container sequentially, decompressing one block at a time and
+ * deserializing it with the byte engine. A corrupt block is thrown as a
+ * {@link BsvException} of kind BLOCK, then reading resumes at the next sync
+ * marker, so only the records of the corrupt block are lost. A container
+ * without footer, left by a writer which did not close, is read up to its last
+ * whole block.
+ * <p>
+ * Offsets passed to bad record listener are offsets in the uncompressed block.
+ *
+ * @see BsvBlockFileReader reading blocks in parallel
+ */
+public class BsvBlockDeserializer implements BsvDeserializer {
+
+    private final BsvContext     context;
+    private final InputStream    inputStream;
+    private final Charset        charset;
+    private final BsvBlockHeader header;
+
+    //offset in container of next byte to read
+    private long                 position;
+    //bytes read again before input stream, while resuming after a corrupt block
+    private byte[]               pending;
+    private int                  pendingPosition;
+    private boolean              resync;
+    private boolean              ended;
+
+    private BsvDeserializer      block;
+
+
+    protected BsvBlockDeserializer(BsvContext context, InputStream inputStream, Charset charset)
+            throws IOException, BsvException {
+        this.context = context;
+        this.inputStream = inputStream;
+        this.charset = charset;
+        try {
+            this.header = BsvBlockHeader.read(inputStream, context);
+            context.getSchemas(header.getHeader().getMajorVersion(), header.getHeader().getMinorVersion());
+        } catch (IOException ioException) {
+            inputStream.close();
+            throw ioException;
+        } catch (BsvException bsvException) {
+            inputStream.close();
+            throw bsvException;
+        } catch (RuntimeException runtimeException) {
+            inputStream.close();
+            throw runtimeException;
+        }
+        this.position = header.length();
+    }
+
+    public String getMajorVersion() {
+        return header.getHeader().getMajorVersion();
+    }
+
+    public char getMinorVersion() {
+        return header.getHeader().getMinorVersion();
+    }
+
+    @Override
+    public BsvObject next() throws IOException, BsvException {
+        while (currentBlock() != null) {
+            BsvObject record = block.next();
+            if (record != null) {
+                return record;
+            }
+            block = null;
+        }
+        return null;
+    }
+
+    @Override
+    public BsvObject next(BsvObject reuse) throws IOException, BsvException {
+        while (currentBlock() != null) {
+            BsvObject record = block.next(reuse);
+            if (record != null) {
+                return record;
+            }
+            block = null;
+        }
+        return null;
+    }
+
+    /**
+     * a batch never spans two blocks, so it may hold less than maxRecords records
+     * before the end of container
+     */
+    @Override
+    public BsvColumnBatch nextBatch(int maxRecords) throws IOException, BsvException {
+        while (currentBlock() != null) {
+            BsvColumnBatch batch = block.nextBatch(maxRecords);
+            if (batch != null) {
+                return batch;
+            }
+            block = null;
+        }
+        return null;
+    }
+
+    /**
+     * @return deserializer of current block, null if it is end of container
+     * @throws BsvException if next block is corrupt
+     */
+    private BsvDeserializer currentBlock() throws IOException, BsvException {
+        if (block == null && !ended) {
+            block = readBlock();
+        }
+        return block;
+    }
+
+    private BsvDeserializer readBlock() throws IOException, BsvException {
+        if (resync) {
+            if (!skipToSync()) {
+                ended = true;
+                return null;
+            }
+            resync = false;
+        }
+
+        long offset = position;
+        byte[] frameBytes = new byte[BsvBlockHeader.FRAME_LENGTH];
+        int read = read(frameBytes, frameBytes.length);
+        if (read < frameBytes.length) {
+            //end of a container without footer
+            ended = true;
+            if (read == 0) {
+                return null;
+            }
+            throw BsvBlockHeader.corrupt(offset, "truncated");
+        }
+
+        BsvBlockHeader.Frame frame;
+        try {
+            frame = header.parseFrame(frameBytes, offset);
+        } catch (BsvException bsvException) {
+            unread(frameBytes, null);
+            throw bsvException;
+        }
+        if (frame.isFooter()) {
+            ended = true;
+            return null;
+        }
+
+        byte[] compressed = new byte[frame.compressedLength];
+        if (read(compressed, compressed.length) < compressed.length) {
+            ended = true;
+            throw BsvBlockHeader.corrupt(offset, "truncated");
+        }
+        byte[] uncompressed;
+        try {
+            uncompressed = header.decode(frame, compressed);
+        } catch (BsvException bsvException) {
+            //lengths may be corrupt too, so look for next sync marker right after this one
+            unread(frameBytes, compressed);
+            throw bsvException;
+        }
+        return new BsvByteDeserializerImpl(context, new ByteArrayInputStream(uncompressed), charset,
+                header.getHeader(), 0);
+    }
+
+    /**
+     * read again bytes of a corrupt frame but its first one, before the rest of input
+     */
+    private void unread(byte[] frameBytes, byte[] compressed) {
+        int length = frameBytes.length - 1 + (compressed == null ? 0 : compressed.length);
+        int pendingLength = pending == null ? 0 : pending.length - pendingPosition;
+        byte[] bytes = new byte[length + pendingLength];
+        System.arraycopy(frameBytes, 1, bytes, 0, frameBytes.length - 1);
+        if (compressed != null) {
+            System.arraycopy(compressed, 0, bytes, frameBytes.length - 1, compressed.length);
+        }
+        if (pendingLength > 0) {
+            System.arraycopy(pending, pendingPosition, bytes, length, pendingLength);
+        }
+        pending = bytes.length == 0 ? null : bytes;
+        pendingPosition = 0;
+        position -= length;
+        resync = true;
+    }
+
+    /**
+     * consume input up to the next sync marker and leave the marker to be read
+     * @return false if input ends before a sync marker
+     */
+    private boolean skipToSync() throws IOException {
+        byte[] sync = header.getSync();
+        byte[] window = new byte[sync.length];
+        int filled = 0;
+        while (true) {
+            if (filled == window.length) {
+                System.arraycopy(window, 1, window, 0, window.length - 1);
+                filled--;
+            }
+            int read = read(window, filled, 1);
+            if (read < 1) {
+                return false;
+            }
+            filled++;
+            if (filled == window.length && Arrays.equals(window, sync)) {
+                unread(window);
+                return true;
+            }
+        }
+    }
+
+    private void unread(byte[] sync) {
+        int pendingLength = pending == null ? 0 : pending.length - pendingPosition;
+        byte[] bytes = new byte[sync.length + pendingLength];
+        System.arraycopy(sync, 0, bytes, 0, sync.length);
+        if (pendingLength > 0) {
+            System.arraycopy(pending, pendingPosition, bytes, sync.length, pendingLength);
+        }
+        pending = bytes;
+        pendingPosition = 0;
+        position -= sync.length;
+    }
+
+    private int read(byte[] bytes, int length) throws IOException {
+        return read(bytes, 0, length);
+    }
+
+    /**
+     * @return bytes read, less than length only at end of input
+     */
+    private int read(byte[] bytes, int offset, int length) throws IOException {
+        int read = 0;
+        if (pending != null) {
+            read = Math.min(length, pending.length - pendingPosition);
+            System.arraycopy(pending, pendingPosition, bytes, offset, read);
+            pendingPosition += read;
+            if (pendingPosition == pending.length) {
+                pending = null;
+            }
+        }
+        while (read < length) {
+            int count = inputStream.read(bytes, offset + read, length - read);
+            if (count < 0) {
+                break;
+            }
+            read += count;
+        }
+        position += read;
+        return read;
+    }
+
+    @Override
+    public void close() throws IOException, BsvException {
+        inputStream.close();
+    }
+}
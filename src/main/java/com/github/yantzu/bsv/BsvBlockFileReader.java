@@ -0,0 +1,308 @@
+package com.github.yantzu.bsv;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Reads a block container file with multiple threads. Blocks are found by the
+ * index in footer, or by scanning for sync markers if the footer is missing or
+ * corrupt, then each block is read, checked, decompressed and deserialized by
+ * one task of a fork-join pool. A corrupt block is passed to the handler as a
+ * bad record of kind BLOCK, the other blocks are read as usual.
+ */
+public class BsvBlockFileReader implements Closeable {
+
+    private BsvContext       context;
+    private Charset          charset;
+    private RandomAccessFile file;
+    private FileChannel      channel;
+    private BsvBlockHeader   header;
+    private List<Block>      blocks;
+    private boolean          indexed;
+
+    private ForkJoinPool     pool;
+    private boolean          ownPool;
+
+
+    protected BsvBlockFileReader(BsvContext context, File file, Charset charset, int parallelism)
+            throws IOException, BsvException {
+        this(context, file, charset, new ForkJoinPool(parallelism));
+        this.ownPool = true;
+    }
+
+    protected BsvBlockFileReader(BsvContext context, File file, Charset charset, ForkJoinPool pool)
+            throws IOException, BsvException {
+        this.context = context;
+        this.charset = charset;
+        this.pool = pool;
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        try {
+            this.header = BsvBlockHeader.read(new BufferedInputStream(Channels.newInputStream(channel), 256),
+                    context);
+            context.getSchemas(header.getHeader().getMajorVersion(), header.getHeader().getMinorVersion());
+            this.blocks = readIndex();
+            this.indexed = blocks != null;
+            if (blocks == null) {
+                this.blocks = scanBlocks();
+            }
+        } catch (IOException ioException) {
+            close();
+            throw ioException;
+        } catch (BsvException bsvException) {
+            close();
+            throw bsvException;
+        } catch (RuntimeException runtimeException) {
+            close();
+            throw runtimeException;
+        }
+    }
+
+    public String getMajorVersion() {
+        return header.getHeader().getMajorVersion();
+    }
+
+    public char getMinorVersion() {
+        return header.getHeader().getMinorVersion();
+    }
+
+    /**
+     * @return false if blocks were found by scanning, as footer is missing or corrupt
+     */
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public List<Block> getBlocks() {
+        return Collections.unmodifiableList(blocks);
+    }
+
+    /**
+     * @return records of all blocks, bad records included
+     */
+    public long getRecordCount() {
+        long recordCount = 0;
+        for (Block block : blocks) {
+            recordCount += block.getRecordCount();
+        }
+        return recordCount;
+    }
+
+    /**
+     * Deserialize all blocks with the pool. Ordered reading calls handler in
+     * file order on current thread, unordered reading calls handler
+     * concurrently on pool threads.
+     *
+     * @see BsvFileReader#read(BsvRecordHandler, boolean)
+     */
+    public void read(BsvRecordHandler handler, boolean ordered) throws IOException, InterruptedException {
+        if (ordered) {
+            BsvFileReader.readOrdered(pool, handler, blocks);
+        } else {
+            BsvFileReader.readUnordered(pool, handler, blocks);
+        }
+    }
+
+    /**
+     * @return blocks of footer index, null if there is no valid footer
+     */
+    private List<Block> readIndex() throws IOException {
+        long size = channel.size();
+        long bodyStart = header.length();
+        if (size < bodyStart + BsvBlockHeader.FRAME_LENGTH + BsvBlockHeader.TAIL_LENGTH) {
+            return null;
+        }
+
+        ByteBuffer tail = readAt(size - BsvBlockHeader.TAIL_LENGTH, BsvBlockHeader.TAIL_LENGTH);
+        long footerOffset = tail.getLong();
+        byte[] magic = new byte[BsvBlockHeader.MAGIC.length];
+        tail.get(magic);
+        if (!Arrays.equals(magic, BsvBlockHeader.MAGIC) || footerOffset < bodyStart
+                || footerOffset > size - BsvBlockHeader.TAIL_LENGTH - BsvBlockHeader.FRAME_LENGTH) {
+            return null;
+        }
+
+        BsvBlockHeader.Frame footer;
+        try {
+            footer = header.parseFrame(readAt(footerOffset, BsvBlockHeader.FRAME_LENGTH).array(), footerOffset);
+        } catch (BsvException bsvException) {
+            return null;
+        }
+        if (!footer.isFooter() || footerOffset + BsvBlockHeader.FRAME_LENGTH + footer.compressedLength
+                + BsvBlockHeader.TAIL_LENGTH != size) {
+            return null;
+        }
+        ByteBuffer index = readAt(footerOffset + BsvBlockHeader.FRAME_LENGTH, footer.compressedLength);
+        if (BsvCrc32c.compute(index.array(), 0, footer.compressedLength) != footer.crc) {
+            return null;
+        }
+
+        List<Block> indexBlocks = new ArrayList<Block>(footer.uncompressedLength);
+        for (int i = 0; i < footer.uncompressedLength; i++) {
+            indexBlocks.add(new Block(index.getLong(), index.getInt()));
+        }
+        return indexBlocks;
+    }
+
+    /**
+     * find blocks by their frames, skipping to next sync marker where a frame is corrupt
+     */
+    private List<Block> scanBlocks() throws IOException {
+        List<Block> scanned = new ArrayList<Block>();
+        long size = channel.size();
+        long position = header.length();
+        while (position + BsvBlockHeader.FRAME_LENGTH <= size) {
+            BsvBlockHeader.Frame frame;
+            try {
+                frame = header.parseFrame(readAt(position, BsvBlockHeader.FRAME_LENGTH).array(), position);
+            } catch (BsvException bsvException) {
+                position = findSync(position + 1, size);
+                continue;
+            }
+            if (frame.isFooter()) {
+                break;
+            }
+            long next = position + BsvBlockHeader.FRAME_LENGTH + frame.compressedLength;
+            if (next > size) {
+                //block truncated by a writer which did not close
+                break;
+            }
+            scanned.add(new Block(position, frame.recordCount));
+            position = next;
+        }
+        return scanned;
+    }
+
+    /**
+     * @return position of the first sync marker at or after from, size if there is none
+     */
+    private long findSync(long from, long size) throws IOException {
+        byte[] sync = header.getSync();
+        ByteBuffer scanBuffer = ByteBuffer.allocate(64 * 1024);
+        long scan = from;
+        while (scan + sync.length <= size) {
+            scanBuffer.clear();
+            int read = channel.read(scanBuffer, scan);
+            if (read < sync.length) {
+                break;
+            }
+            byte[] bytes = scanBuffer.array();
+            for (int i = 0; i + sync.length <= read; i++) {
+                int matched = 0;
+                while (matched < sync.length && bytes[i + matched] == sync[matched]) {
+                    matched++;
+                }
+                if (matched == sync.length) {
+                    return scan + i;
+                }
+            }
+            //a marker may cross end of buffer
+            scan += read - sync.length + 1;
+        }
+        return size;
+    }
+
+    private ByteBuffer readAt(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("End of file at " + (position + buffer.position()));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownPool) {
+            pool.shutdown();
+        }
+        file.close();
+    }
+
+
+    /**
+     * Block of the container, read independently of the others
+     */
+    public class Block extends BsvFileReader.Part {
+        private final long offset;
+        private final int  recordCount;
+
+        private Block(long offset, int recordCount) {
+            this.offset = offset;
+            this.recordCount = recordCount;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getRecordCount() {
+            return recordCount;
+        }
+
+        /**
+         * read, check and decompress the block, then open a byte engine
+         * deserializer over it, safe to be called from any thread
+         *
+         * @throws BsvException of kind BLOCK if block is corrupt
+         */
+        public BsvDeserializer createDeserializer() throws IOException, BsvException {
+            long size = channel.size();
+            if (offset + BsvBlockHeader.FRAME_LENGTH > size) {
+                throw BsvBlockHeader.corrupt(offset, "truncated");
+            }
+            BsvBlockHeader.Frame frame = header.parseFrame(readAt(offset, BsvBlockHeader.FRAME_LENGTH).array(),
+                    offset);
+            if (frame.isFooter() || frame.recordCount != recordCount) {
+                throw BsvBlockHeader.corrupt(offset, "frame does not match index");
+            }
+            if (offset + BsvBlockHeader.FRAME_LENGTH + frame.compressedLength > size) {
+                throw BsvBlockHeader.corrupt(offset, "truncated");
+            }
+            byte[] compressed = readAt(offset + BsvBlockHeader.FRAME_LENGTH, frame.compressedLength).array();
+            return new BsvByteDeserializerImpl(context, new ByteArrayInputStream(header.decode(frame, compressed)),
+                    charset, header.getHeader(), 0);
+        }
+
+        @Override
+        void read(BsvRecordHandler handler) throws IOException {
+            BsvDeserializer deserializer;
+            try {
+                deserializer = createDeserializer();
+            } catch (BsvException bsvException) {
+                handler.onBadRecord(bsvException);
+                return;
+            }
+            while (true) {
+                BsvObject record;
+                try {
+                    //ordered reading holds records of a block, so never reused
+                    record = deserializer.next(null);
+                } catch (BsvException bsvException) {
+                    handler.onBadRecord(bsvException);
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                handler.onRecord(record);
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.github.yantzu.bsv;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Header of a block container, and layout of its blocks. A container is
+ * <pre>
+ * stream header  {@link BsvHeader} of the records, binary numbers flag included
+ * magic          "BSVB"
+ * codec          one byte length and ascii name of codec
+ * sync marker    16 random bytes
+ * block*         sync marker, record count, uncompressed length, compressed length,
+ *                crc32c of compressed bytes, crc32c of the four ints, compressed bytes
+ * footer         sync marker, -1, block count, index length, crc32c of index,
+ *                crc32c of the four ints, index of offset (long) and record count (int)
+ *                per block
+ * tail           offset of footer (long), magic
+ * </pre>
+ * Numbers are big endian. Uncompressed bytes of a block are BSV lines of
+ * whole records, without stream header. Lengths of a frame are trusted for
+ * allocation only after the crc32c of its four ints matched.
+ */
+class BsvBlockHeader {
+
+    static final byte[]          MAGIC               = { 'B', 'S', 'V', 'B' };
+    static final int             SYNC_LENGTH         = 16;
+    //sync marker, four ints and their crc32c, the same for blocks and footer
+    static final int             FRAME_LENGTH        = SYNC_LENGTH + 20;
+    static final int             INDEX_ENTRY_LENGTH  = 12;
+    static final int             TAIL_LENGTH         = 8 + MAGIC.length;
+    //record count of footer
+    static final int             FOOTER              = -1;
+
+    private static final Charset ASCII               = Charset.forName("US-ASCII");
+    private static final SecureRandom RANDOM         = new SecureRandom();
+
+    private final BsvHeader      header;
+    private final BsvBlockCodec  codec;
+    private final byte[]         sync;
+
+
+    BsvBlockHeader(BsvHeader header, BsvBlockCodec codec) {
+        this(header, codec, new byte[SYNC_LENGTH]);
+        RANDOM.nextBytes(sync);
+    }
+
+    private BsvBlockHeader(BsvHeader header, BsvBlockCodec codec, byte[] sync) {
+        this.header = header;
+        this.codec = codec;
+        this.sync = sync;
+    }
+
+    static BsvBlockHeader read(InputStream inputStream, BsvContext context) throws IOException, BsvException {
+        BsvHeader header = BsvHeader.read(inputStream, context.getLineDelimiter());
+        DataInputStream dataInput = new DataInputStream(inputStream);
+        byte[] magic = new byte[MAGIC.length];
+        dataInput.readFully(magic);
+        if (!Arrays.equals(magic, MAGIC)) {
+            throw new BsvException("Not a block container, magic was " + Arrays.toString(magic));
+        }
+        byte[] name = new byte[dataInput.readUnsignedByte()];
+        dataInput.readFully(name);
+        String codecName = new String(name, ASCII);
+        BsvBlockCodec codec = context.getBlockCodec(codecName);
+        if (codec == null) {
+            throw new BsvException("No block codec registered for " + codecName);
+        }
+        byte[] sync = new byte[SYNC_LENGTH];
+        dataInput.readFully(sync);
+        return new BsvBlockHeader(header, codec, sync);
+    }
+
+    void write(DataOutputStream dataOutput, char lineDelimiter) throws IOException, BsvException {
+        byte[] name = codec.getName().getBytes(ASCII);
+        if (name.length > 255) {
+            throw new IllegalArgumentException("Codec name " + codec.getName() + " is too long");
+        }
+        dataOutput.write(header.toBytes(lineDelimiter));
+        dataOutput.write(MAGIC);
+        dataOutput.write(name.length);
+        dataOutput.write(name);
+        dataOutput.write(sync);
+    }
+
+    /**
+     * @return bytes of header in container
+     */
+    int length() {
+        return header.getLength() + MAGIC.length + 1 + codec.getName().length() + SYNC_LENGTH;
+    }
+
+    BsvHeader getHeader() {
+        return header;
+    }
+
+    BsvBlockCodec getCodec() {
+        return codec;
+    }
+
+    byte[] getSync() {
+        return sync;
+    }
+
+    /**
+     * parse frame of a block or footer
+     * @param offset offset of frame in container
+     * @throws BsvException if there is no sync marker, the frame checksum does
+     *             not match or a length is invalid
+     */
+    Frame parseFrame(byte[] bytes, long offset) throws BsvException {
+        for (int i = 0; i < SYNC_LENGTH; i++) {
+            if (bytes[i] != sync[i]) {
+                throw corrupt(offset, "no sync marker");
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes, SYNC_LENGTH, FRAME_LENGTH - SYNC_LENGTH);
+        if (BsvCrc32c.compute(bytes, SYNC_LENGTH, 16) != buffer.getInt(FRAME_LENGTH - 4)) {
+            throw corrupt(offset, "frame checksum mismatch");
+        }
+        Frame frame = new Frame(offset, buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getInt());
+        if (frame.recordCount < FOOTER || frame.uncompressedLength < 0 || frame.compressedLength < 0
+                || (frame.isFooter() && (long) frame.uncompressedLength * INDEX_ENTRY_LENGTH
+                        != frame.compressedLength)) {
+            throw corrupt(offset, "invalid frame");
+        }
+        return frame;
+    }
+
+    /**
+     * check crc of compressed bytes of frame and decompress them
+     */
+    byte[] decode(Frame frame, byte[] compressed) throws BsvException {
+        if (BsvCrc32c.compute(compressed, 0, compressed.length) != frame.crc) {
+            throw corrupt(frame.offset, "checksum mismatch");
+        }
+        try {
+            return codec.decompress(compressed, 0, compressed.length, frame.uncompressedLength);
+        } catch (IOException ioException) {
+            throw new BsvException(BsvException.Kind.BLOCK, "Corrupt block at offset " + frame.offset + ", "
+                    + ioException.getMessage(), ioException, true);
+        }
+    }
+
+    static BsvException corrupt(long offset, String reason) {
+        return new BsvException(BsvException.Kind.BLOCK, "Corrupt block at offset " + offset + ", " + reason);
+    }
+
+
+    /**
+     * Fixed part of a block or footer. Of footer, uncompressed length is count
+     * of blocks and compressed length is length of index.
+     */
+    static final class Frame {
+        final long offset;
+        final int  recordCount;
+        final int  uncompressedLength;
+        final int  compressedLength;
+        final int  crc;
+
+        Frame(long offset, int recordCount, int uncompressedLength, int compressedLength, int crc) {
+            this.offset = offset;
+            this.recordCount = recordCount;
+            this.uncompressedLength = uncompressedLength;
+            this.compressedLength = compressedLength;
+            this.crc = crc;
+        }
+
+        boolean isFooter() {
+            return recordCount == FOOTER;
+        }
+    }
+}
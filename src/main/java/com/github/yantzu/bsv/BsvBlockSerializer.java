@@ -0,0 +1,199 @@
+package com.github.yantzu.bsv;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Writes a block container: records are serialized as BSV lines into a
+ * buffer, which is compressed as one block once it holds blockRecords records
+ * or blockSize bytes. Each block is framed by a sync marker, its record count
+ * and a crc32c, and an index of blocks is written as footer on close, so the
+ * container can be read block by block in parallel, and a reader of a corrupt
+ * container resumes at the next block.
+ * <p>
+ * A record failing to serialize is not written, the block keeps the records
+ * before it.
+ *
+ * @see BsvBlockHeader layout of container
+ */
+public class BsvBlockSerializer implements BsvSerializer {
+
+    protected static final int DEFAULT_BLOCK_RECORDS = 64 * 1024;
+    protected static final int DEFAULT_BLOCK_SIZE    = 1024 * 1024;
+
+    private final DataOutputStream  output;
+    private final BsvBlockHeader    header;
+    private final BlockBuffer       buffer;
+    private final BsvSerializerImpl serializer;
+
+    private int                     blockRecords     = DEFAULT_BLOCK_RECORDS;
+    private int                     blockSize        = DEFAULT_BLOCK_SIZE;
+    //records in buffer
+    private int                     recordCount;
+    //bytes written to output
+    private long                    position;
+
+    private long[]                  blockOffsets     = new long[16];
+    private int[]                   blockRecordCounts = new int[16];
+    private int                     blockCount;
+    private boolean                 closed;
+
+
+    protected BsvBlockSerializer(BsvContext context, OutputStream outputStream, String majorVersion,
+            char minorVersion, Charset charset, BsvBlockCodec codec) throws IOException, BsvException {
+        this.buffer = new BlockBuffer();
+        this.serializer = new BsvSerializerImpl(context, buffer, majorVersion, minorVersion, charset);
+        //stream header is written once in container header
+        buffer.reset();
+
+        this.output = new DataOutputStream(new BufferedOutputStream(outputStream, 64 * 1024));
+        this.header = new BsvBlockHeader(new BsvHeader(majorVersion, minorVersion,
+                context.isBinaryNumbers()), codec);
+        header.write(output, context.getLineDelimiter());
+        this.position = header.length();
+    }
+
+    public int getBlockRecords() {
+        return blockRecords;
+    }
+
+    /**
+     * records per block at most, 64K by default
+     */
+    public void setBlockRecords(int blockRecords) {
+        if (blockRecords <= 0) {
+            throw new IllegalArgumentException("Invalid block records " + blockRecords);
+        }
+        this.blockRecords = blockRecords;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    /**
+     * uncompressed bytes after which a block is written, 1MB by default. A
+     * block is larger by its last record.
+     */
+    public void setBlockSize(int blockSize) {
+        if (blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid block size " + blockSize);
+        }
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public void next(BsvObject bean) throws IOException, BsvException {
+        if (closed) {
+            throw new IOException("Serializer is closed");
+        }
+        int mark = buffer.size();
+        try {
+            serializer.next(bean);
+            serializer.flush();
+        } catch (BsvException bsvException) {
+            serializer.flush();
+            buffer.truncate(mark);
+            throw bsvException;
+        }
+        recordCount++;
+        if (recordCount >= blockRecords || buffer.size() >= blockSize) {
+            writeBlock();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        if (recordCount == 0) {
+            return;
+        }
+        byte[] compressed = header.getCodec().compress(buffer.getBuffer(), 0, buffer.size());
+        if (blockCount == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+            blockRecordCounts = Arrays.copyOf(blockRecordCounts, blockCount * 2);
+        }
+        blockOffsets[blockCount] = position;
+        blockRecordCounts[blockCount] = recordCount;
+        blockCount++;
+
+        writeFrame(recordCount, buffer.size(), compressed);
+        buffer.reset();
+        recordCount = 0;
+    }
+
+    private void writeFrame(int frameRecordCount, int uncompressedLength, byte[] compressed) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(BsvBlockHeader.FRAME_LENGTH - BsvBlockHeader.SYNC_LENGTH);
+        frame.putInt(frameRecordCount);
+        frame.putInt(uncompressedLength);
+        frame.putInt(compressed.length);
+        frame.putInt(BsvCrc32c.compute(compressed, 0, compressed.length));
+        frame.putInt(BsvCrc32c.compute(frame.array(), 0, 16));
+        output.write(header.getSync());
+        output.write(frame.array());
+        output.write(compressed);
+        position += BsvBlockHeader.FRAME_LENGTH + compressed.length;
+    }
+
+    /**
+     * write buffered records as a block, which is smaller than block size, and flush output stream
+     */
+    @Override
+    public void flush() throws IOException, BsvException {
+        if (closed) {
+            throw new IOException("Serializer is closed");
+        }
+        writeBlock();
+        output.flush();
+    }
+
+    /**
+     * write the last block and footer, then close output stream
+     */
+    @Override
+    public void close() throws IOException, BsvException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeBlock();
+
+            ByteArrayOutputStream indexBytes = new ByteArrayOutputStream(
+                    blockCount * BsvBlockHeader.INDEX_ENTRY_LENGTH);
+            DataOutputStream index = new DataOutputStream(indexBytes);
+            for (int i = 0; i < blockCount; i++) {
+                index.writeLong(blockOffsets[i]);
+                index.writeInt(blockRecordCounts[i]);
+            }
+            long footerOffset = position;
+            writeFrame(BsvBlockHeader.FOOTER, blockCount, indexBytes.toByteArray());
+            output.writeLong(footerOffset);
+            output.write(BsvBlockHeader.MAGIC);
+        } finally {
+            output.close();
+        }
+    }
+
+
+    /**
+     * buffer of current block, exposing its bytes to codec
+     */
+    private static final class BlockBuffer extends ByteArrayOutputStream {
+        BlockBuffer() {
+            super(64 * 1024);
+        }
+
+        byte[] getBuffer() {
+            return buf;
+        }
+
+        void truncate(int size) {
+            count = size;
+        }
+    }
+}
@@ -0,0 +1,678 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.github.yantzu.bsv.BsvSchema.Field;
+
+/**
+ * Deserializer which scans raw bytes instead of decoded chars. Each record is
+ * located by line delimiter first, so a bad record never consumes the next one.
+ */
+public class BsvByteDeserializerImpl implements BsvDeserializer {
+
+    private BsvContext                context;
+    private BsvLineReader             lineReader;
+    private BsvByteTokenizer          tokenizer;
+    private BsvBadRecordListener      badRecordListener;
+    //null if metrics are disabled
+    private BsvMetricsListener        metricsListener;
+    private int                       latencySampling;
+    //records left until next timed one
+    private int                       untilSample;
+    //decoder of lazy LIST and MAP values, null if they are decoded eagerly
+    private BsvLazyDecoder            lazyDecoder;
+
+    private String                    majorVersion;
+    private char                      minorVersion;
+
+    //<variant, Schema>
+    private Map<Character, BsvSchema> schemas;
+    private BsvVariantTable           variants;
+    //selected fields per schema, null if all fields are selected
+    private Map<BsvSchema, boolean[]> projections;
+    //filter per schema, null if all records are accepted
+    private Map<BsvSchema, BsvFilter.Predicate> filters;
+    //schema of current line, null if its variant is not known yet
+    private BsvSchema                 lineSchema;
+    private boolean                   reuseObjects;
+    //last record returned by next(), refilled by next() when objects are reused
+    private BsvObject                 lastRecord;
+    private int[]                     fieldStarts;
+    private int[]                     fieldEnds;
+    //reader of fields for codecs of schemas
+    private final FieldReader         fieldReader = new FieldReader();
+
+    private Charset                   charset;
+    private BsvColumnBatch            batch;
+    //exception of the bad record which ended last batch
+    private BsvException              pendingException;
+
+    private int                       fieldsDelimiter;
+    private int                       itemsDelimiter;
+    private int                       keyValueDelimiter;
+    private int                       lineDelimiter;
+
+
+    protected BsvByteDeserializerImpl(BsvContext context, InputStream inputStream) throws IOException,
+            BsvException {
+        this(context, inputStream, BsvContext.DEFAULT_CHARSET);
+    }
+
+
+    protected BsvByteDeserializerImpl(BsvContext context, InputStream inputStream, Charset charset)
+            throws IOException, BsvException {
+        this(context, inputStream, charset, null, null);
+    }
+
+
+    protected BsvByteDeserializerImpl(BsvContext context, InputStream inputStream, Charset charset,
+            BsvProjection projection, BsvFilter filter) throws IOException, BsvException {
+        this(context, inputStream, charset, BsvHeader.read(inputStream, context.getLineDelimiter()), projection,
+                filter);
+    }
+
+
+    private BsvByteDeserializerImpl(BsvContext context, InputStream inputStream, Charset charset, BsvHeader header,
+            BsvProjection projection, BsvFilter filter) {
+        this(context, inputStream, charset, header, header.getLength(), projection, filter);
+    }
+
+
+    /**
+     * @param inputStream records only, header is already consumed
+     * @param offset offset of input stream in the whole input, for offsets of bad records
+     */
+    BsvByteDeserializerImpl(BsvContext context, InputStream inputStream, Charset charset, BsvHeader header,
+            long offset) {
+        this(context, inputStream, charset, header, offset, null, null);
+    }
+
+
+    /**
+     * @param inputStream records only, header is already consumed
+     * @param offset offset of input stream in the whole input, for offsets of bad records
+     * @param projection null to materialize all fields
+     * @param filter null to accept all records
+     */
+    BsvByteDeserializerImpl(BsvContext context, InputStream inputStream, Charset charset, BsvHeader header,
+            long offset, BsvProjection projection, BsvFilter filter) {
+        this.majorVersion = header.getMajorVersion();
+        this.minorVersion = header.getMinorVersion();
+
+        this.context = context;
+        this.charset = charset;
+        this.schemas = context.getSchemas(majorVersion, minorVersion);
+        this.variants = new BsvVariantTable(schemas, charset);
+        if (projection != null) {
+            this.projections = projection.resolve(schemas.values());
+        }
+        if (filter != null) {
+            this.filters = filter.bind(schemas.values(), charset);
+            int maxFields = 0;
+            for (BsvSchema schema : schemas.values()) {
+                maxFields = Math.max(maxFields, schema.getFields().size());
+            }
+            this.fieldStarts = new int[maxFields];
+            this.fieldEnds = new int[maxFields];
+        }
+
+        this.tokenizer = new BsvByteTokenizer(context, charset, header.isBinaryNumbers());
+        this.fieldsDelimiter = context.getFieldsDelimiter();
+        this.itemsDelimiter = context.getItemsDelimiter();
+        this.keyValueDelimiter = context.getKeyValueDelimiter();
+        this.lineDelimiter = context.getLineDelimiter();
+        this.lineReader = new BsvLineReader(inputStream, (byte) lineDelimiter, BsvLineReader.DEFAULT_BUFFER_SIZE,
+                offset);
+        this.badRecordListener = context.getBadRecordListener();
+        this.metricsListener = context.getMetricsListener();
+        this.latencySampling = metricsListener == null ? 0 : metricsListener.getLatencySampling();
+        this.untilSample = latencySampling;
+        this.reuseObjects = context.isReuseObjects();
+        if (context.isLazyCollections()) {
+            this.lazyDecoder = new BsvLazyDecoder(context, charset);
+        }
+    }
+
+
+    @Override
+    public BsvObject next() throws IOException, BsvException {
+        if (!reuseObjects) {
+            return next(null);
+        }
+        BsvObject record = next(lastRecord);
+        if (record != null) {
+            lastRecord = record;
+        }
+        return record;
+    }
+
+
+    @Override
+    public BsvObject next(BsvObject reuse) throws IOException, BsvException {
+        long start = 0;
+        boolean timed = latencySampling > 0 && --untilSample == 0;
+        if (timed) {
+            untilSample = latencySampling;
+            start = System.nanoTime();
+        }
+        BsvObject record;
+        try {
+            record = doNext(reuse);
+        } catch (IOException ioException) {
+            throw ioException;
+        } catch (BsvException bsvException) {
+            doSkip(bsvException);
+            throw bsvException;
+        }
+        if (metricsListener != null && record != null) {
+            metricsListener.onRecordRead(lineSchema, lineBytes());
+            if (timed) {
+                metricsListener.onLatency(lineSchema, false, System.nanoTime() - start);
+            }
+        }
+        return record;
+    }
+
+
+    /**
+     * record is already consumed up to line delimiter, only pass the whole line to listener
+     */
+    protected void doSkip(BsvException exception) {
+        if (badRecordListener != null) {
+            badRecordListener.onBadRecord(exception, lineSchema, lineReader.getLineOffset(), lineReader.getBuffer(),
+                    lineReader.getLineStart(), lineReader.getLineEnd());
+        }
+        if (metricsListener != null) {
+            metricsListener.onReadError(exception, lineSchema, lineBytes());
+        }
+    }
+
+
+    /**
+     * bytes of current line with line delimiter
+     */
+    private int lineBytes() {
+        return lineReader.getLineEnd() - lineReader.getLineStart() + 1;
+    }
+
+
+    @Override
+    public BsvColumnBatch nextBatch(int maxRecords) throws IOException, BsvException {
+        if (pendingException != null) {
+            BsvException bsvException = pendingException;
+            pendingException = null;
+            throw bsvException;
+        }
+        if (batch == null) {
+            batch = new BsvColumnBatch(charset, projections);
+        }
+        batch.clear();
+        while (batch.size() < maxRecords) {
+            try {
+                if (!nextColumns()) {
+                    break;
+                }
+                if (metricsListener != null) {
+                    metricsListener.onRecordRead(lineSchema, lineBytes());
+                }
+            } catch (BsvException bsvException) {
+                doSkip(bsvException);
+                if (batch.size() == 0) {
+                    throw bsvException;
+                }
+                pendingException = bsvException;
+                break;
+            }
+        }
+        return batch.size() == 0 ? null : batch;
+    }
+
+
+    /**
+     * move to next accepted line and consume its variant number
+     * @return schema of line, null if no more line
+     */
+    private BsvSchema nextSchema() throws IOException, BsvException {
+        do {
+            lineSchema = null;
+            if (!lineReader.nextLine()) {
+                if (filters != null) {
+                    BsvFilter.flush(filters);
+                }
+                return null;
+            }
+            tokenizer.reset(lineReader.getBuffer(), lineReader.getLineStart(), lineReader.getLineEnd());
+
+            lineSchema = variants.nextSchema(tokenizer);
+        } while (filters != null && !accept(lineSchema));
+        return lineSchema;
+    }
+
+
+    /**
+     * @param reuse bean to fill if it is of the schema of record, null to create one
+     */
+    protected BsvObject doNext(BsvObject reuse) throws IOException, BsvException {
+        BsvSchema schema = nextSchema();
+        if (schema == null) {
+            return null;
+        }
+
+        BsvBeanAccessor accessor = schema.getBeanAccessor();
+        boolean reused = reuse != null && reuse.getClass() == schema.getBeanClass();
+        BsvObject bean;
+        try {
+            bean = reused ? reuse : accessor.newInstance();
+            bean.setVersion(schema.getFullVersion());
+        } catch (Exception exception) {
+            throw new BsvException("Not able to initial bean instance due to "
+                    + exception.getMessage(), exception);
+        }
+
+        try {
+            boolean[] selected = projections == null ? null : projections.get(schema);
+            if (selected == null && accessor instanceof BsvCodec) {
+                fieldReader.reset(schema, reused);
+                ((BsvCodec) accessor).read(bean, fieldReader);
+                return bean;
+            }
+            Iterator<Field> fieldsIterator = schema.getFields().iterator();
+            while (fieldsIterator.hasNext()) {
+                Field field = fieldsIterator.next();
+                if (selected != null && !selected[field.getIndex()]) {
+                    asserts(tokenizer.skipField(), fieldsIterator.hasNext());
+                    continue;
+                }
+                readField(bean, accessor, field, reused, fieldsIterator.hasNext());
+            }
+        } catch (BsvException bsvException) {
+            throw bsvException;
+        } catch (Exception exception) {
+            throw BsvException.badRecord(BsvException.Kind.VALUE, exception);
+        }
+
+        return bean;
+    }
+
+
+    /**
+     * append next record to batch
+     * @return false if no more record
+     */
+    private boolean nextColumns() throws IOException, BsvException {
+        BsvSchema schema = nextSchema();
+        if (schema == null) {
+            return false;
+        }
+
+        BsvColumnBatch.Group group = batch.begin(schema);
+        try {
+            Iterator<Field> fieldsIterator = schema.getFields().iterator();
+            while (fieldsIterator.hasNext()) {
+                Field field = fieldsIterator.next();
+                BsvColumnBatch.Column column = group.getColumn(field.getIndex());
+                if (column == null) {
+                    asserts(tokenizer.skipField(), fieldsIterator.hasNext());
+                    continue;
+                }
+                readColumn(column, field, fieldsIterator.hasNext());
+            }
+        } catch (BsvException bsvException) {
+            group.rollback();
+            throw bsvException;
+        } catch (RuntimeException runtimeException) {
+            group.rollback();
+            throw BsvException.badRecord(BsvException.Kind.VALUE, runtimeException);
+        }
+        batch.commit(group);
+        return true;
+    }
+
+
+    /**
+     * record with invalid field count is accepted, so that it fails as usual when materialized
+     */
+    private boolean accept(BsvSchema schema) {
+        int count = tokenizer.indexFields(fieldStarts, fieldEnds);
+        if (count != schema.getFields().size()) {
+            return true;
+        }
+        return filters.get(schema).test(tokenizer, fieldStarts, fieldEnds);
+    }
+
+
+    /**
+     * primitives are written by primitive setters, an empty number is written as null
+     */
+    private void readField(BsvObject bean, BsvBeanAccessor accessor, Field field, boolean reused,
+            boolean hasMoreField) throws BsvException {
+        int index = field.getIndex();
+        int i;
+        switch (field.getType()) {
+            case BOOLEAN:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                accessor.setBoolean(bean, index, tokenizer.tokenBoolean());
+                return;
+            case INTEGER:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                if (tokenizer.getTokenLength() > 0) {
+                    accessor.setInt(bean, index, tokenizer.tokenInt());
+                } else {
+                    accessor.set(bean, index, null);
+                }
+                return;
+            case LONG:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                if (tokenizer.getTokenLength() > 0) {
+                    accessor.setLong(bean, index, tokenizer.tokenLong());
+                } else {
+                    accessor.set(bean, index, null);
+                }
+                return;
+            case FLOAT:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                if (tokenizer.getTokenLength() > 0) {
+                    accessor.setFloat(bean, index, tokenizer.tokenFloat());
+                } else {
+                    accessor.set(bean, index, null);
+                }
+                return;
+            case DOUBLE:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                if (tokenizer.getTokenLength() > 0) {
+                    accessor.setDouble(bean, index, tokenizer.tokenDouble());
+                } else {
+                    accessor.set(bean, index, null);
+                }
+                return;
+            default:
+                Object current = reused ? accessor.get(bean, index) : null;
+                accessor.set(bean, index, nextField(field, current, hasMoreField));
+        }
+    }
+
+
+    private void readColumn(BsvColumnBatch.Column column, Field field, boolean hasMoreField) throws BsvException {
+        int i;
+        switch (field.getType()) {
+            case BOOLEAN:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                ((BsvColumnBatch.BooleanColumn) column).append(tokenizer.tokenBoolean());
+                return;
+            case INTEGER:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                if (tokenizer.getTokenLength() > 0) {
+                    ((BsvColumnBatch.IntColumn) column).append(tokenizer.tokenInt());
+                } else {
+                    ((BsvColumnBatch.IntColumn) column).appendNull();
+                }
+                return;
+            case LONG:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                if (tokenizer.getTokenLength() > 0) {
+                    ((BsvColumnBatch.LongColumn) column).append(tokenizer.tokenLong());
+                } else {
+                    ((BsvColumnBatch.LongColumn) column).appendNull();
+                }
+                return;
+            case FLOAT:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                if (tokenizer.getTokenLength() > 0) {
+                    ((BsvColumnBatch.FloatColumn) column).append(tokenizer.tokenFloat());
+                } else {
+                    ((BsvColumnBatch.FloatColumn) column).appendNull();
+                }
+                return;
+            case DOUBLE:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                if (tokenizer.getTokenLength() > 0) {
+                    ((BsvColumnBatch.DoubleColumn) column).append(tokenizer.tokenDouble());
+                } else {
+                    ((BsvColumnBatch.DoubleColumn) column).appendNull();
+                }
+                return;
+            case STRING:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                ((BsvColumnBatch.StringColumn) column).append(tokenizer, tokenizer.getTokenStart(),
+                        tokenizer.getTokenEnd());
+                return;
+            case LIST:
+                BsvColumnBatch.ListColumn list = (BsvColumnBatch.ListColumn) column;
+                while (true) {
+                    i = tokenizer.nextToken();
+                    list.getItems().append(tokenizer, tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+                    if (i != itemsDelimiter) {
+                        asserts(i, hasMoreField);
+                        break;
+                    }
+                }
+                list.endRow();
+                return;
+            case MAP:
+                BsvColumnBatch.MapColumn map = (BsvColumnBatch.MapColumn) column;
+                while (true) {
+                    i = tokenizer.nextToken();
+                    if (i != keyValueDelimiter) {
+                        asserts(i, hasMoreField);
+                        break;
+                    }
+                    map.getKeys().append(tokenizer, tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+                    i = tokenizer.nextToken();
+                    map.getValues().append(tokenizer, tokenizer.getTokenStart(), tokenizer.getTokenEnd());
+                    if (i != itemsDelimiter) {
+                        asserts(i, hasMoreField);
+                        break;
+                    }
+                }
+                map.endRow();
+                return;
+        }
+    }
+
+
+    /**
+     * @param current value of field in reused bean, a list or map in it is cleared and refilled
+     */
+    private Object nextField(Field field, Object current, boolean hasMoreField) throws BsvException {
+        BsvStringCache cache = field.getStringCache();
+        Object result = null;
+        int i;
+        switch (field.getType()) {
+            case STRING:
+                i = tokenizer.nextToken();
+                asserts(i, hasMoreField);
+                result = tokenizer.tokenString(cache);
+                break;
+            case LIST:
+                if (lazyDecoder != null) {
+                    int start = tokenizer.getPosition();
+                    i = tokenizer.skipField();
+                    asserts(i, hasMoreField);
+                    result = lazyDecoder.list(current, tokenizer.getBuffer(), start, fieldEnd(i), cache);
+                    break;
+                }
+                List<String> list = BsvDeserializerImpl.reuseList(current);
+                while (true) {
+                    i = tokenizer.nextToken();
+                    list.add(tokenizer.tokenString(cache));
+                    if (i == itemsDelimiter) {
+                        continue;
+                    } else {
+                        asserts(i, hasMoreField);
+                        break;
+                    }
+                }
+                result = list;
+                break;
+            case MAP:
+                if (lazyDecoder != null) {
+                    int start = tokenizer.getPosition();
+                    i = tokenizer.skipField();
+                    asserts(i, hasMoreField);
+                    result = lazyDecoder.map(current, tokenizer.getBuffer(), start, fieldEnd(i), cache);
+                    break;
+                }
+                Map<String, String> map = BsvDeserializerImpl.reuseMap(current);
+                while (true) {
+                    i = tokenizer.nextToken();
+                    if (i == keyValueDelimiter) {
+                        String key = tokenizer.tokenString(cache);
+
+                        i = tokenizer.nextToken();
+
+                        map.put(key, tokenizer.tokenString());
+                        if (i == itemsDelimiter) {
+                            continue;
+                        } else {
+                            asserts(i, hasMoreField);
+                            break;
+                        }
+                    } else {
+                        asserts(i, hasMoreField);
+                        break;
+                    }
+                }
+                result = map;
+                break;
+            default:
+                throw new IllegalArgumentException("Not a string or collection field " + field.getName());
+        }
+        return result;
+    }
+
+    /**
+     * @param delimiter delimiter returned by skipField
+     * @return end of the skipped field
+     */
+    private int fieldEnd(int delimiter) {
+        return delimiter == fieldsDelimiter ? tokenizer.getPosition() - 1 : tokenizer.getPosition();
+    }
+
+    private void asserts(int actual, boolean hasMoreField) throws BsvException {
+        if (hasMoreField) {
+            if (actual != fieldsDelimiter) {
+                throw BsvException.badRecord(BsvException.Kind.DELIMITER, "Invalid delimiter, expected "
+                        + fieldsDelimiter + ", but was " + actual);
+            }
+        } else {
+            if (actual != lineDelimiter) {
+                throw BsvException.badRecord(BsvException.Kind.DELIMITER, "Invalid delimiter, expected "
+                        + lineDelimiter + ", but was " + actual);
+            }
+        }
+    }
+
+
+    /**
+     * Reads fields of current line in order of schema, with the checks of
+     * readField, for a codec which reads them without a switch on field type.
+     */
+    private final class FieldReader implements BsvFieldReader {
+
+        private List<Field> fields;
+        private boolean     reused;
+        //index of next field
+        private int         index;
+
+
+        void reset(BsvSchema schema, boolean reused) {
+            this.fields = schema.getFields();
+            this.reused = reused;
+            this.index = 0;
+        }
+
+        private boolean hasMoreField() {
+            return index < fields.size();
+        }
+
+        @Override
+        public String readString() throws BsvException {
+            Field field = fields.get(index++);
+            return (String) nextField(field, null, hasMoreField());
+        }
+
+        @Override
+        public boolean readBoolean() throws BsvException {
+            index++;
+            asserts(tokenizer.nextToken(), hasMoreField());
+            return tokenizer.tokenBoolean();
+        }
+
+        @Override
+        public boolean readNumber() throws BsvException {
+            index++;
+            asserts(tokenizer.nextToken(), hasMoreField());
+            return tokenizer.getTokenLength() > 0;
+        }
+
+        @Override
+        public int intValue() {
+            checkNumber();
+            return tokenizer.tokenInt();
+        }
+
+        @Override
+        public long longValue() {
+            checkNumber();
+            return tokenizer.tokenLong();
+        }
+
+        @Override
+        public float floatValue() {
+            checkNumber();
+            return tokenizer.tokenFloat();
+        }
+
+        @Override
+        public double doubleValue() {
+            checkNumber();
+            return tokenizer.tokenDouble();
+        }
+
+        private void checkNumber() {
+            if (tokenizer.getTokenLength() == 0) {
+                throw new IllegalArgumentException("Empty value of primitive field "
+                        + fields.get(index - 1).getName());
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public List<String> readList(Object current) throws BsvException {
+            Field field = fields.get(index++);
+            return (List<String>) nextField(field, reused ? current : null, hasMoreField());
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Map<String, String> readMap(Object current) throws BsvException {
+            Field field = fields.get(index++);
+            return (Map<String, String>) nextField(field, reused ? current : null, hasMoreField());
+        }
+    }
+
+
+    @Override
+    public void close() throws IOException, BsvException {
+        if (filters != null) {
+            BsvFilter.flush(filters);
+        }
+        lineReader.close();
+    }
+}
@@ -0,0 +1,136 @@
+package com.github.yantzu.bsv;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Finds the first byte of a small set of bytes in a range, eight bytes at a
+ * time. Each word is first tested as a whole (SWAR), and only a word which may
+ * contain a match is looked into byte by byte.
+ * <p>
+ * When every matched byte is a control char, one test for "any byte less than
+ * n" covers all of them. Otherwise every matched byte costs one test for "any
+ * byte equal to b", and more than four bytes are scanned without word tests.
+ * <p>
+ * Words are read through a little endian ByteBuffer view of the scanned array,
+ * so a matcher must not be shared by threads. Only ranges of 16 bytes or more
+ * are scanned by words, and only on Java 9 or later, where the view reads a
+ * word at once. On Java 8 it reads the eight bytes one by one, so a plain
+ * table scan is used instead.
+ */
+class BsvByteMatcher {
+
+    private static final long  ONES          = 0x0101010101010101L;
+    private static final long  HIGHS         = 0x8080808080808080L;
+    private static final int   MAX_PATTERNS  = 4;
+    private static final int   MAX_THRESHOLD = 0x20;
+    //a heap ByteBuffer reads a long byte by byte before Java 9
+    static final boolean       WORDS         = !System.getProperty("java.specification.version").startsWith("1.");
+
+    private final boolean[]    matches       = new boolean[256];
+    //ONES * n when testing for bytes less than n, otherwise 0
+    private final long         threshold;
+    //ONES * b of every matched byte, null when scanning without word tests
+    private final long[]       patterns;
+
+    private byte[]             viewed;
+    private ByteBuffer         view;
+
+
+    BsvByteMatcher(int... bytes) {
+        this(WORDS, bytes);
+    }
+
+    /**
+     * @param words false to scan by table only
+     */
+    BsvByteMatcher(boolean words, int... bytes) {
+        int max = -1;
+        for (int b : bytes) {
+            if (b < 0 || b > 0xFF) {
+                throw new IllegalArgumentException("Not a byte " + b);
+            }
+            matches[b] = true;
+            max = Math.max(max, b);
+        }
+
+        int count = 0;
+        for (boolean match : matches) {
+            if (match) {
+                count++;
+            }
+        }
+        if (!words || count == 0 || max >= MAX_THRESHOLD) {
+            this.threshold = 0;
+        } else {
+            this.threshold = ONES * (max + 1);
+        }
+        if (words && threshold == 0 && count > 0 && count <= MAX_PATTERNS) {
+            this.patterns = new long[count];
+            int i = 0;
+            for (int b = 0; b < matches.length; b++) {
+                if (matches[b]) {
+                    patterns[i++] = ONES * b;
+                }
+            }
+        } else {
+            this.patterns = null;
+        }
+    }
+
+    boolean matches(byte b) {
+        return matches[b & 0xFF];
+    }
+
+    /**
+     * @return index of first matched byte in [from, to), or to if none
+     */
+    int indexOf(byte[] buffer, int from, int to) {
+        int i = from;
+        if (to - from >= 16 && (threshold != 0 || patterns != null)) {
+            ByteBuffer words = view(buffer);
+            for (int wordsEnd = to - 7; i < wordsEnd; i += 8) {
+                if (mayMatch(words.getLong(i))) {
+                    for (int j = i; j < i + 8; j++) {
+                        if (matches[buffer[j] & 0xFF]) {
+                            return j;
+                        }
+                    }
+                }
+            }
+        }
+        boolean[] table = matches;
+        for (; i < to; i++) {
+            if (table[buffer[i] & 0xFF]) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * @return false only if no byte of word is matched
+     */
+    private boolean mayMatch(long word) {
+        if (threshold != 0) {
+            //some byte is less than threshold
+            return ((word - threshold) & ~word & HIGHS) != 0;
+        }
+        for (long pattern : patterns) {
+            //some byte is zero after xor
+            long x = word ^ pattern;
+            if (((x - ONES) & ~x & HIGHS) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ByteBuffer view(byte[] buffer) {
+        if (viewed != buffer) {
+            viewed = buffer;
+            view = ByteBuffer.wrap(buffer).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return view;
+    }
+}
@@ -0,0 +1,440 @@
+package com.github.yantzu.bsv;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Splits one line of raw bytes into tokens. All delimiters are single byte, so
+ * token boundaries are found without decoding, and only tokens that are
+ * materialized get decoded and transcoded.
+ */
+class BsvByteTokenizer {
+
+    private final Charset        charset;
+
+    private final int            fieldsDelimiter;
+    private final int            itemsDelimiter;
+    private final int            keyValueDelimiter;
+    private final int            lineDelimiter;
+
+    private final BsvByteMatcher delimiters;
+    private final BsvByteMatcher fieldsDelimiters;
+
+    private final boolean        transcoding;
+    //ascii transcoding table, null if transcoding has to be done on decoded chars
+    private final byte[]         byteTranscodes;
+    //bytes changed by byteTranscodes, null if byteTranscodes is null
+    private final BsvByteMatcher transcoded;
+    //transcoding table of decoded chars
+    private final char[]         charTranscodes;
+    //numbers are varints of BsvBinaryNumbers, which are never transcoded
+    private final boolean        binaryNumbers;
+
+    private byte[]               buffer;
+    private int                  position;
+    private int                  end;
+
+    private int                  tokenStart;
+    private int                  tokenEnd;
+
+    private byte[]               transcodeCache = new byte[512];
+
+
+    BsvByteTokenizer(BsvContext context, Charset charset) {
+        this(context, charset, false);
+    }
+
+    /**
+     * @param binaryNumbers true if header of stream has the binary numbers flag
+     */
+    BsvByteTokenizer(BsvContext context, Charset charset, boolean binaryNumbers) {
+        if (binaryNumbers) {
+            BsvBinaryNumbers.check(context);
+        }
+        this.binaryNumbers = binaryNumbers;
+        this.charset = charset;
+        this.fieldsDelimiter = asByte(context.getFieldsDelimiter());
+        this.itemsDelimiter = asByte(context.getItemsDelimiter());
+        this.keyValueDelimiter = asByte(context.getKeyValueDelimiter());
+        this.lineDelimiter = asByte(context.getLineDelimiter());
+        this.delimiters = new BsvByteMatcher(fieldsDelimiter, itemsDelimiter, keyValueDelimiter);
+        this.fieldsDelimiters = new BsvByteMatcher(fieldsDelimiter);
+        this.transcoding = context.hasTranscodes();
+        this.charTranscodes = context.getCharTranscodesDeser();
+        if (transcoding && BsvContext.DEFAULT_CHARSET.equals(charset)) {
+            this.byteTranscodes = context.getByteTranscodesDeser();
+        } else {
+            this.byteTranscodes = null;
+        }
+        this.transcoded = byteTranscodes == null ? null : transcodedMatcher(byteTranscodes);
+    }
+
+    private static BsvByteMatcher transcodedMatcher(byte[] byteTranscodes) {
+        int count = 0;
+        int[] bytes = new int[byteTranscodes.length];
+        for (int i = 0; i < byteTranscodes.length; i++) {
+            if (byteTranscodes[i] != i) {
+                bytes[count++] = i;
+            }
+        }
+        return new BsvByteMatcher(Arrays.copyOf(bytes, count));
+    }
+
+    private static int asByte(char delimiter) {
+        if (delimiter >= 0x80) {
+            throw new IllegalArgumentException("Delimiter " + (int) delimiter
+                    + " is not single byte, not supported by byte engine");
+        }
+        return delimiter;
+    }
+
+    /**
+     * point the tokenizer to a line
+     */
+    void reset(byte[] buffer, int start, int end) {
+        this.buffer = buffer;
+        this.position = start;
+        this.end = end;
+        this.tokenStart = start;
+        this.tokenEnd = start;
+    }
+
+    Charset getCharset() {
+        return charset;
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    int getEnd() {
+        return end;
+    }
+
+    int getPosition() {
+        return position;
+    }
+
+    void skip(int length) {
+        position += length;
+    }
+
+    boolean hasRemaining() {
+        return position < end;
+    }
+
+    /**
+     * locate next token in the line
+     * @return value ending token, line delimiter if line ends
+     */
+    int nextToken() {
+        tokenStart = position;
+        int i = delimiters.indexOf(buffer, position, end);
+        tokenEnd = i;
+        if (i < end) {
+            position = i + 1;
+            return buffer[i];
+        }
+        position = end;
+        return lineDelimiter;
+    }
+
+    /**
+     * record boundaries of the remaining fields, stop counting when there are
+     * more fields than the arrays can hold
+     * @return count of fields
+     */
+    int indexFields(int[] starts, int[] ends) {
+        int count = 0;
+        int start = position;
+        for (int i = fieldsDelimiters.indexOf(buffer, start, end); i < end; i = fieldsDelimiters.indexOf(buffer,
+                start, end)) {
+            if (count == starts.length) {
+                return count + 1;
+            }
+            starts[count] = start;
+            ends[count] = i;
+            count++;
+            start = i + 1;
+        }
+        if (count == starts.length) {
+            return count + 1;
+        }
+        starts[count] = start;
+        ends[count] = end;
+        return count + 1;
+    }
+
+    /**
+     * skip to next fields delimiter without looking into items
+     * @return fields delimiter, or line delimiter if line ends
+     */
+    int skipField() {
+        int i = fieldsDelimiters.indexOf(buffer, position, end);
+        if (i < end) {
+            position = i + 1;
+            return fieldsDelimiter;
+        }
+        position = end;
+        return lineDelimiter;
+    }
+
+    int getTokenStart() {
+        return tokenStart;
+    }
+
+    int getTokenEnd() {
+        return tokenEnd;
+    }
+
+    int getTokenLength() {
+        return tokenEnd - tokenStart;
+    }
+
+    String tokenString() {
+        return decode(tokenStart, tokenEnd);
+    }
+
+    /**
+     * @param cache cache of field, null if field is not deduplicated
+     */
+    String tokenString(BsvStringCache cache) {
+        if (cache == null) {
+            return decode(tokenStart, tokenEnd);
+        }
+        return cache.get(this, tokenStart, tokenEnd);
+    }
+
+    /**
+     * boolean is encoded as '1', any other value is false
+     */
+    boolean tokenBoolean() {
+        return booleanValue(tokenStart, tokenEnd);
+    }
+
+    boolean booleanValue(int start, int end) {
+        if (!transcoding) {
+            return end - start == 1 && buffer[start] == '1';
+        } else if (byteTranscodes != null) {
+            return end - start == 1 && buffer[start] >= 0 && byteTranscodes[buffer[start]] == '1';
+        } else {
+            return "1".equals(decode(start, end));
+        }
+    }
+
+    boolean isBinaryNumbers() {
+        return binaryNumbers;
+    }
+
+    int tokenInt() {
+        if (binaryNumbers) {
+            return BsvBinaryNumbers.decodeInt(buffer, tokenStart, tokenEnd);
+        }
+        return intValue(tokenStart, tokenEnd);
+    }
+
+    long tokenLong() {
+        if (binaryNumbers) {
+            return BsvBinaryNumbers.decodeLong(buffer, tokenStart, tokenEnd);
+        }
+        return longValue(tokenStart, tokenEnd);
+    }
+
+    float tokenFloat() {
+        if (binaryNumbers) {
+            return BsvBinaryNumbers.decodeFloat(buffer, tokenStart, tokenEnd);
+        }
+        return floatValue(tokenStart, tokenEnd);
+    }
+
+    double tokenDouble() {
+        if (binaryNumbers) {
+            return BsvBinaryNumbers.decodeDouble(buffer, tokenStart, tokenEnd);
+        }
+        return doubleValue(tokenStart, tokenEnd);
+    }
+
+    /**
+     * text number of range, parsed from raw bytes unless they may be transcoded
+     */
+    int intValue(int start, int end) {
+        if (transcoding) {
+            return Integer.parseInt(decode(start, end));
+        }
+        return BsvNumberParser.parseInt(buffer, start, end);
+    }
+
+    long longValue(int start, int end) {
+        if (transcoding) {
+            return Long.parseLong(decode(start, end));
+        }
+        return BsvNumberParser.parseLong(buffer, start, end);
+    }
+
+    float floatValue(int start, int end) {
+        if (transcoding) {
+            return Float.parseFloat(decode(start, end));
+        }
+        return BsvNumberParser.parseFloat(buffer, start, end);
+    }
+
+    double doubleValue(int start, int end) {
+        if (transcoding) {
+            return Double.parseDouble(decode(start, end));
+        }
+        return BsvNumberParser.parseDouble(buffer, start, end);
+    }
+
+    String decode(int start, int end) {
+        if (start == end) {
+            return "";
+        }
+        if (!transcoding) {
+            return new String(buffer, start, end - start, charset);
+        }
+        if (byteTranscodes != null) {
+            return decodeByteTranscoding(start, end);
+        }
+
+        String decoded = new String(buffer, start, end - start, charset);
+        char[] table = charTranscodes;
+        char[] transcoded = null;
+        for (int i = 0; i < decoded.length(); i++) {
+            char c = decoded.charAt(i);
+            if (c < table.length && table[c] != c) {
+                if (transcoded == null) {
+                    transcoded = decoded.toCharArray();
+                }
+                transcoded[i] = table[c];
+            }
+        }
+        return transcoded == null ? decoded : new String(transcoded);
+    }
+
+    /**
+     * copy transcoded bytes of range into target
+     * @return count of bytes copied
+     */
+    int transcodeTo(int start, int end, byte[] target, int offset) {
+        int length = end - start;
+        if (!transcoding) {
+            System.arraycopy(buffer, start, target, offset, length);
+            return length;
+        }
+        if (byteTranscodes != null) {
+            //copy plain runs, transcode only the bytes in between
+            byte[] buf = buffer;
+            int run = start;
+            for (int i = transcoded.indexOf(buf, start, end); i < end; i = transcoded.indexOf(buf, run, end)) {
+                System.arraycopy(buf, run, target, offset + run - start, i - run);
+                target[offset + i - start] = byteTranscodes[buf[i]];
+                run = i + 1;
+            }
+            System.arraycopy(buf, run, target, offset + run - start, end - run);
+            return length;
+        }
+
+        byte[] transcoded = decode(start, end).getBytes(charset);
+        System.arraycopy(transcoded, 0, target, offset, transcoded.length);
+        return transcoded.length;
+    }
+
+    /**
+     * @return length of range after transcoding
+     */
+    int transcodedLength(int start, int end) {
+        if (!transcoding || byteTranscodes != null) {
+            return end - start;
+        }
+        return decode(start, end).getBytes(charset).length;
+    }
+
+    /**
+     * compare transcoded bytes of range with expected bytes
+     */
+    boolean transcodedEquals(int start, int end, byte[] expected) {
+        if (transcoding && byteTranscodes == null) {
+            return decode(start, end).equals(new String(expected, charset));
+        }
+        if (end - start != expected.length) {
+            return false;
+        }
+        byte[] buf = buffer;
+        byte[] table = byteTranscodes;
+        for (int i = 0; i < expected.length; i++) {
+            byte b = buf[start + i];
+            if (table != null && b >= 0) {
+                b = table[b];
+            }
+            if (b != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * compare beginning of transcoded range with expected bytes
+     */
+    boolean transcodedStartsWith(int start, int end, byte[] expected) {
+        if (transcoding && byteTranscodes == null) {
+            return decode(start, end).startsWith(new String(expected, charset));
+        }
+        if (end - start < expected.length) {
+            return false;
+        }
+        byte[] buf = buffer;
+        byte[] table = byteTranscodes;
+        for (int i = 0; i < expected.length; i++) {
+            byte b = buf[start + i];
+            if (table != null && b >= 0) {
+                b = table[b];
+            }
+            if (b != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the same hash as Arrays.hashCode of transcoded bytes of range
+     */
+    int transcodedHash(int start, int end) {
+        if (transcoding && byteTranscodes == null) {
+            return Arrays.hashCode(decode(start, end).getBytes(charset));
+        }
+        byte[] buf = buffer;
+        byte[] table = byteTranscodes;
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            byte b = buf[i];
+            if (table != null && b >= 0) {
+                b = table[b];
+            }
+            hash = 31 * hash + b;
+        }
+        return hash;
+    }
+
+    private String decodeByteTranscoding(int start, int end) {
+        byte[] buf = buffer;
+        byte[] table = byteTranscodes;
+        int i = transcoded.indexOf(buf, start, end);
+        if (i == end) {
+            return new String(buf, start, end - start, charset);
+        }
+
+        int length = end - start;
+        if (transcodeCache.length < length) {
+            transcodeCache = new byte[Math.max(length, transcodeCache.length * 2)];
+        }
+        byte[] cache = transcodeCache;
+        System.arraycopy(buf, start, cache, 0, i - start);
+        for (int j = i; j < end; j++) {
+            byte b = buf[j];
+            cache[j - start] = b < 0 ? b : table[b];
+        }
+        return new String(cache, 0, length, charset);
+    }
+}
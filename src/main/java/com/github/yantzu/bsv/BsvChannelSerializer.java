@@ -0,0 +1,160 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Serializer writing to a channel. Records are encoded into the heap buffer
+ * of a {@link BsvRecordEncoder}, then copied into direct buffers of a shared
+ * pool, without an output stream in between. The filled buffers are written
+ * by one gathering write. Since they are direct, the channel does not copy
+ * them again into temporary direct buffers, as it does for heap buffers.
+ * <p>
+ * Buffers are written when all gatherBuffers of them are full, on
+ * {@link #flush()} and on {@link #close()}.
+ */
+public class BsvChannelSerializer implements BsvSerializer {
+
+    //1MB per gathering write with buffers of 64KB
+    protected static final int DEFAULT_GATHER_BUFFERS = 16;
+
+    private final WritableByteChannel channel;
+    private final BsvRecordEncoder    encoder;
+    private final ByteBuffer[]        buffers;
+    //buffer being filled, buffers after it are not yet acquired or empty
+    private int                       current;
+    private boolean                   closed;
+
+
+    protected BsvChannelSerializer(BsvContext context, WritableByteChannel channel, String majorVersion,
+            char minorVersion, Charset charset) throws IOException, BsvException {
+        this(context, channel, majorVersion, minorVersion, charset, DEFAULT_GATHER_BUFFERS);
+    }
+
+    /**
+     * @param gatherBuffers buffers of 64KB written by one gathering write
+     */
+    protected BsvChannelSerializer(BsvContext context, WritableByteChannel channel, String majorVersion,
+            char minorVersion, Charset charset, int gatherBuffers) throws IOException, BsvException {
+        if (gatherBuffers <= 0) {
+            throw new IllegalArgumentException("Invalid gather buffers " + gatherBuffers);
+        }
+        byte[] header = BsvSerializerImpl.header(context, majorVersion, minorVersion);
+        this.channel = channel;
+        this.encoder = new BsvRecordEncoder(context, majorVersion, minorVersion, charset);
+        this.buffers = new ByteBuffer[gatherBuffers];
+        buffers[0] = BsvDirectBufferPool.SHARED.acquire();
+        buffers[0].put(header);
+    }
+
+    @Override
+    public void next(BsvObject bean) throws IOException, BsvException {
+        if (closed) {
+            throw new IOException("Serializer is closed");
+        }
+        BsvSchema schema = encoder.schemaOf(bean);
+        try {
+            encoder.encode(schema, bean);
+        } catch (RuntimeException runtimeException) {
+            throw new BsvException(runtimeException);
+        }
+        copyEncoded();
+    }
+
+    /**
+     * copy bytes of encoder into direct buffers, the one copy out of heap
+     */
+    private void copyEncoded() throws IOException {
+        byte[] bytes = encoder.getBytes();
+        int offset = 0;
+        int length = encoder.getLength();
+        while (length > 0) {
+            ByteBuffer buffer = buffers[current];
+            if (!buffer.hasRemaining()) {
+                nextBuffer();
+                continue;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+            length -= count;
+        }
+        encoder.clear();
+    }
+
+    /**
+     * write encoded records to channel
+     */
+    @Override
+    public void flush() throws IOException, BsvException {
+        if (closed) {
+            throw new IOException("Serializer is closed");
+        }
+        writeBuffers();
+    }
+
+    /**
+     * write encoded records, then release buffers and close channel
+     */
+    @Override
+    public void close() throws IOException, BsvException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            encoder.finish();
+            copyEncoded();
+            writeBuffers();
+        } finally {
+            releaseBuffers();
+            channel.close();
+        }
+    }
+
+    private void nextBuffer() throws IOException {
+        current++;
+        if (current == buffers.length) {
+            writeBuffers();
+        } else if (buffers[current] == null) {
+            buffers[current] = BsvDirectBufferPool.SHARED.acquire();
+        }
+    }
+
+    private void writeBuffers() throws IOException {
+        int count = Math.min(current + 1, buffers.length);
+        long remaining = 0;
+        for (int i = 0; i < count; i++) {
+            buffers[i].flip();
+            remaining += buffers[i].remaining();
+        }
+        if (channel instanceof GatheringByteChannel) {
+            GatheringByteChannel gatheringChannel = (GatheringByteChannel) channel;
+            while (remaining > 0) {
+                remaining -= gatheringChannel.write(buffers, 0, count);
+            }
+        } else {
+            for (int i = 0; i < count; i++) {
+                while (buffers[i].hasRemaining()) {
+                    channel.write(buffers[i]);
+                }
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            buffers[i].clear();
+        }
+        current = 0;
+    }
+
+    private void releaseBuffers() {
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null) {
+                BsvDirectBufferPool.SHARED.release(buffers[i]);
+                buffers[i] = null;
+            }
+        }
+    }
+}
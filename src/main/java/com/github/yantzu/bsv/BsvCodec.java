@@ -0,0 +1,42 @@
+package com.github.yantzu.bsv;
+
+import com.github.yantzu.bsv.BsvSchema.FieldType;
+
+/**
+ * Accessor of one schema variant generated at build time by
+ * {@link BsvCodecGenerator}, which calls getters and setters of bean directly
+ * and writes and reads a record field by field without looking at field
+ * types.
+ * <p>
+ * Codecs are listed in META-INF/services/com.github.yantzu.bsv.BsvCodec and
+ * found by {@link BsvContextBuilder} through {@link java.util.ServiceLoader},
+ * or registered by {@link BsvContextBuilder#codec(BsvCodec)}. A codec is only
+ * used for a schema of the same version, bean class and fields, any other
+ * schema is accessed the generic way.
+ */
+public interface BsvCodec extends BsvBeanAccessor {
+
+    /**
+     * @return full version of schema, such as 03.0.0
+     */
+    String getFullVersion();
+
+    Class<?> getBeanClass();
+
+    /**
+     * @return names of fields in order of schema
+     */
+    String[] getFieldNames();
+
+    FieldType[] getFieldTypes();
+
+    /**
+     * write fields of bean, variant number is written by caller
+     */
+    void write(BsvObject bean, BsvFieldWriter writer) throws BsvException;
+
+    /**
+     * read all fields into bean, variant number is already read by caller
+     */
+    void read(BsvObject bean, BsvFieldReader reader) throws BsvException;
+}
@@ -0,0 +1,411 @@
+package com.github.yantzu.bsv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import com.github.yantzu.bsv.BsvSchema.Field;
+import com.github.yantzu.bsv.BsvSchema.FieldType;
+
+/**
+ * Generates source of a {@link BsvCodec} per schema variant, in package of
+ * bean class, and the services file listing them. Bean classes of schemas have
+ * to be loaded, so the generator runs after beans are compiled, by
+ * bsv-maven-plugin or by {@link #main(String[])}.
+ */
+public class BsvCodecGenerator {
+
+    public static final String   SERVICES_FILE = "META-INF/services/" + BsvCodec.class.getName();
+
+    private static final Charset UTF_8         = Charset.forName("UTF-8");
+
+    /**
+     * @return qualified name of codec class of schema, such as
+     *         com.example.EventCodec0300 for schema 03.0.0 of com.example.Event
+     */
+    public String getClassName(BsvSchema schema) {
+        String packageName = getPackageName(schema.getBeanClass());
+        String simpleName = schema.getBeanClass().getSimpleName() + "Codec"
+                + identifier(schema.getMajorVersion() + schema.getMinorVersion() + schema.getVariantNumber());
+        return packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a property of bean is not of type of its field
+     */
+    public String generate(BsvSchema schema) {
+        Class<?> beanClass = schema.getBeanClass();
+        if (beanClass.getCanonicalName() == null) {
+            throw new IllegalArgumentException("Class " + beanClass + " has no canonical name");
+        }
+        List<Field> fields = schema.getFields();
+        for (Field field : fields) {
+            checkProperty(beanClass, field);
+        }
+
+        String className = getClassName(schema);
+        String packageName = getPackageName(beanClass);
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        String bean = beanClass.getCanonicalName();
+
+        StringBuilder source = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("import com.github.yantzu.bsv.BsvCodec;\n");
+        source.append("import com.github.yantzu.bsv.BsvException;\n");
+        source.append("import com.github.yantzu.bsv.BsvFieldReader;\n");
+        source.append("import com.github.yantzu.bsv.BsvFieldWriter;\n");
+        source.append("import com.github.yantzu.bsv.BsvObject;\n");
+        source.append("import com.github.yantzu.bsv.BsvSchema.FieldType;\n\n");
+        source.append("/**\n");
+        source.append(" * Codec of schema ").append(schema.getFullVersion()).append(" of ")
+                .append(beanClass.getSimpleName()).append(", generated by BsvCodecGenerator, do not edit.\n");
+        source.append(" */\n");
+        source.append("@SuppressWarnings({ \"unchecked\", \"rawtypes\" })\n");
+        source.append("public final class ").append(simpleName).append(" implements BsvCodec {\n\n");
+
+        source.append("    private static final String[] FIELD_NAMES = {");
+        for (int i = 0; i < fields.size(); i++) {
+            source.append(i == 0 ? " " : ", ").append('"').append(fields.get(i).getName()).append('"');
+        }
+        source.append(" };\n");
+        source.append("    private static final FieldType[] FIELD_TYPES = {");
+        for (int i = 0; i < fields.size(); i++) {
+            source.append(i == 0 ? " " : ", ").append("FieldType.").append(fields.get(i).getType().name());
+        }
+        source.append(" };\n\n");
+
+        method(source, "String getFullVersion()");
+        source.append("        return \"").append(schema.getFullVersion()).append("\";\n    }\n\n");
+        method(source, "Class<?> getBeanClass()");
+        source.append("        return ").append(bean).append(".class;\n    }\n\n");
+        method(source, "String[] getFieldNames()");
+        source.append("        return FIELD_NAMES.clone();\n    }\n\n");
+        method(source, "FieldType[] getFieldTypes()");
+        source.append("        return FIELD_TYPES.clone();\n    }\n\n");
+        method(source, "BsvObject newInstance()");
+        source.append("        return new ").append(bean).append("();\n    }\n\n");
+
+        method(source, "Object get(BsvObject bean, int field)");
+        source.append("        ").append(bean).append(" b = (").append(bean).append(") bean;\n");
+        source.append("        switch (field) {\n");
+        for (Field field : fields) {
+            source.append("            case ").append(field.getIndex()).append(":\n");
+            source.append("                return b.").append(field.getBeanReadMethod().getName()).append("();\n");
+        }
+        source.append("            default:\n");
+        source.append("                throw new IllegalArgumentException(\"No field \" + field);\n");
+        source.append("        }\n    }\n\n");
+
+        method(source, "void set(BsvObject bean, int field, Object value)");
+        source.append("        ").append(bean).append(" b = (").append(bean).append(") bean;\n");
+        source.append("        switch (field) {\n");
+        for (Field field : fields) {
+            Class<?> type = boxed(field.getBeanWriteMethod().getParameterTypes()[0]);
+            source.append("            case ").append(field.getIndex()).append(":\n");
+            source.append("                b.").append(field.getBeanWriteMethod().getName()).append("((")
+                    .append(type.getCanonicalName()).append(") value);\n");
+            source.append("                return;\n");
+        }
+        source.append("            default:\n");
+        source.append("                throw new IllegalArgumentException(\"No field \" + field);\n");
+        source.append("        }\n    }\n\n");
+
+        primitiveSetter(source, schema, FieldType.INTEGER, "setInt", "int");
+        primitiveSetter(source, schema, FieldType.LONG, "setLong", "long");
+        primitiveSetter(source, schema, FieldType.FLOAT, "setFloat", "float");
+        primitiveSetter(source, schema, FieldType.DOUBLE, "setDouble", "double");
+        primitiveSetter(source, schema, FieldType.BOOLEAN, "setBoolean", "boolean");
+        primitiveGetter(source, schema, FieldType.INTEGER, "getInt", "int");
+        primitiveGetter(source, schema, FieldType.LONG, "getLong", "long");
+        primitiveGetter(source, schema, FieldType.FLOAT, "getFloat", "float");
+        primitiveGetter(source, schema, FieldType.DOUBLE, "getDouble", "double");
+        primitiveGetter(source, schema, FieldType.BOOLEAN, "getBoolean", "boolean");
+
+        method(source, "void write(BsvObject bean, BsvFieldWriter writer)");
+        source.append("        ").append(bean).append(" b = (").append(bean).append(") bean;\n");
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            Method readMethod = field.getBeanReadMethod();
+            String read = "b." + readMethod.getName() + "()";
+            switch (field.getType()) {
+                case STRING:
+                    source.append("        writer.writeString(").append(read).append(");\n");
+                    break;
+                case LIST:
+                    source.append("        writer.writeList((Iterable) ").append(read).append(");\n");
+                    break;
+                case MAP:
+                    source.append("        writer.writeMap((java.util.Map) ").append(read).append(");\n");
+                    break;
+                default:
+                    String writeMethod = "writer.write" + primitiveName(field.getType());
+                    if (readMethod.getReturnType().isPrimitive()) {
+                        source.append("        ").append(writeMethod).append('(').append(read).append(");\n");
+                    } else {
+                        String value = "value" + field.getIndex();
+                        source.append("        ").append(readMethod.getReturnType().getCanonicalName())
+                                .append(' ').append(value).append(" = ").append(read).append(";\n");
+                        source.append("        ").append(writeMethod).append('(')
+                                .append(orDefault(value, field.getType())).append(");\n");
+                    }
+            }
+            source.append(i < fields.size() - 1 ? "        writer.endField();\n" : "        writer.endRecord();\n");
+        }
+        source.append("    }\n\n");
+
+        method(source, "void read(BsvObject bean, BsvFieldReader reader) throws BsvException");
+        source.append("        ").append(bean).append(" b = (").append(bean).append(") bean;\n");
+        for (Field field : fields) {
+            read(source, field);
+        }
+        source.append("    }\n}\n");
+        return source.toString();
+    }
+
+    /**
+     * read one field by the reader method of its type, without a switch
+     */
+    private void read(StringBuilder source, Field field) {
+        Method writeMethod = field.getBeanWriteMethod();
+        Class<?> type = writeMethod.getParameterTypes()[0];
+        String write = "        b." + writeMethod.getName() + "(";
+        switch (field.getType()) {
+            case STRING:
+                source.append(write).append("reader.readString());\n");
+                break;
+            case BOOLEAN:
+                source.append(write).append("reader.readBoolean());\n");
+                break;
+            case LIST:
+            case MAP:
+                String reader = field.getType() == FieldType.LIST ? "readList" : "readMap";
+                source.append(write).append('(').append(type.getCanonicalName()).append(") reader.")
+                        .append(reader).append("(b.").append(field.getBeanReadMethod().getName()).append("()));\n");
+                break;
+            default:
+                String value = "reader." + primitiveName(field.getType()).toLowerCase(Locale.ENGLISH) + "Value()";
+                if (type.isPrimitive()) {
+                    source.append("        reader.readNumber();\n");
+                    source.append(write).append(value).append(");\n");
+                } else {
+                    source.append(write).append("reader.readNumber() ? ").append(type.getCanonicalName())
+                            .append(".valueOf(").append(value).append(") : null);\n");
+                }
+        }
+    }
+
+    /**
+     * @return source files written
+     */
+    public List<File> writeSources(List<BsvSchema> schemas, File sourceDirectory) throws IOException {
+        List<File> files = new ArrayList<File>();
+        for (BsvSchema schema : schemas) {
+            File file = new File(sourceDirectory, getClassName(schema).replace('.', File.separatorChar) + ".java");
+            file.getParentFile().mkdirs();
+            Files.write(file.toPath(), generate(schema).getBytes(UTF_8));
+            files.add(file);
+        }
+        return files;
+    }
+
+    /**
+     * list codecs of schemas in services file under directory, codecs listed
+     * before are kept
+     */
+    public void writeServices(List<BsvSchema> schemas, File directory) throws IOException {
+        File file = new File(directory, SERVICES_FILE);
+        Set<String> classNames = new LinkedHashSet<String>();
+        if (file.exists()) {
+            for (String line : Files.readAllLines(file.toPath(), UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    classNames.add(line.trim());
+                }
+            }
+        }
+        for (BsvSchema schema : schemas) {
+            classNames.add(getClassName(schema));
+        }
+        StringBuilder content = new StringBuilder();
+        for (String className : classNames) {
+            content.append(className).append('\n');
+        }
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.toString().getBytes(UTF_8));
+    }
+
+    private void method(StringBuilder source, String signature) {
+        source.append("    @Override\n    public ").append(signature).append(" {\n");
+    }
+
+    private void primitiveSetter(StringBuilder source, BsvSchema schema, FieldType fieldType, String name,
+            String type) {
+        method(source, "void " + name + "(BsvObject bean, int field, " + type + " value)");
+        source.append("        switch (field) {\n");
+        for (Field field : schema.getFields()) {
+            if (field.getType() == fieldType) {
+                source.append("            case ").append(field.getIndex()).append(":\n");
+                source.append("                ((").append(schema.getBeanClass().getCanonicalName())
+                        .append(") bean).").append(field.getBeanWriteMethod().getName()).append("(value);\n");
+                source.append("                return;\n");
+            }
+        }
+        source.append("            default:\n");
+        source.append("                set(bean, field, value);\n");
+        source.append("        }\n    }\n\n");
+    }
+
+    private void primitiveGetter(StringBuilder source, BsvSchema schema, FieldType fieldType, String name,
+            String type) {
+        method(source, type + " " + name + "(BsvObject bean, int field)");
+        source.append("        switch (field) {\n");
+        for (Field field : schema.getFields()) {
+            if (field.getType() == fieldType) {
+                Method readMethod = field.getBeanReadMethod();
+                String read = "((" + schema.getBeanClass().getCanonicalName() + ") bean)." + readMethod.getName()
+                        + "()";
+                source.append("            case ").append(field.getIndex()).append(":\n");
+                if (readMethod.getReturnType().isPrimitive()) {
+                    source.append("                return ").append(read).append(";\n");
+                } else {
+                    String value = "value" + field.getIndex();
+                    source.append("                ").append(readMethod.getReturnType().getCanonicalName())
+                            .append(' ').append(value).append(" = ").append(read).append(";\n");
+                    source.append("                return ").append(orDefault(value, fieldType)).append(";\n");
+                }
+            }
+        }
+        source.append("            default:\n");
+        source.append("                Object value = get(bean, field);\n");
+        String cast = "(" + boxed(primitiveClass(fieldType)).getSimpleName() + ") value";
+        if (fieldType == FieldType.BOOLEAN) {
+            source.append("                return value != null && ").append(cast).append(";\n");
+        } else {
+            source.append("                return value == null ? 0 : ").append(cast).append(";\n");
+        }
+        source.append("        }\n    }\n\n");
+    }
+
+    /**
+     * a null boxed value read as 0 or false
+     */
+    private static String orDefault(String value, FieldType fieldType) {
+        if (fieldType == FieldType.BOOLEAN) {
+            return value + " != null && " + value;
+        }
+        return value + " == null ? 0 : " + value;
+    }
+
+    private static void checkProperty(Class<?> beanClass, Field field) {
+        Class<?> readType = field.getBeanReadMethod().getReturnType();
+        Class<?> writeType = field.getBeanWriteMethod().getParameterTypes()[0];
+        boolean valid;
+        switch (field.getType()) {
+            case STRING:
+                valid = readType == String.class && writeType == String.class;
+                break;
+            case LIST:
+                valid = Iterable.class.isAssignableFrom(readType) && Iterable.class.isAssignableFrom(writeType);
+                break;
+            case MAP:
+                valid = Map.class.isAssignableFrom(readType) && Map.class.isAssignableFrom(writeType);
+                break;
+            default:
+                Class<?> primitive = primitiveClass(field.getType());
+                valid = (readType == primitive || readType == boxed(primitive))
+                        && (writeType == primitive || writeType == boxed(primitive));
+        }
+        if (!valid) {
+            throw new IllegalArgumentException("Property " + field.getName() + " of " + beanClass
+                    + " is not of type " + field.getType());
+        }
+    }
+
+    private static Class<?> primitiveClass(FieldType fieldType) {
+        switch (fieldType) {
+            case INTEGER:
+                return int.class;
+            case LONG:
+                return long.class;
+            case FLOAT:
+                return float.class;
+            case DOUBLE:
+                return double.class;
+            case BOOLEAN:
+                return boolean.class;
+            default:
+                throw new IllegalArgumentException(fieldType + " is not primitive");
+        }
+    }
+
+    private static String primitiveName(FieldType fieldType) {
+        return fieldType == FieldType.INTEGER ? "Int"
+                : fieldType.name().charAt(0) + fieldType.name().substring(1).toLowerCase(Locale.ENGLISH);
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        }
+        return type;
+    }
+
+    private static String getPackageName(Class<?> beanClass) {
+        String name = beanClass.getName();
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? "" : name.substring(0, dot);
+    }
+
+    private static String identifier(String version) {
+        StringBuilder result = new StringBuilder(version.length());
+        for (int i = 0; i < version.length(); i++) {
+            char c = version.charAt(i);
+            result.append(Character.isJavaIdentifierPart(c) ? c : '_');
+        }
+        return result.toString();
+    }
+
+    /**
+     * generate codecs of YAML schemas, bean classes have to be on class path
+     *
+     * @param args source directory, directory of services file, then YAML files of schemas
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: BsvCodecGenerator <source directory> <services directory> <schema.yaml>...");
+            System.exit(1);
+        }
+        List<BsvSchema> schemas = new ArrayList<BsvSchema>();
+        BsvYamlSchemaParser parser = new BsvYamlSchemaParser();
+        for (int i = 2; i < args.length; i++) {
+            InputStream inputStream = new FileInputStream(args[i]);
+            try {
+                schemas.add(parser.parse(inputStream));
+            } finally {
+                inputStream.close();
+            }
+        }
+        BsvCodecGenerator generator = new BsvCodecGenerator();
+        generator.writeSources(schemas, new File(args[0]));
+        generator.writeServices(schemas, new File(args[1]));
+    }
+}
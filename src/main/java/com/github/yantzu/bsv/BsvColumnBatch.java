@@ -0,0 +1,712 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.github.yantzu.bsv.BsvSchema.Field;
+
+/**
+ * Records of a batch, stored as one column per field and grouped per variant.
+ * Numbers are kept in primitive arrays with a null bitmap, strings as bytes in
+ * the charset of the deserializer with offsets, and lists and maps as offsets
+ * into child string columns.
+ * <p>
+ * A batch is owned and reused by its deserializer, so its arrays are only valid
+ * until the next call of {@link BsvDeserializer#nextBatch(int)}. Arrays may be
+ * longer than the column, only the first {@link Column#size()} rows count.
+ */
+public class BsvColumnBatch {
+
+    private final Charset                  charset;
+    //selected fields per schema, null if all fields are selected
+    private final Map<BsvSchema, boolean[]> projections;
+
+    private final Map<BsvSchema, Group>    groupsBySchema = new IdentityHashMap<BsvSchema, Group>();
+    private final List<Group>              groups         = new ArrayList<Group>();
+    private int                            size;
+
+
+    BsvColumnBatch(Charset charset, Map<BsvSchema, boolean[]> projections) {
+        this.charset = charset;
+        this.projections = projections;
+    }
+
+    /**
+     * count of records in all groups
+     */
+    public int size() {
+        return size;
+    }
+
+    public Charset getCharset() {
+        return charset;
+    }
+
+    /**
+     * groups having records, in order of their first record
+     */
+    public List<Group> getGroups() {
+        List<Group> result = new ArrayList<Group>(groups.size());
+        for (Group group : groups) {
+            if (group.size > 0) {
+                result.add(group);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return null if no record of the variant in this batch
+     */
+    public Group getGroup(char variantNumber) {
+        for (Group group : groups) {
+            if (group.size > 0 && group.schema.getVariantNumber() == variantNumber) {
+                return group;
+            }
+        }
+        return null;
+    }
+
+    void clear() {
+        for (Group group : groups) {
+            group.clear();
+        }
+        size = 0;
+    }
+
+    /**
+     * start a record of schema, it is only counted once committed
+     */
+    Group begin(BsvSchema schema) {
+        Group group = groupsBySchema.get(schema);
+        if (group == null) {
+            group = new Group(schema, projections == null ? null : projections.get(schema), charset);
+            groupsBySchema.put(schema, group);
+            groups.add(group);
+        } else if (group.size == 0) {
+            //keep groups in order of their first record in this batch
+            groups.remove(group);
+            groups.add(group);
+        }
+        group.begin(size);
+        return group;
+    }
+
+    void commit(Group group) {
+        group.commit();
+        size++;
+    }
+
+    /**
+     * replace content of batch with beans read from deserializer
+     * @param schemas schemas of deserializer by variant
+     * @return exception of the bad record which ended the batch, null if none
+     * @throws BsvException if the first record is bad
+     */
+    BsvException fill(BsvDeserializer deserializer, Map<Character, BsvSchema> schemas, int maxRecords)
+            throws IOException, BsvException {
+        clear();
+        while (size < maxRecords) {
+            try {
+                BsvObject bean = deserializer.next();
+                if (bean == null) {
+                    break;
+                }
+                String version = bean.getVersion();
+                add(schemas.get(version.charAt(version.length() - 1)), bean);
+            } catch (BsvException bsvException) {
+                if (size == 0) {
+                    throw bsvException;
+                }
+                return bsvException;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * add a bean by reading its properties
+     */
+    void add(BsvSchema schema, BsvObject bean) throws BsvException {
+        Group group = begin(schema);
+        try {
+            BsvBeanAccessor accessor = schema.getBeanAccessor();
+            for (Field field : schema.getFields()) {
+                Column column = group.columns[field.getIndex()];
+                if (column != null) {
+                    column.appendValue(accessor.get(bean, field.getIndex()));
+                }
+            }
+        } catch (RuntimeException runtimeException) {
+            group.rollback();
+            throw new BsvException(runtimeException);
+        } catch (BsvException bsvException) {
+            group.rollback();
+            throw bsvException;
+        }
+        commit(group);
+    }
+
+
+    /**
+     * records of one variant
+     */
+    public static class Group {
+        private final BsvSchema schema;
+        //column per field index, null if field is not selected
+        private final Column[]  columns;
+        private int             size;
+        private int[]           positions = new int[64];
+
+        Group(BsvSchema schema, boolean[] selected, Charset charset) {
+            this.schema = schema;
+            this.columns = new Column[schema.getFields().size()];
+            for (Field field : schema.getFields()) {
+                if (selected == null || selected[field.getIndex()]) {
+                    columns[field.getIndex()] = createColumn(field, charset);
+                }
+            }
+        }
+
+        private static Column createColumn(Field field, Charset charset) {
+            switch (field.getType()) {
+                case BOOLEAN:
+                    return new BooleanColumn(field);
+                case INTEGER:
+                    return new IntColumn(field);
+                case LONG:
+                    return new LongColumn(field);
+                case FLOAT:
+                    return new FloatColumn(field);
+                case DOUBLE:
+                    return new DoubleColumn(field);
+                case STRING:
+                    return new StringColumn(field, charset);
+                case LIST:
+                    return new ListColumn(field, charset);
+                case MAP:
+                    return new MapColumn(field, charset);
+                default:
+                    throw new IllegalArgumentException("Unknown type " + field.getType());
+            }
+        }
+
+        public BsvSchema getSchema() {
+            return schema;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return position of row in the whole batch, which is the order records are read
+         */
+        public int position(int row) {
+            return positions[row];
+        }
+
+        /**
+         * @return null if field is not selected by projection
+         */
+        public Column getColumn(int field) {
+            return columns[field];
+        }
+
+        /**
+         * @return null if no such field or field is not selected by projection
+         */
+        public Column getColumn(String name) {
+            Field field = schema.getField(name);
+            return field == null ? null : columns[field.getIndex()];
+        }
+
+        private void begin(int position) {
+            if (size == positions.length) {
+                positions = Arrays.copyOf(positions, size * 2);
+            }
+            positions[size] = position;
+        }
+
+        private void commit() {
+            size++;
+        }
+
+        /**
+         * drop values appended for the uncommitted record
+         */
+        void rollback() {
+            for (Column column : columns) {
+                if (column != null) {
+                    column.truncate(size);
+                }
+            }
+        }
+
+        private void clear() {
+            size = 0;
+            rollback();
+        }
+    }
+
+
+    public abstract static class Column {
+        protected final Field field;
+        protected int         size;
+
+        Column(Field field) {
+            this.field = field;
+        }
+
+        public Field getField() {
+            return field;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public boolean isNull(int row) {
+            return false;
+        }
+
+        abstract void appendValue(Object value);
+
+        abstract void truncate(int size);
+
+        static int capacity(int length, int required) {
+            return Math.max(required, length * 2);
+        }
+    }
+
+
+    /**
+     * numeric column, null is kept in bitmap and 0 in values
+     */
+    public abstract static class NullableColumn extends Column {
+        private long[] nulls = new long[1];
+
+        NullableColumn(Field field) {
+            super(field);
+        }
+
+        @Override
+        public boolean isNull(int row) {
+            return (nulls[row >>> 6] & (1L << row)) != 0;
+        }
+
+        /**
+         * bit of row is set if value of row is null
+         */
+        public long[] getNulls() {
+            return nulls;
+        }
+
+        protected void markNull(int row, boolean isNull) {
+            int word = row >>> 6;
+            if (word >= nulls.length) {
+                nulls = Arrays.copyOf(nulls, capacity(nulls.length, word + 1));
+            }
+            if (isNull) {
+                nulls[word] |= 1L << row;
+            } else {
+                nulls[word] &= ~(1L << row);
+            }
+        }
+
+        abstract void appendNull();
+
+        @Override
+        void truncate(int size) {
+            this.size = size;
+        }
+    }
+
+
+    public static class IntColumn extends NullableColumn {
+        private int[] values = new int[64];
+
+        IntColumn(Field field) {
+            super(field);
+        }
+
+        public int[] getValues() {
+            return values;
+        }
+
+        public int get(int row) {
+            return values[row];
+        }
+
+        void append(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, capacity(values.length, size + 1));
+            }
+            markNull(size, false);
+            values[size++] = value;
+        }
+
+        @Override
+        void appendNull() {
+            append(0);
+            markNull(size - 1, true);
+        }
+
+        @Override
+        void appendValue(Object value) {
+            if (value == null) {
+                appendNull();
+            } else {
+                append((Integer) value);
+            }
+        }
+    }
+
+
+    public static class LongColumn extends NullableColumn {
+        private long[] values = new long[64];
+
+        LongColumn(Field field) {
+            super(field);
+        }
+
+        public long[] getValues() {
+            return values;
+        }
+
+        public long get(int row) {
+            return values[row];
+        }
+
+        void append(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, capacity(values.length, size + 1));
+            }
+            markNull(size, false);
+            values[size++] = value;
+        }
+
+        @Override
+        void appendNull() {
+            append(0);
+            markNull(size - 1, true);
+        }
+
+        @Override
+        void appendValue(Object value) {
+            if (value == null) {
+                appendNull();
+            } else {
+                append((Long) value);
+            }
+        }
+    }
+
+
+    public static class FloatColumn extends NullableColumn {
+        private float[] values = new float[64];
+
+        FloatColumn(Field field) {
+            super(field);
+        }
+
+        public float[] getValues() {
+            return values;
+        }
+
+        public float get(int row) {
+            return values[row];
+        }
+
+        void append(float value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, capacity(values.length, size + 1));
+            }
+            markNull(size, false);
+            values[size++] = value;
+        }
+
+        @Override
+        void appendNull() {
+            append(0);
+            markNull(size - 1, true);
+        }
+
+        @Override
+        void appendValue(Object value) {
+            if (value == null) {
+                appendNull();
+            } else {
+                append((Float) value);
+            }
+        }
+    }
+
+
+    public static class DoubleColumn extends NullableColumn {
+        private double[] values = new double[64];
+
+        DoubleColumn(Field field) {
+            super(field);
+        }
+
+        public double[] getValues() {
+            return values;
+        }
+
+        public double get(int row) {
+            return values[row];
+        }
+
+        void append(double value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, capacity(values.length, size + 1));
+            }
+            markNull(size, false);
+            values[size++] = value;
+        }
+
+        @Override
+        void appendNull() {
+            append(0);
+            markNull(size - 1, true);
+        }
+
+        @Override
+        void appendValue(Object value) {
+            if (value == null) {
+                appendNull();
+            } else {
+                append((Double) value);
+            }
+        }
+    }
+
+
+    /**
+     * boolean is never null, empty value is false the same as deserializer
+     */
+    public static class BooleanColumn extends Column {
+        private boolean[] values = new boolean[64];
+
+        BooleanColumn(Field field) {
+            super(field);
+        }
+
+        public boolean[] getValues() {
+            return values;
+        }
+
+        public boolean get(int row) {
+            return values[row];
+        }
+
+        void append(boolean value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, capacity(values.length, size + 1));
+            }
+            values[size++] = value;
+        }
+
+        @Override
+        void appendValue(Object value) {
+            append(value != null && (Boolean) value);
+        }
+
+        @Override
+        void truncate(int size) {
+            this.size = size;
+        }
+    }
+
+
+    /**
+     * bytes of row are bytes[offsets[row], offsets[row + 1])
+     */
+    public static class StringColumn extends Column {
+        private final Charset charset;
+        private byte[]        bytes   = new byte[1024];
+        private int[]         offsets = new int[65];
+
+        StringColumn(Field field, Charset charset) {
+            super(field);
+            this.charset = charset;
+        }
+
+        public byte[] getBytes() {
+            return bytes;
+        }
+
+        public int[] getOffsets() {
+            return offsets;
+        }
+
+        public int getLength(int row) {
+            return offsets[row + 1] - offsets[row];
+        }
+
+        public String get(int row) {
+            return new String(bytes, offsets[row], offsets[row + 1] - offsets[row], charset);
+        }
+
+        void append(byte[] source, int offset, int length) {
+            int start = reserve(length);
+            System.arraycopy(source, offset, bytes, start, length);
+            commit(start + length);
+        }
+
+        /**
+         * append transcoded bytes of a range of tokenizer buffer
+         */
+        void append(BsvByteTokenizer tokenizer, int start, int end) {
+            int position = reserve(tokenizer.transcodedLength(start, end));
+            commit(position + tokenizer.transcodeTo(start, end, bytes, position));
+        }
+
+        @Override
+        void appendValue(Object value) {
+            byte[] encoded = value == null ? new byte[0] : ((String) value).getBytes(charset);
+            append(encoded, 0, encoded.length);
+        }
+
+        /**
+         * @return offset to write value of next row
+         */
+        private int reserve(int length) {
+            int start = offsets[size];
+            if (start + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, capacity(bytes.length, start + length));
+            }
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, capacity(offsets.length, size + 2));
+            }
+            return start;
+        }
+
+        private void commit(int end) {
+            offsets[++size] = end;
+        }
+
+        @Override
+        void truncate(int size) {
+            this.size = size;
+        }
+    }
+
+
+    /**
+     * items of row are items [offsets[row], offsets[row + 1])
+     */
+    public static class ListColumn extends Column {
+        private final StringColumn items;
+        private int[]              offsets = new int[65];
+
+        ListColumn(Field field, Charset charset) {
+            super(field);
+            this.items = new StringColumn(field, charset);
+        }
+
+        public int[] getOffsets() {
+            return offsets;
+        }
+
+        public StringColumn getItems() {
+            return items;
+        }
+
+        public int getLength(int row) {
+            return offsets[row + 1] - offsets[row];
+        }
+
+        /**
+         * close the row after its items are appended
+         */
+        void endRow() {
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, capacity(offsets.length, size + 2));
+            }
+            offsets[++size] = items.size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void appendValue(Object value) {
+            if (value != null) {
+                for (String item : (Iterable<String>) value) {
+                    items.appendValue(item);
+                }
+            }
+            endRow();
+        }
+
+        @Override
+        void truncate(int size) {
+            this.size = size;
+            items.truncate(offsets[size]);
+        }
+    }
+
+
+    /**
+     * entries of row are keys and values [offsets[row], offsets[row + 1])
+     */
+    public static class MapColumn extends Column {
+        private final StringColumn keys;
+        private final StringColumn values;
+        private int[]              offsets = new int[65];
+
+        MapColumn(Field field, Charset charset) {
+            super(field);
+            this.keys = new StringColumn(field, charset);
+            this.values = new StringColumn(field, charset);
+        }
+
+        public int[] getOffsets() {
+            return offsets;
+        }
+
+        public StringColumn getKeys() {
+            return keys;
+        }
+
+        public StringColumn getValues() {
+            return values;
+        }
+
+        public int getLength(int row) {
+            return offsets[row + 1] - offsets[row];
+        }
+
+        void endRow() {
+            if (size + 2 > offsets.length) {
+                offsets = Arrays.copyOf(offsets, capacity(offsets.length, size + 2));
+            }
+            offsets[++size] = keys.size;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        void appendValue(Object value) {
+            if (value != null) {
+                for (Entry<String, String> entry : ((Map<String, String>) value).entrySet()) {
+                    keys.appendValue(entry.getKey());
+                    values.appendValue(entry.getValue());
+                }
+            }
+            endRow();
+        }
+
+        @Override
+        void truncate(int size) {
+            this.size = size;
+            keys.truncate(offsets[size]);
+            values.truncate(offsets[size]);
+        }
+    }
+}
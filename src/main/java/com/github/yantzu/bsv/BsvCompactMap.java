@@ -0,0 +1,248 @@
+package com.github.yantzu.bsv;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Map of strings backed by parallel arrays of keys and values in insertion
+ * order. A small map is looked up by scanning its keys, a larger one through
+ * an index of positions with linear probing. There is no node per entry, so a
+ * map of a few pairs costs three arrays.
+ */
+class BsvCompactMap extends AbstractMap<String, String> {
+
+    //maps up to this size are not indexed
+    private static final int LINEAR_MAX = 8;
+
+    private String[]         keys;
+    private String[]         values;
+    private int              size;
+    //position + 1 of keys by hash, 0 for empty slot, null while map is small
+    private int[]            index;
+    private int              modCount;
+
+    private Set<Entry<String, String>> entrySet;
+
+
+    BsvCompactMap() {
+        this(4);
+    }
+
+    BsvCompactMap(int capacity) {
+        this.keys = new String[Math.max(capacity, 1)];
+        this.values = new String[keys.length];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @Override
+    public String get(Object key) {
+        int i = indexOf(key);
+        return i < 0 ? null : values[i];
+    }
+
+    @Override
+    public String put(String key, String value) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            String old = values[i];
+            values[i] = value;
+            return old;
+        }
+
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            values = Arrays.copyOf(values, size * 2);
+        }
+        keys[size] = key;
+        values[size] = value;
+        size++;
+        modCount++;
+        if (index == null ? size > LINEAR_MAX : size * 2 > index.length) {
+            buildIndex();
+        } else if (index != null) {
+            insert(size - 1);
+        }
+        return null;
+    }
+
+    @Override
+    public String remove(Object key) {
+        int i = indexOf(key);
+        if (i < 0) {
+            return null;
+        }
+        String old = values[i];
+        removeAt(i);
+        return old;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        Arrays.fill(values, 0, size, null);
+        size = 0;
+        index = null;
+        modCount++;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private int indexOf(Object key) {
+        if (index == null) {
+            for (int i = 0; i < size; i++) {
+                if (Objects.equals(key, keys[i])) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        int mask = index.length - 1;
+        for (int slot = hash(key) & mask; index[slot] != 0; slot = (slot + 1) & mask) {
+            int i = index[slot] - 1;
+            if (Objects.equals(key, keys[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int hash(Object key) {
+        int h = key == null ? 0 : key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * index with less than half of slots used, none if map is small
+     */
+    private void buildIndex() {
+        if (size <= LINEAR_MAX) {
+            index = null;
+            return;
+        }
+        index = new int[Integer.highestOneBit(size) << 2];
+        for (int i = 0; i < size; i++) {
+            insert(i);
+        }
+    }
+
+    private void insert(int i) {
+        int mask = index.length - 1;
+        int slot = hash(keys[i]) & mask;
+        while (index[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        index[slot] = i + 1;
+    }
+
+    /**
+     * keep insertion order, positions after i move down so index is rebuilt
+     */
+    private void removeAt(int i) {
+        System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+        System.arraycopy(values, i + 1, values, i, size - i - 1);
+        size--;
+        keys[size] = null;
+        values[size] = null;
+        modCount++;
+        buildIndex();
+    }
+
+
+    private class EntrySet extends AbstractSet<Entry<String, String>> {
+        @Override
+        public Iterator<Entry<String, String>> iterator() {
+            return new EntryIterator();
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public void clear() {
+            BsvCompactMap.this.clear();
+        }
+    }
+
+    private class EntryIterator implements Iterator<Entry<String, String>> {
+        private int next;
+        private int last             = -1;
+        private int expectedModCount = modCount;
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public Entry<String, String> next() {
+            checkModCount();
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return new CompactEntry(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkModCount();
+            removeAt(last);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkModCount() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+    /**
+     * entry writing value through to map
+     */
+    private class CompactEntry extends SimpleEntry<String, String> {
+        private static final long serialVersionUID = 1L;
+
+        private final int         position;
+
+        CompactEntry(int position) {
+            super(keys[position], values[position]);
+            this.position = position;
+        }
+
+        @Override
+        public String setValue(String value) {
+            values[position] = value;
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Serializer shared by many threads. A calling thread encodes its record into
+ * an encoder of its own, then claims a slot of a ring by a single atomic
+ * increment, copies the record into the slot and publishes it. A dedicated
+ * writer thread takes published records in order of claim and writes them to
+ * output stream, so a record is never interleaved with another, and threads
+ * only contend on the increment.
+ * <p>
+ * A thread waits when all slots are published and not yet taken. Records of
+ * one thread are written in order of its calls, {@link #flush()} and
+ * {@link #close()} wait until the records published before them are written.
+ * A failure of output stream is thrown by the next call after it, records
+ * published since are lost. Close once producer threads are done, a call
+ * racing with close either is written or throws, its record is never lost
+ * silently.
+ * <p>
+ * Charset has to encode a record without state of records before it, such as
+ * UTF-8, since each thread encodes with its own encoder.
+ */
+public class BsvConcurrentSerializer implements BsvSerializer {
+
+    protected static final int DEFAULT_RING_SIZE = 1024;
+
+    //bytes of records collected by writer thread before writing them to output stream
+    private static final int   WRITE_SIZE        = 64 * 1024;
+    //a sequence per cache line, so producers of adjacent slots do not share one
+    private static final int   PADDING           = 8;
+    private static final int   SPINS             = 100;
+
+    private static final AtomicInteger SERIALIZERS = new AtomicInteger();
+
+    private final OutputStream  outputStream;
+    private final ThreadLocal<BsvRecordEncoder> encoders;
+    private final Slot[]        slots;
+    //slot of position p is free for p while its sequence is p, published while it is p + 1
+    private final AtomicLongArray sequences;
+    private final int           mask;
+    //next position to claim
+    private final AtomicLong    tail             = new AtomicLong();
+    private final Thread        writer;
+    private volatile boolean    writerParked;
+    private volatile boolean    writerDone;
+
+    private volatile IOException failure;
+    private volatile boolean    closed;
+    private final AtomicLong    waitNanos        = new AtomicLong();
+
+
+    protected BsvConcurrentSerializer(final BsvContext context, OutputStream outputStream,
+            final String majorVersion, final char minorVersion, final Charset charset, int ringSize)
+            throws IOException, BsvException {
+        if (ringSize <= 0 || Integer.bitCount(ringSize) != 1) {
+            throw new IllegalArgumentException("Ring size " + ringSize + " is not a power of two");
+        }
+        //fails early on unknown version
+        context.getSchemas(majorVersion, minorVersion);
+        outputStream.write(BsvSerializerImpl.header(context, majorVersion, minorVersion));
+
+        this.outputStream = outputStream;
+        this.encoders = new ThreadLocal<BsvRecordEncoder>() {
+            @Override
+            protected BsvRecordEncoder initialValue() {
+                return new BsvRecordEncoder(context, majorVersion, minorVersion, charset);
+            }
+        };
+        this.slots = new Slot[ringSize];
+        this.sequences = new AtomicLongArray(ringSize * PADDING);
+        for (int i = 0; i < ringSize; i++) {
+            slots[i] = new Slot();
+            sequences.set(i * PADDING, i);
+        }
+        this.mask = ringSize - 1;
+
+        this.writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeRecords();
+            }
+        }, "bsv-concurrent-serializer-" + SERIALIZERS.incrementAndGet());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * thread safe, a record failing to serialize is not written
+     */
+    @Override
+    public void next(BsvObject bean) throws IOException, BsvException {
+        checkOpen();
+        BsvRecordEncoder encoder = encoders.get();
+        BsvSchema schema = encoder.schemaOf(bean);
+        try {
+            encoder.encode(schema, bean);
+        } catch (RuntimeException runtimeException) {
+            throw new BsvException(runtimeException);
+        }
+
+        long position = tail.getAndIncrement();
+        Slot slot = claim(position);
+        checkClaimed(position);
+        slot.set(encoder.getBytes(), encoder.getLength());
+        encoder.clear();
+        publish(position);
+    }
+
+    /**
+     * wait until slot of position is free
+     */
+    private Slot claim(long position) throws IOException {
+        int index = (int) position & mask;
+        if (sequences.get(index * PADDING) != position) {
+            long start = System.nanoTime();
+            int spins = 0;
+            while (sequences.get(index * PADDING) != position) {
+                if (writerDone) {
+                    throw new IOException("Serializer is closed");
+                }
+                if (++spins < SPINS) {
+                    continue;
+                }
+                if (spins < SPINS * 2) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(10000);
+                }
+            }
+            waitNanos.addAndGet(System.nanoTime() - start);
+        }
+        return slots[index];
+    }
+
+    private void publish(long position) {
+        sequences.set(((int) position & mask) * PADDING, position + 1);
+        if (writerParked) {
+            LockSupport.unpark(writer);
+        }
+    }
+
+    /**
+     * wait until records published before are written and output stream is flushed
+     */
+    @Override
+    public void flush() throws IOException, BsvException {
+        checkOpen();
+        awaitFlushed(false);
+    }
+
+    private void awaitFlushed(boolean last) throws IOException {
+        CountDownLatch done = new CountDownLatch(1);
+        long position = tail.getAndIncrement();
+        Slot slot = claim(position);
+        if (!last) {
+            checkClaimed(position);
+        }
+        slot.done = done;
+        slot.last = last;
+        publish(position);
+        try {
+            done.await();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for flush");
+        }
+        if (failure != null) {
+            throw new IOException("Failed to write records", failure);
+        }
+    }
+
+    /**
+     * a slot claimed after close may be past the last one taken by writer
+     * thread, so it is published empty and the call fails
+     */
+    private void checkClaimed(long position) throws IOException {
+        if (closed) {
+            publish(position);
+            throw new IOException("Serializer is closed");
+        }
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Serializer is closed");
+        }
+        if (failure != null) {
+            throw new IOException("Failed to write records", failure);
+        }
+    }
+
+    /**
+     * loop of writer thread, until a flush request of close
+     */
+    private void writeRecords() {
+        byte[] buffer = new byte[WRITE_SIZE];
+        int length = 0;
+        long position = 0;
+        try {
+            while (true) {
+                int index = (int) position & mask;
+                if (sequences.get(index * PADDING) != position + 1) {
+                    awaitPublished(index, position + 1);
+                    continue;
+                }
+
+                Slot slot = slots[index];
+                if (slot.done == null) {
+                    if (length + slot.length > buffer.length) {
+                        length = write(buffer, length);
+                    }
+                    if (slot.length > buffer.length) {
+                        write(slot.bytes, slot.length);
+                    } else {
+                        System.arraycopy(slot.bytes, 0, buffer, length, slot.length);
+                        length += slot.length;
+                    }
+                    slot.length = 0;
+                    sequences.set(index * PADDING, position + slots.length);
+                    position++;
+                    continue;
+                }
+
+                CountDownLatch done = slot.done;
+                boolean last = slot.last;
+                slot.done = null;
+                slot.last = false;
+                sequences.set(index * PADDING, position + slots.length);
+                position++;
+
+                length = write(buffer, length);
+                if (failure == null) {
+                    try {
+                        outputStream.flush();
+                    } catch (IOException ioException) {
+                        failure = ioException;
+                    }
+                }
+                if (last) {
+                    try {
+                        outputStream.close();
+                    } catch (IOException ioException) {
+                        if (failure == null) {
+                            failure = ioException;
+                        }
+                    }
+                }
+                done.countDown();
+                if (last) {
+                    return;
+                }
+            }
+        } finally {
+            writerDone = true;
+        }
+    }
+
+    private void awaitPublished(int index, long sequence) {
+        writerParked = true;
+        //a record published before writerParked is set is seen here, after it the producer unparks
+        if (sequences.get(index * PADDING) != sequence) {
+            LockSupport.parkNanos(this, 1000000);
+        }
+        writerParked = false;
+    }
+
+    /**
+     * @return 0, bytes are written or dropped after a failure
+     */
+    private int write(byte[] bytes, int length) {
+        if (failure == null && length > 0) {
+            try {
+                outputStream.write(bytes, 0, length);
+            } catch (IOException ioException) {
+                failure = ioException;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * write remaining records, then flush and close output stream
+     */
+    @Override
+    public synchronized void close() throws IOException, BsvException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        awaitFlushed(true);
+    }
+
+    /**
+     * @return nanoseconds callers waited for a free slot
+     */
+    public long getWaitNanos() {
+        return waitNanos.get();
+    }
+
+
+    private static final class Slot {
+        private byte[]         bytes            = new byte[256];
+        private int            length;
+        //not null for a flush request
+        private CountDownLatch done;
+        private boolean        last;
+
+        void set(byte[] source, int count) {
+            if (count > bytes.length) {
+                bytes = new byte[Math.max(bytes.length * 2, count)];
+            }
+            System.arraycopy(source, 0, bytes, 0, count);
+            length = count;
+        }
+    }
+}
@@ -1,13 +1,22 @@
 package com.github.yantzu.bsv;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.Charset;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Spliterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import java.util.zip.Deflater;
 
 /**
  * BSV stands for Binary-Separated Values
@@ -24,18 +33,36 @@ public class BsvContext {
     private char                                   itemsDelimiter;
     private char                                   keyValueDelimiter;
     private char                                   lineDelimiter;
+    private BsvDeserializer.Engine                 deserializerEngine;
+    private BsvBadRecordListener                   badRecordListener;
+    private BsvMetricsListener                     metricsListener;
+    private boolean                                binaryNumbers;
+    private boolean                                reuseObjects;
+    private boolean                                lazyCollections;
+    private Map<String, BsvBlockCodec>             blockCodecs;
 
     
     private Map<Character, Character> transcodesSer = new HashMap<Character, Character>();
 	private Map<Character, Character> transcodesDeser = new HashMap<Character, Character>();
+	//transcodesDeser as ascii table for byte engine, null if any transcoding is not ascii
+	private byte[] byteTranscodesDeser;
+	//transcodes as tables indexed by char, identity up to the largest transcoded char
+	private char[] charTranscodesSer;
+	private char[] charTranscodesDeser;
 	
     
 	protected BsvContext(List<BsvSchema> schemas, char fieldsDelimiter, char itemsDelimiter, char keyValueDelimiter,
-			char lineDelimiter, Map<Character, Character> transcodes) {
+			char lineDelimiter, Map<Character, Character> transcodes, BsvDeserializer.Engine deserializerEngine,
+			boolean generatedAccessors, BsvBadRecordListener badRecordListener, boolean reuseObjects,
+			boolean lazyCollections, Map<String, BsvBlockCodec> blockCodecs, List<BsvCodec> codecs,
+			BsvMetricsListener metricsListener, boolean binaryNumbers) {
         super();
         
         this.schemas = new HashMap<String, Map<Character, BsvSchema>>();
         for(BsvSchema schema : schemas) {
+            if (schema instanceof BsvSchemaImpl) {
+                ((BsvSchemaImpl) schema).buildBeanAccessor(generatedAccessors, codecs);
+            }
             String version = getFullVersion(schema.getMajorVersion(), schema.getMinorVersion());
             Map<Character, BsvSchema> schemasOfVersion = this.schemas.get(version);
             if(schemasOfVersion == null) {
@@ -53,8 +80,50 @@ public class BsvContext {
 		for (Entry<Character, Character> transcode : transcodes.entrySet()) {
 			this.transcodesDeser.put(transcode.getValue(), transcode.getKey());
 		}
+		this.byteTranscodesDeser = buildByteTranscodes(this.transcodesDeser);
+		this.charTranscodesSer = buildCharTranscodes(this.transcodesSer);
+		this.charTranscodesDeser = buildCharTranscodes(this.transcodesDeser);
+		this.deserializerEngine = deserializerEngine;
+		this.badRecordListener = badRecordListener;
+		this.metricsListener = metricsListener;
+		this.binaryNumbers = binaryNumbers;
+		if (binaryNumbers) {
+			BsvBinaryNumbers.check(this);
+		}
+		this.reuseObjects = reuseObjects;
+		this.lazyCollections = lazyCollections;
+		this.blockCodecs = new HashMap<String, BsvBlockCodec>(blockCodecs);
     }
 
+	private static byte[] buildByteTranscodes(Map<Character, Character> transcodes) {
+		byte[] table = new byte[0x80];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (byte) i;
+		}
+		for (Entry<Character, Character> transcode : transcodes.entrySet()) {
+			if (transcode.getKey() >= 0x80 || transcode.getValue() >= 0x80) {
+				return null;
+			}
+			table[transcode.getKey()] = (byte) transcode.getValue().charValue();
+		}
+		return table;
+	}
+
+	private static char[] buildCharTranscodes(Map<Character, Character> transcodes) {
+		int length = 0;
+		for (Character from : transcodes.keySet()) {
+			length = Math.max(length, from + 1);
+		}
+		char[] table = new char[length];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = (char) i;
+		}
+		for (Entry<Character, Character> transcode : transcodes.entrySet()) {
+			table[transcode.getKey()] = transcode.getValue();
+		}
+		return table;
+	}
+
     protected char getFieldsDelimiter() {
         return fieldsDelimiter;
     }
@@ -78,6 +147,67 @@ public class BsvContext {
 	protected Character transcodingDeser(Character from) {
 		return transcodesDeser.get(from);
 	}
+
+	protected boolean hasTranscodes() {
+		return !transcodesDeser.isEmpty();
+	}
+
+	/**
+	 * listener of bad records skipped by deserializers, null if none
+	 */
+	public BsvBadRecordListener getBadRecordListener() {
+		return badRecordListener;
+	}
+
+	/**
+	 * listener of records read and written, null if metrics are disabled
+	 */
+	public BsvMetricsListener getMetricsListener() {
+		return metricsListener;
+	}
+
+	/**
+	 * whether serializers write numbers as binary, deserializers follow header of stream
+	 */
+	protected boolean isBinaryNumbers() {
+		return binaryNumbers;
+	}
+
+	/**
+	 * whether {@link BsvDeserializer#next()} refills the record it returned last time
+	 */
+	protected boolean isReuseObjects() {
+		return reuseObjects;
+	}
+
+	/**
+	 * whether byte engine decodes LIST and MAP values on first access
+	 */
+	protected boolean isLazyCollections() {
+		return lazyCollections;
+	}
+
+	/**
+	 * @return codec registered by name, null if none
+	 */
+	protected BsvBlockCodec getBlockCodec(String name) {
+		return blockCodecs.get(name);
+	}
+
+	protected byte[] getByteTranscodesDeser() {
+		return byteTranscodesDeser;
+	}
+
+	/**
+	 * a char not in table is not transcoded
+	 */
+	protected char[] getCharTranscodesSer() {
+		return charTranscodesSer;
+	}
+
+	protected char[] getCharTranscodesDeser() {
+		return charTranscodesDeser;
+	}
 	
     protected Map<Character, BsvSchema> getSchemas(String majorVersion, char minorVersion) {
         Map<Character, BsvSchema> result = schemas.get(getFullVersion(majorVersion, minorVersion));
@@ -99,13 +229,275 @@ public class BsvContext {
 	}
     
 	
+	/**
+	 * serializer encoding records into direct buffers written to channel, see {@link BsvChannelSerializer}
+	 */
+	public BsvChannelSerializer createChannelSerializer(WritableByteChannel channel, String majorVersion,
+			char minorVersion) throws IOException, BsvException {
+		return createChannelSerializer(channel, majorVersion, minorVersion, DEFAULT_CHARSET);
+	}
+
+	public BsvChannelSerializer createChannelSerializer(WritableByteChannel channel, String majorVersion,
+			char minorVersion, Charset charset) throws IOException, BsvException {
+		return new BsvChannelSerializer(this, channel, majorVersion, minorVersion, charset);
+	}
+
+	/**
+	 * serializer writing on its own I/O thread, with 4 buffers of 256KB, blocking when all are full
+	 */
+	public BsvAsyncSerializer createAsyncSerializer(OutputStream outputStream, String majorVersion,
+			char minorVersion) throws IOException, BsvException {
+		return createAsyncSerializer(outputStream, majorVersion, minorVersion, DEFAULT_CHARSET,
+				BsvAsyncSerializer.DEFAULT_BUFFER_COUNT, BsvAsyncSerializer.DEFAULT_BUFFER_SIZE,
+				BsvAsyncSerializer.FullPolicy.BLOCK);
+	}
+
+	/**
+	 * @param bufferCount buffers encoded or waiting to be written, at least 2
+	 * @param bufferSize bytes after which a buffer is handed to I/O thread
+	 */
+	public BsvAsyncSerializer createAsyncSerializer(OutputStream outputStream, String majorVersion,
+			char minorVersion, Charset charset, int bufferCount, int bufferSize,
+			BsvAsyncSerializer.FullPolicy fullPolicy) throws IOException, BsvException {
+		return new BsvAsyncSerializer(this, outputStream, majorVersion, minorVersion, charset, bufferCount,
+				bufferSize, fullPolicy);
+	}
+
+	/**
+	 * serializer shared by threads, with a ring of 1024 records written by a writer thread
+	 */
+	public BsvConcurrentSerializer createConcurrentSerializer(OutputStream outputStream, String majorVersion,
+			char minorVersion) throws IOException, BsvException {
+		return createConcurrentSerializer(outputStream, majorVersion, minorVersion, DEFAULT_CHARSET,
+				BsvConcurrentSerializer.DEFAULT_RING_SIZE);
+	}
+
+	/**
+	 * @param charset a charset encoding each record on its own, such as UTF-8
+	 * @param ringSize records published and not yet written at most, a power of two
+	 */
+	public BsvConcurrentSerializer createConcurrentSerializer(OutputStream outputStream, String majorVersion,
+			char minorVersion, Charset charset, int ringSize) throws IOException, BsvException {
+		return new BsvConcurrentSerializer(this, outputStream, majorVersion, minorVersion, charset, ringSize);
+	}
+
+	/**
+	 * serializer writing a gzip stream compressed by several threads, see {@link BsvParallelGzipOutputStream}
+	 * @param workers count of compressor threads
+	 */
+	public BsvSerializer createGzipSerializer(OutputStream outputStream, String majorVersion, char minorVersion,
+			int workers) throws IOException, BsvException {
+		return new BsvSerializerImpl(this, new BsvParallelGzipOutputStream(outputStream, workers,
+				Deflater.DEFAULT_COMPRESSION), majorVersion, minorVersion);
+	}
+
+	/**
+	 * @param workers executor of compressor tasks, not shut down by serializer
+	 * @param level compression level of {@link Deflater}
+	 */
+	public BsvSerializer createGzipSerializer(OutputStream outputStream, String majorVersion, char minorVersion,
+			Charset charset, ExecutorService workers, int level) throws IOException, BsvException {
+		return new BsvSerializerImpl(this, new BsvParallelGzipOutputStream(outputStream, workers, level),
+				majorVersion, minorVersion, charset);
+	}
+
+	/**
+	 * serializer of a block container compressed by deflate
+	 */
+	public BsvBlockSerializer createBlockSerializer(OutputStream outputStream, String majorVersion,
+			char minorVersion) throws IOException, BsvException {
+		return createBlockSerializer(outputStream, majorVersion, minorVersion, DEFAULT_CHARSET,
+				getBlockCodec(BsvDeflateCodec.NAME));
+	}
+
+	/**
+	 * @param codec codec of blocks, which has to be registered to context of readers
+	 */
+	public BsvBlockSerializer createBlockSerializer(OutputStream outputStream, String majorVersion,
+			char minorVersion, Charset charset, BsvBlockCodec codec) throws IOException, BsvException {
+		return new BsvBlockSerializer(this, outputStream, majorVersion, minorVersion, charset, codec);
+	}
+    
+	
     public BsvDeserializer createDeserializer(InputStream inputStream) throws IOException, BsvException {
-        return new BsvDeserializerImpl(this, inputStream);
+        return createDeserializer(inputStream, DEFAULT_CHARSET, deserializerEngine);
     }
 
     public BsvDeserializer createDeserializer(InputStream inputStream, Charset charset)
             throws IOException, BsvException {
-        return new BsvDeserializerImpl(this, inputStream, charset);
+        return createDeserializer(inputStream, charset, deserializerEngine);
+    }
+
+    public BsvDeserializer createDeserializer(InputStream inputStream, BsvDeserializer.Engine engine)
+            throws IOException, BsvException {
+        return createDeserializer(inputStream, DEFAULT_CHARSET, engine);
+    }
+
+    /**
+     * @param engine BYTE engine requires a charset which encodes delimiters in single byte, such as UTF-8
+     */
+    public BsvDeserializer createDeserializer(InputStream inputStream, Charset charset,
+            BsvDeserializer.Engine engine) throws IOException, BsvException {
+        return createDeserializer(inputStream, charset, engine, null);
+    }
+
+    public BsvDeserializer createDeserializer(InputStream inputStream, BsvProjection projection)
+            throws IOException, BsvException {
+        return createDeserializer(inputStream, DEFAULT_CHARSET, deserializerEngine, projection);
+    }
+
+    /**
+     * @param projection fields to materialize, null for all fields
+     */
+    public BsvDeserializer createDeserializer(InputStream inputStream, Charset charset,
+            BsvDeserializer.Engine engine, BsvProjection projection) throws IOException, BsvException {
+        if (engine == BsvDeserializer.Engine.BYTE) {
+            return new BsvByteDeserializerImpl(this, inputStream, charset, projection, null);
+        } else {
+            return new BsvDeserializerImpl(this, inputStream, charset, projection);
+        }
+    }
+
+    /**
+     * filter is evaluated on raw bytes, so the deserializer is always of BYTE engine
+     * @param projection fields to materialize, null for all fields
+     * @param filter records to materialize, null for all records
+     */
+    public BsvDeserializer createDeserializer(InputStream inputStream, BsvProjection projection,
+            BsvFilter filter) throws IOException, BsvException {
+        return createDeserializer(inputStream, DEFAULT_CHARSET, projection, filter);
+    }
+
+    public BsvDeserializer createDeserializer(InputStream inputStream, Charset charset,
+            BsvProjection projection, BsvFilter filter) throws IOException, BsvException {
+        return new BsvByteDeserializerImpl(this, inputStream, charset, projection, filter);
+    }
+
+    public BsvRecordView createRecordView(InputStream inputStream) throws IOException, BsvException {
+        return new BsvRecordView(this, inputStream, DEFAULT_CHARSET);
+    }
+
+    public BsvRecordView createRecordView(InputStream inputStream, Charset charset)
+            throws IOException, BsvException {
+        return new BsvRecordView(this, inputStream, charset);
+    }
+
+    public BsvFileReader createFileReader(File file) throws IOException, BsvException {
+        return createFileReader(file, DEFAULT_CHARSET, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BsvFileReader createFileReader(File file, Charset charset, int parallelism)
+            throws IOException, BsvException {
+        return new BsvFileReader(this, file, charset, parallelism);
+    }
+
+    public BsvFileReader createFileReader(File file, Charset charset, ForkJoinPool pool)
+            throws IOException, BsvException {
+        return new BsvFileReader(this, file, charset, pool);
+    }
+
+    public BsvBlockDeserializer createBlockDeserializer(InputStream inputStream) throws IOException,
+            BsvException {
+        return createBlockDeserializer(inputStream, DEFAULT_CHARSET);
+    }
+
+    public BsvBlockDeserializer createBlockDeserializer(InputStream inputStream, Charset charset)
+            throws IOException, BsvException {
+        return new BsvBlockDeserializer(this, inputStream, charset);
+    }
+
+    public BsvBlockFileReader createBlockFileReader(File file) throws IOException, BsvException {
+        return createBlockFileReader(file, DEFAULT_CHARSET, Runtime.getRuntime().availableProcessors());
+    }
+
+    public BsvBlockFileReader createBlockFileReader(File file, Charset charset, int parallelism)
+            throws IOException, BsvException {
+        return new BsvBlockFileReader(this, file, charset, parallelism);
+    }
+
+    public BsvBlockFileReader createBlockFileReader(File file, Charset charset, ForkJoinPool pool)
+            throws IOException, BsvException {
+        return new BsvBlockFileReader(this, file, charset, pool);
+    }
+
+    /**
+     * @param workers count of parser threads
+     * @param ordered true to read records in input order, false to read them as soon as parsed
+     */
+    public BsvPipelinedDeserializer createPipelinedDeserializer(InputStream inputStream, int workers,
+            boolean ordered) throws IOException, BsvException {
+        return createPipelinedDeserializer(inputStream, DEFAULT_CHARSET, workers, ordered);
+    }
+
+    public BsvPipelinedDeserializer createPipelinedDeserializer(InputStream inputStream, Charset charset,
+            int workers, boolean ordered) throws IOException, BsvException {
+        return new BsvPipelinedDeserializer(this, inputStream, charset, workers, ordered);
+    }
+
+    /**
+     * @param workers executor of parser tasks, not shut down by deserializer
+     */
+    public BsvPipelinedDeserializer createPipelinedDeserializer(InputStream inputStream, Charset charset,
+            ExecutorService workers, boolean ordered) throws IOException, BsvException {
+        return new BsvPipelinedDeserializer(this, inputStream, charset, workers, ordered);
+    }
+
+    /**
+     * sequential stream over records of input stream, closing the stream closes input
+     */
+    public Stream<BsvObject> stream(InputStream inputStream, BsvBadRecordPolicy policy) throws IOException,
+            BsvException {
+        return stream(createDeserializer(inputStream), policy);
+    }
+
+    public Stream<BsvObject> stream(InputStream inputStream, Charset charset, BsvBadRecordPolicy policy)
+            throws IOException, BsvException {
+        return stream(createDeserializer(inputStream, charset), policy);
+    }
+
+    /**
+     * stream over records of any deserializer, closing the stream closes deserializer
+     */
+    public Stream<BsvObject> stream(BsvDeserializer deserializer, BsvBadRecordPolicy policy) {
+        BsvDeserializerSpliterator spliterator = new BsvDeserializerSpliterator(deserializer, policy);
+        return StreamSupport.stream(spliterator, false).onClose(spliterator.closer());
+    }
+
+    /**
+     * spliterator over records of any deserializer, it never splits
+     */
+    public Spliterator<BsvObject> spliterator(BsvDeserializer deserializer, BsvBadRecordPolicy policy) {
+        return new BsvDeserializerSpliterator(deserializer, policy);
+    }
+
+    /**
+     * sequential stream over records of file, which splits at line boundaries
+     * when made parallel. Closing the stream closes file.
+     */
+    public Stream<BsvObject> stream(File file, BsvBadRecordPolicy policy) throws IOException, BsvException {
+        return stream(file, DEFAULT_CHARSET, policy);
+    }
+
+    public Stream<BsvObject> stream(File file, Charset charset, BsvBadRecordPolicy policy) throws IOException,
+            BsvException {
+        final BsvFileReader reader = createFileReader(file, charset, ForkJoinPool.commonPool());
+        Spliterator<BsvObject> spliterator;
+        try {
+            spliterator = reader.spliterator(policy);
+        } catch (IOException ioException) {
+            reader.close();
+            throw ioException;
+        }
+        return StreamSupport.stream(spliterator, false).onClose(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    reader.close();
+                } catch (IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                }
+            }
+        });
     }
 
     private String getFullVersion(String majorVersion, char minorVersion) {
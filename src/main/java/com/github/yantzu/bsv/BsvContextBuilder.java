@@ -1,10 +1,12 @@
 package com.github.yantzu.bsv;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.ServiceLoader;
 
 /**
  * BSV stands for Binary-Separated Values
@@ -19,9 +21,20 @@ public class BsvContextBuilder {
     private char         keyValueSeperator = 0x03;
     private char         lineSeperator     = '\n';
     
+    private BsvDeserializer.Engine deserializerEngine = BsvDeserializer.Engine.CHAR;
+    private boolean      generatedAccessors = true;
+    private BsvBadRecordListener badRecordListener = new BsvBadRecordStats();
+    private BsvMetricsListener metricsListener;
+    private boolean      binaryNumbers      = false;
+    private boolean      reuseObjects       = false;
+    private boolean      lazyCollections    = false;
+    private Map<String, BsvBlockCodec> blockCodecs = new HashMap<String, BsvBlockCodec>();
+    private List<BsvCodec> codecs = new ArrayList<BsvCodec>();
+    
     private Map<Character, Character> transcodes = new HashMap<Character, Character>();
     
     public BsvContextBuilder() {
+        blockCodec(new BsvDeflateCodec());
     }
 
     public BsvContextBuilder yamlSchema(String path) throws IOException {
@@ -67,9 +80,102 @@ public class BsvContextBuilder {
 		return this;
 	}
 	
+	/**
+	 * engine used by {@link BsvContext#createDeserializer(InputStream)}, CHAR by default
+	 */
+	public BsvContextBuilder deserializerEngine(BsvDeserializer.Engine deserializerEngine) {
+		this.deserializerEngine = deserializerEngine;
+		return this;
+	}
+	
+	/**
+	 * true by default, false to access beans by reflection. Generated accessors
+	 * are codecs generated at build time, found by {@link ServiceLoader} or
+	 * registered by {@link #codec(BsvCodec)}, and accessors generated at runtime
+	 * for the other schemas.
+	 */
+	public BsvContextBuilder generatedAccessors(boolean generatedAccessors) {
+		this.generatedAccessors = generatedAccessors;
+		return this;
+	}
+	
+	/**
+	 * a {@link BsvBadRecordStats} by default, null to ignore bad records
+	 */
+	public BsvContextBuilder badRecordListener(BsvBadRecordListener badRecordListener) {
+		this.badRecordListener = badRecordListener;
+		return this;
+	}
+	
+	/**
+	 * null by default to collect no metrics, a {@link BsvMetrics} to count
+	 * records, bytes and errors and to expose them by JMX
+	 */
+	public BsvContextBuilder metricsListener(BsvMetricsListener metricsListener) {
+		this.metricsListener = metricsListener;
+		return this;
+	}
+	
+	/**
+	 * false by default, true to let serializers write INTEGER, LONG, FLOAT and
+	 * DOUBLE values as binary varints of printable ascii chars and flag it in
+	 * stream header. Deserializers read either kind of stream by its header.
+	 * Delimiters and transcoded chars must then be out of 0x20-0x7F.
+	 */
+	public BsvContextBuilder binaryNumbers(boolean binaryNumbers) {
+		this.binaryNumbers = binaryNumbers;
+		return this;
+	}
+	
+	/**
+	 * false by default, true to let {@link BsvDeserializer#next()} refill the
+	 * record it returned last time. A record is then only valid until the next
+	 * call, which suits consumers processing and dropping each record. Fields
+	 * not selected by a projection keep values of the previous record.
+	 */
+	public BsvContextBuilder reuseObjects(boolean reuseObjects) {
+		this.reuseObjects = reuseObjects;
+		return this;
+	}
+	
+	/**
+	 * false by default, true to let byte engine return LIST and MAP values which
+	 * keep raw bytes of their field and decode them on first access. Items are
+	 * then not validated when a record is read.
+	 */
+	public BsvContextBuilder lazyCollections(boolean lazyCollections) {
+		this.lazyCollections = lazyCollections;
+		return this;
+	}
+	
+	/**
+	 * register a codec of block containers by its name, deflate is registered by default
+	 */
+	public BsvContextBuilder blockCodec(BsvBlockCodec blockCodec) {
+		this.blockCodecs.put(blockCodec.getName(), blockCodec);
+		return this;
+	}
+	
+	/**
+	 * register a codec generated by {@link BsvCodecGenerator}, which is preferred
+	 * to a codec of the same schema found by {@link ServiceLoader}
+	 */
+	public BsvContextBuilder codec(BsvCodec codec) {
+		this.codecs.add(codec);
+		return this;
+	}
+	
     
     public BsvContext build() {
+        List<BsvCodec> allCodecs = new ArrayList<BsvCodec>(codecs);
+        if (generatedAccessors) {
+            for (BsvCodec codec : ServiceLoader.load(BsvCodec.class)) {
+                allCodecs.add(codec);
+            }
+        }
         return new BsvContext(schemas, fieldsSeperator, itemsSeperator, keyValueSeperator,
-                lineSeperator, transcodes);
+                lineSeperator, transcodes, deserializerEngine, generatedAccessors, badRecordListener,
+                reuseObjects, lazyCollections, blockCodecs, allCodecs, metricsListener,
+                binaryNumbers);
     }
 }
@@ -0,0 +1,80 @@
+package com.github.yantzu.bsv;
+
+import java.util.zip.Checksum;
+
+/**
+ * CRC-32C (Castagnoli) in pure Java, as java.util.zip.CRC32C needs Java 9.
+ * Eight bytes are folded per step through eight lookup tables.
+ */
+class BsvCrc32c implements Checksum {
+
+    private static final int     POLYNOMIAL = 0x82F63B78;
+    //TABLES[k][n] is crc of byte n followed by k zero bytes
+    private static final int[][] TABLES     = new int[8][256];
+
+    static {
+        for (int n = 0; n < 256; n++) {
+            int crc = n;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLES[0][n] = crc;
+        }
+        for (int n = 0; n < 256; n++) {
+            int crc = TABLES[0][n];
+            for (int k = 1; k < 8; k++) {
+                crc = TABLES[0][crc & 0xFF] ^ (crc >>> 8);
+                TABLES[k][n] = crc;
+            }
+        }
+    }
+
+    private int crc = 0xFFFFFFFF;
+
+
+    static int compute(byte[] bytes, int offset, int length) {
+        BsvCrc32c crc32c = new BsvCrc32c();
+        crc32c.update(bytes, offset, length);
+        return (int) crc32c.getValue();
+    }
+
+    @Override
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLES[0][(crc ^ b) & 0xFF];
+    }
+
+    @Override
+    public void update(byte[] bytes, int offset, int length) {
+        int[] t0 = TABLES[0];
+        int[] t1 = TABLES[1];
+        int[] t2 = TABLES[2];
+        int[] t3 = TABLES[3];
+        int[] t4 = TABLES[4];
+        int[] t5 = TABLES[5];
+        int[] t6 = TABLES[6];
+        int[] t7 = TABLES[7];
+        int c = crc;
+        int i = offset;
+        for (int end = offset + length - 7; i < end; i += 8) {
+            int low = c ^ ((bytes[i] & 0xFF) | (bytes[i + 1] & 0xFF) << 8 | (bytes[i + 2] & 0xFF) << 16
+                    | (bytes[i + 3] & 0xFF) << 24);
+            c = t7[low & 0xFF] ^ t6[(low >>> 8) & 0xFF] ^ t5[(low >>> 16) & 0xFF] ^ t4[low >>> 24]
+                    ^ t3[bytes[i + 4] & 0xFF] ^ t2[bytes[i + 5] & 0xFF] ^ t1[bytes[i + 6] & 0xFF]
+                    ^ t0[bytes[i + 7] & 0xFF];
+        }
+        for (int end = offset + length; i < end; i++) {
+            c = (c >>> 8) ^ t0[(c ^ bytes[i]) & 0xFF];
+        }
+        crc = c;
+    }
+
+    @Override
+    public long getValue() {
+        return ~crc & 0xFFFFFFFFL;
+    }
+
+    @Override
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
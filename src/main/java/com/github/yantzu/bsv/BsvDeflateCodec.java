@@ -0,0 +1,80 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Raw DEFLATE of java.util.zip, the default codec of block containers
+ */
+public class BsvDeflateCodec implements BsvBlockCodec {
+
+    public static final String NAME = "deflate";
+
+    private final int          level;
+
+
+    public BsvDeflateCodec() {
+        this(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @param level compression level of {@link Deflater}
+     */
+    public BsvDeflateCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] compress(byte[] data, int offset, int length) throws IOException {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data, offset, length);
+            deflater.finish();
+            byte[] compressed = new byte[Math.max(64, length / 2)];
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                if (compressedLength == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                compressedLength += deflater.deflate(compressed, compressedLength,
+                        compressed.length - compressedLength);
+            }
+            return Arrays.copyOf(compressed, compressedLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] data, int offset, int length, int uncompressedLength) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] uncompressed = new byte[uncompressedLength];
+            int inflated = 0;
+            while (inflated < uncompressedLength) {
+                int read = inflater.inflate(uncompressed, inflated, uncompressedLength - inflated);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += read;
+            }
+            if (inflated != uncompressedLength) {
+                throw new IOException("Inflated " + inflated + " bytes, expected " + uncompressedLength);
+            }
+            return uncompressed;
+        } catch (DataFormatException dataFormatException) {
+            throw new IOException("Invalid deflate data", dataFormatException);
+        } finally {
+            inflater.end();
+        }
+    }
+}
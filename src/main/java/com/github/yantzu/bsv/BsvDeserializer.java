@@ -6,5 +6,41 @@ public interface BsvDeserializer {
 
 	BsvObject next() throws IOException, BsvException;
 
+	/**
+	 * fill reuse instead of creating a bean, a list or map held by it is
+	 * cleared and refilled. Fields not selected by projection are not touched,
+	 * so they keep the values reuse held before, which may be of a previous
+	 * record. By default reuse is ignored and a new bean is read by next().
+	 * @param reuse bean to fill, a new bean is created if it is null or not of
+	 *            the schema of record
+	 * @return reuse if it is filled
+	 */
+	default BsvObject next(BsvObject reuse) throws IOException, BsvException {
+		return next();
+	}
+
+	/**
+	 * read up to maxRecords records into columns. If a bad record is met, the
+	 * records before it are returned first and its exception is thrown by the
+	 * next call.
+	 * @return batch reused by every call, null if no more record
+	 * @throws UnsupportedOperationException if deserializer does not read
+	 *             batches, columns are built by the schemas of a context
+	 */
+	default BsvColumnBatch nextBatch(int maxRecords) throws IOException, BsvException {
+		throw new UnsupportedOperationException(getClass().getName() + " does not read batches");
+	}
+
 	void close() throws IOException, BsvException;
+
+	public enum Engine {
+		/**
+		 * decode the whole stream through a Reader and tokenize chars
+		 */
+		CHAR,
+		/**
+		 * tokenize raw bytes and decode only materialized values
+		 */
+		BYTE
+	}
 }
@@ -1,9 +1,10 @@
 package com.github.yantzu.bsv;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -11,26 +12,54 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
 import com.github.yantzu.bsv.BsvSchema.Field;
 
 public class BsvDeserializerImpl implements BsvDeserializer {
 
-    private final static Logger       LOG        = LoggerFactory.getLogger(BsvDeserializerImpl.class);
+    private final static byte         DELIMITER  = 1;
+    private final static byte         TRANSCODED = 2;
+    //chars of a bad record kept for listener
+    private final static int          MAX_DISCARDED = 1024;
     
 
     private BsvContext                context;
-    private BufferedReader            reader;
+    private Reader                    reader;
+    private char[]                    chars      = new char[8192];
+    private int                       charsPosition;
+    private int                       charsLimit;
+    
+    //class of char, indexed by char, no special meaning if char is out of table
+    private byte[]                    charClasses;
+    private char[]                    transcodes;
     
 	private String majorVersion;
 	private char minorVersion;
     
     //<variant, Schema>
     private Map<Character, BsvSchema> schemas;
+    //selected fields per schema, null if all fields are selected
+    private Map<BsvSchema, boolean[]> projections;
 
     private StringBuilder             valueCache = new StringBuilder(512);
+    private StringBuilder             discardCache = new StringBuilder();
+    private BsvBadRecordListener      badRecordListener;
+    //null if metrics are disabled
+    private BsvMetricsListener        metricsListener;
+    private int                       latencySampling;
+    //records left until next timed one
+    private int                       untilSample;
+    //schema of current record, null if its variant is not known yet
+    private BsvSchema                 lineSchema;
+    private boolean                   reuseObjects;
+    //numbers are varints of BsvBinaryNumbers, as flagged in header
+    private boolean                   binaryNumbers;
+    //last record returned by next(), refilled by next() when objects are reused
+    private BsvObject                 lastRecord;
+
+    private Charset                   charset;
+    private BsvColumnBatch            batch;
+    //exception of the bad record which ended last batch
+    private BsvException              pendingException;
 
 
     protected BsvDeserializerImpl(BsvContext context, InputStream inputStream) throws IOException, BsvException {
@@ -40,58 +69,166 @@ public class BsvDeserializerImpl implements BsvDeserializer {
 
     protected BsvDeserializerImpl(BsvContext context, InputStream inputStream, Charset charset)
             throws IOException, BsvException {
-        byte[] majorVersionByte = new byte[2];
-        inputStream.read(majorVersionByte);
+        this(context, inputStream, charset, null);
+    }
 
-        majorVersion = new String(majorVersionByte, BsvContext.DEFAULT_CHARSET);
-        minorVersion = (char) inputStream.read();
-        
-        int delimiter = inputStream.read();
-//        inputStream.read();
-        asserts(delimiter, context.getLineDelimiter());
+
+    /**
+     * @param projection null to materialize all fields
+     */
+    protected BsvDeserializerImpl(BsvContext context, InputStream inputStream, Charset charset,
+            BsvProjection projection) throws IOException, BsvException {
+        BsvHeader header = BsvHeader.read(inputStream, context.getLineDelimiter());
+        majorVersion = header.getMajorVersion();
+        minorVersion = header.getMinorVersion();
+        if (header.isBinaryNumbers()) {
+            BsvBinaryNumbers.check(context);
+        }
+        this.binaryNumbers = header.isBinaryNumbers();
         
         this.schemas = context.getSchemas(majorVersion, minorVersion);
+        if (projection != null) {
+            this.projections = projection.resolve(schemas.values());
+        }
 
         this.context = context;
-        this.reader = new BufferedReader(new InputStreamReader(inputStream, charset));
+        this.charset = charset;
+        this.reader = new InputStreamReader(inputStream, charset);
+        this.transcodes = context.getCharTranscodesDeser();
+        this.charClasses = buildCharClasses(context, transcodes);
+        this.badRecordListener = context.getBadRecordListener();
+        this.metricsListener = context.getMetricsListener();
+        this.latencySampling = metricsListener == null ? 0 : metricsListener.getLatencySampling();
+        this.untilSample = latencySampling;
+        this.reuseObjects = context.isReuseObjects();
 	}
 
 
+    private static byte[] buildCharClasses(BsvContext context, char[] transcodes) {
+        char[] delimiters = { context.getFieldsDelimiter(), context.getItemsDelimiter(),
+                context.getKeyValueDelimiter(), context.getLineDelimiter() };
+        int length = transcodes.length;
+        for (char delimiter : delimiters) {
+            length = Math.max(length, delimiter + 1);
+        }
+        byte[] charClasses = new byte[length];
+        for (int c = 0; c < transcodes.length; c++) {
+            if (transcodes[c] != c) {
+                charClasses[c] = TRANSCODED;
+            }
+        }
+        for (char delimiter : delimiters) {
+            charClasses[delimiter] = DELIMITER;
+        }
+        return charClasses;
+    }
+
+
     @Override
     public BsvObject next() throws IOException, BsvException {
+        if (!reuseObjects) {
+            return next(null);
+        }
+        BsvObject record = next(lastRecord);
+        if (record != null) {
+            lastRecord = record;
+        }
+        return record;
+    }
+
+
+    /**
+     * bytes of records are not known to metrics listener, since chars are decoded ahead of records
+     */
+    @Override
+    public BsvObject next(BsvObject reuse) throws IOException, BsvException {
+        long start = 0;
+        boolean timed = latencySampling > 0 && --untilSample == 0;
+        if (timed) {
+            untilSample = latencySampling;
+            start = System.nanoTime();
+        }
+        BsvObject record;
         try {
-            return doNext();
+            record = doNext(reuse);
         } catch (IOException ioException) {
             throw ioException;
         } catch (BsvException bsvException) {
-            doSkip();
+            doSkip(bsvException);
             throw bsvException;
         }
+        if (metricsListener != null && record != null) {
+            metricsListener.onRecordRead(lineSchema, -1);
+            if (timed) {
+                metricsListener.onLatency(lineSchema, false, System.nanoTime() - start);
+            }
+        }
+        return record;
     }
 
 
-    protected void doSkip() throws IOException {
-        StringBuilder discardCache = new StringBuilder();
-        while (true) {
-            int i = reader.read();
-            if (i == -1) {
-                LOG.error("Discard raw data:" + discardCache.toString());
-                break;
-            }
+    /**
+     * records are materialized as beans first, then copied into columns
+     */
+    @Override
+    public BsvColumnBatch nextBatch(int maxRecords) throws IOException, BsvException {
+        if (pendingException != null) {
+            BsvException bsvException = pendingException;
+            pendingException = null;
+            throw bsvException;
+        }
+        if (batch == null) {
+            batch = new BsvColumnBatch(charset, projections);
+        }
+        pendingException = batch.fill(this, schemas, maxRecords);
+        return batch.size() == 0 ? null : batch;
+    }
 
-            char c = (char) i;
-            if (c == context.getLineDelimiter()) {
-                LOG.error("Discard raw data:" + discardCache.toString());
+
+    /**
+     * skip rest of the line, only the first chars of it are kept for listener
+     */
+    protected void doSkip(BsvException exception) throws IOException {
+        discardCache.setLength(0);
+        long skippedBytes = 0;
+        char lineDelimiter = context.getLineDelimiter();
+        while (charsPosition < charsLimit || fill()) {
+            char[] buffer = chars;
+            int limit = charsLimit;
+            int i = charsPosition;
+            while (i < limit && buffer[i] != lineDelimiter) {
+                i++;
+            }
+            int kept = Math.min(i - charsPosition, MAX_DISCARDED - discardCache.length());
+            discardCache.append(buffer, charsPosition, kept);
+            if (metricsListener != null) {
+                int end = i < limit ? i + 1 : limit;
+                skippedBytes += charset.encode(CharBuffer.wrap(buffer, charsPosition, end - charsPosition))
+                        .remaining();
+            }
+            if (i < limit) {
+                charsPosition = i + 1;
                 break;
-            } else {
-                discardCache.append(c);
             }
+            charsPosition = limit;
+        }
+
+        if (badRecordListener != null) {
+            byte[] raw = discardCache.toString().getBytes(charset);
+            badRecordListener.onBadRecord(exception, lineSchema, -1, raw, 0, raw.length);
+        }
+        if (metricsListener != null) {
+            metricsListener.onReadError(exception, lineSchema, skippedBytes);
         }
     }
     
 
-    protected BsvObject doNext() throws IOException, BsvException {
-        int i = reader.read();
+    /**
+     * @param reuse bean to fill if it is of the schema of record, null to create one
+     */
+    protected BsvObject doNext(BsvObject reuse) throws IOException, BsvException {
+        lineSchema = null;
+        int i = read();
         if (i == -1) {
             return null;
         }
@@ -99,12 +236,16 @@ public class BsvDeserializerImpl implements BsvDeserializer {
         char variantNumber = (char) i;
         BsvSchema schema = schemas.get(variantNumber);
         if (schema == null) {
-            throw new BsvException("No schema defined for variant " + variantNumber);
+            throw BsvException.badRecord(BsvException.Kind.VARIANT, "No schema defined for variant "
+                    + variantNumber);
         }
+        lineSchema = schema;
         
+        BsvBeanAccessor accessor = schema.getBeanAccessor();
+        boolean reused = reuse != null && reuse.getClass() == schema.getBeanClass();
         BsvObject bean;
         try {
-            bean = (BsvObject)schema.getBeanConstructor().newInstance();
+            bean = reused ? reuse : accessor.newInstance();
             bean.setVersion(schema.getFullVersion());
         } catch (Exception exception) {
             throw new BsvException("Not able to initial bean instance due to "
@@ -113,93 +254,111 @@ public class BsvDeserializerImpl implements BsvDeserializer {
 
         
         try {
+            boolean[] selected = projections == null ? null : projections.get(schema);
             Iterator<Field> fieldsIterator = schema.getFields().iterator();
             while (fieldsIterator.hasNext()) {
                 Field field = fieldsIterator.next();
-                Object fieldValue = nextField(field, fieldsIterator.hasNext());
-                field.getBeanWriteMethod().invoke(bean, fieldValue);
+                if (selected != null && !selected[field.getIndex()]) {
+                    skipField(fieldsIterator.hasNext());
+                    continue;
+                }
+                readField(bean, accessor, field, reused, fieldsIterator.hasNext());
             }
+        } catch (BsvException bsvException) {
+            throw bsvException;
         } catch (Exception exception) {
-            LOG.error("Discard object:" + bean.toString());
-            if (exception instanceof BsvException) {
-                throw (BsvException) exception;
-            } else {
-                throw new BsvException(exception);
-            }
+            throw BsvException.badRecord(BsvException.Kind.VALUE, exception);
         }
 
         return bean;
     }
 
     
-    private Object nextField(Field field, boolean hasMoreField) throws IOException, BsvException {
-        Object result = null;
+    /**
+     * numbers are parsed or decoded from value cache and written by primitive
+     * setters, an empty number is written as null
+     */
+    private void readField(BsvObject bean, BsvBeanAccessor accessor, Field field, boolean reused,
+            boolean hasMoreField) throws IOException, BsvException {
+        int index = field.getIndex();
         int i;
         switch (field.getType()) {
-            case STRING:
-                i = nextToken();
-                asserts(i, hasMoreField, context.getFieldsDelimiter(), context.getLineDelimiter(), -1);
-                result = valueCache.toString();
-                break;
             case BOOLEAN:
                 i = nextToken();
                 asserts(i, hasMoreField, context.getFieldsDelimiter(), context.getLineDelimiter(), -1);
-                if (valueCache.length() == 1) {
-                    if (valueCache.charAt(0) == '1') {
-                        result = Boolean.TRUE;
-                    } else {
-                        result = Boolean.FALSE;
-                    }
-                } else {
-                    result = Boolean.FALSE; //not allow other boolean encoding
-                }
-                break;
+                //not allow other boolean encoding
+                accessor.setBoolean(bean, index, valueCache.length() == 1 && valueCache.charAt(0) == '1');
+                return;
             case INTEGER:
                 i = nextToken();
                 asserts(i, hasMoreField, context.getFieldsDelimiter(), context.getLineDelimiter(), -1);
-                String integerStringValue = valueCache.toString();
-                if (integerStringValue == null || integerStringValue.equals("")) {
-                    result = null;
+                if (valueCache.length() == 0) {
+                    accessor.set(bean, index, null);
                 } else {
-                    result = Integer.valueOf(integerStringValue);
+                    accessor.setInt(bean, index, binaryNumbers
+                            ? BsvBinaryNumbers.decodeInt(valueCache, 0, valueCache.length())
+                            : BsvNumberParser.parseInt(valueCache, 0, valueCache.length()));
                 }
-                break;
+                return;
             case LONG:
                 i = nextToken();
                 asserts(i, hasMoreField, context.getFieldsDelimiter(), context.getLineDelimiter(), -1);
-                String longStringValue = valueCache.toString();
-                if (longStringValue == null || longStringValue.equals("")) {
-                    result = null;
+                if (valueCache.length() == 0) {
+                    accessor.set(bean, index, null);
                 } else {
-                    result = Long.valueOf(longStringValue);
+                    accessor.setLong(bean, index, binaryNumbers
+                            ? BsvBinaryNumbers.decodeLong(valueCache, 0, valueCache.length())
+                            : BsvNumberParser.parseLong(valueCache, 0, valueCache.length()));
                 }
-                break;
+                return;
             case FLOAT:
                 i = nextToken();
                 asserts(i, hasMoreField, context.getFieldsDelimiter(), context.getLineDelimiter(), -1);
-                String floatStringValue = valueCache.toString();
-                if (floatStringValue == null || floatStringValue.equals("")) {
-                    return null;
+                if (valueCache.length() == 0) {
+                    accessor.set(bean, index, null);
                 } else {
-                    result = Float.valueOf(floatStringValue);
+                    accessor.setFloat(bean, index, binaryNumbers
+                            ? BsvBinaryNumbers.decodeFloat(valueCache, 0, valueCache.length())
+                            : BsvNumberParser.parseFloat(valueCache, 0, valueCache.length()));
                 }
-                break;
+                return;
             case DOUBLE:
                 i = nextToken();
                 asserts(i, hasMoreField, context.getFieldsDelimiter(), context.getLineDelimiter(), -1);
-                String doubleStringValue = valueCache.toString();
-                if (doubleStringValue == null || doubleStringValue.equals("")) {
-                    return null;
+                if (valueCache.length() == 0) {
+                    accessor.set(bean, index, null);
                 } else {
-                    result = Double.parseDouble(doubleStringValue);
+                    accessor.setDouble(bean, index, binaryNumbers
+                            ? BsvBinaryNumbers.decodeDouble(valueCache, 0, valueCache.length())
+                            : BsvNumberParser.parseDouble(valueCache, 0, valueCache.length()));
                 }
+                return;
+            default:
+                Object current = reused ? accessor.get(bean, index) : null;
+                accessor.set(bean, index, nextField(field, current, hasMoreField));
+        }
+    }
+
+    
+    /**
+     * @param current value of field in reused bean, a list or map in it is cleared and refilled
+     */
+    private Object nextField(Field field, Object current, boolean hasMoreField) throws IOException, BsvException {
+        BsvStringCache cache = field.getStringCache();
+        Object result = null;
+        int i;
+        switch (field.getType()) {
+            case STRING:
+                i = nextToken();
+                asserts(i, hasMoreField, context.getFieldsDelimiter(), context.getLineDelimiter(), -1);
+                result = cache == null ? valueCache.toString() : cache.get(valueCache);
                 break;
             case LIST:
-                List<String> list = new ArrayList<String>();
+                List<String> list = reuseList(current);
                 while (true) {
                     i = nextToken();
                    
-                    list.add(valueCache.toString());
+                    list.add(cache == null ? valueCache.toString() : cache.get(valueCache));
                     if (i == context.getItemsDelimiter()) {
                         continue;
                     } else {
@@ -211,11 +370,11 @@ public class BsvDeserializerImpl implements BsvDeserializer {
                 result = list;
                 break;
             case MAP:
-                Map<String, String> map = new HashMap<String, String>();
+                Map<String, String> map = reuseMap(current);
                 while (true) {
                     i = nextToken();
                     if (i == context.getKeyValueDelimiter()) {
-                        String key = valueCache.toString();
+                        String key = cache == null ? valueCache.toString() : cache.get(valueCache);
                         
                         i = nextToken();
                         
@@ -233,58 +392,124 @@ public class BsvDeserializerImpl implements BsvDeserializer {
                 }
                 result = map;
                 break;
+            default:
+                throw new IllegalArgumentException("Not a string or collection field " + field.getName());
         }
         return result;
     }
 
     /**
-     * read next value in to cache
+     * skip to next fields delimiter without reading value in to cache
+     */
+    private void skipField(boolean hasMoreField) throws IOException, BsvException {
+        valueCache.setLength(0);
+
+        int i;
+        while (true) {
+            i = read();
+            if (i == -1 || i == context.getFieldsDelimiter() || i == context.getLineDelimiter()) {
+                break;
+            }
+        }
+        asserts(i, hasMoreField, context.getFieldsDelimiter(), context.getLineDelimiter(), -1);
+    }
+
+    /**
+     * read next value in to cache, runs of plain chars are appended at once
      * @return value ending token
      * @throws IOException
      */
     private int nextToken() throws IOException {
         valueCache.setLength(0);
 
-        int tokenEnding;
+        byte[] classes = charClasses;
         while (true) {
-            int i = reader.read();
-            if (i == -1) {
-                tokenEnding = i;
-                break;
+            if (charsPosition == charsLimit && !fill()) {
+                return -1;
+            }
+            char[] buffer = chars;
+            int limit = charsLimit;
+            int runStart = charsPosition;
+            int i = runStart;
+            while (i < limit && (buffer[i] >= classes.length || classes[buffer[i]] == 0)) {
+                i++;
+            }
+            valueCache.append(buffer, runStart, i - runStart);
+            charsPosition = i;
+            if (i == limit) {
+                continue;
             }
 
-            char c = (char) i;
-            if (c == context.getFieldsDelimiter() || c == context.getItemsDelimiter()
-                    || c == context.getKeyValueDelimiter() || c == context.getLineDelimiter()) {
-                tokenEnding = i;
-                break;
-            } else {
-                Character transcode = context.transcodingDeser(c);
-                if (transcode == null) {
-                    valueCache.append(c);
-                } else {
-                    valueCache.append(transcode.charValue());
-                }
+            char c = buffer[i];
+            charsPosition = i + 1;
+            if (classes[c] == DELIMITER) {
+                return c;
             }
+            valueCache.append(transcodes[c]);
         }
-        return tokenEnding;
+    }
+
+    private int read() throws IOException {
+        if (charsPosition == charsLimit && !fill()) {
+            return -1;
+        }
+        return chars[charsPosition++];
+    }
+
+    /**
+     * @return false if no more char
+     */
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(chars, 0, chars.length);
+        } while (read == 0);
+        if (read == -1) {
+            return false;
+        }
+        charsPosition = 0;
+        charsLimit = read;
+        return true;
+    }
+
+    /**
+     * @return list of reused bean cleared, a new list if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static List<String> reuseList(Object current) {
+        //only a list created by deserializer is known to be modifiable
+        if (current instanceof ArrayList) {
+            List<String> list = (List<String>) current;
+            list.clear();
+            return list;
+        }
+        return new ArrayList<String>();
+    }
+
+    /**
+     * @return map of reused bean cleared, a new map if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, String> reuseMap(Object current) {
+        if (current instanceof HashMap) {
+            Map<String, String> map = (Map<String, String>) current;
+            map.clear();
+            return map;
+        }
+        return new HashMap<String, String>();
     }
 
     private void asserts(int actual, boolean bool, int trueExpected, int falseExpected1,
                          int falseExpected2) throws BsvException {
         if (bool) {
             if (actual != trueExpected) {
-                String errorMessage = "Invalid delimiter, expected " + trueExpected + ", but was "
-                        + actual + ", cache is " + valueCache.toString();
-                LOG.error(errorMessage);
-                throw new BsvException(errorMessage);
+                throw BsvException.badRecord(BsvException.Kind.DELIMITER, "Invalid delimiter, expected "
+                        + trueExpected + ", but was " + actual);
             }
         } else {
             if (actual != falseExpected1 && actual != falseExpected2) {
-                String errorMessage = "Invalid delimiter, expected " + falseExpected1 + " or "
-                        + falseExpected2 + ", but was " + actual + ", cache is " + valueCache.toString();
-                LOG.error(errorMessage);
-                throw new BsvException(errorMessage);
+                throw BsvException.badRecord(BsvException.Kind.DELIMITER, "Invalid delimiter, expected "
+                        + falseExpected1 + " or " + falseExpected2 + ", but was " + actual);
             }
         }
     }
@@ -302,12 +527,6 @@ public class BsvDeserializerImpl implements BsvDeserializer {
 //            }
 //        }
 //    }
-    
-    private void asserts(int actual, int expected) throws BsvException {
-        if (actual != expected) {
-            throw new BsvException("Invalid delimiter, expected " + expected + ", but was " + actual);
-        }
-    }
 
 
 	@Override
@@ -0,0 +1,71 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the records of a deserializer. A stream can not be cut, so
+ * this never splits, see {@link BsvFileReader#spliterator(BsvBadRecordPolicy)}
+ * for splitting files.
+ */
+class BsvDeserializerSpliterator extends Spliterators.AbstractSpliterator<BsvObject> {
+
+    private final BsvDeserializer    deserializer;
+    private final BsvBadRecordPolicy policy;
+
+
+    BsvDeserializerSpliterator(BsvDeserializer deserializer, BsvBadRecordPolicy policy) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+        this.deserializer = deserializer;
+        this.policy = policy;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super BsvObject> action) {
+        while (true) {
+            BsvObject record;
+            try {
+                record = deserializer.next();
+            } catch (BsvException bsvException) {
+                policy.onBadRecord(bsvException);
+                continue;
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+            if (record == null) {
+                return false;
+            }
+            action.accept(record);
+            return true;
+        }
+    }
+
+    /**
+     * a stream can not be cut at line boundaries without reading it
+     */
+    @Override
+    public Spliterator<BsvObject> trySplit() {
+        return null;
+    }
+
+    /**
+     * close deserializer, as the close handler of a stream
+     */
+    Runnable closer() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    deserializer.close();
+                } catch (IOException ioException) {
+                    throw new UncheckedIOException(ioException);
+                } catch (BsvException bsvException) {
+                    throw new BsvUncheckedException(bsvException);
+                }
+            }
+        };
+    }
+}
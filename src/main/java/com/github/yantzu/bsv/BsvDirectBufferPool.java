@@ -0,0 +1,56 @@
+package com.github.yantzu.bsv;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Direct buffers of a fixed size shared by channel serializers. Allocating a
+ * direct buffer is slow and its memory is only freed by GC, so buffers are
+ * kept for the next serializer, up to maxPooled of them.
+ */
+class BsvDirectBufferPool {
+
+    static final int                 BUFFER_SIZE = 64 * 1024;
+    //16MB of idle buffers at most
+    private static final int         MAX_POOLED  = 256;
+
+    static final BsvDirectBufferPool SHARED      = new BsvDirectBufferPool(BUFFER_SIZE, MAX_POOLED);
+
+    private final int                bufferSize;
+    private final int                maxPooled;
+    private final Queue<ByteBuffer>  pooled      = new ConcurrentLinkedQueue<ByteBuffer>();
+    private final AtomicInteger      pooledCount = new AtomicInteger();
+
+
+    BsvDirectBufferPool(int bufferSize, int maxPooled) {
+        this.bufferSize = bufferSize;
+        this.maxPooled = maxPooled;
+    }
+
+    /**
+     * @return a cleared buffer of buffer size
+     */
+    ByteBuffer acquire() {
+        ByteBuffer buffer = pooled.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(bufferSize);
+        }
+        pooledCount.decrementAndGet();
+        buffer.clear();
+        return buffer;
+    }
+
+    void release(ByteBuffer buffer) {
+        if (pooledCount.incrementAndGet() <= maxPooled) {
+            pooled.offer(buffer);
+        } else {
+            pooledCount.decrementAndGet();
+        }
+    }
+
+    int getPooledCount() {
+        return pooledCount.get();
+    }
+}
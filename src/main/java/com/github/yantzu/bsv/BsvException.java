@@ -4,19 +4,70 @@ public class BsvException extends Exception {
     
     private static final long serialVersionUID = -4507828788021905915L;
 
+    /**
+     * what is wrong with a bad record
+     */
+    public enum Kind {
+        //a field is missing or there is one more field
+        DELIMITER,
+        //variant number is missing or has no schema
+        VARIANT,
+        //a value can not be parsed
+        VALUE,
+        //a block of a block container is corrupt, its records are lost
+        BLOCK,
+        OTHER
+    }
+
+    private final Kind kind;
+
     public BsvException() {
         super();
+        this.kind = Kind.OTHER;
     }
 
     public BsvException(String s) {
         super(s);
+        this.kind = Kind.OTHER;
     }
 
     public BsvException(String message, Throwable cause) {
         super(message, cause);
+        this.kind = Kind.OTHER;
     }
 
     public BsvException(Throwable cause) {
         super(cause);
+        this.kind = Kind.OTHER;
+    }
+
+    public BsvException(Kind kind, String message) {
+        super(message);
+        this.kind = kind;
+    }
+
+    /**
+     * @param writableStackTrace false to skip filling stack trace, which is
+     *            most of the cost of throwing
+     */
+    protected BsvException(Kind kind, String message, Throwable cause, boolean writableStackTrace) {
+        super(message, cause, true, writableStackTrace);
+        this.kind = kind;
+    }
+
+    /**
+     * exception of a bad record without stack trace, a burst of bad records
+     * should not cost more than the good ones
+     */
+    static BsvException badRecord(Kind kind, String message) {
+        return new BsvException(kind, message, null, false);
+    }
+
+    static BsvException badRecord(Kind kind, Throwable cause) {
+        return new BsvException(kind, cause.toString(), cause, false);
+    }
+
+    public Kind getKind() {
+        return kind;
     }
 }
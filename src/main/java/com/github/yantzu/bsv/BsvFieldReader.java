@@ -0,0 +1,45 @@
+package com.github.yantzu.bsv;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the fields of a record one after another, called by a
+ * {@link BsvCodec} generated for a schema. Each read method consumes one field
+ * and checks the delimiter after it, values are read as the generic
+ * deserializer reads them.
+ */
+public interface BsvFieldReader {
+
+    String readString() throws BsvException;
+
+    boolean readBoolean() throws BsvException;
+
+    /**
+     * read a number field, its value is taken by intValue, longValue,
+     * floatValue or doubleValue
+     * @return false if field is empty, for null of a boxed property
+     */
+    boolean readNumber() throws BsvException;
+
+    /**
+     * the value methods fail with a RuntimeException if the number field is empty
+     */
+    int intValue();
+
+    long longValue();
+
+    float floatValue();
+
+    double doubleValue();
+
+    /**
+     * @param current list of bean, cleared and refilled if bean is reused
+     */
+    List<String> readList(Object current) throws BsvException;
+
+    /**
+     * @param current map of bean, cleared and refilled if bean is reused
+     */
+    Map<String, String> readMap(Object current) throws BsvException;
+}
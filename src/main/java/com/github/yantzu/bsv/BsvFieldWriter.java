@@ -0,0 +1,39 @@
+package com.github.yantzu.bsv;
+
+import java.util.Map;
+
+/**
+ * Writes the fields of a record one after another, called by a
+ * {@link BsvCodec} generated for a schema. Values are written as the generic
+ * serializer writes them, a null string is written as empty, a null list or
+ * map writes nothing, and a null item, key or value fails with a
+ * RuntimeException.
+ */
+public interface BsvFieldWriter {
+
+    void writeString(String value);
+
+    void writeInt(int value);
+
+    void writeLong(long value);
+
+    void writeFloat(float value);
+
+    void writeDouble(double value);
+
+    void writeBoolean(boolean value);
+
+    void writeList(Iterable<String> value);
+
+    void writeMap(Map<String, String> value);
+
+    /**
+     * write fields delimiter after a field which is not the last one
+     */
+    void endField();
+
+    /**
+     * write line delimiter after the last field
+     */
+    void endRecord();
+}
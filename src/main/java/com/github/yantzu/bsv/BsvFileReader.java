@@ -0,0 +1,538 @@
+package com.github.yantzu.bsv;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reads a BSV file with multiple threads. The file is memory mapped and cut
+ * into splits aligned to line delimiter, each split is deserialized on a
+ * fork-join pool.
+ */
+public class BsvFileReader implements Closeable {
+
+    protected static final long DEFAULT_SPLIT_SIZE = 64L * 1024 * 1024;
+    //smallest range a spliterator splits further
+    protected static final long MIN_SPLIT_SIZE     = 1024 * 1024;
+
+    private BsvContext       context;
+    private Charset          charset;
+    private RandomAccessFile file;
+    private FileChannel      channel;
+    private BsvHeader        header;
+
+    private ForkJoinPool     pool;
+    private boolean          ownPool;
+    private long             splitSize = DEFAULT_SPLIT_SIZE;
+
+    //deserializers of spliterators not yet exhausted, closed with the reader
+    private final Set<BsvDeserializer> openDeserializers = Collections
+            .newSetFromMap(new ConcurrentHashMap<BsvDeserializer, Boolean>());
+
+
+    protected BsvFileReader(BsvContext context, File file, Charset charset, int parallelism)
+            throws IOException, BsvException {
+        this(context, file, charset, new ForkJoinPool(parallelism));
+        this.ownPool = true;
+    }
+
+    protected BsvFileReader(BsvContext context, File file, Charset charset, ForkJoinPool pool)
+            throws IOException, BsvException {
+        this.context = context;
+        this.charset = charset;
+        this.pool = pool;
+        this.file = new RandomAccessFile(file, "r");
+        this.channel = this.file.getChannel();
+        try {
+            long headerLength = Math.min(BsvHeader.MAX_LENGTH, channel.size());
+            MappedByteBuffer headerBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerLength);
+            this.header = BsvHeader.read(new BsvByteBufferInputStream(headerBuffer), context.getLineDelimiter());
+            context.getSchemas(header.getMajorVersion(), header.getMinorVersion());
+        } catch (IOException ioException) {
+            close();
+            throw ioException;
+        } catch (BsvException bsvException) {
+            close();
+            throw bsvException;
+        } catch (RuntimeException runtimeException) {
+            close();
+            throw runtimeException;
+        }
+    }
+
+    public String getMajorVersion() {
+        return header.getMajorVersion();
+    }
+
+    public char getMinorVersion() {
+        return header.getMinorVersion();
+    }
+
+    public long getSplitSize() {
+        return splitSize;
+    }
+
+    /**
+     * upper bound of bytes mapped and deserialized by one task, 64MB by default
+     */
+    public void setSplitSize(long splitSize) {
+        if (splitSize <= 0 || splitSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid split size " + splitSize);
+        }
+        this.splitSize = splitSize;
+    }
+
+    /**
+     * cut file body into at least count splits, none of them larger than split size except a
+     * single line is longer than it
+     */
+    public List<Split> getSplits(int count) throws IOException {
+        long bodyStart = header.getLength();
+        long fileEnd = channel.size();
+        List<Split> splits = new ArrayList<Split>();
+        if (fileEnd <= bodyStart) {
+            return splits;
+        }
+
+        long bodyLength = fileEnd - bodyStart;
+        long splitCount = Math.max(count, (bodyLength + splitSize - 1) / splitSize);
+        long nominalSize = Math.max(1, (bodyLength + splitCount - 1) / splitCount);
+
+        long start = bodyStart;
+        ByteBuffer scanBuffer = ByteBuffer.allocate(8 * 1024);
+        while (start < fileEnd) {
+            long end = alignToLine(start + nominalSize, fileEnd, scanBuffer);
+            if (end - start > Integer.MAX_VALUE) {
+                throw new IOException("Line at " + start + " is too long to be mapped");
+            }
+            splits.add(new Split(start, end));
+            start = end;
+        }
+        return splits;
+    }
+
+    /**
+     * @return position after the first line delimiter at or after position - 1
+     */
+    private long alignToLine(long position, long fileEnd, ByteBuffer scanBuffer) throws IOException {
+        if (position >= fileEnd) {
+            return fileEnd;
+        }
+        byte lineDelimiter = (byte) context.getLineDelimiter();
+        long scan = position - 1;
+        while (scan < fileEnd) {
+            scanBuffer.clear();
+            int read = channel.read(scanBuffer, scan);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (scanBuffer.get(i) == lineDelimiter) {
+                    return scan + i + 1;
+                }
+            }
+            scan += read;
+        }
+        return fileEnd;
+    }
+
+    /**
+     * Deserialize the whole file with the pool. Ordered reading calls handler
+     * in file order on current thread, with a bounded number of records in
+     * flight; unordered reading calls handler concurrently on pool threads, so
+     * handler has to be thread safe.
+     */
+    public void read(final BsvRecordHandler handler, boolean ordered) throws IOException,
+            InterruptedException {
+        List<Split> splits = getSplits(pool.getParallelism());
+        if (ordered) {
+            readOrdered(pool, handler, splits);
+        } else {
+            readUnordered(pool, handler, splits);
+        }
+    }
+
+    /**
+     * read parts in order, with at most twice parallelism of pool in flight.
+     * A part hands its records over in batches through a bounded queue, so
+     * records held at once are bounded whatever the size of a part.
+     */
+    static void readOrdered(ForkJoinPool pool, BsvRecordHandler handler, List<? extends Part> parts)
+            throws IOException, InterruptedException {
+        int window = pool.getParallelism() * 2;
+        LinkedList<OrderedPart> inFlight = new LinkedList<OrderedPart>();
+        int submitted = 0;
+        try {
+            while (submitted < parts.size() || !inFlight.isEmpty()) {
+                while (submitted < parts.size() && inFlight.size() < window) {
+                    OrderedPart orderedPart = new OrderedPart(parts.get(submitted++));
+                    orderedPart.task = pool.submit(orderedPart);
+                    inFlight.add(orderedPart);
+                }
+
+                OrderedPart first = inFlight.getFirst();
+                List<Object> batch;
+                while ((batch = first.batches.take()) != OrderedPart.END) {
+                    for (Object result : batch) {
+                        if (result instanceof BsvException) {
+                            handler.onBadRecord((BsvException) result);
+                        } else {
+                            handler.onRecord((BsvObject) result);
+                        }
+                    }
+                }
+                inFlight.removeFirst();
+                await(first.task);
+            }
+        } finally {
+            for (OrderedPart orderedPart : inFlight) {
+                orderedPart.stopped = true;
+                orderedPart.task.cancel(true);
+            }
+        }
+    }
+
+    static void readUnordered(ForkJoinPool pool, final BsvRecordHandler handler, List<? extends Part> parts)
+            throws IOException, InterruptedException {
+        List<ForkJoinTask<Void>> tasks = new ArrayList<ForkJoinTask<Void>>(parts.size());
+        for (final Part part : parts) {
+            tasks.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    part.read(handler);
+                    return null;
+                }
+            }));
+        }
+        try {
+            for (ForkJoinTask<Void> task : tasks) {
+                await(task);
+            }
+        } finally {
+            for (ForkJoinTask<Void> task : tasks) {
+                task.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Spliterator over all records of the file. It splits at line boundaries,
+     * down to ranges of 1MB or split size if smaller, so a parallel stream
+     * reads the file with all threads of its pool. The deserializer of a
+     * split is closed when the split is exhausted, or by {@link #close()}
+     * if the stream stops early.
+     */
+    public Spliterator<BsvObject> spliterator(BsvBadRecordPolicy policy) throws IOException {
+        return new RangeSpliterator(header.getLength(), Math.max(header.getLength(), channel.size()), policy);
+    }
+
+    /**
+     * deserializers of spliterators not yet exhausted or closed
+     */
+    int getOpenDeserializers() {
+        return openDeserializers.size();
+    }
+
+    private static <T> T await(ForkJoinTask<T> task) throws IOException, InterruptedException {
+        try {
+            return task.get();
+        } catch (ExecutionException executionException) {
+            Throwable cause = executionException.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (ownPool) {
+            pool.shutdown();
+        }
+        try {
+            for (BsvDeserializer deserializer : openDeserializers) {
+                if (openDeserializers.remove(deserializer)) {
+                    try {
+                        deserializer.close();
+                    } catch (BsvException bsvException) {
+                        throw new IOException(bsvException);
+                    }
+                }
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+
+    /**
+     * Spliterator over a byte range starting at a line beginning. Records are
+     * read split by split, a range can only be split before its first record
+     * is read.
+     */
+    private class RangeSpliterator implements Spliterator<BsvObject> {
+        private long                     start;
+        private final long               end;
+        private final BsvBadRecordPolicy policy;
+        private boolean                  started;
+        private BsvDeserializer          deserializer;
+
+        RangeSpliterator(long start, long end, BsvBadRecordPolicy policy) {
+            this.start = start;
+            this.end = end;
+            this.policy = policy;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super BsvObject> action) {
+            started = true;
+            try {
+                while (true) {
+                    if (deserializer == null) {
+                        if (start >= end) {
+                            return false;
+                        }
+                        long splitEnd = alignToLine(Math.min(end, start + splitSize), end,
+                                ByteBuffer.allocate(8 * 1024));
+                        deserializer = new Split(start, splitEnd).createDeserializer();
+                        openDeserializers.add(deserializer);
+                        start = splitEnd;
+                    }
+
+                    BsvObject record;
+                    try {
+                        record = deserializer.next();
+                    } catch (BsvException bsvException) {
+                        policy.onBadRecord(bsvException);
+                        continue;
+                    }
+                    if (record == null) {
+                        closeDeserializer();
+                        continue;
+                    }
+                    action.accept(record);
+                    return true;
+                }
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+        }
+
+        private void closeDeserializer() throws IOException {
+            BsvDeserializer exhausted = deserializer;
+            deserializer = null;
+            if (openDeserializers.remove(exhausted)) {
+                try {
+                    exhausted.close();
+                } catch (BsvException bsvException) {
+                    throw new BsvUncheckedException(bsvException);
+                }
+            }
+        }
+
+        @Override
+        public Spliterator<BsvObject> trySplit() {
+            long length = end - start;
+            if (started || length < 2 * Math.min(splitSize, MIN_SPLIT_SIZE)) {
+                return null;
+            }
+            long middle;
+            try {
+                middle = alignToLine(start + length / 2, end, ByteBuffer.allocate(8 * 1024));
+            } catch (IOException ioException) {
+                throw new UncheckedIOException(ioException);
+            }
+            if (middle >= end) {
+                return null;
+            }
+            RangeSpliterator prefix = new RangeSpliterator(start, middle, policy);
+            start = middle;
+            return prefix;
+        }
+
+        /**
+         * bytes, not records
+         */
+        @Override
+        public long estimateSize() {
+            return end - start;
+        }
+
+        @Override
+        public int characteristics() {
+            return Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+        }
+    }
+
+
+    /**
+     * Task reading a part for ordered reading. Records and bad records are
+     * queued in batches, the task blocks while the queue is full and ends
+     * with {@link #END} queued unless stopped.
+     */
+    private static class OrderedPart implements Callable<Void>, BsvRecordHandler {
+        private static final int          BATCH_RECORDS = 1024;
+        private static final int          QUEUE_BATCHES = 4;
+        private static final List<Object> END           = new ArrayList<Object>(0);
+
+        private final Part                        part;
+        private final BlockingQueue<List<Object>> batches = new ArrayBlockingQueue<List<Object>>(QUEUE_BATCHES);
+        private List<Object>                      batch   = new ArrayList<Object>(BATCH_RECORDS);
+        private ForkJoinTask<Void>                task;
+        private volatile boolean                  stopped;
+
+        OrderedPart(Part part) {
+            this.part = part;
+        }
+
+        @Override
+        public Void call() throws Exception {
+            try {
+                part.read(this);
+                if (!batch.isEmpty()) {
+                    put(batch);
+                }
+            } finally {
+                put(END);
+            }
+            return null;
+        }
+
+        @Override
+        public void onRecord(BsvObject record) {
+            add(record);
+        }
+
+        @Override
+        public void onBadRecord(BsvException exception) {
+            add(exception);
+        }
+
+        private void add(Object result) {
+            batch.add(result);
+            if (batch.size() == BATCH_RECORDS) {
+                try {
+                    put(batch);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Ordered read is interrupted");
+                }
+                if (stopped) {
+                    throw new CancellationException("Ordered read is stopped");
+                }
+                batch = new ArrayList<Object>(BATCH_RECORDS);
+            }
+        }
+
+        /**
+         * queue a batch as a managed block, so the pool runs other parts while this one waits
+         */
+        private void put(final List<Object> full) throws InterruptedException {
+            ForkJoinPool.managedBlock(new ForkJoinPool.ManagedBlocker() {
+                private boolean queued;
+
+                @Override
+                public boolean block() throws InterruptedException {
+                    while (!queued && !stopped) {
+                        queued = batches.offer(full, 100, TimeUnit.MILLISECONDS);
+                    }
+                    return true;
+                }
+
+                @Override
+                public boolean isReleasable() {
+                    if (!queued && !stopped) {
+                        queued = batches.offer(full);
+                    }
+                    return queued || stopped;
+                }
+            });
+        }
+    }
+
+
+    /**
+     * part of a file read by one task
+     */
+    abstract static class Part {
+        abstract void read(BsvRecordHandler handler) throws IOException;
+    }
+
+
+    /**
+     * Byte range of the file, starting at a line beginning and ending after a line delimiter
+     */
+    public class Split extends Part {
+        private final long start;
+        private final long end;
+
+        private Split(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public long getEnd() {
+            return end;
+        }
+
+        /**
+         * map the split and open a byte engine deserializer over it, safe to be called from any thread
+         */
+        public BsvDeserializer createDeserializer() throws IOException {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+            return new BsvByteDeserializerImpl(context, new BsvByteBufferInputStream(mapped), charset, header,
+                    start);
+        }
+
+        @Override
+        void read(BsvRecordHandler handler) throws IOException {
+            BsvDeserializer deserializer = createDeserializer();
+            while (true) {
+                BsvObject record;
+                try {
+                    //ordered reading holds records of a split, so never reused
+                    record = deserializer.next(null);
+                } catch (BsvException bsvException) {
+                    handler.onBadRecord(bsvException);
+                    continue;
+                }
+                if (record == null) {
+                    break;
+                }
+                handler.onRecord(record);
+            }
+        }
+    }
+}
@@ -0,0 +1,435 @@
+package com.github.yantzu.bsv;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Predicate evaluated against the raw bytes of a record before any bean is
+ * created. Records not accepted are skipped to the next line delimiter
+ * without decoding, reflection or string allocation.
+ * <p>
+ * A predicate on a field which does not exist in the variant of a record
+ * rejects that record. Every filter counts how many records it has evaluated
+ * and rejected. A deserializer counts on its own and adds its counts to the
+ * filter when it reaches end of input or is closed, so deserializers sharing a
+ * filter do not contend on counters per record.
+ */
+public abstract class BsvFilter {
+
+    private final AtomicLong evaluated = new AtomicLong();
+    private final AtomicLong rejected  = new AtomicLong();
+
+
+    public static BsvFilter eq(String field, String value) {
+        return new InFilter(field, new String[] { value }, "eq");
+    }
+
+    public static BsvFilter in(String field, String... values) {
+        return new InFilter(field, values, "in");
+    }
+
+    public static BsvFilter prefix(String field, String prefix) {
+        return new PrefixFilter(field, prefix);
+    }
+
+    /**
+     * integer value in [min, max], empty or invalid number is rejected
+     */
+    public static BsvFilter range(String field, long min, long max) {
+        return new LongRangeFilter(field, min, max);
+    }
+
+    /**
+     * decimal value in [min, max], empty or invalid number is rejected
+     */
+    public static BsvFilter range(String field, double min, double max) {
+        return new DoubleRangeFilter(field, min, max);
+    }
+
+    public static BsvFilter and(BsvFilter... filters) {
+        return new AndFilter(filters);
+    }
+
+    public static BsvFilter or(BsvFilter... filters) {
+        return new OrFilter(filters);
+    }
+
+    public static BsvFilter not(BsvFilter filter) {
+        return new NotFilter(filter);
+    }
+
+    /**
+     * records evaluated by deserializers which reached end of input or were closed
+     */
+    public long getEvaluatedCount() {
+        return evaluated.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * @return predicate per schema
+     */
+    Map<BsvSchema, Predicate> bind(Iterable<BsvSchema> schemas, Charset charset) {
+        Map<BsvSchema, Predicate> bound = new IdentityHashMap<BsvSchema, Predicate>();
+        for (BsvSchema schema : schemas) {
+            bound.put(schema, bind(schema, charset));
+        }
+        return bound;
+    }
+
+    abstract Predicate bind(BsvSchema schema, Charset charset);
+
+    abstract boolean doTest(BsvByteTokenizer tokenizer, int[] fieldStarts, int[] fieldEnds, Predicate predicate);
+
+
+    /**
+     * add counts of predicates to their filters
+     */
+    static void flush(Map<BsvSchema, Predicate> predicates) {
+        for (Predicate predicate : predicates.values()) {
+            predicate.flush();
+        }
+    }
+
+
+    /**
+     * filter bound to one schema, used by one deserializer only
+     */
+    static final class Predicate {
+        private final BsvFilter   filter;
+        private final Predicate[] children;
+        //index of field in schema, -1 if filter has no field or field does not exist
+        private final int         field;
+        //values prepared for the charset
+        private final Object      operand;
+
+        //counts not yet added to filter
+        private long              evaluated;
+        private long              rejected;
+
+        Predicate(BsvFilter filter, Predicate[] children, int field, Object operand) {
+            this.filter = filter;
+            this.children = children;
+            this.field = field;
+            this.operand = operand;
+        }
+
+        boolean test(BsvByteTokenizer tokenizer, int[] fieldStarts, int[] fieldEnds) {
+            evaluated++;
+            boolean accepted = filter.doTest(tokenizer, fieldStarts, fieldEnds, this);
+            if (!accepted) {
+                rejected++;
+            }
+            return accepted;
+        }
+
+        void flush() {
+            if (evaluated != 0) {
+                filter.evaluated.addAndGet(evaluated);
+                filter.rejected.addAndGet(rejected);
+                evaluated = 0;
+                rejected = 0;
+            }
+            if (children != null) {
+                for (Predicate child : children) {
+                    child.flush();
+                }
+            }
+        }
+    }
+
+
+    private abstract static class FieldFilter extends BsvFilter {
+        protected final String name;
+
+        FieldFilter(String name) {
+            this.name = name;
+        }
+
+        @Override
+        Predicate bind(BsvSchema schema, Charset charset) {
+            BsvSchema.Field field = schema.getField(name);
+            return new Predicate(this, null, field == null ? -1 : field.getIndex(), prepare(charset, field));
+        }
+
+        /**
+         * @param field null if it does not exist
+         */
+        Object prepare(Charset charset, BsvSchema.Field field) {
+            return null;
+        }
+
+        @Override
+        boolean doTest(BsvByteTokenizer tokenizer, int[] fieldStarts, int[] fieldEnds, Predicate predicate) {
+            int field = predicate.field;
+            if (field < 0) {
+                return false;
+            }
+            return test(tokenizer, fieldStarts[field], fieldEnds[field], predicate.operand);
+        }
+
+        abstract boolean test(BsvByteTokenizer tokenizer, int start, int end, Object operand);
+    }
+
+
+    private static class InFilter extends FieldFilter {
+        private final String[] values;
+        private final String   operator;
+
+        InFilter(String name, String[] values, String operator) {
+            super(name);
+            this.values = values.clone();
+            this.operator = operator;
+        }
+
+        /**
+         * @return open addressing hash table of encoded values, capacity is power of 2
+         */
+        @Override
+        Object prepare(Charset charset, BsvSchema.Field field) {
+            int capacity = Integer.highestOneBit(Math.max(values.length, 1) * 2) * 2;
+            byte[][] table = new byte[capacity][];
+            int mask = capacity - 1;
+            for (String value : values) {
+                byte[] encoded = value.getBytes(charset);
+                int slot = Arrays.hashCode(encoded) & mask;
+                while (table[slot] != null && !Arrays.equals(table[slot], encoded)) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = encoded;
+            }
+            return table;
+        }
+
+        @Override
+        boolean test(BsvByteTokenizer tokenizer, int start, int end, Object operand) {
+            byte[][] table = (byte[][]) operand;
+            int mask = table.length - 1;
+            int slot = tokenizer.transcodedHash(start, end) & mask;
+            while (table[slot] != null) {
+                if (tokenizer.transcodedEquals(start, end, table[slot])) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            if (values.length == 1 && "eq".equals(operator)) {
+                return name + " = " + values[0];
+            }
+            return name + " in " + Arrays.toString(values);
+        }
+    }
+
+
+    private static class PrefixFilter extends FieldFilter {
+        private final String prefix;
+
+        PrefixFilter(String name, String prefix) {
+            super(name);
+            this.prefix = prefix;
+        }
+
+        @Override
+        Object prepare(Charset charset, BsvSchema.Field field) {
+            return prefix.getBytes(charset);
+        }
+
+        @Override
+        boolean test(BsvByteTokenizer tokenizer, int start, int end, Object operand) {
+            return tokenizer.transcodedStartsWith(start, end, (byte[]) operand);
+        }
+
+        @Override
+        public String toString() {
+            return name + " starts with " + prefix;
+        }
+    }
+
+
+    private static class LongRangeFilter extends FieldFilter {
+        private final long min;
+        private final long max;
+
+        LongRangeFilter(String name, long min, long max) {
+            super(name);
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * type of field, a binary number is decoded by it
+         */
+        @Override
+        Object prepare(Charset charset, BsvSchema.Field field) {
+            return field == null ? null : field.getType();
+        }
+
+        @Override
+        boolean test(BsvByteTokenizer tokenizer, int start, int end, Object operand) {
+            if (start == end) {
+                return false;
+            }
+            long value;
+            try {
+                BsvSchema.FieldType type = (BsvSchema.FieldType) operand;
+                if (tokenizer.isBinaryNumbers() && BsvBinaryNumbers.isNumber(type)) {
+                    value = BsvBinaryNumbers.decodeAsLong(tokenizer.getBuffer(), start, end, type);
+                } else {
+                    value = tokenizer.longValue(start, end);
+                }
+            } catch (NumberFormatException numberFormatException) {
+                return false;
+            }
+            return value >= min && value <= max;
+        }
+
+        @Override
+        public String toString() {
+            return name + " in [" + min + ", " + max + "]";
+        }
+    }
+
+
+    private static class DoubleRangeFilter extends FieldFilter {
+        private final double min;
+        private final double max;
+
+        DoubleRangeFilter(String name, double min, double max) {
+            super(name);
+            this.min = min;
+            this.max = max;
+        }
+
+        /**
+         * type of field, a binary number is decoded by it
+         */
+        @Override
+        Object prepare(Charset charset, BsvSchema.Field field) {
+            return field == null ? null : field.getType();
+        }
+
+        @Override
+        boolean test(BsvByteTokenizer tokenizer, int start, int end, Object operand) {
+            if (start == end) {
+                return false;
+            }
+            double value;
+            try {
+                BsvSchema.FieldType type = (BsvSchema.FieldType) operand;
+                if (tokenizer.isBinaryNumbers() && BsvBinaryNumbers.isNumber(type)) {
+                    value = BsvBinaryNumbers.decodeAsDouble(tokenizer.getBuffer(), start, end, type);
+                } else {
+                    value = tokenizer.doubleValue(start, end);
+                }
+            } catch (NumberFormatException numberFormatException) {
+                return false;
+            }
+            return value >= min && value <= max;
+        }
+
+        @Override
+        public String toString() {
+            return name + " in [" + min + ", " + max + "]";
+        }
+    }
+
+
+    private abstract static class CompositeFilter extends BsvFilter {
+        protected final BsvFilter[] filters;
+
+        CompositeFilter(BsvFilter[] filters) {
+            this.filters = filters.clone();
+        }
+
+        @Override
+        Predicate bind(BsvSchema schema, Charset charset) {
+            Predicate[] children = new Predicate[filters.length];
+            for (int i = 0; i < filters.length; i++) {
+                children[i] = filters[i].bind(schema, charset);
+            }
+            return new Predicate(this, children, -1, null);
+        }
+
+        protected String toString(String operator) {
+            StringBuilder builder = new StringBuilder("(");
+            for (int i = 0; i < filters.length; i++) {
+                if (i > 0) {
+                    builder.append(' ').append(operator).append(' ');
+                }
+                builder.append(filters[i]);
+            }
+            return builder.append(')').toString();
+        }
+    }
+
+
+    private static class AndFilter extends CompositeFilter {
+        AndFilter(BsvFilter[] filters) {
+            super(filters);
+        }
+
+        @Override
+        boolean doTest(BsvByteTokenizer tokenizer, int[] fieldStarts, int[] fieldEnds, Predicate predicate) {
+            for (Predicate child : predicate.children) {
+                if (!child.test(tokenizer, fieldStarts, fieldEnds)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public String toString() {
+            return toString("and");
+        }
+    }
+
+
+    private static class OrFilter extends CompositeFilter {
+        OrFilter(BsvFilter[] filters) {
+            super(filters);
+        }
+
+        @Override
+        boolean doTest(BsvByteTokenizer tokenizer, int[] fieldStarts, int[] fieldEnds, Predicate predicate) {
+            for (Predicate child : predicate.children) {
+                if (child.test(tokenizer, fieldStarts, fieldEnds)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public String toString() {
+            return toString("or");
+        }
+    }
+
+
+    private static class NotFilter extends CompositeFilter {
+        NotFilter(BsvFilter filter) {
+            super(new BsvFilter[] { filter });
+        }
+
+        @Override
+        boolean doTest(BsvByteTokenizer tokenizer, int[] fieldStarts, int[] fieldEnds, Predicate predicate) {
+            return !predicate.children[0].test(tokenizer, fieldStarts, fieldEnds);
+        }
+
+        @Override
+        public String toString() {
+            return "not " + filters[0];
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream header: two chars major version, one char minor version, flag of
+ * binary numbers if numbers are binary, and line delimiter. A reader without
+ * binary numbers fails on the flag, where it expects line delimiter.
+ *
+ * @see BsvBinaryNumbers
+ */
+class BsvHeader {
+
+    //length of header without flag
+    protected static final int  LENGTH         = 4;
+    protected static final int  MAX_LENGTH     = LENGTH + 1;
+    //printable ascii, so never a line delimiter of binary numbers
+    protected static final char BINARY_NUMBERS = 'B';
+
+    private final String  majorVersion;
+    private final char    minorVersion;
+    private final boolean binaryNumbers;
+
+
+    BsvHeader(String majorVersion, char minorVersion) {
+        this(majorVersion, minorVersion, false);
+    }
+
+    BsvHeader(String majorVersion, char minorVersion, boolean binaryNumbers) {
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+        this.binaryNumbers = binaryNumbers;
+    }
+
+    static BsvHeader read(InputStream inputStream, char lineDelimiter) throws IOException, BsvException {
+        byte[] majorVersionByte = new byte[2];
+        majorVersionByte[0] = (byte) inputStream.read();
+        majorVersionByte[1] = (byte) inputStream.read();
+
+        String majorVersion = new String(majorVersionByte, BsvContext.DEFAULT_CHARSET);
+        char minorVersion = (char) inputStream.read();
+
+        int delimiter = inputStream.read();
+        boolean binaryNumbers = delimiter == BINARY_NUMBERS && lineDelimiter != BINARY_NUMBERS;
+        if (binaryNumbers) {
+            delimiter = inputStream.read();
+        }
+        if (delimiter != lineDelimiter) {
+            throw new BsvException("Invalid delimiter, expected " + (int) lineDelimiter + ", but was "
+                    + delimiter);
+        }
+        return new BsvHeader(majorVersion, minorVersion, binaryNumbers);
+    }
+
+    /**
+     * @throws BsvException if major version is not two bytes
+     */
+    byte[] toBytes(char lineDelimiter) throws BsvException {
+        byte[] majorVersionByte = majorVersion.getBytes(BsvContext.DEFAULT_CHARSET);
+        if (majorVersionByte.length != 2) {
+            throw new BsvException("Major version:" + majorVersion + "is not two bytes");
+        }
+        if (binaryNumbers) {
+            return new byte[] { majorVersionByte[0], majorVersionByte[1], (byte) minorVersion,
+                    (byte) BINARY_NUMBERS, (byte) lineDelimiter };
+        }
+        return new byte[] { majorVersionByte[0], majorVersionByte[1], (byte) minorVersion, (byte) lineDelimiter };
+    }
+
+    String getMajorVersion() {
+        return majorVersion;
+    }
+
+    char getMinorVersion() {
+        return minorVersion;
+    }
+
+    boolean isBinaryNumbers() {
+        return binaryNumbers;
+    }
+
+    /**
+     * @return bytes of header in stream
+     */
+    int getLength() {
+        return binaryNumbers ? MAX_LENGTH : LENGTH;
+    }
+}
@@ -0,0 +1,329 @@
+package com.github.yantzu.bsv;
+
+import java.lang.invoke.LambdaConversionException;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import com.github.yantzu.bsv.BsvSchema.Field;
+
+/**
+ * Accessor calling bean methods through classes spun by LambdaMetafactory, the
+ * same way as method references are, so every call is a direct call which JIT
+ * can inline. A setter or getter of primitive property gets a primitive
+ * functional interface as well, values of it are never boxed. Functional
+ * interfaces are declared here without type parameters, so their arrays are
+ * created and assigned without unchecked conversion.
+ */
+class BsvLambdaAccessor implements BsvBeanAccessor {
+
+    private final Factory         constructor;
+    private final Setter[]        setters;
+    private final Getter[]        getters;
+    //primitive setters, null where property is not of that primitive type
+    private final IntSetter[]     intSetters;
+    private final LongSetter[]    longSetters;
+    private final FloatSetter[]   floatSetters;
+    private final DoubleSetter[]  doubleSetters;
+    private final BooleanSetter[] booleanSetters;
+    //primitive getters, null where property is not of that primitive type
+    private final IntGetter[]     intGetters;
+    private final LongGetter[]    longGetters;
+    private final FloatGetter[]   floatGetters;
+    private final DoubleGetter[]  doubleGetters;
+    private final BooleanGetter[] booleanGetters;
+
+
+    private BsvLambdaAccessor(BsvSchema schema) throws ReflectiveOperationException, LambdaConversionException {
+        Class<?> beanClass = schema.getBeanClass();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        this.constructor = (Factory) spin(lookup, Factory.class, "get", MethodType.methodType(Object.class),
+                lookup.unreflectConstructor(schema.getBeanConstructor()), MethodType.methodType(beanClass));
+
+        List<Field> fields = schema.getFields();
+        this.setters = new Setter[fields.size()];
+        this.getters = new Getter[fields.size()];
+        this.intSetters = new IntSetter[fields.size()];
+        this.longSetters = new LongSetter[fields.size()];
+        this.floatSetters = new FloatSetter[fields.size()];
+        this.doubleSetters = new DoubleSetter[fields.size()];
+        this.booleanSetters = new BooleanSetter[fields.size()];
+        this.intGetters = new IntGetter[fields.size()];
+        this.longGetters = new LongGetter[fields.size()];
+        this.floatGetters = new FloatGetter[fields.size()];
+        this.doubleGetters = new DoubleGetter[fields.size()];
+        this.booleanGetters = new BooleanGetter[fields.size()];
+
+        for (Field field : fields) {
+            int index = field.getIndex();
+            Method writeMethod = field.getBeanWriteMethod();
+            Method readMethod = field.getBeanReadMethod();
+            MethodHandle writeHandle = lookup.unreflect(writeMethod);
+            Class<?> type = writeMethod.getParameterTypes()[0];
+
+            setters[index] = (Setter) spin(lookup, Setter.class, "accept",
+                    MethodType.methodType(void.class, Object.class, Object.class), writeHandle,
+                    MethodType.methodType(void.class, beanClass, box(type)));
+            getters[index] = (Getter) spin(lookup, Getter.class, "apply",
+                    MethodType.methodType(Object.class, Object.class), lookup.unreflect(readMethod),
+                    MethodType.methodType(box(readMethod.getReturnType()), beanClass));
+
+            MethodType primitiveSetter = MethodType.methodType(void.class, beanClass, type);
+            if (type == int.class) {
+                intSetters[index] = (IntSetter) spin(lookup, IntSetter.class, "accept",
+                        MethodType.methodType(void.class, Object.class, int.class), writeHandle, primitiveSetter);
+            } else if (type == long.class) {
+                longSetters[index] = (LongSetter) spin(lookup, LongSetter.class, "accept",
+                        MethodType.methodType(void.class, Object.class, long.class), writeHandle, primitiveSetter);
+            } else if (type == float.class) {
+                floatSetters[index] = (FloatSetter) spin(lookup, FloatSetter.class, "accept",
+                        MethodType.methodType(void.class, Object.class, float.class), writeHandle, primitiveSetter);
+            } else if (type == double.class) {
+                doubleSetters[index] = (DoubleSetter) spin(lookup, DoubleSetter.class, "accept",
+                        MethodType.methodType(void.class, Object.class, double.class), writeHandle, primitiveSetter);
+            } else if (type == boolean.class) {
+                booleanSetters[index] = (BooleanSetter) spin(lookup, BooleanSetter.class, "accept",
+                        MethodType.methodType(void.class, Object.class, boolean.class), writeHandle, primitiveSetter);
+            }
+
+            Class<?> readType = readMethod.getReturnType();
+            MethodHandle readHandle = lookup.unreflect(readMethod);
+            MethodType primitiveGetter = MethodType.methodType(readType, beanClass);
+            if (readType == int.class) {
+                intGetters[index] = (IntGetter) spin(lookup, IntGetter.class, "apply",
+                        MethodType.methodType(int.class, Object.class), readHandle, primitiveGetter);
+            } else if (readType == long.class) {
+                longGetters[index] = (LongGetter) spin(lookup, LongGetter.class, "apply",
+                        MethodType.methodType(long.class, Object.class), readHandle, primitiveGetter);
+            } else if (readType == float.class) {
+                floatGetters[index] = (FloatGetter) spin(lookup, FloatGetter.class, "apply",
+                        MethodType.methodType(float.class, Object.class), readHandle, primitiveGetter);
+            } else if (readType == double.class) {
+                doubleGetters[index] = (DoubleGetter) spin(lookup, DoubleGetter.class, "apply",
+                        MethodType.methodType(double.class, Object.class), readHandle, primitiveGetter);
+            } else if (readType == boolean.class) {
+                booleanGetters[index] = (BooleanGetter) spin(lookup, BooleanGetter.class, "apply",
+                        MethodType.methodType(boolean.class, Object.class), readHandle, primitiveGetter);
+            }
+        }
+    }
+
+    /**
+     * @return null if methods of bean are not accessible from here, the bean
+     *         is then only reachable by reflection
+     */
+    static BsvBeanAccessor create(BsvSchema schema) {
+        if (!isVisible(schema.getBeanClass())) {
+            return null;
+        }
+        try {
+            return new BsvLambdaAccessor(schema);
+        } catch (ReflectiveOperationException reflectiveOperationException) {
+            return null;
+        } catch (LambdaConversionException lambdaConversionException) {
+            return null;
+        }
+    }
+
+    /**
+     * spun classes resolve the bean class by class loader of this class
+     */
+    private static boolean isVisible(Class<?> beanClass) {
+        try {
+            return Class.forName(beanClass.getName(), false, BsvLambdaAccessor.class.getClassLoader()) == beanClass;
+        } catch (ClassNotFoundException classNotFoundException) {
+            return false;
+        }
+    }
+
+    private static Object spin(MethodHandles.Lookup lookup, Class<?> functionalInterface, String name,
+            MethodType samType, MethodHandle handle, MethodType instantiatedType) throws LambdaConversionException {
+        MethodHandle factory = LambdaMetafactory.metafactory(lookup, name,
+                MethodType.methodType(functionalInterface), samType, handle, instantiatedType).getTarget();
+        try {
+            return factory.invoke();
+        } catch (RuntimeException runtimeException) {
+            throw runtimeException;
+        } catch (Error error) {
+            throw error;
+        } catch (Throwable throwable) {
+            //factory of a non-capturing lambda declares no exception
+            throw new LambdaConversionException("Failed to create " + functionalInterface.getName(), throwable);
+        }
+    }
+
+    private static Class<?> box(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+
+    @Override
+    public BsvObject newInstance() {
+        return (BsvObject) constructor.get();
+    }
+
+    @Override
+    public Object get(BsvObject bean, int field) {
+        return getters[field].apply(bean);
+    }
+
+    @Override
+    public void set(BsvObject bean, int field, Object value) {
+        setters[field].accept(bean, value);
+    }
+
+    @Override
+    public void setInt(BsvObject bean, int field, int value) {
+        IntSetter setter = intSetters[field];
+        if (setter != null) {
+            setter.accept(bean, value);
+        } else {
+            setters[field].accept(bean, value);
+        }
+    }
+
+    @Override
+    public void setLong(BsvObject bean, int field, long value) {
+        LongSetter setter = longSetters[field];
+        if (setter != null) {
+            setter.accept(bean, value);
+        } else {
+            setters[field].accept(bean, value);
+        }
+    }
+
+    @Override
+    public void setFloat(BsvObject bean, int field, float value) {
+        FloatSetter setter = floatSetters[field];
+        if (setter != null) {
+            setter.accept(bean, value);
+        } else {
+            setters[field].accept(bean, value);
+        }
+    }
+
+    @Override
+    public void setDouble(BsvObject bean, int field, double value) {
+        DoubleSetter setter = doubleSetters[field];
+        if (setter != null) {
+            setter.accept(bean, value);
+        } else {
+            setters[field].accept(bean, value);
+        }
+    }
+
+    @Override
+    public void setBoolean(BsvObject bean, int field, boolean value) {
+        BooleanSetter setter = booleanSetters[field];
+        if (setter != null) {
+            setter.accept(bean, value);
+        } else {
+            setters[field].accept(bean, value);
+        }
+    }
+
+    @Override
+    public int getInt(BsvObject bean, int field) {
+        IntGetter getter = intGetters[field];
+        if (getter != null) {
+            return getter.apply(bean);
+        }
+        Object value = getters[field].apply(bean);
+        return value == null ? 0 : (Integer) value;
+    }
+
+    @Override
+    public long getLong(BsvObject bean, int field) {
+        LongGetter getter = longGetters[field];
+        if (getter != null) {
+            return getter.apply(bean);
+        }
+        Object value = getters[field].apply(bean);
+        return value == null ? 0 : (Long) value;
+    }
+
+    @Override
+    public float getFloat(BsvObject bean, int field) {
+        FloatGetter getter = floatGetters[field];
+        if (getter != null) {
+            return getter.apply(bean);
+        }
+        Object value = getters[field].apply(bean);
+        return value == null ? 0 : (Float) value;
+    }
+
+    @Override
+    public double getDouble(BsvObject bean, int field) {
+        DoubleGetter getter = doubleGetters[field];
+        if (getter != null) {
+            return getter.apply(bean);
+        }
+        Object value = getters[field].apply(bean);
+        return value == null ? 0 : (Double) value;
+    }
+
+    @Override
+    public boolean getBoolean(BsvObject bean, int field) {
+        BooleanGetter getter = booleanGetters[field];
+        if (getter != null) {
+            return getter.apply(bean);
+        }
+        Object value = getters[field].apply(bean);
+        return value != null && (Boolean) value;
+    }
+
+
+    interface Factory {
+        Object get();
+    }
+
+    interface Setter {
+        void accept(Object bean, Object value);
+    }
+
+    interface Getter {
+        Object apply(Object bean);
+    }
+
+    interface IntSetter {
+        void accept(Object bean, int value);
+    }
+
+    interface LongSetter {
+        void accept(Object bean, long value);
+    }
+
+    interface FloatSetter {
+        void accept(Object bean, float value);
+    }
+
+    interface DoubleSetter {
+        void accept(Object bean, double value);
+    }
+
+    interface BooleanSetter {
+        void accept(Object bean, boolean value);
+    }
+
+    interface IntGetter {
+        int apply(Object bean);
+    }
+
+    interface LongGetter {
+        long apply(Object bean);
+    }
+
+    interface FloatGetter {
+        float apply(Object bean);
+    }
+
+    interface DoubleGetter {
+        double apply(Object bean);
+    }
+
+    interface BooleanGetter {
+        boolean apply(Object bean);
+    }
+}
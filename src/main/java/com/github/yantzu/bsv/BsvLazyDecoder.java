@@ -0,0 +1,234 @@
+package com.github.yantzu.bsv;
+
+import java.nio.charset.Charset;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * Creates LIST and MAP values of the byte engine which keep a copy of the raw
+ * bytes of their field, and decode items or pairs on first access. Values may
+ * be read by any thread, each thread decodes with its own tokenizer. Decoded
+ * items or pairs are published through a volatile field, threads racing on
+ * first access may decode the same bytes twice, but never see a half decoded
+ * value. Modifying a value is not thread safe, the same as an ArrayList.
+ * <p>
+ * Items are not checked when the record is read, so a field which would fail
+ * the record when decoded eagerly, such as a list item with a key value
+ * delimiter, is cut at the unexpected delimiter instead.
+ */
+class BsvLazyDecoder {
+
+    private final int                           itemsDelimiter;
+    private final int                           keyValueDelimiter;
+    private final ThreadLocal<BsvByteTokenizer> tokenizers;
+
+
+    BsvLazyDecoder(final BsvContext context, final Charset charset) {
+        this.itemsDelimiter = context.getItemsDelimiter();
+        this.keyValueDelimiter = context.getKeyValueDelimiter();
+        this.tokenizers = new ThreadLocal<BsvByteTokenizer>() {
+            @Override
+            protected BsvByteTokenizer initialValue() {
+                return new BsvByteTokenizer(context, charset);
+            }
+        };
+    }
+
+    /**
+     * @param current value of field in reused bean, a lazy list in it is pointed to the new field
+     */
+    List<String> list(Object current, byte[] buffer, int start, int end, BsvStringCache cache) {
+        byte[] slice = Arrays.copyOfRange(buffer, start, end);
+        if (current instanceof LazyList) {
+            LazyList list = (LazyList) current;
+            list.reset(slice, cache);
+            return list;
+        }
+        return new LazyList(this, slice, cache);
+    }
+
+    /**
+     * @param current value of field in reused bean, a lazy map in it is pointed to the new field
+     */
+    Map<String, String> map(Object current, byte[] buffer, int start, int end, BsvStringCache cache) {
+        byte[] slice = Arrays.copyOfRange(buffer, start, end);
+        if (current instanceof LazyMap) {
+            LazyMap map = (LazyMap) current;
+            map.reset(slice, cache);
+            return map;
+        }
+        return new LazyMap(this, slice, cache);
+    }
+
+    private ArrayList<String> decodeList(byte[] slice, BsvStringCache cache) {
+        BsvByteTokenizer tokenizer = tokenizers.get();
+        tokenizer.reset(slice, 0, slice.length);
+        ArrayList<String> list = new ArrayList<String>();
+        while (true) {
+            int i = tokenizer.nextToken();
+            list.add(tokenizer.tokenString(cache));
+            if (i != itemsDelimiter) {
+                return list;
+            }
+        }
+    }
+
+    private BsvCompactMap decodeMap(byte[] slice, BsvStringCache cache) {
+        BsvByteTokenizer tokenizer = tokenizers.get();
+        tokenizer.reset(slice, 0, slice.length);
+        BsvCompactMap map = new BsvCompactMap();
+        while (true) {
+            int i = tokenizer.nextToken();
+            if (i != keyValueDelimiter) {
+                return map;
+            }
+            String key = tokenizer.tokenString(cache);
+            i = tokenizer.nextToken();
+            map.put(key, tokenizer.tokenString());
+            if (i != itemsDelimiter) {
+                return map;
+            }
+        }
+    }
+
+
+    /**
+     * list decoded into an ArrayList on first access
+     */
+    static final class LazyList extends AbstractList<String> implements RandomAccess {
+        private final BsvLazyDecoder       decoder;
+        //raw bytes of field, kept after decoding as another thread may be decoding it
+        private byte[]                     slice;
+        private BsvStringCache             cache;
+        private volatile ArrayList<String> items;
+
+        LazyList(BsvLazyDecoder decoder, byte[] slice, BsvStringCache cache) {
+            this.decoder = decoder;
+            this.slice = slice;
+            this.cache = cache;
+        }
+
+        void reset(byte[] slice, BsvStringCache cache) {
+            this.slice = slice;
+            this.cache = cache;
+            this.items = null;
+            modCount++;
+        }
+
+        private ArrayList<String> items() {
+            ArrayList<String> decoded = items;
+            if (decoded == null) {
+                decoded = decoder.decodeList(slice, cache);
+                items = decoded;
+            }
+            return decoded;
+        }
+
+        @Override
+        public String get(int index) {
+            return items().get(index);
+        }
+
+        @Override
+        public int size() {
+            return items().size();
+        }
+
+        @Override
+        public String set(int index, String element) {
+            return items().set(index, element);
+        }
+
+        @Override
+        public void add(int index, String element) {
+            items().add(index, element);
+            modCount++;
+        }
+
+        @Override
+        public String remove(int index) {
+            String removed = items().remove(index);
+            modCount++;
+            return removed;
+        }
+
+        @Override
+        public void clear() {
+            items = new ArrayList<String>();
+            modCount++;
+        }
+    }
+
+    /**
+     * map decoded into a {@link BsvCompactMap} on first access
+     */
+    static final class LazyMap extends AbstractMap<String, String> {
+        private final BsvLazyDecoder   decoder;
+        //raw bytes of field, kept after decoding as another thread may be decoding it
+        private byte[]                 slice;
+        private BsvStringCache         cache;
+        private volatile BsvCompactMap pairs;
+
+        LazyMap(BsvLazyDecoder decoder, byte[] slice, BsvStringCache cache) {
+            this.decoder = decoder;
+            this.slice = slice;
+            this.cache = cache;
+        }
+
+        void reset(byte[] slice, BsvStringCache cache) {
+            this.slice = slice;
+            this.cache = cache;
+            this.pairs = null;
+        }
+
+        private BsvCompactMap pairs() {
+            BsvCompactMap decoded = pairs;
+            if (decoded == null) {
+                decoded = decoder.decodeMap(slice, cache);
+                pairs = decoded;
+            }
+            return decoded;
+        }
+
+        @Override
+        public int size() {
+            return pairs().size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return pairs().containsKey(key);
+        }
+
+        @Override
+        public String get(Object key) {
+            return pairs().get(key);
+        }
+
+        @Override
+        public String put(String key, String value) {
+            return pairs().put(key, value);
+        }
+
+        @Override
+        public String remove(Object key) {
+            return pairs().remove(key);
+        }
+
+        @Override
+        public void clear() {
+            pairs = new BsvCompactMap();
+        }
+
+        @Override
+        public Set<Entry<String, String>> entrySet() {
+            return pairs().entrySet();
+        }
+    }
+}
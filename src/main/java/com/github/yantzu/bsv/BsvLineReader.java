@@ -0,0 +1,119 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Cuts an input stream into lines on a single byte line delimiter. The current
+ * line stays in a reusable buffer and is only valid until the next call of
+ * {@link #nextLine()}.
+ */
+class BsvLineReader {
+
+    protected static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream    inputStream;
+    private final BsvByteMatcher lineDelimiter;
+
+    private byte[]               buffer;
+    private int                  position;
+    private int                  limit;
+    private boolean              eof;
+    //offset of buffer[0] in input
+    private long                 bufferOffset;
+
+    private int                  lineStart;
+    private int                  lineEnd;
+
+
+    BsvLineReader(InputStream inputStream, byte lineDelimiter) {
+        this(inputStream, lineDelimiter, DEFAULT_BUFFER_SIZE);
+    }
+
+    BsvLineReader(InputStream inputStream, byte lineDelimiter, int bufferSize) {
+        this(inputStream, lineDelimiter, bufferSize, 0);
+    }
+
+    /**
+     * @param offset offset of the first byte of input stream, for offsets of lines
+     */
+    BsvLineReader(InputStream inputStream, byte lineDelimiter, int bufferSize, long offset) {
+        this.inputStream = inputStream;
+        this.lineDelimiter = new BsvByteMatcher(lineDelimiter & 0xFF);
+        this.buffer = new byte[bufferSize];
+        this.bufferOffset = offset;
+    }
+
+    /**
+     * move to next line, the last line does not need to be terminated by line delimiter
+     * @return false if no more data
+     * @throws IOException
+     */
+    boolean nextLine() throws IOException {
+        int scan = position;
+        while (true) {
+            int i = lineDelimiter.indexOf(buffer, scan, limit);
+            if (i < limit) {
+                lineStart = position;
+                lineEnd = i;
+                position = i + 1;
+                return true;
+            }
+
+            if (eof) {
+                if (position < limit) {
+                    lineStart = position;
+                    lineEnd = limit;
+                    position = limit;
+                    return true;
+                }
+                return false;
+            }
+
+            int scanned = limit - position;
+            fill();
+            scan = position + scanned;
+        }
+    }
+
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            bufferOffset += position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+        }
+
+        int read = inputStream.read(buffer, limit, buffer.length - limit);
+        if (read == -1) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+
+    byte[] getBuffer() {
+        return buffer;
+    }
+
+    int getLineStart() {
+        return lineStart;
+    }
+
+    int getLineEnd() {
+        return lineEnd;
+    }
+
+    long getLineOffset() {
+        return bufferOffset + lineStart;
+    }
+
+    void close() throws IOException {
+        inputStream.close();
+    }
+}
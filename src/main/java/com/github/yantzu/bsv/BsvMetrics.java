@@ -0,0 +1,346 @@
+package com.github.yantzu.bsv;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Default metrics listener. It counts records and bytes per variant, errors
+ * per kind, and skipped bytes, and keeps a histogram of sampled latencies,
+ * which buckets nanos by power of two. Counters are striped, so readers and
+ * serializers of many threads do not contend on them. It is exposed to JMX by
+ * {@link #register(String)}.
+ */
+public class BsvMetrics implements BsvMetricsListener, BsvMetricsMXBean {
+
+    public static final String    DOMAIN                  = "com.github.yantzu.bsv";
+    protected static final int    DEFAULT_LATENCY_SAMPLING = 1000;
+    private static final int      BUCKETS                 = 64;
+
+    private final int             latencySampling;
+
+    private final LongAdder       recordsRead             = new LongAdder();
+    private final LongAdder       bytesRead               = new LongAdder();
+    private final LongAdder       recordsWritten          = new LongAdder();
+    private final LongAdder       bytesWritten            = new LongAdder();
+    private final LongAdder       skippedBytes            = new LongAdder();
+    private final AtomicLongArray readErrorsOfKind        = new AtomicLongArray(BsvException.Kind.values().length);
+    private final AtomicLongArray writeErrorsOfKind       = new AtomicLongArray(BsvException.Kind.values().length);
+    private final AtomicLongArray readLatencies           = new AtomicLongArray(BUCKETS);
+    private final AtomicLongArray writeLatencies          = new AtomicLongArray(BUCKETS);
+    private final ConcurrentMap<BsvSchema, Variant> variants = new ConcurrentHashMap<BsvSchema, Variant>();
+
+    private volatile ObjectName   objectName;
+
+
+    /**
+     * time one of every 1000 records
+     */
+    public BsvMetrics() {
+        this(DEFAULT_LATENCY_SAMPLING);
+    }
+
+    /**
+     * @param latencySampling one of every that many records is timed, 0 to time none
+     */
+    public BsvMetrics(int latencySampling) {
+        if (latencySampling < 0) {
+            throw new IllegalArgumentException("Invalid latency sampling " + latencySampling);
+        }
+        this.latencySampling = latencySampling;
+    }
+
+    @Override
+    public void onRecordRead(BsvSchema schema, int bytes) {
+        Variant variant = variant(schema);
+        recordsRead.increment();
+        variant.recordsRead.increment();
+        if (bytes > 0) {
+            bytesRead.add(bytes);
+            variant.bytesRead.add(bytes);
+        }
+    }
+
+    @Override
+    public void onRecordWritten(BsvSchema schema, int bytes) {
+        Variant variant = variant(schema);
+        recordsWritten.increment();
+        bytesWritten.add(bytes);
+        variant.recordsWritten.increment();
+        variant.bytesWritten.add(bytes);
+    }
+
+    @Override
+    public void onReadError(BsvException exception, BsvSchema schema, long skippedBytes) {
+        readErrorsOfKind.incrementAndGet(exception.getKind().ordinal());
+        if (skippedBytes > 0) {
+            this.skippedBytes.add(skippedBytes);
+        }
+    }
+
+    /**
+     * an exception other than BsvException is counted as a VALUE error
+     */
+    @Override
+    public void onWriteError(Exception exception, BsvSchema schema) {
+        BsvException.Kind kind = exception instanceof BsvException ? ((BsvException) exception).getKind()
+                : BsvException.Kind.VALUE;
+        writeErrorsOfKind.incrementAndGet(kind.ordinal());
+    }
+
+    @Override
+    public int getLatencySampling() {
+        return latencySampling;
+    }
+
+    @Override
+    public void onLatency(BsvSchema schema, boolean write, long nanos) {
+        (write ? writeLatencies : readLatencies).incrementAndGet(bucket(nanos));
+    }
+
+    private Variant variant(BsvSchema schema) {
+        Variant variant = variants.get(schema);
+        if (variant == null) {
+            Variant created = new Variant();
+            variant = variants.putIfAbsent(schema, created);
+            if (variant == null) {
+                variant = created;
+            }
+        }
+        return variant;
+    }
+
+    /**
+     * bucket of values up to 2^bucket - 1
+     */
+    private static int bucket(long nanos) {
+        return nanos <= 0 ? 0 : Math.min(BUCKETS - Long.numberOfLeadingZeros(nanos), BUCKETS - 1);
+    }
+
+    /**
+     * register as MBean com.github.yantzu.bsv:type=BsvMetrics,name=name of platform MBean server
+     */
+    public ObjectName register(String name) throws JMException {
+        ObjectName registered = new ObjectName(DOMAIN + ":type=BsvMetrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, registered);
+        objectName = registered;
+        return registered;
+    }
+
+    /**
+     * unregister from platform MBean server, nothing happens if not registered
+     */
+    public void unregister() throws JMException {
+        ObjectName registered = objectName;
+        if (registered != null) {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(registered)) {
+                server.unregisterMBean(registered);
+            }
+            objectName = null;
+        }
+    }
+
+    @Override
+    public long getRecordsRead() {
+        return recordsRead.sum();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    @Override
+    public long getRecordsWritten() {
+        return recordsWritten.sum();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public long getReadErrors() {
+        return sum(readErrorsOfKind);
+    }
+
+    @Override
+    public long getWriteErrors() {
+        return sum(writeErrorsOfKind);
+    }
+
+    @Override
+    public long getSkippedBytes() {
+        return skippedBytes.sum();
+    }
+
+    public long getReadErrors(BsvException.Kind kind) {
+        return readErrorsOfKind.get(kind.ordinal());
+    }
+
+    public long getWriteErrors(BsvException.Kind kind) {
+        return writeErrorsOfKind.get(kind.ordinal());
+    }
+
+    public long getRecordsRead(BsvSchema schema) {
+        Variant variant = variants.get(schema);
+        return variant == null ? 0 : variant.recordsRead.sum();
+    }
+
+    public long getBytesRead(BsvSchema schema) {
+        Variant variant = variants.get(schema);
+        return variant == null ? 0 : variant.bytesRead.sum();
+    }
+
+    public long getRecordsWritten(BsvSchema schema) {
+        Variant variant = variants.get(schema);
+        return variant == null ? 0 : variant.recordsWritten.sum();
+    }
+
+    public long getBytesWritten(BsvSchema schema) {
+        Variant variant = variants.get(schema);
+        return variant == null ? 0 : variant.bytesWritten.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRecordsReadByVariant() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Entry<BsvSchema, Variant> entry : variants.entrySet()) {
+            result.put(entry.getKey().getFullVersion(), entry.getValue().recordsRead.sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getBytesReadByVariant() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Entry<BsvSchema, Variant> entry : variants.entrySet()) {
+            result.put(entry.getKey().getFullVersion(), entry.getValue().bytesRead.sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getRecordsWrittenByVariant() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Entry<BsvSchema, Variant> entry : variants.entrySet()) {
+            result.put(entry.getKey().getFullVersion(), entry.getValue().recordsWritten.sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getBytesWrittenByVariant() {
+        Map<String, Long> result = new TreeMap<String, Long>();
+        for (Entry<BsvSchema, Variant> entry : variants.entrySet()) {
+            result.put(entry.getKey().getFullVersion(), entry.getValue().bytesWritten.sum());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getReadErrorsByKind() {
+        return byKind(readErrorsOfKind);
+    }
+
+    @Override
+    public Map<String, Long> getWriteErrorsByKind() {
+        return byKind(writeErrorsOfKind);
+    }
+
+    @Override
+    public Map<String, Long> getReadLatencyNanos() {
+        return summary(readLatencies);
+    }
+
+    @Override
+    public Map<String, Long> getWriteLatencyNanos() {
+        return summary(writeLatencies);
+    }
+
+    /**
+     * @param write true for latencies of serialized records
+     * @param percentile 0 to 100
+     * @return upper bound of bucket holding percentile, 0 if no latency sampled
+     */
+    public long getLatency(boolean write, double percentile) {
+        return percentile(snapshot(write ? writeLatencies : readLatencies), percentile);
+    }
+
+    private static Map<String, Long> byKind(AtomicLongArray errorsOfKind) {
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        for (BsvException.Kind kind : BsvException.Kind.values()) {
+            result.put(kind.name(), errorsOfKind.get(kind.ordinal()));
+        }
+        return result;
+    }
+
+    private static Map<String, Long> summary(AtomicLongArray latencies) {
+        long[] counts = snapshot(latencies);
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        Map<String, Long> result = new LinkedHashMap<String, Long>();
+        result.put("count", count);
+        result.put("p50", percentile(counts, 50));
+        result.put("p90", percentile(counts, 90));
+        result.put("p99", percentile(counts, 99));
+        result.put("max", percentile(counts, 100));
+        return result;
+    }
+
+    private static long[] snapshot(AtomicLongArray latencies) {
+        long[] counts = new long[latencies.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = latencies.get(i);
+        }
+        return counts;
+    }
+
+    private static long percentile(long[] counts, double percentile) {
+        long count = 0;
+        for (long bucketCount : counts) {
+            count += bucketCount;
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i == BUCKETS - 1 ? Long.MAX_VALUE : (1L << i) - 1;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    private static long sum(AtomicLongArray counts) {
+        long sum = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            sum += counts.get(i);
+        }
+        return sum;
+    }
+
+    private static class Variant {
+        private final LongAdder recordsRead    = new LongAdder();
+        private final LongAdder bytesRead      = new LongAdder();
+        private final LongAdder recordsWritten = new LongAdder();
+        private final LongAdder bytesWritten   = new LongAdder();
+    }
+}
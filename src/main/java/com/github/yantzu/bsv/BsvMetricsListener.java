@@ -0,0 +1,53 @@
+package com.github.yantzu.bsv;
+
+/**
+ * Receives counts of records read and written by deserializers and serializers
+ * of a context. It is called by threads of parallel readers and concurrent
+ * serializers at the same time, so it must be thread safe, and it is called
+ * once per record, so it must be cheap. No metrics are collected when a
+ * context has no listener, at the cost of a null check per record.
+ *
+ * @see BsvContextBuilder#metricsListener(BsvMetricsListener)
+ * @see BsvMetrics
+ */
+public interface BsvMetricsListener {
+
+    /**
+     * @param bytes bytes of record with line delimiter, -1 for the char engine
+     *        which reads decoded chars only
+     */
+    void onRecordRead(BsvSchema schema, int bytes);
+
+    /**
+     * @param bytes bytes of record with line delimiter
+     */
+    void onRecordWritten(BsvSchema schema, int bytes);
+
+    /**
+     * a bad record skipped by a deserializer
+     *
+     * @param schema schema of record, null if its variant is unknown
+     * @param skippedBytes bytes skipped, the whole line for the byte engine and
+     *        the rest of line after the error for the char engine
+     */
+    void onReadError(BsvException exception, BsvSchema schema, long skippedBytes);
+
+    /**
+     * a record which failed to serialize, it is not written
+     *
+     * @param schema schema of record, null if its version or variant is invalid
+     */
+    void onWriteError(Exception exception, BsvSchema schema);
+
+    /**
+     * @return one of every that many records of a deserializer or serializer
+     *         is timed, 0 to time none
+     */
+    int getLatencySampling();
+
+    /**
+     * @param write true for a serialized record, false for a deserialized one
+     * @param nanos time spent reading or encoding record
+     */
+    void onLatency(BsvSchema schema, boolean write, long nanos);
+}
@@ -0,0 +1,51 @@
+package com.github.yantzu.bsv;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link BsvMetrics}. Maps are keyed by full version of variant,
+ * such as 03.0.1, or by kind of error. Latencies are estimated from a
+ * histogram of power of two buckets, so they are upper bounds within a factor
+ * of two.
+ */
+public interface BsvMetricsMXBean {
+
+    long getRecordsRead();
+
+    /**
+     * @return bytes of records read by the byte engine, the char engine does not count bytes
+     */
+    long getBytesRead();
+
+    long getRecordsWritten();
+
+    long getBytesWritten();
+
+    long getReadErrors();
+
+    long getWriteErrors();
+
+    long getSkippedBytes();
+
+    Map<String, Long> getRecordsReadByVariant();
+
+    Map<String, Long> getBytesReadByVariant();
+
+    Map<String, Long> getRecordsWrittenByVariant();
+
+    Map<String, Long> getBytesWrittenByVariant();
+
+    Map<String, Long> getReadErrorsByKind();
+
+    Map<String, Long> getWriteErrorsByKind();
+
+    /**
+     * @return count, p50, p90, p99 and max of sampled read latencies in nanos
+     */
+    Map<String, Long> getReadLatencyNanos();
+
+    /**
+     * @return count, p50, p90, p99 and max of sampled write latencies in nanos
+     */
+    Map<String, Long> getWriteLatencyNanos();
+}
@@ -0,0 +1,424 @@
+package com.github.yantzu.bsv;
+
+/**
+ * Parses numbers straight from a byte or char range, with the same results and
+ * failures as Integer.parseInt, Long.parseLong, Float.parseFloat and
+ * Double.parseDouble, but without creating a String.
+ * <p>
+ * Decimals with at most 18 significant digits and a small exponent take the
+ * exact path of Clinger: mantissa and power of ten are both exact in binary, so
+ * one multiplication or division is correctly rounded. Any other input, such as
+ * "NaN", hex or surrounding spaces, is parsed by JDK.
+ */
+class BsvNumberParser {
+
+    //largest power of ten which is exact in double / float
+    private static final int      MAX_DOUBLE_EXPONENT = 22;
+    private static final int      MAX_FLOAT_EXPONENT  = 10;
+    private static final long     MAX_DOUBLE_MANTISSA = 1L << 53;
+    private static final long     MAX_FLOAT_MANTISSA  = 1L << 24;
+    //significant digits always fitting in long
+    private static final int      MAX_DIGITS          = 18;
+
+    private static final double[] DOUBLE_POWERS       = new double[MAX_DOUBLE_EXPONENT + 1];
+    private static final float[]  FLOAT_POWERS        = new float[MAX_FLOAT_EXPONENT + 1];
+
+    static {
+        double power = 1;
+        for (int i = 0; i < DOUBLE_POWERS.length; i++) {
+            DOUBLE_POWERS[i] = power;
+            power *= 10;
+        }
+        float floatPower = 1;
+        for (int i = 0; i < FLOAT_POWERS.length; i++) {
+            FLOAT_POWERS[i] = floatPower;
+            floatPower *= 10;
+        }
+    }
+
+
+    private BsvNumberParser() {
+    }
+
+    static int parseInt(byte[] bytes, int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        int i = start;
+        boolean negative = false;
+        byte first = bytes[i];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                throw numberFormatException(bytes, start, end);
+            }
+        }
+
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int multmin = limit / 10;
+        int result = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                if (bytes[i] < 0) {
+                    //may be a non ascii digit
+                    return Integer.parseInt(asString(bytes, start, end));
+                }
+                throw numberFormatException(bytes, start, end);
+            }
+            if (result < multmin) {
+                throw numberFormatException(bytes, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(bytes, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    static int parseInt(CharSequence chars, int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        int i = start;
+        boolean negative = false;
+        char first = chars.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                throw numberFormatException(chars, start, end);
+            }
+        }
+
+        int limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        int multmin = limit / 10;
+        int result = 0;
+        for (; i < end; i++) {
+            char c = chars.charAt(i);
+            int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                if (c >= 0x80) {
+                    return Integer.parseInt(asString(chars, start, end));
+                }
+                throw numberFormatException(chars, start, end);
+            }
+            if (result < multmin) {
+                throw numberFormatException(chars, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(chars, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    static long parseLong(byte[] bytes, int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        int i = start;
+        boolean negative = false;
+        byte first = bytes[i];
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                throw numberFormatException(bytes, start, end);
+            }
+        }
+
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                if (bytes[i] < 0) {
+                    return Long.parseLong(asString(bytes, start, end));
+                }
+                throw numberFormatException(bytes, start, end);
+            }
+            if (result < multmin) {
+                throw numberFormatException(bytes, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(bytes, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    static long parseLong(CharSequence chars, int start, int end) {
+        if (start == end) {
+            throw new NumberFormatException("For input string: \"\"");
+        }
+        int i = start;
+        boolean negative = false;
+        char first = chars.charAt(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                throw numberFormatException(chars, start, end);
+            }
+        }
+
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multmin = limit / 10;
+        long result = 0;
+        for (; i < end; i++) {
+            char c = chars.charAt(i);
+            int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                if (c >= 0x80) {
+                    return Long.parseLong(asString(chars, start, end));
+                }
+                throw numberFormatException(chars, start, end);
+            }
+            if (result < multmin) {
+                throw numberFormatException(chars, start, end);
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw numberFormatException(chars, start, end);
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    static float parseFloat(byte[] bytes, int start, int end) {
+        double value = parseDecimal(bytes, start, end, true);
+        if (value != value) {
+            return Float.parseFloat(asString(bytes, start, end));
+        }
+        return (float) value;
+    }
+
+    static float parseFloat(CharSequence chars, int start, int end) {
+        double value = parseDecimal(chars, start, end, true);
+        if (value != value) {
+            return Float.parseFloat(asString(chars, start, end));
+        }
+        return (float) value;
+    }
+
+    static double parseDouble(byte[] bytes, int start, int end) {
+        double value = parseDecimal(bytes, start, end, false);
+        if (value != value) {
+            return Double.parseDouble(asString(bytes, start, end));
+        }
+        return value;
+    }
+
+    static double parseDouble(CharSequence chars, int start, int end) {
+        double value = parseDecimal(chars, start, end, false);
+        if (value != value) {
+            return Double.parseDouble(asString(chars, start, end));
+        }
+        return value;
+    }
+
+    /**
+     * @return NaN if range is not a plain decimal which can be parsed exactly
+     */
+    private static double parseDecimal(byte[] bytes, int start, int end, boolean single) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+            negative = bytes[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        int mantissaStart = i;
+        for (; i < end; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (digits == MAX_DIGITS) {
+                return Double.NaN;
+            }
+            mantissa = mantissa * 10 + digit;
+            if (mantissa != 0) {
+                digits++;
+            }
+        }
+        int integerDigits = i - mantissaStart;
+        int fractionDigits = 0;
+        if (i < end && bytes[i] == '.') {
+            i++;
+            int fractionStart = i;
+            for (; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (digits == MAX_DIGITS) {
+                    return Double.NaN;
+                }
+                mantissa = mantissa * 10 + digit;
+                if (mantissa != 0) {
+                    digits++;
+                }
+                exponent--;
+            }
+            fractionDigits = i - fractionStart;
+        }
+        if (integerDigits + fractionDigits == 0) {
+            return Double.NaN;
+        }
+
+        if (i < end && (bytes[i] == 'e' || bytes[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (bytes[i] == '-' || bytes[i] == '+')) {
+                negativeExponent = bytes[i] == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                int digit = bytes[i] - '0';
+                if (digit < 0 || digit > 9 || i - exponentStart == 4) {
+                    break;
+                }
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+            if (i == exponentStart) {
+                return Double.NaN;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        return exact(negative, mantissa, exponent, single);
+    }
+
+    private static double parseDecimal(CharSequence chars, int start, int end, boolean single) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+            negative = chars.charAt(i) == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        int mantissaStart = i;
+        for (; i < end; i++) {
+            int digit = chars.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            if (digits == MAX_DIGITS) {
+                return Double.NaN;
+            }
+            mantissa = mantissa * 10 + digit;
+            if (mantissa != 0) {
+                digits++;
+            }
+        }
+        int integerDigits = i - mantissaStart;
+        int fractionDigits = 0;
+        if (i < end && chars.charAt(i) == '.') {
+            i++;
+            int fractionStart = i;
+            for (; i < end; i++) {
+                int digit = chars.charAt(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                if (digits == MAX_DIGITS) {
+                    return Double.NaN;
+                }
+                mantissa = mantissa * 10 + digit;
+                if (mantissa != 0) {
+                    digits++;
+                }
+                exponent--;
+            }
+            fractionDigits = i - fractionStart;
+        }
+        if (integerDigits + fractionDigits == 0) {
+            return Double.NaN;
+        }
+
+        if (i < end && (chars.charAt(i) == 'e' || chars.charAt(i) == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+                negativeExponent = chars.charAt(i) == '-';
+                i++;
+            }
+            int exponentStart = i;
+            int explicitExponent = 0;
+            for (; i < end; i++) {
+                int digit = chars.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || i - exponentStart == 4) {
+                    break;
+                }
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+            if (i == exponentStart) {
+                return Double.NaN;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        if (i != end) {
+            return Double.NaN;
+        }
+        return exact(negative, mantissa, exponent, single);
+    }
+
+    /**
+     * @return NaN if value can not be computed exactly
+     */
+    private static double exact(boolean negative, long mantissa, int exponent, boolean single) {
+        if (mantissa == 0) {
+            return negative ? -0.0d : 0.0d;
+        }
+        if (single) {
+            if (mantissa >= MAX_FLOAT_MANTISSA || exponent < -MAX_FLOAT_EXPONENT || exponent > MAX_FLOAT_EXPONENT) {
+                return Double.NaN;
+            }
+            float value = exponent < 0 ? (float) mantissa / FLOAT_POWERS[-exponent]
+                    : (float) mantissa * FLOAT_POWERS[exponent];
+            return negative ? -value : value;
+        }
+        if (mantissa >= MAX_DOUBLE_MANTISSA || exponent < -MAX_DOUBLE_EXPONENT || exponent > MAX_DOUBLE_EXPONENT) {
+            return Double.NaN;
+        }
+        double value = exponent < 0 ? mantissa / DOUBLE_POWERS[-exponent] : mantissa * DOUBLE_POWERS[exponent];
+        return negative ? -value : value;
+    }
+
+    private static String asString(byte[] bytes, int start, int end) {
+        return new String(bytes, start, end - start, BsvContext.DEFAULT_CHARSET);
+    }
+
+    private static String asString(CharSequence chars, int start, int end) {
+        return chars.subSequence(start, end).toString();
+    }
+
+    private static NumberFormatException numberFormatException(byte[] bytes, int start, int end) {
+        return new NumberFormatException("For input string: \"" + asString(bytes, start, end) + "\"");
+    }
+
+    private static NumberFormatException numberFormatException(CharSequence chars, int start, int end) {
+        return new NumberFormatException("For input string: \"" + asString(chars, start, end) + "\"");
+    }
+}
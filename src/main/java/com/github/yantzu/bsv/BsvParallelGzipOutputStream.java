@@ -0,0 +1,309 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip output stream compressing chunks on several threads, the way pigz
+ * does. Each chunk is deflated independently, primed with the last 32KB of
+ * the chunk before it as dictionary, and ended with a sync flush, so the
+ * compressed chunks join into the deflate stream of a single gzip member,
+ * readable by any gzip reader, at nearly the ratio of a single threaded
+ * compressor.
+ * <p>
+ * Chunks are written in order. At most maxInFlight chunks are compressed or
+ * waiting to be written, a writer blocks until the oldest one is done.
+ * Checksum is computed by the writing thread.
+ */
+public class BsvParallelGzipOutputStream extends OutputStream {
+
+    protected static final int   DEFAULT_CHUNK_SIZE = 128 * 1024;
+    protected static final int   DICTIONARY_SIZE    = 32 * 1024;
+
+    private static final byte[]  GZIP_HEADER        = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0,
+            0, (byte) 0xff };
+    private static final AtomicInteger STREAMS      = new AtomicInteger();
+
+    private final OutputStream    outputStream;
+    private final ExecutorService workers;
+    private final boolean         ownWorkers;
+    private final int             level;
+    private int                   chunkSize         = DEFAULT_CHUNK_SIZE;
+    private int                   maxInFlight;
+
+    private byte[]                chunk;
+    private int                   chunkLength;
+    //last bytes of previous chunk, null before the first chunk
+    private byte[]                dictionary;
+    private final CRC32           crc               = new CRC32();
+    private long                  totalLength;
+    private final LinkedList<Future<byte[]>> inFlight = new LinkedList<Future<byte[]>>();
+    private boolean               started;
+    private boolean               closed;
+
+
+    /**
+     * @param workers count of compressor threads
+     * @param level compression level of {@link Deflater}
+     */
+    public BsvParallelGzipOutputStream(OutputStream outputStream, int workers, int level) {
+        this(outputStream, Executors.newFixedThreadPool(workers, daemonThreads()), true, workers, level);
+    }
+
+    /**
+     * @param workers executor of compressor tasks, not shut down by stream
+     */
+    public BsvParallelGzipOutputStream(OutputStream outputStream, ExecutorService workers, int level) {
+        this(outputStream, workers, false, Runtime.getRuntime().availableProcessors(), level);
+    }
+
+    private BsvParallelGzipOutputStream(OutputStream outputStream, ExecutorService workers, boolean ownWorkers,
+            int parallelism, int level) {
+        this.outputStream = outputStream;
+        this.workers = workers;
+        this.ownWorkers = ownWorkers;
+        this.level = level;
+        this.maxInFlight = parallelism * 2;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        final int stream = STREAMS.incrementAndGet();
+        return new ThreadFactory() {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bsv-gzip-" + stream + "-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * uncompressed bytes per chunk, 128KB by default. Only effective before
+     * the first byte is written.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+        }
+        checkNotStarted();
+        this.chunkSize = chunkSize;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * chunks compressed and not yet written, twice of workers by default.
+     * Only effective before the first byte is written.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Invalid max in flight " + maxInFlight);
+        }
+        checkNotStarted();
+        this.maxInFlight = maxInFlight;
+    }
+
+    private void checkNotStarted() {
+        if (started) {
+            throw new IllegalStateException("Stream is already started");
+        }
+    }
+
+    private void start() throws IOException {
+        if (closed) {
+            throw new IOException("Stream is closed");
+        }
+        if (started) {
+            return;
+        }
+        started = true;
+        chunk = new byte[chunkSize];
+        outputStream.write(GZIP_HEADER);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        start();
+        chunk[chunkLength++] = (byte) b;
+        if (chunkLength == chunk.length) {
+            submit(false);
+        }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        start();
+        while (length > 0) {
+            int copied = Math.min(length, chunk.length - chunkLength);
+            System.arraycopy(bytes, offset, chunk, chunkLength, copied);
+            chunkLength += copied;
+            offset += copied;
+            length -= copied;
+            if (chunkLength == chunk.length) {
+                submit(false);
+            }
+        }
+    }
+
+    /**
+     * hand current chunk to a compressor, and write compressed chunks until
+     * less than maxInFlight are left
+     */
+    private void submit(final boolean last) throws IOException {
+        final byte[] input = chunk;
+        final int inputLength = chunkLength;
+        final byte[] inputDictionary = dictionary;
+        crc.update(input, 0, inputLength);
+        totalLength += inputLength;
+        dictionary = nextDictionary(inputDictionary, input, inputLength);
+        chunk = last ? null : new byte[chunkSize];
+        chunkLength = 0;
+
+        inFlight.add(workers.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws Exception {
+                return deflate(input, inputLength, inputDictionary, last);
+            }
+        }));
+        while (inFlight.size() >= maxInFlight) {
+            writeCompressed();
+        }
+    }
+
+    private static byte[] nextDictionary(byte[] previous, byte[] input, int inputLength) {
+        if (inputLength >= DICTIONARY_SIZE || previous == null) {
+            return Arrays.copyOfRange(input, Math.max(0, inputLength - DICTIONARY_SIZE), inputLength);
+        }
+        int kept = Math.min(previous.length, DICTIONARY_SIZE - inputLength);
+        byte[] next = new byte[kept + inputLength];
+        System.arraycopy(previous, previous.length - kept, next, 0, kept);
+        System.arraycopy(input, 0, next, kept, inputLength);
+        return next;
+    }
+
+    private byte[] deflate(byte[] input, int inputLength, byte[] inputDictionary, boolean last) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            if (inputDictionary != null && inputDictionary.length > 0) {
+                deflater.setDictionary(inputDictionary);
+            }
+            deflater.setInput(input, 0, inputLength);
+            byte[] compressed = new byte[Math.max(64, inputLength / 2)];
+            int compressedLength = 0;
+            if (last) {
+                deflater.finish();
+                while (!deflater.finished()) {
+                    if (compressedLength == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    compressedLength += deflater.deflate(compressed, compressedLength,
+                            compressed.length - compressedLength);
+                }
+            } else {
+                //sync flush is complete when it leaves space in output
+                while (true) {
+                    if (compressedLength == compressed.length) {
+                        compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                    }
+                    int space = compressed.length - compressedLength;
+                    int deflated = deflater.deflate(compressed, compressedLength, space, Deflater.SYNC_FLUSH);
+                    compressedLength += deflated;
+                    if (deflated < space) {
+                        break;
+                    }
+                }
+            }
+            return Arrays.copyOf(compressed, compressedLength);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void writeCompressed() throws IOException {
+        Future<byte[]> future = inFlight.removeFirst();
+        byte[] compressed;
+        try {
+            compressed = future.get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for compressed chunk");
+        } catch (ExecutionException executionException) {
+            throw new IOException("Failed to compress chunk", executionException.getCause());
+        }
+        outputStream.write(compressed);
+    }
+
+    /**
+     * compress buffered bytes and write all compressed chunks. A flush ends a
+     * chunk, so frequent flushes cost ratio.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (started && !closed) {
+            if (chunkLength > 0) {
+                submit(false);
+            }
+            while (!inFlight.isEmpty()) {
+                writeCompressed();
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * write the last chunk and gzip trailer, then close output stream
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            start();
+            submit(true);
+            while (!inFlight.isEmpty()) {
+                writeCompressed();
+            }
+            writeIntLE((int) crc.getValue());
+            writeIntLE((int) totalLength);
+            outputStream.flush();
+        } finally {
+            closed = true;
+            for (Future<byte[]> future : inFlight) {
+                future.cancel(true);
+            }
+            if (ownWorkers) {
+                workers.shutdownNow();
+            }
+            outputStream.close();
+        }
+    }
+
+    private void writeIntLE(int value) throws IOException {
+        outputStream.write(value & 0xFF);
+        outputStream.write((value >>> 8) & 0xFF);
+        outputStream.write((value >>> 16) & 0xFF);
+        outputStream.write((value >>> 24) & 0xFF);
+    }
+}
@@ -0,0 +1,458 @@
+package com.github.yantzu.bsv;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Deserializer running in three stages: a reader thread cuts the stream into
+ * chunks aligned to line delimiter, worker threads parse chunks with the byte
+ * engine, and {@link #next()} hands out the records of parsed chunks, either in
+ * input order or in order of completion.
+ * <p>
+ * At most maxInFlight chunks are read ahead and not yet consumed, the reader
+ * blocks until the consumer catches up. A bad record is thrown by
+ * {@link #next()} at its place in the chunk, the same as a single threaded
+ * deserializer does, and a failure of the input stream is thrown after the
+ * records read before it. After {@link #close()}, chunks not yet parsed are
+ * cancelled and {@link #next()} fails instead of waiting for them.
+ */
+public class BsvPipelinedDeserializer implements BsvDeserializer {
+
+    protected static final int   DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private static final AtomicInteger PIPELINES    = new AtomicInteger();
+
+    private final BsvContext     context;
+    private final InputStream    inputStream;
+    private final Charset        charset;
+    private final BsvHeader      header;
+    private final Map<Character, BsvSchema> schemas;
+
+    private final ExecutorService workers;
+    private final boolean        ownWorkers;
+    private final boolean        ordered;
+    private int                  chunkSize          = DEFAULT_CHUNK_SIZE;
+    private int                  maxInFlight;
+
+    private Thread               reader;
+    //chunks read and not yet consumed
+    private Semaphore            inFlight;
+    //parsed chunks in input order when ordered, otherwise in order of completion
+    private BlockingQueue<Future<List<Object>>> parsed;
+    //count of chunks, set by reader before end of input is queued
+    private volatile int         chunkCount;
+    private int                  takenCount;
+    private boolean              ended;
+    //failure of input, thrown once all chunks read before it are taken
+    private IOException          failure;
+    //chunks submitted to workers and not yet parsed, cancelled by close
+    private final Set<ParseTask> parsing = Collections
+            .newSetFromMap(new ConcurrentHashMap<ParseTask, Boolean>());
+    private volatile boolean     closed;
+
+    private List<Object>         current;
+    private int                  currentIndex;
+
+    private BsvColumnBatch       batch;
+    private BsvException         pendingException;
+
+
+    protected BsvPipelinedDeserializer(BsvContext context, InputStream inputStream, Charset charset, int workers,
+            boolean ordered) throws IOException, BsvException {
+        this(context, inputStream, charset, Executors.newFixedThreadPool(workers, daemonThreads("worker")),
+                true, workers, ordered);
+    }
+
+    protected BsvPipelinedDeserializer(BsvContext context, InputStream inputStream, Charset charset,
+            ExecutorService workers, boolean ordered) throws IOException, BsvException {
+        this(context, inputStream, charset, workers, false, Runtime.getRuntime().availableProcessors(), ordered);
+    }
+
+    private BsvPipelinedDeserializer(BsvContext context, InputStream inputStream, Charset charset,
+            ExecutorService workers, boolean ownWorkers, int parallelism, boolean ordered) throws IOException,
+            BsvException {
+        this.context = context;
+        this.inputStream = inputStream;
+        this.charset = charset;
+        this.workers = workers;
+        this.ownWorkers = ownWorkers;
+        this.ordered = ordered;
+        this.maxInFlight = parallelism * 2;
+        try {
+            this.header = BsvHeader.read(inputStream, context.getLineDelimiter());
+            this.schemas = context.getSchemas(header.getMajorVersion(), header.getMinorVersion());
+        } catch (IOException ioException) {
+            close();
+            throw ioException;
+        } catch (BsvException bsvException) {
+            close();
+            throw bsvException;
+        } catch (RuntimeException runtimeException) {
+            close();
+            throw runtimeException;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(final String role) {
+        final int pipeline = PIPELINES.incrementAndGet();
+        return new ThreadFactory() {
+            private final AtomicInteger threads = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "bsv-pipeline-" + pipeline + "-" + role + "-"
+                        + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * bytes cut by reader per chunk, 1MB by default. A chunk is larger if a
+     * single line is longer. Only effective before the first record is read.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+        }
+        checkNotStarted();
+        this.chunkSize = chunkSize;
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * chunks read and not yet consumed, twice of workers by default. Only
+     * effective before the first record is read.
+     */
+    public void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("Invalid max in flight " + maxInFlight);
+        }
+        checkNotStarted();
+        this.maxInFlight = maxInFlight;
+    }
+
+    private void checkNotStarted() {
+        if (reader != null) {
+            throw new IllegalStateException("Pipeline is already started");
+        }
+    }
+
+    private void start() {
+        if (reader != null) {
+            return;
+        }
+        inFlight = new Semaphore(maxInFlight);
+        parsed = new LinkedBlockingQueue<Future<List<Object>>>();
+        reader = daemonThreads("reader").newThread(new Runnable() {
+            @Override
+            public void run() {
+                readChunks();
+            }
+        });
+        reader.start();
+    }
+
+    @Override
+    public BsvObject next() throws IOException, BsvException {
+        checkOpen();
+        start();
+        while (current == null || currentIndex == current.size()) {
+            current = null;
+            if (ended && takenCount == chunkCount) {
+                if (failure != null) {
+                    IOException ioException = failure;
+                    failure = null;
+                    throw ioException;
+                }
+                return null;
+            }
+            checkOpen();
+            current = take();
+            currentIndex = 0;
+        }
+
+        Object record = current.get(currentIndex);
+        current.set(currentIndex++, null);
+        if (record instanceof BsvException) {
+            throw (BsvException) record;
+        }
+        return (BsvObject) record;
+    }
+
+    /**
+     * records are materialized by workers ahead of consumer, so reuse is ignored
+     */
+    @Override
+    public BsvObject next(BsvObject reuse) throws IOException, BsvException {
+        return next();
+    }
+
+    /**
+     * records are materialized as beans by workers, then copied into columns
+     */
+    @Override
+    public BsvColumnBatch nextBatch(int maxRecords) throws IOException, BsvException {
+        if (pendingException != null) {
+            BsvException bsvException = pendingException;
+            pendingException = null;
+            throw bsvException;
+        }
+        if (batch == null) {
+            batch = new BsvColumnBatch(charset, null);
+        }
+        pendingException = batch.fill(this, schemas, maxRecords);
+        return batch.size() == 0 ? null : batch;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Deserializer is closed");
+        }
+    }
+
+    /**
+     * @return records of next parsed chunk, null if it is end of input. End of
+     *         input may be taken ahead of chunks still parsed when unordered.
+     */
+    private List<Object> take() throws IOException {
+        Future<List<Object>> future;
+        try {
+            future = parsed.take();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for parsed chunk");
+        }
+
+        List<Object> result;
+        try {
+            result = future.get();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for parsed chunk");
+        } catch (CancellationException cancellationException) {
+            takenCount++;
+            inFlight.release();
+            throw new IOException("Deserializer is closed");
+        } catch (ExecutionException executionException) {
+            takenCount++;
+            inFlight.release();
+            Throwable cause = executionException.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+
+        if (result instanceof End) {
+            ended = true;
+            failure = ((End) result).failure;
+            return null;
+        }
+        takenCount++;
+        inFlight.release();
+        return result;
+    }
+
+    /**
+     * reader stage, runs until end of input, failure of input or close, then
+     * queues end of input
+     */
+    private void readChunks() {
+        byte lineDelimiter = (byte) context.getLineDelimiter();
+        byte[] carry = new byte[0];
+        long offset = header.getLength();
+        int count = 0;
+        IOException failure = null;
+        try {
+            while (true) {
+                byte[] chunk = Arrays.copyOf(carry, Math.max(chunkSize, carry.length * 2));
+                int length = carry.length;
+                int lineEnd = -1;
+                boolean eof = false;
+                while (lineEnd < 0) {
+                    int read;
+                    try {
+                        read = inputStream.read(chunk, length, chunk.length - length);
+                    } catch (IOException ioException) {
+                        failure = ioException;
+                        break;
+                    } catch (RuntimeException runtimeException) {
+                        failure = new IOException(runtimeException);
+                        break;
+                    }
+                    if (read == -1) {
+                        eof = true;
+                        break;
+                    }
+                    length += read;
+                    if (length == chunk.length) {
+                        lineEnd = lastIndexOf(chunk, length, lineDelimiter);
+                        if (lineEnd < 0) {
+                            //a line longer than chunk
+                            chunk = Arrays.copyOf(chunk, chunk.length * 2);
+                        }
+                    }
+                }
+
+                //lines read completely before a failure are parsed as well
+                int chunkLength = eof ? length
+                        : failure != null ? lastIndexOf(chunk, length, lineDelimiter) + 1 : lineEnd + 1;
+                if (chunkLength > 0) {
+                    inFlight.acquire();
+                    submit(new ParseTask(chunk, chunkLength, offset));
+                    count++;
+                    offset += chunkLength;
+                }
+                if (eof || failure != null) {
+                    break;
+                }
+                carry = Arrays.copyOfRange(chunk, chunkLength, length);
+            }
+        } catch (InterruptedException interruptedException) {
+            failure = new IOException("Deserializer is closed");
+        } catch (RuntimeException runtimeException) {
+            failure = new IOException(runtimeException);
+        } catch (Error error) {
+            failure = new IOException(error);
+            throw error;
+        } finally {
+            //queued whatever stops the reader, so consumer never waits for it in vain
+            chunkCount = count;
+            FutureTask<List<Object>> end = new FutureTask<List<Object>>(new Runnable() {
+                @Override
+                public void run() {
+                }
+            }, new End(failure));
+            end.run();
+            parsed.add(end);
+        }
+    }
+
+    private void submit(ParseTask task) throws InterruptedException {
+        parsing.add(task);
+        if (ordered) {
+            parsed.put(task);
+        }
+        try {
+            workers.execute(task);
+        } catch (RuntimeException runtimeException) {
+            task.cancel(false);
+            throw runtimeException;
+        }
+        if (closed) {
+            task.cancel(true);
+        }
+    }
+
+    private static int lastIndexOf(byte[] chunk, int length, byte lineDelimiter) {
+        for (int i = length - 1; i >= 0; i--) {
+            if (chunk[i] == lineDelimiter) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        if (reader != null) {
+            reader.interrupt();
+        }
+        for (ParseTask task : parsing) {
+            task.cancel(true);
+        }
+        if (ownWorkers) {
+            workers.shutdownNow();
+        }
+        inputStream.close();
+    }
+
+
+    /**
+     * worker stage, parse a chunk into records and exceptions of bad records.
+     * When unordered, a chunk is queued as soon as it is parsed or cancelled.
+     */
+    private class ParseTask extends FutureTask<List<Object>> {
+
+        ParseTask(final byte[] chunk, final int length, final long offset) {
+            super(new Callable<List<Object>>() {
+                @Override
+                public List<Object> call() throws Exception {
+                    BsvDeserializer deserializer = new BsvByteDeserializerImpl(context, new ByteArrayInputStream(
+                            chunk, 0, length), charset, header, offset);
+                    List<Object> records = new ArrayList<Object>();
+                    while (true) {
+                        try {
+                            //records are held in a list, so never reused
+                            BsvObject record = deserializer.next(null);
+                            if (record == null) {
+                                break;
+                            }
+                            records.add(record);
+                        } catch (BsvException bsvException) {
+                            records.add(bsvException);
+                        }
+                    }
+                    return records;
+                }
+            });
+        }
+
+        @Override
+        protected void done() {
+            parsing.remove(this);
+            if (!ordered) {
+                parsed.add(this);
+            }
+        }
+    }
+
+
+    /**
+     * end of input, after all chunks are queued
+     */
+    private static class End extends ArrayList<Object> {
+        private static final long serialVersionUID = 1L;
+
+        private final IOException failure;
+
+        End(IOException failure) {
+            this.failure = failure;
+        }
+    }
+}
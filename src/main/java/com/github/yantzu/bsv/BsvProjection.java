@@ -0,0 +1,110 @@
+package com.github.yantzu.bsv;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fields a deserializer should materialize. Other fields are skipped to the
+ * next fields delimiter without being decoded or set on the bean, so they keep
+ * the value of a new bean. A bean filled by
+ * {@link BsvDeserializer#next(BsvObject)}, or reused by a context reusing
+ * objects, keeps the values it held before, which may be of a previous record.
+ */
+public class BsvProjection {
+
+    //fields of any variant
+    private Set<String>                  names          = new HashSet<String>();
+    private Map<Character, Set<String>>  variantNames   = new HashMap<Character, Set<String>>();
+    private Map<Character, Set<Integer>> variantIndexes = new HashMap<Character, Set<Integer>>();
+
+
+    /**
+     * include fields of these names in every variant having them
+     */
+    public BsvProjection include(String... names) {
+        this.names.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * include fields of these names in one variant, all of them must exist
+     */
+    public BsvProjection include(char variantNumber, String... names) {
+        Set<String> selected = variantNames.get(variantNumber);
+        if (selected == null) {
+            selected = new HashSet<String>();
+            variantNames.put(variantNumber, selected);
+        }
+        selected.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * include fields of these indexes in one variant
+     */
+    public BsvProjection include(char variantNumber, int... indexes) {
+        Set<Integer> selected = variantIndexes.get(variantNumber);
+        if (selected == null) {
+            selected = new HashSet<Integer>();
+            variantIndexes.put(variantNumber, selected);
+        }
+        for (int index : indexes) {
+            selected.add(index);
+        }
+        return this;
+    }
+
+    /**
+     * @return selected flags indexed by field index, per schema
+     */
+    Map<BsvSchema, boolean[]> resolve(Iterable<BsvSchema> schemas) {
+        Map<BsvSchema, boolean[]> resolved = new IdentityHashMap<BsvSchema, boolean[]>();
+        for (BsvSchema schema : schemas) {
+            resolved.put(schema, resolve(schema));
+        }
+        return resolved;
+    }
+
+    private boolean[] resolve(BsvSchema schema) {
+        List<BsvSchema.Field> fields = schema.getFields();
+        boolean[] selected = new boolean[fields.size()];
+        for (BsvSchema.Field field : fields) {
+            if (names.contains(field.getName())) {
+                selected[field.getIndex()] = true;
+            }
+        }
+
+        Set<String> selectedNames = variantNames.get(schema.getVariantNumber());
+        if (selectedNames != null) {
+            List<String> missing = new ArrayList<String>();
+            for (String name : selectedNames) {
+                BsvSchema.Field field = schema.getField(name);
+                if (field == null) {
+                    missing.add(name);
+                } else {
+                    selected[field.getIndex()] = true;
+                }
+            }
+            if (!missing.isEmpty()) {
+                throw new IllegalArgumentException("No fields " + missing + " in " + schema.getFullVersion());
+            }
+        }
+
+        Set<Integer> selectedIndexes = variantIndexes.get(schema.getVariantNumber());
+        if (selectedIndexes != null) {
+            for (int index : selectedIndexes) {
+                if (index < 0 || index >= selected.length) {
+                    throw new IllegalArgumentException("No field " + index + " in " + schema.getFullVersion());
+                }
+                selected[index] = true;
+            }
+        }
+        return selected;
+    }
+}
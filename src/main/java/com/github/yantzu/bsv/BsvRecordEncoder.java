@@ -0,0 +1,581 @@
+package com.github.yantzu.bsv;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import com.github.yantzu.bsv.BsvSchema.Field;
+
+/**
+ * Encodes records into a reusable byte buffer, the same bytes as a writer of
+ * the charset would write for the chars of record. Strings are transcoded and
+ * encoded to UTF-8 char by char, numbers are formatted digit by digit, so a
+ * record is encoded without temporary objects.
+ * <p>
+ * Float and double values of plain notation with up to 6 and 15 significant
+ * digits, which are most of them, are formatted here as well: the shortest
+ * decimal converting back to the value is unique below that many digits, so
+ * it is what Float.toString and Double.toString return. Other values are
+ * formatted by those methods, which before Java 19 are not always shortest.
+ * <p>
+ * A context of binary numbers gets numbers written as varints of
+ * {@link BsvBinaryNumbers} instead.
+ * <p>
+ * Any charset other than UTF-8 gets chars of record encoded by a charset
+ * encoder. A schema accessed by a {@link BsvCodec} is written by the codec
+ * field by field.
+ * <p>
+ * Records and errors are reported to metrics listener of context, if any.
+ */
+class BsvRecordEncoder implements BsvFieldWriter {
+
+    private static final Charset  UTF_8       = Charset.forName("UTF-8");
+
+    private static final long[]   POW10       = new long[19];
+    private static final double[] POW10_DOUBLE = new double[19];
+    private static final float[]  POW10_FLOAT = new float[11];
+    //below this many, a decimal is the only one of its digit count converting to its value
+    private static final long     DOUBLE_DIGITS_LIMIT = 1000000000000000L;
+    private static final long     FLOAT_DIGITS_LIMIT  = 1000000L;
+
+    static {
+        long pow = 1;
+        for (int i = 0; i < POW10.length; i++) {
+            POW10[i] = pow;
+            POW10_DOUBLE[i] = pow;
+            if (i < POW10_FLOAT.length) {
+                POW10_FLOAT[i] = pow;
+            }
+            pow *= 10;
+        }
+    }
+
+    private final String          majorVersion;
+    private final char            minorVersion;
+    //<variant, Schema>
+    private final Map<Character, BsvSchema> schemas;
+    private final char            fieldsDelimiter;
+    private final char            itemsDelimiter;
+    private final char            keyValueDelimiter;
+    private final char            lineDelimiter;
+    private final char[]          transcodes;
+    private final boolean         binaryNumbers;
+
+    private byte[]                bytes       = new byte[16 * 1024];
+    private int                   length;
+
+    //null for UTF-8, otherwise chars of record are collected then encoded
+    private final CharsetEncoder  charsetEncoder;
+    private CharBuffer            chars;
+
+    //null if metrics are disabled
+    private final BsvMetricsListener metricsListener;
+    private final int             latencySampling;
+    //records left until next timed one
+    private int                   untilSample;
+
+
+    BsvRecordEncoder(BsvContext context, String majorVersion, char minorVersion, Charset charset) {
+        this.majorVersion = majorVersion;
+        this.minorVersion = minorVersion;
+        this.schemas = context.getSchemas(majorVersion, minorVersion);
+        this.fieldsDelimiter = context.getFieldsDelimiter();
+        this.itemsDelimiter = context.getItemsDelimiter();
+        this.keyValueDelimiter = context.getKeyValueDelimiter();
+        this.lineDelimiter = context.getLineDelimiter();
+        this.transcodes = context.getCharTranscodesSer();
+        this.binaryNumbers = context.isBinaryNumbers();
+        if (UTF_8.equals(charset)) {
+            this.charsetEncoder = null;
+        } else {
+            //the same as OutputStreamWriter
+            this.charsetEncoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.chars = CharBuffer.allocate(4 * 1024);
+        }
+        this.metricsListener = context.getMetricsListener();
+        this.latencySampling = metricsListener == null ? 0 : metricsListener.getLatencySampling();
+        this.untilSample = latencySampling;
+    }
+
+    byte[] getBytes() {
+        return bytes;
+    }
+
+    /**
+     * @return bytes of encoded records
+     */
+    int getLength() {
+        return length;
+    }
+
+    void clear() {
+        length = 0;
+    }
+
+    /**
+     * @throws BsvException if version of bean is not of encoder or its variant has no schema
+     */
+    BsvSchema schemaOf(BsvObject bean) throws BsvException {
+        String version = bean.getVersion();
+        if (version.length() != 6 || !version.startsWith(majorVersion) || version.charAt(3) != minorVersion) {
+            throw writeError(new BsvException(BsvException.Kind.VARIANT, "Invalid version:" + version), null);
+        }
+
+        char variantNumber = version.charAt(5);
+        BsvSchema schema = schemas.get(variantNumber);
+        if (schema == null) {
+            throw writeError(new BsvException(BsvException.Kind.VARIANT, "No schema defined for variant "
+                    + variantNumber), null);
+        }
+        return schema;
+    }
+
+    /**
+     * append a record, nothing is appended if it fails
+     */
+    void encode(BsvSchema schema, BsvObject bean) throws BsvException {
+        int mark = length;
+        int charsMark = chars == null ? 0 : chars.position();
+        long start = 0;
+        boolean timed = latencySampling > 0 && --untilSample == 0;
+        if (timed) {
+            untilSample = latencySampling;
+            start = System.nanoTime();
+        }
+        try {
+            writeChar(schema.getVariantNumber());
+            BsvBeanAccessor accessor = schema.getBeanAccessor();
+            if (accessor instanceof BsvCodec) {
+                ((BsvCodec) accessor).write(bean, this);
+            } else {
+                List<Field> fields = schema.getFields();
+                for (int i = 0, size = fields.size(); i < size; i++) {
+                    writeField(accessor, bean, fields.get(i));
+                    writeChar(i < size - 1 ? fieldsDelimiter : lineDelimiter);
+                }
+            }
+        } catch (BsvException bsvException) {
+            reset(mark, charsMark);
+            throw writeError(bsvException, schema);
+        } catch (RuntimeException runtimeException) {
+            reset(mark, charsMark);
+            throw writeError(runtimeException, schema);
+        }
+        if (charsetEncoder != null) {
+            encodeChars(false);
+        }
+        if (metricsListener != null) {
+            metricsListener.onRecordWritten(schema, length - mark);
+            if (timed) {
+                metricsListener.onLatency(schema, true, System.nanoTime() - start);
+            }
+        }
+    }
+
+    private <E extends Exception> E writeError(E exception, BsvSchema schema) {
+        if (metricsListener != null) {
+            metricsListener.onWriteError(exception, schema);
+        }
+        return exception;
+    }
+
+    private void reset(int mark, int charsMark) {
+        length = mark;
+        if (chars != null) {
+            chars.position(charsMark);
+        }
+    }
+
+    /**
+     * encode a char left of an incomplete surrogate pair, at end of stream
+     */
+    void finish() {
+        if (charsetEncoder != null) {
+            encodeChars(true);
+            while (true) {
+                ByteBuffer out = ByteBuffer.wrap(bytes, length, bytes.length - length);
+                CoderResult result = charsetEncoder.flush(out);
+                length = out.position();
+                if (!result.isOverflow()) {
+                    break;
+                }
+                ensure(bytes.length);
+            }
+        }
+    }
+
+    private void writeField(BsvBeanAccessor accessor, BsvObject bean, Field field) throws BsvException {
+        int index = field.getIndex();
+        switch (field.getType()) {
+            case STRING:
+                writeString((String) accessor.get(bean, index));
+                break;
+            case BOOLEAN:
+                writeBoolean(accessor.getBoolean(bean, index));
+                break;
+            case INTEGER:
+                writeInt(accessor.getInt(bean, index));
+                break;
+            case LONG:
+                writeLong(accessor.getLong(bean, index));
+                break;
+            case FLOAT:
+                writeFloat(accessor.getFloat(bean, index));
+                break;
+            case DOUBLE:
+                writeDouble(accessor.getDouble(bean, index));
+                break;
+            case LIST:
+                @SuppressWarnings("unchecked")
+                Iterable<String> list = (Iterable<String>) accessor.get(bean, index);
+                writeList(list);
+                break;
+            case MAP:
+                @SuppressWarnings("unchecked")
+                Map<String, String> map = (Map<String, String>) accessor.get(bean, index);
+                writeMap(map);
+                break;
+        }
+    }
+
+    @Override
+    public void writeString(String value) {
+        if (value != null) {
+            writeChars(value);
+        }
+    }
+
+    @Override
+    public void writeBoolean(boolean value) {
+        writeChar(value ? '1' : '0');
+    }
+
+    @Override
+    public void writeInt(int value) {
+        writeLong(value);
+    }
+
+    @Override
+    public void writeList(Iterable<String> value) {
+        if (value == null) {
+            return;
+        }
+        Iterator<String> listIterator = value.iterator();
+        while (listIterator.hasNext()) {
+            writeChars(listIterator.next());
+            if (listIterator.hasNext()) {
+                writeChar(itemsDelimiter);
+            }
+        }
+    }
+
+    @Override
+    public void writeMap(Map<String, String> value) {
+        if (value == null) {
+            return;
+        }
+        Iterator<Entry<String, String>> mapIterator = value.entrySet().iterator();
+        while (mapIterator.hasNext()) {
+            Entry<String, String> entry = mapIterator.next();
+            writeChars(entry.getKey());
+            writeChar(keyValueDelimiter);
+            writeChars(entry.getValue());
+            if (mapIterator.hasNext()) {
+                writeChar(itemsDelimiter);
+            }
+        }
+    }
+
+    @Override
+    public void endField() {
+        writeChar(fieldsDelimiter);
+    }
+
+    @Override
+    public void endRecord() {
+        writeChar(lineDelimiter);
+    }
+
+    private char transcode(char c) {
+        return c < transcodes.length ? transcodes[c] : c;
+    }
+
+    /**
+     * transcode and encode a string, null fails as it did through a writer
+     */
+    private void writeChars(String string) {
+        int stringLength = string.length();
+        if (charsetEncoder != null) {
+            for (int i = 0; i < stringLength; i++) {
+                appendChar(transcode(string.charAt(i)));
+            }
+            return;
+        }
+
+        ensure(stringLength * 3);
+        byte[] buffer = bytes;
+        int position = length;
+        for (int i = 0; i < stringLength; i++) {
+            char c = transcode(string.charAt(i));
+            if (c < 0x80) {
+                buffer[position++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[position++] = (byte) (0xC0 | (c >> 6));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                buffer[position++] = (byte) (0xE0 | (c >> 12));
+                buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[position++] = (byte) (0x80 | (c & 0x3F));
+            } else {
+                char low = i + 1 < stringLength ? transcode(string.charAt(i + 1)) : 0;
+                if (Character.isHighSurrogate(c) && Character.isLowSurrogate(low)) {
+                    int codePoint = Character.toCodePoint(c, low);
+                    buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+                    i++;
+                } else {
+                    //replacement of malformed surrogate
+                    buffer[position++] = '?';
+                }
+            }
+        }
+        length = position;
+    }
+
+    /**
+     * a char not transcoded, such as a delimiter
+     */
+    private void writeChar(char c) {
+        if (charsetEncoder != null) {
+            appendChar(c);
+        } else if (c < 0x80) {
+            ensure(1);
+            bytes[length++] = (byte) c;
+        } else {
+            writeChars(String.valueOf(c));
+        }
+    }
+
+    private void writeAscii(String ascii) {
+        for (int i = 0; i < ascii.length(); i++) {
+            writeChar(ascii.charAt(i));
+        }
+    }
+
+    @Override
+    public void writeLong(long value) {
+        if (binaryNumbers) {
+            writeVarint(BsvBinaryNumbers.zigzag(value));
+            return;
+        }
+        if (value == Long.MIN_VALUE) {
+            writeAscii("-9223372036854775808");
+            return;
+        }
+        if (value < 0) {
+            writeChar('-');
+            value = -value;
+        }
+        writeDigits(value, 1);
+    }
+
+    /**
+     * @param minDigits digits written at least, padded by leading zeros
+     */
+    private void writeDigits(long value, int minDigits) {
+        int digits = 1;
+        while (digits < POW10.length && value >= POW10[digits]) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        if (charsetEncoder != null) {
+            for (int i = digits - 1; i >= 0; i--) {
+                appendChar((char) ('0' + (value / POW10[i]) % 10));
+            }
+            return;
+        }
+        ensure(digits);
+        for (int i = length + digits - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length += digits;
+    }
+
+    @Override
+    public void writeDouble(double value) {
+        if (binaryNumbers) {
+            long bits = BsvBinaryNumbers.doubleBits(value);
+            //text has 3 chars at least, and would lose bits of a NaN
+            int varint = BsvBinaryNumbers.length(bits);
+            if (varint <= 3 || Double.isNaN(value) || Double.isInfinite(value) || !writeDoubleText(value, varint)) {
+                writeVarint(bits);
+            }
+            return;
+        }
+        if (value == 0) {
+            writeAscii(Double.doubleToRawLongBits(value) < 0 ? "-0.0" : "0.0");
+        } else {
+            writeDoubleText(value, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * write non zero value as text if it is shorter than limit chars
+     * @return false if nothing written
+     */
+    private boolean writeDoubleText(double value, int limit) {
+        double abs = Math.abs(value);
+        if (abs >= 1e-3 && abs < 1e7) {
+            int sign = value < 0 ? 1 : 0;
+            for (int scale = 0; scale < POW10_DOUBLE.length; scale++) {
+                double scaled = abs * POW10_DOUBLE[scale];
+                if (scaled >= DOUBLE_DIGITS_LIMIT || sign + 2 + Math.max(scale, 1) >= limit) {
+                    break;
+                }
+                long digits = (long) Math.rint(scaled);
+                if (digits / POW10_DOUBLE[scale] == abs) {
+                    return writePlain(value < 0, digits, scale, limit);
+                }
+            }
+            //without a short plain notation, Double.toString has too many digits to beat a varint
+            if (limit <= BsvBinaryNumbers.MAX_LENGTH) {
+                return false;
+            }
+        }
+        String string = Double.toString(value);
+        if (string.length() >= limit) {
+            return false;
+        }
+        writeAscii(string);
+        return true;
+    }
+
+    @Override
+    public void writeFloat(float value) {
+        if (binaryNumbers) {
+            long bits = BsvBinaryNumbers.floatBits(value);
+            int varint = BsvBinaryNumbers.length(bits);
+            if (varint <= 3 || Float.isNaN(value) || Float.isInfinite(value) || !writeFloatText(value, varint)) {
+                writeVarint(bits);
+            }
+            return;
+        }
+        if (value == 0) {
+            writeAscii(Float.floatToRawIntBits(value) < 0 ? "-0.0" : "0.0");
+        } else {
+            writeFloatText(value, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * write non zero value as text if it is shorter than limit chars
+     * @return false if nothing written
+     */
+    private boolean writeFloatText(float value, int limit) {
+        float abs = Math.abs(value);
+        if (abs >= 1e-3f && abs < 1e7f) {
+            int sign = value < 0 ? 1 : 0;
+            for (int scale = 0; scale < POW10_FLOAT.length; scale++) {
+                //exact, a float times a power of ten up to 10^10 fits in a double
+                double scaled = (double) abs * POW10[scale];
+                if (scaled >= FLOAT_DIGITS_LIMIT || sign + 2 + Math.max(scale, 1) >= limit) {
+                    break;
+                }
+                long digits = (long) Math.rint(scaled);
+                if ((float) digits / POW10_FLOAT[scale] == abs) {
+                    return writePlain(value < 0, digits, scale, limit);
+                }
+            }
+            //without a short plain notation, Float.toString has too many digits to beat a varint
+            if (limit <= BsvBinaryNumbers.MAX_LENGTH) {
+                return false;
+            }
+        }
+        String string = Float.toString(value);
+        if (string.length() >= limit) {
+            return false;
+        }
+        writeAscii(string);
+        return true;
+    }
+
+    private void writeVarint(long value) {
+        if (charsetEncoder != null) {
+            while ((value >>> 5) != 0) {
+                appendChar((char) (BsvBinaryNumbers.MORE | (value & 0x3F)));
+                value >>>= 6;
+            }
+            appendChar((char) (BsvBinaryNumbers.LAST | value));
+            return;
+        }
+        ensure(BsvBinaryNumbers.MAX_LENGTH);
+        length = BsvBinaryNumbers.write(value, bytes, length);
+    }
+
+    /**
+     * digits / 10^scale in plain notation, with at least one fraction digit
+     * @return false if nothing written, for plain notation of limit chars or more
+     */
+    private boolean writePlain(boolean negative, long digits, int scale, int limit) {
+        int plain = (negative ? 1 : 0) + 1 + Math.max(scale, 1);
+        for (long whole = digits / POW10[scale]; whole >= 10; whole /= 10) {
+            plain++;
+        }
+        if (plain >= limit) {
+            return false;
+        }
+        if (negative) {
+            writeChar('-');
+        }
+        writeDigits(digits / POW10[scale], 1);
+        writeChar('.');
+        writeDigits(scale == 0 ? 0 : digits % POW10[scale], Math.max(scale, 1));
+        return true;
+    }
+
+    private void ensure(int more) {
+        if (length + more > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+        }
+    }
+
+    private void appendChar(char c) {
+        if (!chars.hasRemaining()) {
+            CharBuffer larger = CharBuffer.allocate(chars.capacity() * 2);
+            chars.flip();
+            larger.put(chars);
+            chars = larger;
+        }
+        chars.put(c);
+    }
+
+    /**
+     * encode collected chars, an incomplete surrogate pair at end is kept for
+     * the next record unless it is end of stream
+     */
+    private void encodeChars(boolean endOfInput) {
+        chars.flip();
+        while (true) {
+            ByteBuffer out = ByteBuffer.wrap(bytes, length, bytes.length - length);
+            CoderResult result = charsetEncoder.encode(chars, out, endOfInput);
+            length = out.position();
+            if (!result.isOverflow()) {
+                break;
+            }
+            ensure(Math.max(16, chars.remaining() * 2));
+        }
+        chars.compact();
+    }
+}
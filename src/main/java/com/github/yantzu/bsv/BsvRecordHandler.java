@@ -0,0 +1,14 @@
+package com.github.yantzu.bsv;
+
+/**
+ * Receives records pushed by a reader, such as {@link BsvFileReader}
+ */
+public interface BsvRecordHandler {
+
+    void onRecord(BsvObject record);
+
+    /**
+     * invalid record is already skipped, reading continues after this call
+     */
+    void onBadRecord(BsvException exception);
+}
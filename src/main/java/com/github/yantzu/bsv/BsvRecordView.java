@@ -0,0 +1,367 @@
+package com.github.yantzu.bsv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Map;
+
+/**
+ * Cursor over the raw bytes of current record. Typed accessors are computed
+ * from the record bytes on every call, and the cursor is reused when advancing,
+ * so reading primitives and bytes creates no garbage per record.
+ * <p>
+ * Values are only valid until next {@link #advance()}. Only the field count is
+ * validated when advancing, delimiters inside a field are not. Numbers are
+ * transcoded the same way as the deserializer does, and numbers of a stream of
+ * binary numbers are decoded by type of field.
+ */
+public class BsvRecordView implements Closeable {
+
+    private BsvLineReader    lineReader;
+    private BsvByteTokenizer tokenizer;
+    private BsvVariantTable  variants;
+    private Charset          charset;
+
+    private int              itemsDelimiter;
+    private int              keyValueDelimiter;
+
+    private BsvSchema        schema;
+    private int[]            fieldStarts;
+    private int[]            fieldEnds;
+
+    private int              itemStart;
+    private int              itemEnd;
+
+
+    protected BsvRecordView(BsvContext context, InputStream inputStream, Charset charset) throws IOException,
+            BsvException {
+        this(context, inputStream, charset, BsvHeader.read(inputStream, context.getLineDelimiter()));
+    }
+
+    /**
+     * @param inputStream records only, header is already consumed
+     */
+    BsvRecordView(BsvContext context, InputStream inputStream, Charset charset, BsvHeader header) {
+        Map<Character, BsvSchema> schemas = context.getSchemas(header.getMajorVersion(),
+                header.getMinorVersion());
+        int maxFields = 0;
+        for (BsvSchema schema : schemas.values()) {
+            maxFields = Math.max(maxFields, schema.getFields().size());
+        }
+
+        this.charset = charset;
+        this.variants = new BsvVariantTable(schemas, charset);
+        this.tokenizer = new BsvByteTokenizer(context, charset, header.isBinaryNumbers());
+        this.lineReader = new BsvLineReader(inputStream, (byte) context.getLineDelimiter());
+        this.itemsDelimiter = context.getItemsDelimiter();
+        this.keyValueDelimiter = context.getKeyValueDelimiter();
+        this.fieldStarts = new int[maxFields];
+        this.fieldEnds = new int[maxFields];
+    }
+
+    /**
+     * move to next record, an invalid record is consumed before exception is thrown
+     * @return false if no more record
+     */
+    public boolean advance() throws IOException, BsvException {
+        schema = null;
+        if (!lineReader.nextLine()) {
+            return false;
+        }
+        tokenizer.reset(lineReader.getBuffer(), lineReader.getLineStart(), lineReader.getLineEnd());
+
+        BsvSchema next = variants.nextSchema(tokenizer);
+        int count = tokenizer.indexFields(fieldStarts, fieldEnds);
+        if (count != next.getFields().size()) {
+            throw new BsvException("Invalid record of " + next.getFullVersion() + ", expected "
+                    + next.getFields().size() + " fields, but was " + count);
+        }
+        schema = next;
+        return true;
+    }
+
+    /**
+     * schema of current record
+     */
+    public BsvSchema getSchema() {
+        return schema;
+    }
+
+    /**
+     * index of named field in schema of current record
+     */
+    public int fieldIndex(String name) {
+        checkRecord();
+        BsvSchema.Field field = schema.getField(name);
+        if (field == null) {
+            throw new IllegalArgumentException("No field " + name + " in " + schema.getFullVersion());
+        }
+        return field.getIndex();
+    }
+
+    public boolean isEmpty(int field) {
+        checkField(field);
+        return fieldStarts[field] == fieldEnds[field];
+    }
+
+    public boolean isEmpty(String name) {
+        return isEmpty(fieldIndex(name));
+    }
+
+    public int getInt(int field) {
+        checkField(field);
+        if (tokenizer.isBinaryNumbers() && isNumber(field)) {
+            long value = binaryLong(field);
+            if ((int) value != value) {
+                throw new NumberFormatException("Value " + value + " out of int range");
+            }
+            return (int) value;
+        }
+        return tokenizer.intValue(fieldStarts[field], fieldEnds[field]);
+    }
+
+    public int getInt(String name) {
+        return getInt(fieldIndex(name));
+    }
+
+    public long getLong(int field) {
+        checkField(field);
+        if (tokenizer.isBinaryNumbers() && isNumber(field)) {
+            return binaryLong(field);
+        }
+        return tokenizer.longValue(fieldStarts[field], fieldEnds[field]);
+    }
+
+    public long getLong(String name) {
+        return getLong(fieldIndex(name));
+    }
+
+    public float getFloat(int field) {
+        checkField(field);
+        if (tokenizer.isBinaryNumbers() && isNumber(field)) {
+            return (float) binaryDouble(field);
+        }
+        return tokenizer.floatValue(fieldStarts[field], fieldEnds[field]);
+    }
+
+    public float getFloat(String name) {
+        return getFloat(fieldIndex(name));
+    }
+
+    public double getDouble(int field) {
+        checkField(field);
+        if (tokenizer.isBinaryNumbers() && isNumber(field)) {
+            return binaryDouble(field);
+        }
+        return tokenizer.doubleValue(fieldStarts[field], fieldEnds[field]);
+    }
+
+    public double getDouble(String name) {
+        return getDouble(fieldIndex(name));
+    }
+
+    public boolean getBoolean(int field) {
+        checkField(field);
+        return tokenizer.booleanValue(fieldStarts[field], fieldEnds[field]);
+    }
+
+    public boolean getBoolean(String name) {
+        return getBoolean(fieldIndex(name));
+    }
+
+    /**
+     * @return length of field in bytes after transcoding
+     */
+    public int getStringLength(int field) {
+        checkField(field);
+        return tokenizer.transcodedLength(fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * copy field bytes, transcoded, into target
+     * @return count of bytes copied
+     */
+    public int getStringBytes(int field, byte[] target, int offset) {
+        checkField(field);
+        return tokenizer.transcodeTo(fieldStarts[field], fieldEnds[field], target, offset);
+    }
+
+    public int getStringBytes(String name, byte[] target, int offset) {
+        return getStringBytes(fieldIndex(name), target, offset);
+    }
+
+    public String getString(int field) {
+        checkField(field);
+        return tokenizer.decode(fieldStarts[field], fieldEnds[field]);
+    }
+
+    public String getString(String name) {
+        return getString(fieldIndex(name));
+    }
+
+    /**
+     * empty field is a list of one empty item, the same as deserializer
+     */
+    public int listSize(int field) {
+        checkField(field);
+        byte[] buffer = tokenizer.getBuffer();
+        int size = 1;
+        for (int i = fieldStarts[field]; i < fieldEnds[field]; i++) {
+            if (buffer[i] == itemsDelimiter) {
+                size++;
+            }
+        }
+        return size;
+    }
+
+    public int listSize(String name) {
+        return listSize(fieldIndex(name));
+    }
+
+    /**
+     * copy list item bytes, transcoded, into target
+     * @return count of bytes copied
+     */
+    public int listItem(int field, int item, byte[] target, int offset) {
+        locateItem(field, item);
+        return tokenizer.transcodeTo(itemStart, itemEnd, target, offset);
+    }
+
+    public int listItem(String name, int item, byte[] target, int offset) {
+        return listItem(fieldIndex(name), item, target, offset);
+    }
+
+    public String listItemString(int field, int item) {
+        locateItem(field, item);
+        return tokenizer.decode(itemStart, itemEnd);
+    }
+
+    public String listItemString(String name, int item) {
+        return listItemString(fieldIndex(name), item);
+    }
+
+    /**
+     * copy value of key, transcoded, into target
+     * @param key bytes of key in record charset
+     * @return count of bytes copied, -1 if key not exist
+     */
+    public int mapGet(int field, byte[] key, byte[] target, int offset) {
+        if (!locateValue(field, key)) {
+            return -1;
+        }
+        return tokenizer.transcodeTo(itemStart, itemEnd, target, offset);
+    }
+
+    public int mapGet(String name, byte[] key, byte[] target, int offset) {
+        return mapGet(fieldIndex(name), key, target, offset);
+    }
+
+    /**
+     * @return null if key not exist
+     */
+    public String mapGet(int field, String key) {
+        if (!locateValue(field, key.getBytes(charset))) {
+            return null;
+        }
+        return tokenizer.decode(itemStart, itemEnd);
+    }
+
+    public String mapGet(String name, String key) {
+        return mapGet(fieldIndex(name), key);
+    }
+
+    private void locateItem(int field, int item) {
+        checkField(field);
+        byte[] buffer = tokenizer.getBuffer();
+        int end = fieldEnds[field];
+        int start = fieldStarts[field];
+        int index = 0;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == itemsDelimiter) {
+                if (index == item) {
+                    itemStart = start;
+                    itemEnd = i;
+                    return;
+                }
+                index++;
+                start = i + 1;
+            }
+        }
+        if (index != item) {
+            throw new IndexOutOfBoundsException("Index: " + item + ", Size: " + (index + 1));
+        }
+        itemStart = start;
+        itemEnd = end;
+    }
+
+    /**
+     * walk key value pairs the same way as deserializer does
+     */
+    private boolean locateValue(int field, byte[] key) {
+        checkField(field);
+        byte[] buffer = tokenizer.getBuffer();
+        int end = fieldEnds[field];
+        int position = fieldStarts[field];
+        while (position < end) {
+            int keyStart = position;
+            while (position < end && buffer[position] != keyValueDelimiter && buffer[position] != itemsDelimiter) {
+                position++;
+            }
+            if (position == end || buffer[position] != keyValueDelimiter) {
+                return false;
+            }
+            int keyEnd = position++;
+
+            int valueStart = position;
+            while (position < end && buffer[position] != keyValueDelimiter && buffer[position] != itemsDelimiter) {
+                position++;
+            }
+            if (tokenizer.transcodedEquals(keyStart, keyEnd, key)) {
+                itemStart = valueStart;
+                itemEnd = position;
+                return true;
+            }
+            if (position == end || buffer[position] != itemsDelimiter) {
+                return false;
+            }
+            position++;
+        }
+        return false;
+    }
+
+    private boolean isNumber(int field) {
+        return BsvBinaryNumbers.isNumber(schema.getFields().get(field).getType());
+    }
+
+    /**
+     * value of a binary INTEGER or LONG field, a FLOAT or DOUBLE field fails as it does in text
+     */
+    private long binaryLong(int field) {
+        return BsvBinaryNumbers.decodeAsLong(tokenizer.getBuffer(), fieldStarts[field], fieldEnds[field],
+                schema.getFields().get(field).getType());
+    }
+
+    private double binaryDouble(int field) {
+        return BsvBinaryNumbers.decodeAsDouble(tokenizer.getBuffer(), fieldStarts[field], fieldEnds[field],
+                schema.getFields().get(field).getType());
+    }
+
+    private void checkRecord() {
+        if (schema == null) {
+            throw new IllegalStateException("No current record");
+        }
+    }
+
+    private void checkField(int field) {
+        checkRecord();
+        if (field < 0 || field >= schema.getFields().size()) {
+            throw new IndexOutOfBoundsException("Field " + field + " not in " + schema.getFullVersion());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        lineReader.close();
+    }
+}
@@ -0,0 +1,117 @@
+package com.github.yantzu.bsv;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.List;
+
+import com.github.yantzu.bsv.BsvSchema.Field;
+
+/**
+ * Accessor calling bean methods by reflection, primitive values are boxed.
+ * Works for any bean, and is the fallback when accessors can not be generated.
+ */
+class BsvReflectionAccessor implements BsvBeanAccessor {
+
+    private final Constructor<?> constructor;
+    private final Method[]       writeMethods;
+    private final Method[]       readMethods;
+
+
+    BsvReflectionAccessor(BsvSchema schema) {
+        List<Field> fields = schema.getFields();
+        this.constructor = schema.getBeanConstructor();
+        this.writeMethods = new Method[fields.size()];
+        this.readMethods = new Method[fields.size()];
+        for (Field field : fields) {
+            writeMethods[field.getIndex()] = field.getBeanWriteMethod();
+            readMethods[field.getIndex()] = field.getBeanReadMethod();
+        }
+    }
+
+    @Override
+    public BsvObject newInstance() throws BsvException {
+        try {
+            return (BsvObject) constructor.newInstance();
+        } catch (InvocationTargetException invocationTargetException) {
+            throw new BsvException(invocationTargetException.getCause());
+        } catch (ReflectiveOperationException reflectiveOperationException) {
+            throw new BsvException(reflectiveOperationException);
+        }
+    }
+
+    @Override
+    public Object get(BsvObject bean, int field) throws BsvException {
+        return invoke(readMethods[field], bean);
+    }
+
+    @Override
+    public void set(BsvObject bean, int field, Object value) throws BsvException {
+        invoke(writeMethods[field], bean, value);
+    }
+
+    @Override
+    public void setInt(BsvObject bean, int field, int value) throws BsvException {
+        invoke(writeMethods[field], bean, value);
+    }
+
+    @Override
+    public void setLong(BsvObject bean, int field, long value) throws BsvException {
+        invoke(writeMethods[field], bean, value);
+    }
+
+    @Override
+    public void setFloat(BsvObject bean, int field, float value) throws BsvException {
+        invoke(writeMethods[field], bean, value);
+    }
+
+    @Override
+    public void setDouble(BsvObject bean, int field, double value) throws BsvException {
+        invoke(writeMethods[field], bean, value);
+    }
+
+    @Override
+    public void setBoolean(BsvObject bean, int field, boolean value) throws BsvException {
+        invoke(writeMethods[field], bean, value);
+    }
+
+    @Override
+    public int getInt(BsvObject bean, int field) throws BsvException {
+        Object value = invoke(readMethods[field], bean);
+        return value == null ? 0 : (Integer) value;
+    }
+
+    @Override
+    public long getLong(BsvObject bean, int field) throws BsvException {
+        Object value = invoke(readMethods[field], bean);
+        return value == null ? 0 : (Long) value;
+    }
+
+    @Override
+    public float getFloat(BsvObject bean, int field) throws BsvException {
+        Object value = invoke(readMethods[field], bean);
+        return value == null ? 0 : (Float) value;
+    }
+
+    @Override
+    public double getDouble(BsvObject bean, int field) throws BsvException {
+        Object value = invoke(readMethods[field], bean);
+        return value == null ? 0 : (Double) value;
+    }
+
+    @Override
+    public boolean getBoolean(BsvObject bean, int field) throws BsvException {
+        Object value = invoke(readMethods[field], bean);
+        return value != null && (Boolean) value;
+    }
+
+    private static Object invoke(Method method, Object bean, Object... args) throws BsvException {
+        try {
+            return method.invoke(bean, args);
+        } catch (InvocationTargetException invocationTargetException) {
+            throw new BsvException(invocationTargetException.getCause());
+        } catch (IllegalAccessException illegalAccessException) {
+            throw new BsvException(illegalAccessException);
+        }
+    }
+}
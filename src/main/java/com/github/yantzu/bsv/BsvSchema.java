@@ -15,8 +15,28 @@ public interface BsvSchema {
 
     List<Field> getFields();
 
+    /**
+     * @return null if no field named so
+     */
+    default Field getField(String name) {
+        for (Field field : getFields()) {
+            if (field.getName().equals(name)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
     Class<?> getBeanClass();
     Constructor<?> getBeanConstructor();
+
+    /**
+     * accessor of bean, built when context is built. By default a reflection
+     * accessor is created on every call.
+     */
+    default BsvBeanAccessor getBeanAccessor() {
+        return new BsvReflectionAccessor(this);
+    }
     
     public enum FieldType {
         BOOLEAN,
@@ -48,5 +68,13 @@ public interface BsvSchema {
         Method getBeanWriteMethod();
 
 		Method getBeanReadMethod();
+
+		/**
+		 * canonical strings of a STRING field, items of a LIST field or keys of a
+		 * MAP field, null if field is not deduplicated, which is the default
+		 */
+		default BsvStringCache getStringCache() {
+			return null;
+		}
     }
 }
@@ -7,7 +7,10 @@ import java.beans.PropertyDescriptor;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class BsvSchemaImpl implements BsvSchema {
     private String      majorVersion;
@@ -17,10 +20,12 @@ public class BsvSchemaImpl implements BsvSchema {
     private String         fullVersion;
     
     private List<Field> fields = new ArrayList<Field>();
+    private Map<String, Field> fieldsByName = new HashMap<String, Field>();
 
     private Class<?>       beanClass;
     private Constructor<?> beanConstructor;
     private BeanInfo       beanInfo;
+    private BsvBeanAccessor beanAccessor;
     
     
     @Override
@@ -48,6 +53,11 @@ public class BsvSchemaImpl implements BsvSchema {
         return fields;
     }
 
+    @Override
+    public Field getField(String name) {
+        return fieldsByName.get(name);
+    }
+
     @Override
     public Class<?> getBeanClass() {
         return beanClass;
@@ -57,6 +67,62 @@ public class BsvSchemaImpl implements BsvSchema {
     public Constructor<?> getBeanConstructor() {
         return beanConstructor;
     }
+
+    @Override
+    public BsvBeanAccessor getBeanAccessor() {
+        if (beanAccessor == null) {
+            buildBeanAccessor(true);
+        }
+        return beanAccessor;
+    }
+
+    void buildBeanAccessor(boolean generated) {
+        buildBeanAccessor(generated, Collections.<BsvCodec> emptyList());
+    }
+
+    /**
+     * @param generated false to access bean by reflection, otherwise by a codec
+     *            of schema, then by an accessor generated at runtime, and by
+     *            reflection only when accessor can not be generated for the bean
+     * @param codecs codecs generated at build time, of this schema or not
+     */
+    void buildBeanAccessor(boolean generated, List<BsvCodec> codecs) {
+        BsvBeanAccessor accessor = null;
+        if (generated) {
+            for (BsvCodec codec : codecs) {
+                if (isCodecOf(codec)) {
+                    accessor = codec;
+                    break;
+                }
+            }
+        }
+        if (generated && accessor == null) {
+            accessor = BsvLambdaAccessor.create(this);
+        }
+        if (accessor == null) {
+            accessor = new BsvReflectionAccessor(this);
+        }
+        this.beanAccessor = accessor;
+    }
+    
+    private boolean isCodecOf(BsvCodec codec) {
+        if (!fullVersion.equals(codec.getFullVersion()) || beanClass != codec.getBeanClass()) {
+            return false;
+        }
+        String[] fieldNames = codec.getFieldNames();
+        FieldType[] fieldTypes = codec.getFieldTypes();
+        if (fieldNames.length != fields.size() || fieldTypes.length != fields.size()) {
+            return false;
+        }
+        for (int i = 0; i < fieldNames.length; i++) {
+            Field field = fields.get(i);
+            if (field.getIndex() != i || !field.getName().equals(fieldNames[i])
+                    || field.getType() != fieldTypes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
     
     public BsvSchemaImpl withMajorVersion(String majorVersion) {
         if (majorVersion.length() != 2) {
@@ -93,6 +159,13 @@ public class BsvSchemaImpl implements BsvSchema {
 	}
     
     public BsvSchemaImpl withField(int index, String name, FieldType type) {
+        return withField(index, name, type, null);
+    }
+
+    /**
+     * @param stringCache cache to deduplicate strings of field, null if field is not deduplicated
+     */
+    public BsvSchemaImpl withField(int index, String name, FieldType type, BsvStringCache stringCache) {
         if(this.beanClass == null || this.beanInfo == null) {
             throw new IllegalStateException("Please set beanClass before add field"); 
 		}
@@ -108,7 +181,10 @@ public class BsvSchemaImpl implements BsvSchema {
 		if (beanWriteMethod == null || beanReadMethod == null) {
 			throw new IllegalArgumentException("No property " + name + " exist in class " + this.beanClass);
 		}
-        this.fields.add(new FieldImpl(index, name, type, beanWriteMethod, beanReadMethod));
+        Field field = new FieldImpl(index, name, type, beanWriteMethod, beanReadMethod, stringCache);
+        this.fields.add(field);
+        this.fieldsByName.put(name, field);
+        this.beanAccessor = null;
         return this;
     }
     
@@ -135,14 +211,17 @@ public class BsvSchemaImpl implements BsvSchema {
         private String    name;
         private Method    beanWriteMethod;
 		private Method    beanReadMethod;
+        private BsvStringCache stringCache;
 
-        public FieldImpl(int index, String name, FieldType type, Method beanWriteMethod, Method beanReadMethod) {
+        public FieldImpl(int index, String name, FieldType type, Method beanWriteMethod, Method beanReadMethod,
+                BsvStringCache stringCache) {
             super();
             this.index = index;
             this.type = type;
             this.name = name;
 			this.beanWriteMethod = beanWriteMethod;
 			this.beanReadMethod = beanReadMethod;
+            this.stringCache = stringCache;
         }
 
         public int getIndex() {
@@ -164,6 +243,10 @@ public class BsvSchemaImpl implements BsvSchema {
 		public Method getBeanReadMethod() {
 			return beanReadMethod;
 		}
+
+        public BsvStringCache getStringCache() {
+            return stringCache;
+        }
     }
 
 }
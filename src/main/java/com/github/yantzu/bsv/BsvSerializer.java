@@ -5,5 +5,12 @@ import java.io.IOException;
 public interface BsvSerializer {
 	void next(BsvObject obj) throws IOException, BsvException;
 
+	/**
+	 * write records buffered by serializer and flush output stream, does
+	 * nothing for a serializer without buffer
+	 */
+	default void flush() throws IOException, BsvException {
+	}
+
 	void close() throws IOException, BsvException;
 }
@@ -0,0 +1,146 @@
+package com.github.yantzu.bsv;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Canonical strings of a field which takes few distinct values, enabled by
+ * "dedup" of the field in schema. A token is hashed and compared where it
+ * lies, in raw bytes or in decoded chars, so a hit returns the cached string
+ * without allocation.
+ * <p>
+ * The cache is a fixed table of entries, a miss replaces the entry of its
+ * slot, so a field of many distinct values costs no more than capacity
+ * entries. Entries are immutable and replaced without locking, the cache is
+ * shared by all deserializers of a schema.
+ */
+public class BsvStringCache {
+
+    protected static final int DEFAULT_CAPACITY = 1024;
+
+    private final Entry[]      entries;
+    private final int          mask;
+
+    private final LongAdder    hits             = new LongAdder();
+    private final LongAdder    misses           = new LongAdder();
+
+
+    public BsvStringCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity rounded up to a power of two
+     */
+    public BsvStringCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.entries = new Entry[size];
+        this.mask = size - 1;
+    }
+
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return hits of all lookups, 0 if nothing is looked up
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * string of current token of byte engine, keyed by raw bytes and charset
+     */
+    String get(BsvByteTokenizer tokenizer, int start, int end) {
+        byte[] buffer = tokenizer.getBuffer();
+        Charset charset = tokenizer.getCharset();
+        int hash = 1;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int slot = mix(hash) & mask;
+
+        Entry entry = entries[slot];
+        if (entry != null && entry.charset == charset && entry.matches(buffer, start, end)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        byte[] bytes = new byte[end - start];
+        System.arraycopy(buffer, start, bytes, 0, bytes.length);
+        String value = tokenizer.decode(start, end);
+        entries[slot] = new Entry(bytes, charset, value);
+        return value;
+    }
+
+    /**
+     * string of chars decoded by char engine
+     */
+    String get(CharSequence chars) {
+        int length = chars.length();
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        //the same hash as String, kept apart from hashes of raw bytes
+        int slot = mix(~hash) & mask;
+
+        Entry entry = entries[slot];
+        if (entry != null && entry.bytes == null && entry.value.contentEquals(chars)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        String value = chars.toString();
+        entries[slot] = new Entry(null, null, value);
+        return value;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+
+    private static final class Entry {
+        //raw bytes of value, null if entry is keyed by chars
+        private final byte[]  bytes;
+        private final Charset charset;
+        private final String  value;
+
+        Entry(byte[] bytes, Charset charset, String value) {
+            this.bytes = bytes;
+            this.charset = charset;
+            this.value = value;
+        }
+
+        boolean matches(byte[] buffer, int start, int end) {
+            if (bytes == null || bytes.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if (bytes[i] != buffer[start + i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.yantzu.bsv;
+
+/**
+ * Wraps a {@link BsvException} where checked exceptions can not be thrown,
+ * such as in a Stream
+ */
+public class BsvUncheckedException extends RuntimeException {
+
+    private static final long serialVersionUID = 3017641738524571208L;
+
+    public BsvUncheckedException(BsvException cause) {
+        super(cause);
+    }
+
+    @Override
+    public BsvException getCause() {
+        return (BsvException) super.getCause();
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.yantzu.bsv;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the variant number at the beginning of a raw line to its schema
+ */
+class BsvVariantTable {
+
+    private final Charset         charset;
+    //schemas of single byte variant, indexed by variant byte
+    private final BsvSchema[]     asciiSchemas      = new BsvSchema[0x80];
+    private final List<byte[]>    multiByteVariants = new ArrayList<byte[]>();
+    private final List<BsvSchema> multiByteSchemas  = new ArrayList<BsvSchema>();
+
+
+    BsvVariantTable(Map<Character, BsvSchema> schemas, Charset charset) {
+        this.charset = charset;
+        for (BsvSchema schema : schemas.values()) {
+            char variantNumber = schema.getVariantNumber();
+            if (variantNumber < 0x80) {
+                asciiSchemas[variantNumber] = schema;
+            } else {
+                multiByteVariants.add(String.valueOf(variantNumber).getBytes(charset));
+                multiByteSchemas.add(schema);
+            }
+        }
+    }
+
+    /**
+     * consume variant number from tokenizer
+     */
+    BsvSchema nextSchema(BsvByteTokenizer tokenizer) throws BsvException {
+        byte[] buffer = tokenizer.getBuffer();
+        int position = tokenizer.getPosition();
+        int end = tokenizer.getEnd();
+        if (position == end) {
+            throw BsvException.badRecord(BsvException.Kind.VARIANT, "No variant in line");
+        }
+
+        byte first = buffer[position];
+        if (first >= 0) {
+            BsvSchema schema = asciiSchemas[first];
+            if (schema == null) {
+                throw BsvException.badRecord(BsvException.Kind.VARIANT, "No schema defined for variant "
+                        + (char) first);
+            }
+            tokenizer.skip(1);
+            return schema;
+        }
+
+        for (int i = 0; i < multiByteVariants.size(); i++) {
+            byte[] variant = multiByteVariants.get(i);
+            if (startsWith(buffer, position, end, variant)) {
+                tokenizer.skip(variant.length);
+                return multiByteSchemas.get(i);
+            }
+        }
+        throw BsvException.badRecord(BsvException.Kind.VARIANT, "No schema defined for variant "
+                + new String(buffer, position, Math.min(4, end - position), charset).charAt(0));
+    }
+
+    private static boolean startsWith(byte[] buffer, int position, int end, byte[] prefix) {
+        if (end - position < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (buffer[position + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
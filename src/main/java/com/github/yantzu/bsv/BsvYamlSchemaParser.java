@@ -14,6 +14,20 @@ import com.github.yantzu.bsv.BsvSchema.FieldType;
 
 public class BsvYamlSchemaParser implements BsvSchemaParser {
 
+    //null to load bean classes by loader of parser
+    private final ClassLoader classLoader;
+
+    public BsvYamlSchemaParser() {
+        this(null);
+    }
+
+    /**
+     * @param classLoader loader of bean classes, such as loader of a project being built
+     */
+    public BsvYamlSchemaParser(ClassLoader classLoader) {
+        this.classLoader = classLoader;
+    }
+
     @Override
     public BsvSchema parse(InputStream inputStream) throws IOException {
         try {
@@ -25,7 +39,7 @@ public class BsvYamlSchemaParser implements BsvSchemaParser {
                 .withMajorVersion(config.get("majorVersion").toString())
                 .withMinorVersion(config.get("minorVersion").toString().charAt(0))
                 .withVariantNumber(config.get("variantNumber").toString().charAt(0))
-                .withBeanClass(Class.forName(config.get("beanClass").toString()));
+                .withBeanClass(loadClass(config.get("beanClass").toString()));
             
             @SuppressWarnings("unchecked")
             Iterable<Map<String, String>> fields = (Iterable<Map<String, String>>) config.get("fields");
@@ -34,7 +48,10 @@ public class BsvYamlSchemaParser implements BsvSchemaParser {
             int index = 0;
             while(fieldsIterator.hasNext()) {
                 Map<String, String> field = fieldsIterator.next();
-                schema.withField(index++, field.get("name"), asFieldType(field.get("type")));
+                //dedup is parsed as boolean or number
+                Map<String, ?> attributes = field;
+                schema.withField(index++, field.get("name"), asFieldType(field.get("type")),
+                        asStringCache(attributes.get("dedup")));
             }
             
             return schema;
@@ -47,6 +64,26 @@ public class BsvYamlSchemaParser implements BsvSchemaParser {
     }
     
 
+    private Class<?> loadClass(String name) throws ClassNotFoundException {
+        return classLoader == null ? Class.forName(name) : Class.forName(name, true, classLoader);
+    }
+
+    /**
+     * dedup is true for a cache of default capacity, or capacity of cache
+     */
+    private BsvStringCache asStringCache(Object dedup) {
+        if (dedup == null || "false".equalsIgnoreCase(dedup.toString())) {
+            return null;
+        } else if ("true".equalsIgnoreCase(dedup.toString())) {
+            return new BsvStringCache();
+        }
+        try {
+            return new BsvStringCache(Integer.parseInt(dedup.toString()));
+        } catch (NumberFormatException numberFormatException) {
+            throw new IllegalArgumentException("Invalid dedup " + dedup + ", expected true, false or capacity");
+        }
+    }
+
     private FieldType asFieldType(String type) {
         FieldType result = FieldType.valueOfIgnoreCase(type);
 
@@ -0,0 +1,119 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BsvAsyncSerializerTest {
+
+    private static final int RECORDS = 20000;
+
+    private static BsvContext context;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        context = BsvTestRecords.schema030x().build();
+    }
+
+    @Test
+    public void testSameAsSynchronous() throws IOException, BsvException {
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        ByteArrayOutputStream async = new ByteArrayOutputStream();
+        BsvSerializer plainSerializer = context.createSerializer(plain, "03", '0');
+        BsvAsyncSerializer asyncSerializer = context.createAsyncSerializer(async, "03", '0',
+                BsvContext.DEFAULT_CHARSET, 3, 4096, BsvAsyncSerializer.FullPolicy.BLOCK);
+        for (int i = 0; i < RECORDS; i++) {
+            Schema030x data = BsvTestRecords.record030x(i);
+            plainSerializer.next(data);
+            asyncSerializer.next(data);
+            if (i == RECORDS / 2) {
+                plainSerializer.flush();
+                asyncSerializer.flush();
+                assertArrayEquals(plain.toByteArray(), async.toByteArray());
+            }
+        }
+
+        Schema030x invalid = BsvTestRecords.record030x(0);
+        invalid.setVersion("04.0.0");
+        try {
+            asyncSerializer.next(invalid);
+            fail();
+        } catch (BsvException bsvException) {
+            //not written
+        }
+
+        plainSerializer.close();
+        asyncSerializer.close();
+        assertArrayEquals(plain.toByteArray(), async.toByteArray());
+        assertEquals(plain.size(), asyncSerializer.getWrittenBytes());
+        assertTrue(asyncSerializer.getWriteCount() > 1);
+        assertTrue(asyncSerializer.getMaxQueueDepth() > 0);
+        assertEquals(0, asyncSerializer.getDroppedRecords());
+    }
+
+    @Test
+    public void testDropWhenStalled() throws IOException, BsvException, InterruptedException {
+        final CountDownLatch stall = new CountDownLatch(1);
+        ByteArrayOutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] bytes, int offset, int length) {
+                try {
+                    stall.await();
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                }
+                super.write(bytes, offset, length);
+            }
+        };
+        BsvAsyncSerializer serializer = context.createAsyncSerializer(output, "03", '0', BsvContext.DEFAULT_CHARSET,
+                2, 1024, BsvAsyncSerializer.FullPolicy.DROP);
+        for (int i = 0; i < 1000; i++) {
+            serializer.next(BsvTestRecords.record030x(i));
+        }
+        assertTrue(serializer.getDroppedRecords() > 0);
+        stall.countDown();
+        serializer.close();
+
+        BsvDeserializer deserializer = context.createDeserializer(new ByteArrayInputStream(output.toByteArray()));
+        int count = 0;
+        while (deserializer.next() != null) {
+            count++;
+        }
+        assertEquals(1000 - serializer.getDroppedRecords(), count);
+    }
+
+    @Test
+    public void testFailureThrownByNextCall() throws IOException, BsvException {
+        OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new InterruptedIOException("disk gone");
+            }
+        };
+        BsvAsyncSerializer serializer = context.createAsyncSerializer(output, "03", '0');
+        serializer.next(BsvTestRecords.record030x(1));
+        try {
+            serializer.flush();
+            fail();
+        } catch (IOException ioException) {
+            assertEquals("disk gone", ioException.getCause().getMessage());
+        }
+        try {
+            serializer.next(BsvTestRecords.record030x(2));
+            fail();
+        } catch (IOException ioException) {
+            //failed for good
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BsvBinaryNumbersTest {
+
+    private static final long[]   LONGS   = { 0, 1, -1, 15, 16, -16, -17, 31, 32, 1000, -1000, Integer.MAX_VALUE,
+            Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, 1500000000000L };
+    private static final double[] DOUBLES = { 0.0, -0.0, 1.0, -1.5, 0.1, 3.14159, 1e300, -1e-300, Double.MIN_VALUE,
+            Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+    @Test
+    public void testVarints() {
+        Random random = new Random(7);
+        byte[] bytes = new byte[BsvBinaryNumbers.MAX_LENGTH];
+        for (int n = 0; n < 10000; n++) {
+            long value = n < LONGS.length ? LONGS[n] : random.nextLong() >> random.nextInt(64);
+            int end = BsvBinaryNumbers.write(BsvBinaryNumbers.zigzag(value), bytes, 0);
+            assertPrintable(bytes, end);
+            assertEquals(value, BsvBinaryNumbers.decodeLong(bytes, 0, end));
+            if ((int) value == value) {
+                assertEquals(value, BsvBinaryNumbers.decodeInt(bytes, 0, end));
+            }
+
+            double d = n < DOUBLES.length ? DOUBLES[n] : Double.longBitsToDouble(random.nextLong());
+            end = BsvBinaryNumbers.write(BsvBinaryNumbers.doubleBits(d), bytes, 0);
+            assertPrintable(bytes, end);
+            assertEquals(Double.doubleToRawLongBits(d),
+                    Double.doubleToRawLongBits(BsvBinaryNumbers.decodeDouble(bytes, 0, end)));
+
+            float f = (float) d;
+            end = BsvBinaryNumbers.write(BsvBinaryNumbers.floatBits(f), bytes, 0);
+            assertPrintable(bytes, end);
+            assertEquals(Float.floatToRawIntBits(f), Float.floatToRawIntBits(BsvBinaryNumbers.decodeFloat(
+                    new String(bytes, 0, end, BsvContext.DEFAULT_CHARSET), 0, end)));
+        }
+
+        assertEquals(1, BsvBinaryNumbers.write(BsvBinaryNumbers.zigzag(-16), bytes, 0));
+        assertEquals(3, BsvBinaryNumbers.write(BsvBinaryNumbers.doubleBits(1.0), bytes, 0));
+    }
+
+    @Test
+    public void testInvalidVarints() {
+        String[] invalids = { "", "@", " @", "\u007f\u007f\u007f\u007f\u007f\u007f\u007f\u007f\u007f\u007f\u007f ",
+                "\u007f\u007f\u007f\u007f\u007f\u007f\u007f\u007f\u007f\u007f0", "\u00e9", "\u0001" };
+        for (String invalid : invalids) {
+            try {
+                BsvBinaryNumbers.decodeLong(invalid, 0, invalid.length());
+                fail(invalid);
+            } catch (NumberFormatException numberFormatException) {
+                //expected
+            }
+        }
+        byte[] bytes = new byte[BsvBinaryNumbers.MAX_LENGTH];
+        int end = BsvBinaryNumbers.write(BsvBinaryNumbers.zigzag(Integer.MAX_VALUE + 1L), bytes, 0);
+        try {
+            BsvBinaryNumbers.decodeInt(bytes, 0, end);
+            fail();
+        } catch (NumberFormatException numberFormatException) {
+            //expected
+        }
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        BsvContext binary = BsvTestRecords.schema040x().binaryNumbers(true).build();
+        BsvContext text = BsvTestRecords.schema040x().binaryNumbers(false).build();
+        byte[] binaryBytes = serialize(binary);
+        byte[] textBytes = serialize(text);
+        assertEquals(BsvHeader.BINARY_NUMBERS, binaryBytes[3]);
+        assertEquals('\n', binaryBytes[4]);
+        assertTrue(binaryBytes.length < textBytes.length);
+
+        //either context reads either stream by its header
+        for (BsvContext context : new BsvContext[] { binary, text }) {
+            for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+                assertRecords(context.createDeserializer(new ByteArrayInputStream(binaryBytes), engine));
+                assertRecords(context.createDeserializer(new ByteArrayInputStream(textBytes), engine));
+            }
+        }
+
+        BsvRecordView view = binary.createRecordView(new ByteArrayInputStream(binaryBytes));
+        for (int n = 0; n < 200; n++) {
+            assertTrue(view.advance());
+            Schema040x expected = BsvTestRecords.record040x(n);
+            assertEquals(expected.getI(), view.getInt("i"));
+            assertEquals(expected.getI(), view.getDouble("i"), 0);
+            assertEquals(expected.getL(), view.getLong("l"));
+            assertEquals(expected.getF(), view.getFloat("f"), 0);
+            assertEquals(expected.getD(), view.getDouble("d"), 0);
+        }
+
+        BsvDeserializer filtered = binary.createDeserializer(new ByteArrayInputStream(binaryBytes), null,
+                BsvFilter.and(BsvFilter.range("i", 0, 9), BsvFilter.range("d", 0.0, 10.0)));
+        int count = 0;
+        Schema040x record;
+        while ((record = (Schema040x) filtered.next()) != null) {
+            assertTrue(record.getI() >= 0 && record.getI() <= 9);
+            count++;
+        }
+        assertEquals(5, count);
+    }
+
+    @Test
+    public void testDecimalsNoLongerThanText() throws IOException, BsvException {
+        BsvContext binary = BsvTestRecords.schema040x().binaryNumbers(true).build();
+        BsvContext text = BsvTestRecords.schema040x().binaryNumbers(false).build();
+        BsvRecordEncoder binaryEncoder = new BsvRecordEncoder(binary, "04", '0', BsvContext.DEFAULT_CHARSET);
+        BsvRecordEncoder textEncoder = new BsvRecordEncoder(text, "04", '0', BsvContext.DEFAULT_CHARSET);
+
+        //text is chosen only when shorter, a tie keeps the varint
+        assertEquals(3, doubleLength(binaryEncoder, 0.1));
+        assertEquals(5, doubleLength(binaryEncoder, 12.34));
+        assertEquals(5, doubleLength(binaryEncoder, 99.99));
+        assertEquals(9, doubleLength(binaryEncoder, 1234.5678));
+        assertEquals(3, doubleLength(binaryEncoder, 1.0));
+        assertEquals(3, floatLength(binaryEncoder, 0.1f));
+        assertEquals(5, floatLength(binaryEncoder, 12.34f));
+
+        Random random = new Random(25);
+        for (int n = 0; n < 100000; n++) {
+            double d = n < DOUBLES.length ? DOUBLES[n]
+                    : n % 2 == 0 ? random.nextInt(100000) / 100.0 : Double.longBitsToDouble(random.nextLong());
+            int length = doubleLength(binaryEncoder, d);
+            //bits of a NaN are kept, its text is not
+            assertTrue(Double.isNaN(d) || length <= doubleLength(textEncoder, d));
+            assertTrue(length <= BsvBinaryNumbers.length(BsvBinaryNumbers.doubleBits(d)));
+            binaryEncoder.writeDouble(d);
+            assertPrintable(binaryEncoder.getBytes(), length);
+            assertEquals(Double.doubleToRawLongBits(d), Double.doubleToRawLongBits(
+                    BsvBinaryNumbers.decodeDouble(binaryEncoder.getBytes(), 0, length)));
+            binaryEncoder.clear();
+
+            float f = (float) d;
+            length = floatLength(binaryEncoder, f);
+            assertTrue(Float.isNaN(f) || length <= floatLength(textEncoder, f));
+            binaryEncoder.writeFloat(f);
+            assertEquals(Float.floatToRawIntBits(f), Float.floatToRawIntBits(BsvBinaryNumbers.decodeFloat(
+                    new String(binaryEncoder.getBytes(), 0, length, BsvContext.DEFAULT_CHARSET), 0, length)));
+            binaryEncoder.clear();
+        }
+
+        //a charset other than UTF-8 writes through a charset encoder
+        Charset latin1 = Charset.forName("ISO-8859-1");
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BsvSerializer serializer = binary.createSerializer(bytes, "04", '0', latin1);
+        for (int n = 0; n < 200; n++) {
+            Schema040x data = BsvTestRecords.record040x(n);
+            data.setF(n / 4.0f);
+            data.setD(n / 100.0);
+            serializer.next(data);
+        }
+        serializer.close();
+        for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+            BsvDeserializer deserializer = binary.createDeserializer(new ByteArrayInputStream(bytes.toByteArray()),
+                    latin1, engine);
+            for (int n = 0; n < 200; n++) {
+                Schema040x actual = (Schema040x) deserializer.next();
+                assertEquals(BsvTestRecords.record040x(n).getL(), actual.getL());
+                assertEquals(n / 4.0f, actual.getF(), 0);
+                assertEquals(n / 100.0, actual.getD(), 0);
+            }
+            assertEquals(null, deserializer.next());
+        }
+    }
+
+    @Test
+    public void testPrintableDelimiter() throws IOException {
+        try {
+            new BsvContextBuilder().fieldsSeperator(',').binaryNumbers(true).build();
+            fail();
+        } catch (IllegalArgumentException illegalArgumentException) {
+            //expected
+        }
+        BsvContext comma = new BsvContextBuilder().yamlSchema("classpath:com/github/yantzu/bsv/schema04.0.0.yaml")
+                .fieldsSeperator(',').build();
+        try {
+            comma.createDeserializer(new ByteArrayInputStream(new byte[] { '0', '4', '0', 'B', '\n' }),
+                    BsvDeserializer.Engine.BYTE);
+            fail();
+        } catch (IllegalArgumentException illegalArgumentException) {
+            //expected
+        } catch (BsvException bsvException) {
+            fail(bsvException.getMessage());
+        }
+    }
+
+    private static int doubleLength(BsvRecordEncoder encoder, double value) {
+        encoder.writeDouble(value);
+        int length = encoder.getLength();
+        encoder.clear();
+        return length;
+    }
+
+    private static int floatLength(BsvRecordEncoder encoder, float value) {
+        encoder.writeFloat(value);
+        int length = encoder.getLength();
+        encoder.clear();
+        return length;
+    }
+
+    private static void assertPrintable(byte[] bytes, int end) {
+        for (int i = 0; i < end; i++) {
+            assertTrue(bytes[i] >= 0x20 && bytes[i] < 0x80);
+        }
+    }
+
+    private static void assertRecords(BsvDeserializer deserializer) throws Exception {
+        for (int n = 0; n < 200; n++) {
+            Schema040x expected = BsvTestRecords.record040x(n);
+            Schema040x actual = (Schema040x) deserializer.next();
+            assertEquals(expected.getS(), actual.getS());
+            assertEquals(expected.getI(), actual.getI());
+            assertEquals(expected.getL(), actual.getL());
+            assertEquals(Float.floatToIntBits(expected.getF()), Float.floatToIntBits(actual.getF()));
+            assertEquals(Double.doubleToLongBits(expected.getD()), Double.doubleToLongBits(actual.getD()));
+        }
+        assertEquals(null, deserializer.next());
+    }
+
+    private static byte[] serialize(BsvContext context) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BsvSerializer serializer = context.createSerializer(bytes, "04", '0');
+        for (int n = 0; n < 200; n++) {
+            serializer.next(BsvTestRecords.record040x(n));
+        }
+        serializer.close();
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BsvBlockContainerTest {
+
+    private static final int RECORDS       = 20000;
+    private static final int BLOCK_RECORDS = 1000;
+
+    private static BsvContext context;
+    private static byte[]     container;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException, BsvException {
+        context = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .build();
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        BsvBlockSerializer serializer = context.createBlockSerializer(output, "03", '0');
+        serializer.setBlockRecords(BLOCK_RECORDS);
+        for (int i = 0; i < RECORDS; i++) {
+            Schema030x data = new Schema030x();
+            data.setVersion(i % 3 == 0 ? "03.0.1" : "03.0.0");
+            data.setS("line" + i);
+            data.setI(i);
+            data.setArray(Arrays.asList("a", String.valueOf(i)));
+            serializer.next(data);
+        }
+        serializer.close();
+        container = output.toByteArray();
+    }
+
+    @Test
+    public void testCrc32c() {
+        byte[] check = "123456789".getBytes(Charset.forName("US-ASCII"));
+        assertEquals(0xE3069283, BsvCrc32c.compute(check, 0, check.length));
+
+        //tables of eight bytes at a time against one byte at a time, at any alignment
+        for (int offset = 0; offset < 8; offset++) {
+            BsvCrc32c crc32c = new BsvCrc32c();
+            for (int i = offset; i < 200; i++) {
+                crc32c.update(container[i]);
+            }
+            assertEquals((int) crc32c.getValue(), BsvCrc32c.compute(container, offset, 200 - offset));
+        }
+    }
+
+    @Test
+    public void testSequentialRead() throws IOException, BsvException {
+        BsvBlockDeserializer deserializer = context.createBlockDeserializer(new ByteArrayInputStream(container));
+        assertEquals("03", deserializer.getMajorVersion());
+        List<Integer> values = new ArrayList<Integer>();
+        BsvObject record;
+        while ((record = deserializer.next()) != null) {
+            Schema030x data = (Schema030x) record;
+            assertEquals("line" + data.getI(), data.getS());
+            assertEquals(String.valueOf(data.getI()), data.getArray().get(1));
+            values.add(data.getI());
+        }
+        deserializer.close();
+        assertSequence(values, 0, RECORDS);
+
+        deserializer = context.createBlockDeserializer(new ByteArrayInputStream(container));
+        int count = 0;
+        BsvColumnBatch batch;
+        while ((batch = deserializer.nextBatch(300)) != null) {
+            count += batch.size();
+        }
+        assertEquals(RECORDS, count);
+    }
+
+    @Test
+    public void testParallelRead() throws IOException, BsvException, InterruptedException {
+        File file = write(container);
+        BsvBlockFileReader reader = context.createBlockFileReader(file, BsvContext.DEFAULT_CHARSET, 4);
+        try {
+            assertTrue(reader.isIndexed());
+            assertEquals(RECORDS / BLOCK_RECORDS, reader.getBlocks().size());
+            assertEquals(RECORDS, reader.getRecordCount());
+
+            BsvBlockFileReader.Block block = reader.getBlocks().get(3);
+            assertEquals(3 * BLOCK_RECORDS, ((Schema030x) block.createDeserializer().next()).getI());
+
+            List<Integer> values = new ArrayList<Integer>();
+            reader.read(collect(values, null), true);
+            assertSequence(values, 0, RECORDS);
+
+            List<Integer> unordered = Collections.synchronizedList(new ArrayList<Integer>());
+            reader.read(collect(unordered, null), false);
+            Collections.sort(unordered);
+            assertSequence(unordered, 0, RECORDS);
+        } finally {
+            reader.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCorruptBlock() throws IOException, BsvException, InterruptedException {
+        File file = write(container);
+        List<Long> offsets = new ArrayList<Long>();
+        BsvBlockFileReader reader = context.createBlockFileReader(file);
+        for (BsvBlockFileReader.Block block : reader.getBlocks()) {
+            offsets.add(block.getOffset());
+        }
+        reader.close();
+
+        byte[] corrupt = container.clone();
+        //payload of block 2, and sync marker of block 5
+        corrupt[(int) (offsets.get(2) + BsvBlockHeader.FRAME_LENGTH + 10)] ^= 0x55;
+        corrupt[(int) (offsets.get(5) + 3)] ^= 0x55;
+
+        BsvBlockDeserializer deserializer = context.createBlockDeserializer(new ByteArrayInputStream(corrupt));
+        List<Integer> values = new ArrayList<Integer>();
+        List<BsvException> exceptions = new ArrayList<BsvException>();
+        while (true) {
+            BsvObject record;
+            try {
+                record = deserializer.next();
+            } catch (BsvException bsvException) {
+                exceptions.add(bsvException);
+                continue;
+            }
+            if (record == null) {
+                break;
+            }
+            values.add(((Schema030x) record).getI());
+        }
+        assertEquals(2, exceptions.size());
+        assertEquals(BsvException.Kind.BLOCK, exceptions.get(0).getKind());
+        assertEquals(RECORDS - 2 * BLOCK_RECORDS, values.size());
+        assertSequence(values.subList(0, 2 * BLOCK_RECORDS), 0, 2 * BLOCK_RECORDS);
+        assertSequence(values.subList(2 * BLOCK_RECORDS, 4 * BLOCK_RECORDS), 3 * BLOCK_RECORDS, 2 * BLOCK_RECORDS);
+        assertEquals(6 * BLOCK_RECORDS, values.get(4 * BLOCK_RECORDS).intValue());
+
+        write(file, corrupt);
+        reader = context.createBlockFileReader(file);
+        try {
+            values.clear();
+            exceptions.clear();
+            reader.read(collect(values, exceptions), true);
+            assertEquals(2, exceptions.size());
+            assertEquals(RECORDS - 2 * BLOCK_RECORDS, values.size());
+        } finally {
+            reader.close();
+        }
+
+        //without footer, blocks are found by sync markers
+        write(file, Arrays.copyOf(corrupt, (int) (offsets.get(offsets.size() - 1) + 100)));
+        reader = context.createBlockFileReader(file);
+        try {
+            assertFalse(reader.isIndexed());
+            values.clear();
+            exceptions.clear();
+            reader.read(collect(values, exceptions), true);
+            assertEquals(1, exceptions.size());
+            assertEquals(RECORDS - 3 * BLOCK_RECORDS, values.size());
+        } finally {
+            reader.close();
+            file.delete();
+        }
+    }
+
+    @Test
+    public void testCorruptFrameLength() throws IOException, BsvException {
+        File file = write(container);
+        List<Long> offsets = new ArrayList<Long>();
+        BsvBlockFileReader reader = context.createBlockFileReader(file);
+        for (BsvBlockFileReader.Block block : reader.getBlocks()) {
+            offsets.add(block.getOffset());
+        }
+        reader.close();
+        file.delete();
+
+        byte[] corrupt = container.clone();
+        //high byte of compressed length of block 2, would allocate about 2GB
+        corrupt[(int) (offsets.get(2) + BsvBlockHeader.SYNC_LENGTH + 8)] ^= 0x7F;
+
+        BsvBlockDeserializer deserializer = context.createBlockDeserializer(new ByteArrayInputStream(corrupt));
+        List<Integer> values = new ArrayList<Integer>();
+        List<BsvException> exceptions = new ArrayList<BsvException>();
+        while (true) {
+            BsvObject record;
+            try {
+                record = deserializer.next();
+            } catch (BsvException bsvException) {
+                exceptions.add(bsvException);
+                continue;
+            }
+            if (record == null) {
+                break;
+            }
+            values.add(((Schema030x) record).getI());
+        }
+        assertEquals(1, exceptions.size());
+        assertEquals(BsvException.Kind.BLOCK, exceptions.get(0).getKind());
+        assertTrue(exceptions.get(0).getMessage().contains("frame checksum mismatch"));
+        assertEquals(RECORDS - BLOCK_RECORDS, values.size());
+        assertSequence(values.subList(0, 2 * BLOCK_RECORDS), 0, 2 * BLOCK_RECORDS);
+        assertEquals(3 * BLOCK_RECORDS, values.get(2 * BLOCK_RECORDS).intValue());
+    }
+
+    private static BsvRecordHandler collect(final List<Integer> values, final List<BsvException> exceptions) {
+        return new BsvRecordHandler() {
+            @Override
+            public void onRecord(BsvObject record) {
+                values.add(((Schema030x) record).getI());
+            }
+
+            @Override
+            public void onBadRecord(BsvException exception) {
+                if (exceptions == null) {
+                    throw new AssertionError(exception);
+                }
+                exceptions.add(exception);
+            }
+        };
+    }
+
+    private static void assertSequence(List<Integer> values, int first, int count) {
+        assertEquals(count, values.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(first + i, values.get(i).intValue());
+        }
+    }
+
+    private static File write(byte[] bytes) throws IOException {
+        File file = File.createTempFile("bsv", ".bsvb");
+        write(file, bytes);
+        return file;
+    }
+
+    private static void write(File file, byte[] bytes) throws IOException {
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            output.write(bytes);
+        } finally {
+            output.close();
+        }
+    }
+}
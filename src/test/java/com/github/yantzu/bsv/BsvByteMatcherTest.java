@@ -0,0 +1,48 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BsvByteMatcherTest {
+
+    @Test
+    public void testSameAsByteByByteScan() {
+        int[][] sets = { { 0x01, 0x02, 0x03 }, { '\n' }, { 0x00 }, { ',', ';' }, { 0x80, 0xFF },
+                { 'a', 'b', 'c', 'd', 'e' }, {} };
+        Random random = new Random(7L);
+        for (int[] set : sets) {
+            for (boolean words : new boolean[] { true, false }) {
+                assertSameAsByteByByteScan(set, new BsvByteMatcher(words, set), random);
+            }
+        }
+    }
+
+    private static void assertSameAsByteByByteScan(int[] set, BsvByteMatcher matcher, Random random) {
+        for (int round = 0; round < 2000; round++) {
+            byte[] buffer = new byte[random.nextInt(100)];
+            for (int i = 0; i < buffer.length; i++) {
+                //mostly plain text, sometimes control chars and multi byte chars
+                int kind = random.nextInt(20);
+                buffer[i] = (byte) (kind == 0 ? random.nextInt(0x20) : kind == 1 ? 0x80 + random.nextInt(0x80)
+                        : 0x20 + random.nextInt(0x60));
+            }
+            int from = buffer.length == 0 ? 0 : random.nextInt(buffer.length);
+            int to = from + random.nextInt(buffer.length - from + 1);
+            assertEquals(naiveIndexOf(set, buffer, from, to), matcher.indexOf(buffer, from, to));
+        }
+    }
+
+    private static int naiveIndexOf(int[] set, byte[] buffer, int from, int to) {
+        for (int i = from; i < to; i++) {
+            for (int b : set) {
+                if ((buffer[i] & 0xFF) == b) {
+                    return i;
+                }
+            }
+        }
+        return to;
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class BsvChannelSerializerTest {
+
+    private static final int RECORDS = 60000;
+
+    @Test
+    public void testSameAsStreamSerializer() throws IOException, BsvException {
+        BsvContext context = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .transcoding('\n', (char) 0x00)
+            .build();
+
+        File file = File.createTempFile("bsv", ".txt");
+        try {
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            BsvSerializer serializer = context.createSerializer(expected, "03", '0');
+            //gathering writes of file channel, one buffer at a time to a plain channel
+            FileChannel fileChannel = new FileOutputStream(file).getChannel();
+            BsvChannelSerializer fileSerializer = context.createChannelSerializer(fileChannel, "03", '0');
+            BsvChannelSerializer streamSerializer = context.createChannelSerializer(Channels.newChannel(streamed),
+                    "03", '0');
+            for (int i = 0; i < RECORDS; i++) {
+                Schema030x data = new Schema030x();
+                data.setVersion(i % 3 == 0 ? "03.0.1" : "03.0.0");
+                data.setS("line\n" + i + (i % 7 == 0 ? "😀" : ""));
+                data.setI(i);
+                data.setArray(Arrays.asList("四", String.valueOf(i)));
+                serializer.next(data);
+                fileSerializer.next(data);
+                streamSerializer.next(data);
+                if (i == 100) {
+                    streamSerializer.flush();
+                    serializer.flush();
+                    assertArrayEquals(expected.toByteArray(), streamed.toByteArray());
+                }
+            }
+            serializer.close();
+            fileSerializer.close();
+            streamSerializer.close();
+            assertTrue(expected.size() > 16 * BsvDirectBufferPool.BUFFER_SIZE);
+
+            assertArrayEquals(expected.toByteArray(), streamed.toByteArray());
+            byte[] written = new byte[(int) file.length()];
+            RandomAccessFile input = new RandomAccessFile(file, "r");
+            try {
+                input.readFully(written);
+            } finally {
+                input.close();
+            }
+            assertArrayEquals(expected.toByteArray(), written);
+            assertTrue(BsvDirectBufferPool.SHARED.getPooledCount() > 0);
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.Test;
+
+public class BsvCodecGeneratorTest {
+
+    @Test
+    public void testGeneratedCodecFoundAndSameOutput() throws Exception {
+        BsvYamlSchemaParser parser = new BsvYamlSchemaParser();
+        List<BsvSchema> schemas = new ArrayList<BsvSchema>();
+        schemas.add(parser.parse(getClass().getResourceAsStream("schema03.0.0.yaml")));
+        schemas.add(parser.parse(getClass().getResourceAsStream("schema03.0.1.yaml")));
+        schemas.add(parser.parse(getClass().getResourceAsStream("schema04.0.0.yaml")));
+        BsvCodecGenerator generator = new BsvCodecGenerator();
+        assertEquals("com.github.yantzu.bsv.Schema030xCodec0300", generator.getClassName(schemas.get(0)));
+
+        File directory = Files.createTempDirectory("bsv-codec").toFile();
+        File sources = new File(directory, "sources");
+        File classes = new File(directory, "classes");
+        classes.mkdirs();
+        List<File> files = generator.writeSources(schemas, sources);
+        generator.writeServices(schemas, classes);
+        compile(files, classes);
+
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        URLClassLoader classLoader = new URLClassLoader(new URL[] { classes.toURI().toURL() },
+                getClass().getClassLoader());
+        BsvContext codecContext;
+        Thread.currentThread().setContextClassLoader(classLoader);
+        try {
+            codecContext = BsvTestRecords.schema030x()
+                .yamlSchema("classpath:com/github/yantzu/bsv/schema04.0.0.yaml")
+                .generatedAccessors(true)
+                .build();
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+        }
+        BsvContext reflectionContext = BsvTestRecords.schema030x()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema04.0.0.yaml")
+            .generatedAccessors(false)
+            .build();
+
+        BsvSchema schema = codecContext.getSchemas("03", '0').get('0');
+        assertTrue(schema.getBeanAccessor() instanceof BsvCodec);
+        assertEquals(generator.getClassName(schema), schema.getBeanAccessor().getClass().getName());
+        assertFalse(reflectionContext.getSchemas("03", '0').get('0').getBeanAccessor() instanceof BsvCodec);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        ByteArrayOutputStream generated = new ByteArrayOutputStream();
+        BsvSerializer reflectionSerializer = reflectionContext.createSerializer(expected, "03", '0');
+        BsvSerializer codecSerializer = codecContext.createSerializer(generated, "03", '0');
+        for (int i = 0; i < 100; i++) {
+            reflectionSerializer.next(BsvTestRecords.record030x(i));
+            codecSerializer.next(BsvTestRecords.record030x(i));
+        }
+        reflectionSerializer.close();
+        codecSerializer.close();
+        assertArrayEquals(expected.toByteArray(), generated.toByteArray());
+
+        //char engine reads by field type, byte engine by the read method of codec
+        for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+            BsvDeserializer deserializer = codecContext.createDeserializer(
+                    new ByteArrayInputStream(generated.toByteArray()), engine);
+            Schema030x reuse = null;
+            for (int i = 0; i < 100; i++) {
+                Schema030x data = (Schema030x) (i < 50 ? deserializer.next() : deserializer.next(reuse));
+                reuse = data;
+                Schema030x original = BsvTestRecords.record030x(i);
+                assertEquals(original.getVersion(), data.getVersion());
+                assertEquals(original.getS() == null ? "" : original.getS(), data.getS());
+                assertEquals(original.getI(), data.getI());
+                assertEquals(original.isB(), data.isB());
+                assertEquals(original.getArray(), data.getArray());
+                assertEquals(original.getMap() == null ? Collections.emptyMap() : original.getMap(), data.getMap());
+            }
+            assertEquals(null, deserializer.next());
+        }
+
+        expected.reset();
+        generated.reset();
+        reflectionSerializer = reflectionContext.createSerializer(expected, "04", '0');
+        codecSerializer = codecContext.createSerializer(generated, "04", '0');
+        for (int n = 0; n < 100; n++) {
+            reflectionSerializer.next(BsvTestRecords.record040x(n));
+            codecSerializer.next(BsvTestRecords.record040x(n));
+        }
+        reflectionSerializer.close();
+        codecSerializer.close();
+        assertArrayEquals(expected.toByteArray(), generated.toByteArray());
+        BsvDeserializer deserializer = codecContext.createDeserializer(
+                new ByteArrayInputStream(generated.toByteArray()), BsvDeserializer.Engine.BYTE);
+        for (int n = 0; n < 100; n++) {
+            Schema040x data = (Schema040x) deserializer.next();
+            Schema040x original = BsvTestRecords.record040x(n);
+            assertEquals(original.getS(), data.getS());
+            assertEquals(original.getI(), data.getI());
+            assertEquals(original.getL(), data.getL());
+            assertEquals(original.getF(), data.getF(), 0.0f);
+            assertEquals(original.getD(), data.getD(), 0.0);
+        }
+        assertEquals(null, deserializer.next());
+    }
+
+    @Test
+    public void testGeneratedReadIsStraightLine() throws Exception {
+        BsvSchema schema = new BsvYamlSchemaParser().parse(getClass().getResourceAsStream("schema04.0.0.yaml"));
+        String source = new BsvCodecGenerator().generate(schema);
+        assertTrue(source.contains("        reader.readNumber();\n        b.setL(reader.longValue());\n"));
+        assertFalse(source.contains("switch (field.getType())"));
+    }
+
+    private static void compile(List<File> files, File classes) throws Exception {
+        String classPath = new File(BsvCodec.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+                + File.pathSeparator
+                + new File(Schema030x.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        List<String> arguments = new ArrayList<String>(
+                Arrays.asList("-d", classes.getPath(), "-classpath", classPath, "-nowarn"));
+        for (File file : files) {
+            arguments.add(file.getPath());
+        }
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        assertEquals(0, compiler.run(null, null, null, arguments.toArray(new String[arguments.size()])));
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BsvCompactMapTest {
+
+    @Test
+    public void testSameAsHashMap() {
+        Random random = new Random(11L);
+        for (int round = 0; round < 200; round++) {
+            BsvCompactMap compact = new BsvCompactMap(1);
+            Map<String, String> expected = new HashMap<String, String>();
+            //small key space for replaced and removed keys, large enough to index
+            int keys = 1 + random.nextInt(40);
+            for (int op = 0; op < 200; op++) {
+                String key = random.nextInt(20) == 0 ? null : "k" + random.nextInt(keys);
+                switch (random.nextInt(6)) {
+                    case 0:
+                        assertEquals(expected.remove(key), compact.remove(key));
+                        break;
+                    case 1:
+                        assertEquals(expected.get(key), compact.get(key));
+                        assertEquals(expected.containsKey(key), compact.containsKey(key));
+                        break;
+                    case 2:
+                        Iterator<Map.Entry<String, String>> iterator = compact.entrySet().iterator();
+                        while (iterator.hasNext()) {
+                            Map.Entry<String, String> entry = iterator.next();
+                            if (random.nextInt(4) == 0) {
+                                iterator.remove();
+                                expected.remove(entry.getKey());
+                            } else if (random.nextInt(4) == 0) {
+                                entry.setValue("set" + op);
+                                expected.put(entry.getKey(), "set" + op);
+                            }
+                        }
+                        break;
+                    default:
+                        assertEquals(expected.put(key, "v" + op), compact.put(key, "v" + op));
+                }
+                assertEquals(expected.size(), compact.size());
+            }
+            assertEquals(expected, compact);
+            assertEquals(compact, expected);
+            assertEquals(expected.hashCode(), compact.hashCode());
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BsvConcurrentSerializerTest {
+
+    private static final int THREADS = 8;
+    private static final int RECORDS = 20000;
+
+    private static BsvContext context;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        context = BsvTestRecords.schema030x().build();
+    }
+
+    @Test
+    public void testRecordsNotInterleaved() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final BsvConcurrentSerializer serializer = context.createConcurrentSerializer(output, "03", '0',
+                BsvContext.DEFAULT_CHARSET, 64);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < THREADS; t++) {
+                final int thread = t;
+                futures.add(pool.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < RECORDS; i++) {
+                            Schema030x data = BsvTestRecords.record030x(i);
+                            data.setS("thread" + thread + "-" + i);
+                            data.setArray(Arrays.asList(String.valueOf(thread), "x"));
+                            serializer.next(data);
+                            if (i % 5000 == 0) {
+                                serializer.flush();
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdown();
+        }
+        serializer.close();
+
+        BsvDeserializer deserializer = context.createDeserializer(new ByteArrayInputStream(output.toByteArray()));
+        int[] next = new int[THREADS];
+        Schema030x data;
+        while ((data = (Schema030x) deserializer.next()) != null) {
+            int thread = Integer.parseInt(data.getArray().get(0));
+            //records of a thread are in order of its calls
+            assertEquals(next[thread], data.getI());
+            assertEquals("thread" + thread + "-" + data.getI(), data.getS());
+            next[thread]++;
+        }
+        for (int t = 0; t < THREADS; t++) {
+            assertEquals(RECORDS, next[t]);
+        }
+    }
+
+    @Test
+    public void testNextRacingClose() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < 50; round++) {
+                ByteArrayOutputStream output = new ByteArrayOutputStream();
+                final BsvConcurrentSerializer serializer = context.createConcurrentSerializer(output, "03", '0',
+                        BsvContext.DEFAULT_CHARSET, 64);
+                List<Future<Integer>> futures = new ArrayList<Future<Integer>>();
+                for (int t = 0; t < THREADS; t++) {
+                    futures.add(pool.submit(new Callable<Integer>() {
+                        @Override
+                        public Integer call() throws Exception {
+                            int written = 0;
+                            while (true) {
+                                try {
+                                    serializer.next(BsvTestRecords.record030x(written));
+                                } catch (IOException ioException) {
+                                    return written;
+                                }
+                                written++;
+                            }
+                        }
+                    }));
+                }
+                Thread.sleep(1);
+                serializer.close();
+
+                int written = 0;
+                for (Future<Integer> future : futures) {
+                    written += future.get();
+                }
+                //every call returning normally is written
+                BsvDeserializer deserializer = context.createDeserializer(
+                        new ByteArrayInputStream(output.toByteArray()));
+                int read = 0;
+                while (deserializer.next() != null) {
+                    read++;
+                }
+                assertEquals(written, read);
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailureThrownByNextCall() throws IOException, BsvException {
+        OutputStream output = new OutputStream() {
+            private boolean header = true;
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                if (header) {
+                    header = false;
+                    return;
+                }
+                throw new InterruptedIOException("disk gone");
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] { (byte) b }, 0, 1);
+            }
+        };
+        BsvConcurrentSerializer serializer = context.createConcurrentSerializer(output, "03", '0');
+        serializer.next(BsvTestRecords.record030x(1));
+        try {
+            serializer.flush();
+            fail();
+        } catch (IOException ioException) {
+            assertEquals("disk gone", ioException.getCause().getMessage());
+        }
+        try {
+            serializer.next(BsvTestRecords.record030x(2));
+            fail();
+        } catch (IOException ioException) {
+            //failed for good
+        }
+        try {
+            serializer.close();
+            fail();
+        } catch (IOException ioException) {
+            assertTrue(ioException.getCause() instanceof InterruptedIOException);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BsvFileReaderTest {
+
+    private static final int RECORDS = 20000;
+
+    private static BsvContext context;
+    private static File       file;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException, BsvException {
+        context = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .transcoding('\n', (char) 0x00)
+            .build();
+
+        file = File.createTempFile("bsv", ".txt");
+        BsvSerializer serializer = context.createSerializer(new FileOutputStream(file), "03", '0');
+        for (int i = 0; i < RECORDS; i++) {
+            Schema030x data = new Schema030x();
+            data.setVersion(i % 3 == 0 ? "03.0.1" : "03.0.0");
+            data.setS("line\n" + i);
+            data.setI(i);
+            data.setArray(Arrays.asList("四", String.valueOf(i)));
+            serializer.next(data);
+        }
+        serializer.close();
+    }
+
+    @AfterClass
+    public static void afterClass() {
+        file.delete();
+    }
+
+    @Test
+    public void testSplitsAlignedToLines() throws IOException, BsvException {
+        BsvFileReader reader = context.createFileReader(file);
+        try {
+            reader.setSplitSize(1000);
+            List<BsvFileReader.Split> splits = reader.getSplits(4);
+            assertTrue(splits.size() > 4);
+
+            long expectedStart = 4;
+            int count = 0;
+            for (BsvFileReader.Split split : splits) {
+                assertEquals(expectedStart, split.getStart());
+                expectedStart = split.getEnd();
+
+                BsvDeserializer deserializer = split.createDeserializer();
+                while (deserializer.next() != null) {
+                    count++;
+                }
+            }
+            assertEquals(file.length(), expectedStart);
+            assertEquals(RECORDS, count);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testReadOrdered() throws IOException, BsvException, InterruptedException {
+        BsvFileReader reader = context.createFileReader(file, BsvContext.DEFAULT_CHARSET, 4);
+        try {
+            reader.setSplitSize(4096);
+            final List<Integer> values = new ArrayList<Integer>();
+            reader.read(new BsvRecordHandler() {
+                @Override
+                public void onRecord(BsvObject record) {
+                    Schema030x data = (Schema030x) record;
+                    assertEquals("line\n" + data.getI(), data.getS());
+                    assertEquals(String.valueOf(data.getI()), data.getArray().get(1));
+                    values.add(data.getI());
+                }
+
+                @Override
+                public void onBadRecord(BsvException exception) {
+                    throw new AssertionError(exception);
+                }
+            }, true);
+
+            assertEquals(RECORDS, values.size());
+            for (int i = 0; i < RECORDS; i++) {
+                assertEquals(i, values.get(i).intValue());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testReadOrderedStopsOnHandlerFailure() throws IOException, BsvException, InterruptedException {
+        //2 splits of 10000 records, each handed over in several batches
+        BsvFileReader reader = context.createFileReader(file, BsvContext.DEFAULT_CHARSET, 2);
+        try {
+            final List<Integer> values = new ArrayList<Integer>();
+            try {
+                reader.read(new BsvRecordHandler() {
+                    @Override
+                    public void onRecord(BsvObject record) {
+                        if (values.size() == 7000) {
+                            throw new IllegalStateException("handler failure");
+                        }
+                        values.add(((Schema030x) record).getI());
+                    }
+
+                    @Override
+                    public void onBadRecord(BsvException exception) {
+                        throw new AssertionError(exception);
+                    }
+                }, true);
+                fail();
+            } catch (IllegalStateException illegalStateException) {
+                assertEquals("handler failure", illegalStateException.getMessage());
+            }
+
+            assertEquals(7000, values.size());
+            for (int i = 0; i < 7000; i++) {
+                assertEquals(i, values.get(i).intValue());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testReadUnordered() throws IOException, BsvException, InterruptedException {
+        BsvFileReader reader = context.createFileReader(file, BsvContext.DEFAULT_CHARSET, 4);
+        try {
+            reader.setSplitSize(4096);
+            final List<Integer> values = Collections.synchronizedList(new ArrayList<Integer>());
+            final AtomicInteger badRecords = new AtomicInteger();
+            reader.read(new BsvRecordHandler() {
+                @Override
+                public void onRecord(BsvObject record) {
+                    values.add(((Schema030x) record).getI());
+                }
+
+                @Override
+                public void onBadRecord(BsvException exception) {
+                    badRecords.incrementAndGet();
+                }
+            }, false);
+
+            assertEquals(0, badRecords.get());
+            Collections.sort(values);
+            assertEquals(RECORDS, values.size());
+            for (int i = 0; i < RECORDS; i++) {
+                assertEquals(i, values.get(i).intValue());
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testParallelStream() throws IOException, BsvException {
+        BsvFileReader reader = context.createFileReader(file);
+        try {
+            reader.setSplitSize(4096);
+            Spliterator<BsvObject> spliterator = reader.spliterator(BsvBadRecordPolicy.fail());
+            Spliterator<BsvObject> prefix = spliterator.trySplit();
+            assertTrue(prefix != null);
+            assertTrue(prefix.estimateSize() > 0 && spliterator.estimateSize() > 0);
+        } finally {
+            reader.close();
+        }
+
+        reader = context.createFileReader(file);
+        reader.setSplitSize(4096);
+        Spliterator<BsvObject> exhausted = reader.spliterator(BsvBadRecordPolicy.fail());
+        Spliterator<BsvObject> stopped = exhausted.trySplit();
+        final long[] count = new long[1];
+        try {
+            assertTrue(stopped.tryAdvance(record -> count[0]++));
+            exhausted.forEachRemaining(record -> count[0]++);
+            //deserializer of each exhausted split is closed at once
+            assertEquals(1, reader.getOpenDeserializers());
+        } finally {
+            reader.close();
+        }
+        assertEquals(0, reader.getOpenDeserializers());
+        assertTrue(count[0] > 1);
+
+        Stream<BsvObject> stream = context.stream(file, BsvBadRecordPolicy.fail());
+        try {
+            long sum = 0;
+            for (int i = 0; i < RECORDS; i++) {
+                sum += i;
+            }
+            assertEquals(sum, stream.parallel().mapToLong(record -> ((Schema030x) record).getI()).sum());
+        } finally {
+            stream.close();
+        }
+
+        stream = context.stream(file, BsvBadRecordPolicy.fail());
+        try {
+            Object[] values = stream.parallel().map(record -> ((Schema030x) record).getI()).toArray();
+            assertEquals(RECORDS, values.length);
+            for (int i = 0; i < RECORDS; i++) {
+                assertEquals(i, values[i]);
+            }
+        } finally {
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+public class BsvMetricsTest {
+
+    private static final String BAD_LINE = "9abc\n";
+
+    @Test
+    public void testWrittenAndReadCounts() throws Exception {
+        BsvMetrics metrics = new BsvMetrics(1);
+        BsvContext context = context(metrics, BsvDeserializer.Engine.BYTE);
+        byte[] bytes = serialize(context, 100);
+
+        BsvSchema schema0 = context.getSchemas("03", '0').get('0');
+        BsvSchema schema1 = context.getSchemas("03", '0').get('1');
+        assertEquals(100, metrics.getRecordsWritten());
+        assertEquals(bytes.length - BsvHeader.LENGTH, metrics.getBytesWritten());
+        assertEquals(66, metrics.getRecordsWritten(schema0));
+        assertEquals(34, metrics.getRecordsWritten(schema1));
+        assertEquals(metrics.getBytesWritten(), metrics.getBytesWritten(schema0) + metrics.getBytesWritten(schema1));
+        assertEquals(100L, metrics.getWriteLatencyNanos().get("count").longValue());
+
+        BsvDeserializer deserializer = context.createDeserializer(new ByteArrayInputStream(bytes));
+        while (deserializer.next() != null) {
+        }
+        assertEquals(100, metrics.getRecordsRead());
+        assertEquals(bytes.length - BsvHeader.LENGTH, metrics.getBytesRead());
+        assertEquals(66, metrics.getRecordsRead(schema0));
+        assertEquals(Long.valueOf(34), metrics.getRecordsReadByVariant().get("03.0.1"));
+        assertEquals(100L, metrics.getReadLatencyNanos().get("count").longValue());
+        assertTrue(metrics.getLatency(false, 50) <= metrics.getLatency(false, 100));
+        assertEquals(0, metrics.getReadErrors());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        BsvMetrics metrics = new BsvMetrics(0);
+        BsvContext context = context(metrics, BsvDeserializer.Engine.BYTE);
+        byte[] bytes = withBadLine(serialize(context, 10));
+
+        BsvSerializer serializer = context.createSerializer(new ByteArrayOutputStream(), "03", '0');
+        Schema030x invalid = BsvTestRecords.record030x(0);
+        invalid.setVersion("03.0.9");
+        try {
+            serializer.next(invalid);
+            fail();
+        } catch (BsvException bsvException) {
+            assertEquals(BsvException.Kind.VARIANT, bsvException.getKind());
+        }
+        assertEquals(1, metrics.getWriteErrors(BsvException.Kind.VARIANT));
+
+        assertEquals(10, read(context.createDeserializer(new ByteArrayInputStream(bytes))));
+        assertEquals(1, metrics.getReadErrors(BsvException.Kind.VARIANT));
+        assertEquals(Long.valueOf(1), metrics.getReadErrorsByKind().get("VARIANT"));
+        assertEquals(BAD_LINE.length(), metrics.getSkippedBytes());
+        assertEquals(0L, metrics.getReadLatencyNanos().get("count").longValue());
+    }
+
+    @Test
+    public void testCharEngine() throws Exception {
+        BsvMetrics metrics = new BsvMetrics();
+        BsvContext context = context(metrics, BsvDeserializer.Engine.CHAR);
+        byte[] bytes = withBadLine(serialize(context, 10));
+
+        assertEquals(10, read(context.createDeserializer(new ByteArrayInputStream(bytes))));
+        assertEquals(10, metrics.getRecordsRead());
+        assertEquals(0, metrics.getBytesRead());
+        assertEquals(1, metrics.getReadErrors());
+        //variant number is consumed before the error
+        assertEquals(BAD_LINE.length() - 1, metrics.getSkippedBytes());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        BsvContext context = context(null, BsvDeserializer.Engine.BYTE);
+        assertEquals(null, context.getMetricsListener());
+        byte[] bytes = withBadLine(serialize(context, 10));
+        assertEquals(10, read(context.createDeserializer(new ByteArrayInputStream(bytes))));
+    }
+
+    @Test
+    public void testMBean() throws Exception {
+        BsvMetrics metrics = new BsvMetrics();
+        serialize(context(metrics, BsvDeserializer.Engine.BYTE), 3);
+
+        ObjectName objectName = metrics.register("test");
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            assertEquals(3L, server.getAttribute(objectName, "RecordsWritten"));
+            assertTrue(server.getAttribute(objectName, "WriteErrorsByKind") != null);
+        } finally {
+            metrics.unregister();
+        }
+        assertFalse(server.isRegistered(objectName));
+    }
+
+    private static int read(BsvDeserializer deserializer) throws IOException {
+        int count = 0;
+        while (true) {
+            try {
+                if (deserializer.next() == null) {
+                    return count;
+                }
+                count++;
+            } catch (BsvException bsvException) {
+                //skipped
+            }
+        }
+    }
+
+    private static byte[] withBadLine(byte[] bytes) {
+        byte[] bad = BAD_LINE.getBytes(BsvContext.DEFAULT_CHARSET);
+        byte[] result = new byte[bytes.length + bad.length];
+        System.arraycopy(bytes, 0, result, 0, BsvHeader.LENGTH);
+        System.arraycopy(bad, 0, result, BsvHeader.LENGTH, bad.length);
+        System.arraycopy(bytes, BsvHeader.LENGTH, result, BsvHeader.LENGTH + bad.length,
+                bytes.length - BsvHeader.LENGTH);
+        return result;
+    }
+
+    private static byte[] serialize(BsvContext context, int count) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        BsvSerializer serializer = context.createSerializer(bytes, "03", '0');
+        for (int i = 0; i < count; i++) {
+            serializer.next(BsvTestRecords.record030x(i));
+        }
+        serializer.close();
+        return bytes.toByteArray();
+    }
+
+    private static BsvContext context(BsvMetricsListener metrics, BsvDeserializer.Engine engine) throws IOException {
+        return BsvTestRecords.schema030x()
+            .deserializerEngine(engine)
+            .badRecordListener(null)
+            .metricsListener(metrics)
+            .build();
+    }
+}
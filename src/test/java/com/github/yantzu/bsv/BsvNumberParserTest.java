@@ -0,0 +1,132 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class BsvNumberParserTest {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String[] SAMPLES = { "0", "-0", "+0", "1", "-1", "+17", "007", "2147483647",
+            "-2147483648", "2147483648", "-2147483649", "9223372036854775807", "-9223372036854775808",
+            "9223372036854775808", "1.5", "-1.5", "0.1", ".5", "5.", "1e10", "1E-10", "1.25e+3", "-0.0",
+            "3.4028235e38", "1.4e-45", "4.9e-324", "1.7976931348623157e308", "1e400", "1e-400", "123456789012",
+            "0.30000000000000004", "12345678901234567890.5", "1.5f", "2d", "NaN", "-Infinity", "0x1p3", " 1.5",
+            "1.5 ", "", "-", "+", ".", "e5", "1e", "1e+", "1..2", "1-2", "abc", "١٢٣", "16777217", "0.000001234" };
+
+    @Test
+    public void testSameAsJdk() {
+        for (String sample : SAMPLES) {
+            check(sample);
+        }
+    }
+
+    @Test
+    public void testRandomDecimalsSameAsJdk() {
+        Random random = new Random(20240607L);
+        for (int i = 0; i < 20000; i++) {
+            check(Double.toString(Double.longBitsToDouble(random.nextLong())));
+            check(Float.toString(Float.intBitsToFloat(random.nextInt())));
+            check(Long.toString(random.nextLong() % 100000000L) + "." + Math.abs(random.nextInt() % 100000));
+            check(random.nextInt(1000000) + "e" + (random.nextInt(60) - 30));
+        }
+    }
+
+    private static void check(String sample) {
+        byte[] bytes = ("#" + sample + "#").getBytes(UTF8);
+        StringBuilder chars = new StringBuilder("#").append(sample).append('#');
+        int end = bytes.length - 1;
+
+        Object expected = jdkInt(sample);
+        assertEquals(sample, expected, parse(0, bytes, end, chars, sample));
+        expected = jdkLong(sample);
+        assertEquals(sample, expected, parse(1, bytes, end, chars, sample));
+        expected = jdkFloat(sample);
+        assertEquals(sample, expected, parse(2, bytes, end, chars, sample));
+        expected = jdkDouble(sample);
+        assertEquals(sample, expected, parse(3, bytes, end, chars, sample));
+    }
+
+    /**
+     * @return value, or class of exception, the same from bytes and chars
+     */
+    private static Object parse(int kind, byte[] bytes, int end, StringBuilder chars, String sample) {
+        Object fromBytes;
+        Object fromChars;
+        try {
+            switch (kind) {
+                case 0:
+                    fromBytes = BsvNumberParser.parseInt(bytes, 1, end);
+                    break;
+                case 1:
+                    fromBytes = BsvNumberParser.parseLong(bytes, 1, end);
+                    break;
+                case 2:
+                    fromBytes = BsvNumberParser.parseFloat(bytes, 1, end);
+                    break;
+                default:
+                    fromBytes = BsvNumberParser.parseDouble(bytes, 1, end);
+            }
+        } catch (NumberFormatException numberFormatException) {
+            fromBytes = NumberFormatException.class;
+        }
+        try {
+            switch (kind) {
+                case 0:
+                    fromChars = BsvNumberParser.parseInt(chars, 1, chars.length() - 1);
+                    break;
+                case 1:
+                    fromChars = BsvNumberParser.parseLong(chars, 1, chars.length() - 1);
+                    break;
+                case 2:
+                    fromChars = BsvNumberParser.parseFloat(chars, 1, chars.length() - 1);
+                    break;
+                default:
+                    fromChars = BsvNumberParser.parseDouble(chars, 1, chars.length() - 1);
+            }
+        } catch (NumberFormatException numberFormatException) {
+            fromChars = NumberFormatException.class;
+        }
+        if (!fromBytes.equals(fromChars)) {
+            fail(sample + " parsed as " + fromBytes + " from bytes but " + fromChars + " from chars");
+        }
+        return fromBytes;
+    }
+
+    private static Object jdkInt(String sample) {
+        try {
+            return Integer.parseInt(sample);
+        } catch (NumberFormatException numberFormatException) {
+            return NumberFormatException.class;
+        }
+    }
+
+    private static Object jdkLong(String sample) {
+        try {
+            return Long.parseLong(sample);
+        } catch (NumberFormatException numberFormatException) {
+            return NumberFormatException.class;
+        }
+    }
+
+    private static Object jdkFloat(String sample) {
+        try {
+            return Float.parseFloat(sample);
+        } catch (NumberFormatException numberFormatException) {
+            return NumberFormatException.class;
+        }
+    }
+
+    private static Object jdkDouble(String sample) {
+        try {
+            return Double.parseDouble(sample);
+        } catch (NumberFormatException numberFormatException) {
+            return NumberFormatException.class;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class BsvParallelGzipOutputStreamTest {
+
+    private static final int RECORDS = 20000;
+
+    @Test
+    public void testSameRecordStream() throws IOException, BsvException {
+        BsvContext context = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .build();
+
+        ByteArrayOutputStream plain = new ByteArrayOutputStream();
+        ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+        BsvSerializer plainSerializer = context.createSerializer(plain, "03", '0');
+        BsvSerializer gzipSerializer = context.createGzipSerializer(gzip, "03", '0', 4);
+        for (int i = 0; i < RECORDS; i++) {
+            Schema030x data = new Schema030x();
+            data.setVersion(i % 3 == 0 ? "03.0.1" : "03.0.0");
+            data.setS("line" + i);
+            data.setI(i);
+            data.setArray(Arrays.asList("a", String.valueOf(i)));
+            plainSerializer.next(data);
+            gzipSerializer.next(data);
+        }
+        plainSerializer.close();
+        gzipSerializer.close();
+
+        assertArrayEquals(plain.toByteArray(), gunzip(gzip.toByteArray()));
+
+        BsvDeserializer deserializer = context.createDeserializer(
+                new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray())));
+        int count = 0;
+        BsvObject record;
+        while ((record = deserializer.next()) != null) {
+            assertEquals(count++, ((Schema030x) record).getI());
+        }
+        assertEquals(RECORDS, count);
+    }
+
+    @Test
+    public void testChunksPrimedWithDictionary() throws IOException {
+        byte[] data = new byte[600 * 1024];
+        Random random = new Random(17);
+        String[] words = { "alpha", "beta", "gamma", "delta", "epsilon", "\u0001", "\n" };
+        int length = 0;
+        while (length < data.length) {
+            byte[] word = words[random.nextInt(words.length)].getBytes("UTF-8");
+            int copied = Math.min(word.length, data.length - length);
+            System.arraycopy(word, 0, data, length, copied);
+            length += copied;
+        }
+
+        ByteArrayOutputStream single = new ByteArrayOutputStream();
+        GZIPOutputStream gzipOutputStream = new GZIPOutputStream(single);
+        gzipOutputStream.write(data);
+        gzipOutputStream.close();
+
+        ByteArrayOutputStream parallel = new ByteArrayOutputStream();
+        BsvParallelGzipOutputStream outputStream = new BsvParallelGzipOutputStream(parallel, 3, 6);
+        outputStream.setChunkSize(40 * 1024);
+        outputStream.setMaxInFlight(3);
+        outputStream.write(data[0]);
+        outputStream.write(data, 1, 100 * 1024);
+        outputStream.flush();
+        outputStream.write(data, 100 * 1024 + 1, data.length - 100 * 1024 - 1);
+        outputStream.close();
+
+        assertArrayEquals(data, gunzip(parallel.toByteArray()));
+        //priming keeps ratio close to a single stream
+        assertTrue(parallel.size() < single.size() * 1.1);
+
+        ByteArrayOutputStream empty = new ByteArrayOutputStream();
+        new BsvParallelGzipOutputStream(empty, 1, 6).close();
+        assertEquals(0, gunzip(empty.toByteArray()).length);
+    }
+
+    private static byte[] gunzip(byte[] compressed) throws IOException {
+        InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int read;
+        while ((read = inputStream.read(buffer)) > 0) {
+            output.write(buffer, 0, read);
+        }
+        return output.toByteArray();
+    }
+}
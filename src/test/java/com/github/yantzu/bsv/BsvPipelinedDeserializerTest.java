@@ -0,0 +1,291 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BsvPipelinedDeserializerTest {
+
+    private static final int RECORDS = 20000;
+    //every BAD_EVERY record is followed by a line with a missing field
+    private static final int BAD_EVERY = 1000;
+
+    private static BsvContext context;
+    private static byte[]     data;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException, BsvException {
+        context = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .transcoding('\n', (char) 0x00)
+            .build();
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BsvSerializer serializer = context.createSerializer(baos, "03", '0');
+        for (int i = 0; i < RECORDS; i++) {
+            Schema030x record = new Schema030x();
+            record.setVersion(i % 3 == 0 ? "03.0.1" : "03.0.0");
+            record.setS("line\n" + i);
+            record.setI(i);
+            record.setArray(Arrays.asList("四", String.valueOf(i)));
+            serializer.next(record);
+            if (i % BAD_EVERY == 0) {
+                serializer.close();
+                baos.write("0bad\u0001record\n".getBytes("UTF-8"));
+                serializer = context.createSerializer(new HeaderlessOutputStream(baos), "03", '0');
+            }
+        }
+        serializer.close();
+        data = baos.toByteArray();
+    }
+
+    @Test
+    public void testOrderedSameAsSingleThread() throws IOException, BsvException {
+        List<Object> expected = readAll(context.createDeserializer(new ByteArrayInputStream(data),
+                BsvDeserializer.Engine.BYTE));
+        assertEquals(RECORDS + RECORDS / BAD_EVERY, expected.size());
+
+        BsvPipelinedDeserializer deserializer = context.createPipelinedDeserializer(new ByteArrayInputStream(data),
+                4, true);
+        deserializer.setChunkSize(1000);
+        deserializer.setMaxInFlight(3);
+        try {
+            assertEquals(expected, readAll(deserializer));
+            assertNull(deserializer.next());
+        } finally {
+            deserializer.close();
+        }
+    }
+
+    @Test
+    public void testUnorderedReadsAllRecords() throws IOException, BsvException {
+        BsvPipelinedDeserializer deserializer = context.createPipelinedDeserializer(new ByteArrayInputStream(data),
+                4, false);
+        deserializer.setChunkSize(4096);
+        List<Integer> values = new ArrayList<Integer>();
+        int badRecords = 0;
+        try {
+            for (Object record : readAll(deserializer)) {
+                if (record == BsvException.class) {
+                    badRecords++;
+                } else {
+                    values.add((Integer) record);
+                }
+            }
+        } finally {
+            deserializer.close();
+        }
+
+        assertEquals(RECORDS / BAD_EVERY, badRecords);
+        Collections.sort(values);
+        assertEquals(RECORDS, values.size());
+        for (int i = 0; i < RECORDS; i++) {
+            assertEquals(i, values.get(i).intValue());
+        }
+    }
+
+    @Test
+    public void testInputFailureAfterRecords() throws IOException, BsvException {
+        BsvPipelinedDeserializer deserializer = context.createPipelinedDeserializer(failingHalf(), 2, true);
+        deserializer.setChunkSize(1000);
+        try {
+            assertTrue(readUntilFailure(deserializer) > RECORDS / 3);
+        } finally {
+            deserializer.close();
+        }
+    }
+
+    @Test
+    public void testUnorderedInputFailureAfterRecords() throws IOException, BsvException {
+        //complete lines before failure, a partial line is lost with the input
+        int end = data.length / 2;
+        while (data[end - 1] != '\n') {
+            end--;
+        }
+        int expected = readAll(context.createDeserializer(new ByteArrayInputStream(data, 0, end),
+                BsvDeserializer.Engine.BYTE)).size();
+
+        //slow workers, so that end of input is queued while chunks are parsed
+        ExecutorService workers = new ThreadPoolExecutor(4, 4, 0, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>()) {
+            @Override
+            protected void beforeExecute(Thread thread, Runnable runnable) {
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException interruptedException) {
+                    thread.interrupt();
+                }
+            }
+        };
+        BsvPipelinedDeserializer deserializer = context.createPipelinedDeserializer(failingHalf(),
+                BsvContext.DEFAULT_CHARSET, workers, false);
+        deserializer.setChunkSize(4096);
+        try {
+            assertEquals(expected, readUntilFailure(deserializer));
+            assertNull(deserializer.next());
+        } finally {
+            deserializer.close();
+            workers.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseFailsNext() throws Exception {
+        for (boolean ordered : new boolean[] {true, false}) {
+            //workers stalled until the end of test, so chunks are never parsed before close
+            final CountDownLatch stalled = new CountDownLatch(1);
+            ExecutorService workers = new ThreadPoolExecutor(2, 2, 0, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>()) {
+                @Override
+                protected void beforeExecute(Thread thread, Runnable runnable) {
+                    try {
+                        stalled.await();
+                    } catch (InterruptedException interruptedException) {
+                        thread.interrupt();
+                    }
+                }
+            };
+            final BsvPipelinedDeserializer deserializer = context.createPipelinedDeserializer(
+                    new ByteArrayInputStream(data), BsvContext.DEFAULT_CHARSET, workers, ordered);
+            deserializer.setChunkSize(4096);
+            final BlockingQueue<Object> outcome = new LinkedBlockingQueue<Object>();
+            Thread consumer = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        outcome.add(String.valueOf(deserializer.next()));
+                    } catch (Exception exception) {
+                        outcome.add(exception);
+                    }
+                }
+            });
+            consumer.start();
+            try {
+                Thread.sleep(100);
+                deserializer.close();
+                Object result = outcome.poll(10, TimeUnit.SECONDS);
+                assertTrue(String.valueOf(result), result instanceof IOException);
+
+                try {
+                    deserializer.next();
+                    fail();
+                } catch (IOException expected) {
+                    assertEquals("Deserializer is closed", expected.getMessage());
+                }
+            } finally {
+                stalled.countDown();
+                workers.shutdownNow();
+            }
+        }
+
+        BsvPipelinedDeserializer notStarted = context.createPipelinedDeserializer(new ByteArrayInputStream(data),
+                2, true);
+        notStarted.close();
+        try {
+            notStarted.next();
+            fail();
+        } catch (IOException expected) {
+            assertEquals("Deserializer is closed", expected.getMessage());
+        }
+    }
+
+    /**
+     * first half of data, then the input fails
+     */
+    private static InputStream failingHalf() {
+        return new ByteArrayInputStream(data, 0, data.length / 2) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                int read = super.read(b, off, len);
+                if (read == -1) {
+                    throw new IllegalStateException("broken");
+                }
+                return read;
+            }
+        };
+    }
+
+    /**
+     * @return count of records and bad records before failure of input
+     */
+    private static int readUntilFailure(BsvDeserializer deserializer) throws IOException {
+        int records = 0;
+        try {
+            while (true) {
+                try {
+                    if (deserializer.next() == null) {
+                        throw new AssertionError("Failure of input is lost");
+                    }
+                } catch (BsvException bsvException) {
+                    //bad record
+                }
+                records++;
+            }
+        } catch (IOException expected) {
+            assertEquals(IllegalStateException.class, expected.getCause().getClass());
+        }
+        return records;
+    }
+
+    /**
+     * @return value of i per record, BsvException.class per bad record
+     */
+    private static List<Object> readAll(BsvDeserializer deserializer) throws IOException, BsvException {
+        List<Object> records = new ArrayList<Object>();
+        while (true) {
+            try {
+                Schema030x record = (Schema030x) deserializer.next();
+                if (record == null) {
+                    break;
+                }
+                assertEquals("line\n" + record.getI(), record.getS());
+                records.add(record.getI());
+            } catch (BsvException bsvException) {
+                records.add(BsvException.class);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * drops the header written by serializer, to append records to an existing stream
+     */
+    private static class HeaderlessOutputStream extends OutputStream {
+        private final ByteArrayOutputStream target;
+        private int                         skipped;
+
+        HeaderlessOutputStream(ByteArrayOutputStream target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(int b) {
+            if (skipped < BsvHeader.LENGTH) {
+                skipped++;
+            } else {
+                target.write(b);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.github.yantzu.bsv;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class BsvRecordEncoderTest {
+
+    private static BsvContext context;
+
+    @BeforeClass
+    public static void beforeClass() throws IOException {
+        context = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .transcoding('\n', (char) 0x00)
+            .transcoding('é', 'e')
+            .build();
+    }
+
+    @Test
+    public void testNumbersSameAsToString() throws IOException {
+        BsvRecordEncoder encoder = new BsvRecordEncoder(context, "03", '0', BsvContext.DEFAULT_CHARSET);
+        Random random = new Random(20);
+
+        long[] longs = { 0, 1, -1, 9, 10, 99, 100, Integer.MIN_VALUE, Integer.MAX_VALUE, Long.MIN_VALUE,
+                Long.MAX_VALUE, Long.MAX_VALUE / 10, 1000000000000000000L };
+        for (long value : longs) {
+            encoder.writeLong(value);
+            assertEncoded(encoder, Long.toString(value));
+        }
+        for (int i = 0; i < 100000; i++) {
+            long value = random.nextLong() >> random.nextInt(64);
+            encoder.writeLong(value);
+            assertEncoded(encoder, Long.toString(value));
+        }
+
+        double[] doubles = { 0.0, -0.0, 1.0, -1.0, 0.1, 0.001, 0.00099, 1e7, 9999999.999, 123.456, 1e-3, 1e23,
+                Double.MIN_VALUE, Double.MAX_VALUE, Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                0.30000000000000004, 2.0E-3, 1.0E22 };
+        for (double value : doubles) {
+            encoder.writeDouble(value);
+            assertEncoded(encoder, Double.toString(value));
+        }
+        for (int i = 0; i < 200000; i++) {
+            double value;
+            if (i % 2 == 0) {
+                //a decimal of few digits, as most values are
+                value = (random.nextInt(2000000) - 1000000) / Math.pow(10, random.nextInt(10));
+            } else {
+                value = random.nextBoolean() ? Double.longBitsToDouble(random.nextLong())
+                        : random.nextDouble() * Math.pow(10, random.nextInt(14) - 5);
+            }
+            encoder.writeDouble(value);
+            assertEncoded(encoder, Double.toString(value));
+        }
+
+        float[] floats = { 0f, -0f, 1f, -1f, 0.1f, 0.001f, 0.00099f, 1e7f, 9999999f, 123.456f, 1e-3f,
+                Float.MIN_VALUE, Float.MAX_VALUE, Float.NaN, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY,
+                16777216f, 0.3f };
+        for (float value : floats) {
+            encoder.writeFloat(value);
+            assertEncoded(encoder, Float.toString(value));
+        }
+        for (int i = 0; i < 200000; i++) {
+            float value;
+            if (i % 2 == 0) {
+                value = (float) ((random.nextInt(2000000) - 1000000) / Math.pow(10, random.nextInt(10)));
+            } else if (i % 4 == 1) {
+                value = Float.intBitsToFloat(random.nextInt());
+            } else {
+                value = (float) (random.nextDouble() * Math.pow(10, random.nextInt(14) - 5));
+            }
+            encoder.writeFloat(value);
+            assertEncoded(encoder, Float.toString(value));
+        }
+    }
+
+    @Test
+    public void testRecordSameAsWriter() throws IOException, BsvException {
+        String[] strings = { "plain", "", "line\nbreak", "café 四", "😀 emoji", "lone \ud83d high",
+                "lone \ude00 low", "end \ud83d", "߿ࠀ￿" };
+        for (String charsetName : new String[] { "UTF-8", "GBK", "UTF-16" }) {
+            Charset charset = Charset.forName(charsetName);
+            BsvRecordEncoder encoder = new BsvRecordEncoder(context, "03", '0', charset);
+            ByteArrayOutputStream expected = new ByteArrayOutputStream();
+            Writer writer = new OutputStreamWriter(expected, charset);
+            for (String string : strings) {
+                Schema030x data = new Schema030x();
+                data.setVersion("03.0.0");
+                data.setS(string);
+                data.setI(-42);
+                data.setB(true);
+                data.setArray(Arrays.asList(string, "x"));
+                Map<String, String> map = new LinkedHashMap<String, String>();
+                map.put("k", string);
+                data.setMap(map);
+                encoder.encode(encoder.schemaOf(data), data);
+
+                String transcoded = string.replace('\n', (char) 0x00).replace('é', 'e');
+                char fields = context.getFieldsDelimiter();
+                writer.write("0" + transcoded + fields + "-42" + fields + "1" + fields + fields + transcoded
+                        + context.getItemsDelimiter() + "x" + fields + "k" + context.getKeyValueDelimiter()
+                        + transcoded + context.getLineDelimiter());
+            }
+            encoder.finish();
+            writer.close();
+            assertArrayEquals(charsetName, expected.toByteArray(),
+                    Arrays.copyOf(encoder.getBytes(), encoder.getLength()));
+        }
+    }
+
+    @Test
+    public void testFailedRecordNotEncoded() throws IOException, BsvException {
+        BsvRecordEncoder encoder = new BsvRecordEncoder(context, "03", '0', BsvContext.DEFAULT_CHARSET);
+        Schema030x data = new Schema030x();
+        data.setVersion("03.0.0");
+        data.setS("ok");
+        encoder.encode(encoder.schemaOf(data), data);
+        int length = encoder.getLength();
+
+        data.setArray(Arrays.asList("a", null));
+        try {
+            encoder.encode(encoder.schemaOf(data), data);
+            fail();
+        } catch (NullPointerException nullPointerException) {
+            //null item
+        }
+        assertEquals(length, encoder.getLength());
+
+        data.setVersion("04.0.0");
+        try {
+            encoder.schemaOf(data);
+            fail();
+        } catch (BsvException bsvException) {
+            assertEquals("Invalid version:04.0.0", bsvException.getMessage());
+        }
+    }
+
+    private static void assertEncoded(BsvRecordEncoder encoder, String expected) {
+        assertEquals(expected, new String(encoder.getBytes(), 0, encoder.getLength(), BsvContext.DEFAULT_CHARSET));
+        encoder.clear();
+    }
+}
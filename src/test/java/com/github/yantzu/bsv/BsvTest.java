@@ -4,17 +4,26 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -23,6 +32,8 @@ import com.github.yantzu.bsv.BsvContext;
 import com.github.yantzu.bsv.BsvContextBuilder;
 import com.github.yantzu.bsv.BsvDeserializer;
 import com.github.yantzu.bsv.BsvException;
+import com.github.yantzu.bsv.BsvSchema.Field;
+import com.github.yantzu.bsv.BsvSchema.FieldType;
 
 
 public class BsvTest {
@@ -143,7 +154,253 @@ public class BsvTest {
         deserializer.next(); //first line
         deserializer.next(); //second line, should throw exception
     }
+
+    @Test
+    public void testStreamBadRecordPolicies() throws IOException, BsvException {
+        String sample = "/com/github/yantzu/bsv/sample_invalid.txt";
+        assertEquals(2, context.stream(this.getClass().getResourceAsStream(sample), BsvBadRecordPolicy.skip())
+                .count());
+
+        List<BsvException> badRecords = new ArrayList<BsvException>();
+        assertEquals(2, context.stream(this.getClass().getResourceAsStream(sample),
+                BsvBadRecordPolicy.collect(badRecords)).count());
+        assertEquals(1, badRecords.size());
+
+        Stream<BsvObject> stream = context.stream(this.getClass().getResourceAsStream(sample),
+                BsvBadRecordPolicy.fail());
+        try {
+            stream.count();
+            throw new AssertionError("Invalid record accepted");
+        } catch (BsvUncheckedException expected) {
+            assertEquals(badRecords.get(0).getMessage(), expected.getCause().getMessage());
+        } finally {
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testBadRecordListener() throws IOException, BsvException {
+        final List<Long> offsets = new ArrayList<Long>();
+        final List<String> raws = new ArrayList<String>();
+        BsvBadRecordStats stats = new BsvBadRecordStats(new BsvBadRecordListener() {
+            @Override
+            public void onBadRecord(BsvException exception, BsvSchema schema, long offset, byte[] raw, int start,
+                    int end) {
+                offsets.add(offset);
+                raws.add(new String(raw, start, end - start, BsvContext.DEFAULT_CHARSET));
+            }
+        });
+        BsvContext statsContext = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .badRecordListener(stats)
+            .build();
+
+        ByteArrayOutputStream sample = new ByteArrayOutputStream();
+        InputStream inputStream = this.getClass().getResourceAsStream("/com/github/yantzu/bsv/sample_invalid.txt");
+        for (int b = inputStream.read(); b != -1; b = inputStream.read()) {
+            sample.write(b);
+        }
+        String[] lines = new String(sample.toByteArray(), BsvContext.DEFAULT_CHARSET).split("\n");
+
+        for (BsvDeserializer.Engine engine : new BsvDeserializer.Engine[] { BsvDeserializer.Engine.BYTE,
+                BsvDeserializer.Engine.CHAR }) {
+            BsvDeserializer deserializer = statsContext.createDeserializer(
+                    new ByteArrayInputStream(sample.toByteArray()), engine);
+            int records = 0;
+            while (true) {
+                try {
+                    if (deserializer.next() == null) {
+                        break;
+                    }
+                    records++;
+                } catch (BsvException expected) {
+                    assertEquals(BsvException.Kind.DELIMITER, expected.getKind());
+                    assertEquals(0, expected.getStackTrace().length);
+                }
+            }
+            assertEquals(2, records);
+        }
+
+        //byte engine passes the whole line and its offset, char engine only the rest of it
+        assertEquals(2, raws.size());
+        assertEquals(lines[2], raws.get(0));
+        assertEquals(lines[0].length() + 1 + lines[1].getBytes(BsvContext.DEFAULT_CHARSET).length + 1,
+                offsets.get(0).longValue());
+        assertTrue(lines[2].endsWith(raws.get(1)));
+        assertEquals(-1, offsets.get(1).longValue());
+
+        assertEquals(2, stats.getCount());
+        assertEquals(2, stats.getCount(BsvException.Kind.DELIMITER));
+        assertEquals(2, stats.getCount(statsContext.getSchemas("03", '0').get('1')));
+        assertEquals(0, stats.getCount(statsContext.getSchemas("03", '0').get('0')));
+    }
     
+    @Test
+    public void testNextReuse() throws IOException, BsvException {
+        String sample = "/com/github/yantzu/bsv/sample_batch.txt";
+        BsvContext reuseContext = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .transcoding('\n', (char) 0x00)
+            .reuseObjects(true)
+            .build();
+        for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+            BsvDeserializer expected = context.createDeserializer(this.getClass().getResourceAsStream(sample),
+                    engine);
+            BsvDeserializer reusing = context.createDeserializer(this.getClass().getResourceAsStream(sample),
+                    engine);
+            BsvDeserializer flagged = reuseContext.createDeserializer(this.getClass().getResourceAsStream(sample),
+                    engine);
+            Schema030x reuse = new Schema030x();
+            reuse.setArray(new ArrayList<String>());
+            List<String> array = reuse.getArray();
+            Schema030x last = null;
+            while (true) {
+                Schema030x data = (Schema030x) expected.next();
+                Schema030x reused = (Schema030x) reusing.next(reuse);
+                Schema030x next = (Schema030x) flagged.next();
+                if (data == null) {
+                    assertNull(reused);
+                    assertNull(next);
+                    break;
+                }
+                assertTrue(reused == reuse);
+                assertTrue(reused.getArray() == array);
+                assertTrue(last == null || next == last);
+                last = next;
+                for (Schema030x actual : new Schema030x[] { reused, next }) {
+                    assertEquals(data.getVersion(), actual.getVersion());
+                    assertEquals(data.getS(), actual.getS());
+                    assertEquals(data.getI(), actual.getI());
+                    assertEquals(data.getArray(), actual.getArray());
+                    assertEquals(data.getMap(), actual.getMap());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testLazyCollectionsSameAsEager() throws IOException, BsvException {
+        BsvContext lazyContext = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .transcoding('\n', (char) 0x00)
+            .lazyCollections(true)
+            .reuseObjects(true)
+            .build();
+        String[] samples = { "sample_single.txt", "sample_batch.txt", "sample_chinese.txt", "sample_emoji.txt",
+                "sample_variants.txt", "sample_emptymap.txt", "sample_transcode.txt" };
+        for (String sample : samples) {
+            BsvDeserializer eager = context.createDeserializer(
+                    this.getClass().getResourceAsStream("/com/github/yantzu/bsv/" + sample),
+                    BsvDeserializer.Engine.BYTE);
+            BsvDeserializer lazy = lazyContext.createDeserializer(
+                    this.getClass().getResourceAsStream("/com/github/yantzu/bsv/" + sample),
+                    BsvDeserializer.Engine.BYTE);
+            while (true) {
+                Schema030x expected = (Schema030x) eager.next();
+                Schema030x actual = (Schema030x) lazy.next();
+                if (expected == null) {
+                    assertNull(actual);
+                    break;
+                }
+                assertEquals(expected.getS(), actual.getS());
+                assertEquals(expected.getArray(), actual.getArray());
+                assertEquals(expected.getArray().hashCode(), actual.getArray().hashCode());
+                assertEquals(expected.getMap(), actual.getMap());
+                assertEquals(expected.getMap().hashCode(), actual.getMap().hashCode());
+            }
+        }
+    }
+
+    @Test
+    public void testLazyCollectionsFirstAccessedByThreads() throws Exception {
+        BsvContext lazyContext = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .lazyCollections(true)
+            .deserializerEngine(BsvDeserializer.Engine.BYTE)
+            .build();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        BsvSerializer serializer = lazyContext.createSerializer(baos, "03", '0');
+        for (int i = 0; i < 5000; i++) {
+            Schema030x data = new Schema030x();
+            data.setVersion("03.0.0");
+            data.setArray(Arrays.asList("a", String.valueOf(i)));
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("k", String.valueOf(i));
+            data.setMap(map);
+            serializer.next(data);
+        }
+        serializer.close();
+        BsvDeserializer deserializer = lazyContext.createDeserializer(new ByteArrayInputStream(baos.toByteArray()));
+        final List<Schema030x> records = new ArrayList<Schema030x>();
+        Schema030x record;
+        while ((record = (Schema030x) deserializer.next()) != null) {
+            records.add(record);
+        }
+
+        //every thread races on first access of every list and map
+        final CyclicBarrier barrier = new CyclicBarrier(4);
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<Future<Void>>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(threads.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        barrier.await();
+                        for (int i = 0; i < records.size(); i++) {
+                            assertEquals(String.valueOf(i), records.get(i).getArray().get(1));
+                            assertEquals(String.valueOf(i), records.get(i).getMap().get("k"));
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testStringDedup() throws IOException, BsvException {
+        BsvContext dedupContext = new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.dedup.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml")
+            .transcoding('\n', (char) 0x00)
+            .build();
+        assertNull(context.getSchemas("03", '0').get('0').getField("s").getStringCache());
+        BsvSchema schema = dedupContext.getSchemas("03", '0').get('0');
+        assertNull(schema.getField("n").getStringCache());
+        assertEquals(64, schema.getField("map").getStringCache().getCapacity());
+
+        for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+            BsvDeserializer deserializer = dedupContext.createDeserializer(
+                    this.getClass().getResourceAsStream("/com/github/yantzu/bsv/sample_batch.txt"), engine);
+            Schema030x first = (Schema030x) deserializer.next();
+            Schema030x second = (Schema030x) deserializer.next();
+            assertEquals("ABC", first.getS());
+            assertTrue(first.getS() == second.getS());
+            for (String key : first.getMap().keySet()) {
+                boolean shared = false;
+                for (String other : second.getMap().keySet()) {
+                    shared |= key == other;
+                }
+                assertTrue(shared);
+            }
+        }
+
+        BsvStringCache cache = schema.getField("s").getStringCache();
+        //one miss per engine, keyed by bytes and by chars
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.getHits());
+        assertEquals(0.5, cache.getHitRate(), 0);
+    }
+
     @Test
     public void testDeserializeEmptymap() throws IOException, BsvException {
         InputStream inputStream = this.getClass().getResourceAsStream(
@@ -266,4 +523,440 @@ public class BsvTest {
 		assertEquals( ((Schema030x) deserializer.next()).getS(), data.getS());
 		assertEquals( ((Schema030x) deserializer.next()).getS(), data.getS());
 	}
+	
+	@Test
+	public void testDeserializeProjection() throws IOException, BsvException {
+		for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+			BsvProjection projection = new BsvProjection().include("s").include('1', "map");
+			BsvDeserializer deserializer = context.createDeserializer(this.getClass().getResourceAsStream(
+					"/com/github/yantzu/bsv/sample_variants.txt"), BsvContext.DEFAULT_CHARSET, engine, projection);
+			Schema030x data = (Schema030x) deserializer.next();
+			assertEquals("ABC", data.getS());
+			assertEquals(0, data.getI());
+			assertNull(data.getN());
+			assertNull(data.getMap());
+			deserializer.next();
+			data = (Schema030x) deserializer.next();
+			assertEquals("A币C", data.getS());
+			assertEquals(0, data.getI());
+			assertNull(data.getArray());
+			assertEquals("地", data.getMap().get("b"));
+			assertNull(deserializer.next());
+		}
+	}
+
+	@Test
+	public void testDeserializeProjectionReuse() throws IOException, BsvException {
+		for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+			BsvDeserializer deserializer = context.createDeserializer(this.getClass().getResourceAsStream(
+					"/com/github/yantzu/bsv/sample_batch.txt"), BsvContext.DEFAULT_CHARSET, engine,
+					new BsvProjection().include("s"));
+			Schema030x reuse = new Schema030x();
+			reuse.setS("stale");
+			reuse.setI(7);
+			List<String> array = Arrays.asList("stale");
+			reuse.setArray(array);
+			for (int n = 0; n < 3; n++) {
+				assertTrue(deserializer.next(reuse) == reuse);
+				assertEquals("ABC", reuse.getS());
+				//fields not selected keep values of reused bean
+				assertEquals(7, reuse.getI());
+				assertTrue(reuse.getArray() == array);
+			}
+			assertNull(deserializer.next(reuse));
+		}
+	}
+	
+	@Test
+	public void testDeserializeFilter() throws IOException, BsvException {
+		BsvFilter chinese = BsvFilter.prefix("s", "A币");
+		BsvFilter transcoded = BsvFilter.eq("s", "AB\nCD");
+		BsvFilter filter = BsvFilter.and(BsvFilter.range("i", 80000000L, 90000000L),
+				BsvFilter.or(chinese, transcoded, BsvFilter.in("map", "x", "y")));
+
+		BsvDeserializer deserializer = context.createDeserializer(this.getClass().getResourceAsStream(
+				"/com/github/yantzu/bsv/sample_chinese.txt"), null, filter);
+		Schema030x data = (Schema030x) deserializer.next();
+		assertEquals("A币C", data.getS());
+		assertEquals(0, filter.getEvaluatedCount()); //added to filter at end of input
+		assertNull(deserializer.next());
+		assertEquals(3, filter.getEvaluatedCount());
+		assertEquals(2, filter.getRejectedCount());
+		assertEquals(1, chinese.getEvaluatedCount());
+
+		BsvDeserializer closed = context.createDeserializer(this.getClass().getResourceAsStream(
+				"/com/github/yantzu/bsv/sample_chinese.txt"), null, filter);
+		assertEquals("A币C", ((Schema030x) closed.next()).getS());
+		closed.close();
+		assertEquals(6, filter.getEvaluatedCount());
+		assertEquals(2, chinese.getEvaluatedCount());
+
+		deserializer = context.createDeserializer(this.getClass().getResourceAsStream(
+				"/com/github/yantzu/bsv/sample_transcode.txt"), new BsvProjection().include("s"),
+				BsvFilter.not(transcoded));
+		assertNull(deserializer.next());
+		assertEquals(1, transcoded.getEvaluatedCount());
+		assertEquals(0, transcoded.getRejectedCount());
+
+		deserializer = context.createDeserializer(this.getClass().getResourceAsStream(
+				"/com/github/yantzu/bsv/sample_variants.txt"), null, BsvFilter.in("n", "", "ABC"));
+		assertEquals("ABC", ((Schema030x) deserializer.next()).getS());
+		assertFalse(((Schema030x) deserializer.next()).isB());
+		assertNull(deserializer.next()); //variant 1 has no field n
+	}
+	
+	@Test
+	public void testDeserializeFilterTranscodedNumber() throws IOException, BsvException {
+		BsvContext minusTranscoding = new BsvContextBuilder()
+			.yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+			.transcoding('-', (char) 0x05)
+			.deserializerEngine(BsvDeserializer.Engine.BYTE)
+			.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BsvSerializer serializer = minusTranscoding.createSerializer(baos, "03", '0');
+		for (int i : new int[] {5, -42, -7}) {
+			Schema030x data = new Schema030x();
+			data.setVersion("03.0.0");
+			data.setI(i);
+			serializer.next(data);
+		}
+		serializer.close();
+		//numbers are not transcoded when written, a stream may still carry a transcoded minus
+		byte[] bytes = new String(baos.toByteArray(), "UTF-8").replace('-', (char) 0x05).getBytes("UTF-8");
+
+		BsvFilter longRange = BsvFilter.range("i", -50L, -40L);
+		BsvDeserializer deserializer = minusTranscoding.createDeserializer(new ByteArrayInputStream(bytes), null,
+				longRange);
+		assertEquals(-42, ((Schema030x) deserializer.next()).getI());
+		assertNull(deserializer.next());
+		assertEquals(3, longRange.getEvaluatedCount());
+		assertEquals(2, longRange.getRejectedCount());
+
+		deserializer = minusTranscoding.createDeserializer(new ByteArrayInputStream(bytes), null,
+				BsvFilter.range("i", -10.0, 0.0));
+		assertEquals(-7, ((Schema030x) deserializer.next()).getI());
+		assertNull(deserializer.next());
+	}
+	
+	@Test
+	public void testDeserializerOutsideLibrary() throws IOException, BsvException {
+		//implements only the methods of the first release
+		BsvDeserializer empty = new BsvDeserializer() {
+			@Override
+			public BsvObject next() {
+				return null;
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		try {
+			empty.nextBatch(10);
+			fail();
+		} catch (UnsupportedOperationException expected) {
+		}
+		assertNull(empty.next(new Schema030x()));
+	}
+	
+	@Test
+	public void testSchemaOutsideLibrary() throws BsvException {
+		final BsvSchema schema = context.getSchemas("03", '0').get('0');
+		//implements only the methods of the first release
+		BsvSchema outside = new BsvSchema() {
+			@Override
+			public String getMajorVersion() {
+				return schema.getMajorVersion();
+			}
+
+			@Override
+			public char getMinorVersion() {
+				return schema.getMinorVersion();
+			}
+
+			@Override
+			public String getFullVersion() {
+				return schema.getFullVersion();
+			}
+
+			@Override
+			public char getVariantNumber() {
+				return schema.getVariantNumber();
+			}
+
+			@Override
+			public List<Field> getFields() {
+				return schema.getFields();
+			}
+
+			@Override
+			public Class<?> getBeanClass() {
+				return schema.getBeanClass();
+			}
+
+			@Override
+			public Constructor<?> getBeanConstructor() {
+				return schema.getBeanConstructor();
+			}
+		};
+		assertEquals(1, outside.getField("i").getIndex());
+		assertNull(outside.getField("none"));
+
+		BsvBeanAccessor accessor = outside.getBeanAccessor();
+		Schema030x data = (Schema030x) accessor.newInstance();
+		accessor.setInt(data, 1, 42);
+		assertEquals(42, data.getI());
+		assertEquals(42, accessor.get(data, 1));
+
+		final Field field = schema.getField("s");
+		//implements only the methods of the first release
+		Field outsideField = new Field() {
+			@Override
+			public int getIndex() {
+				return field.getIndex();
+			}
+
+			@Override
+			public FieldType getType() {
+				return field.getType();
+			}
+
+			@Override
+			public String getName() {
+				return field.getName();
+			}
+
+			@Override
+			public Method getBeanWriteMethod() {
+				return field.getBeanWriteMethod();
+			}
+
+			@Override
+			public Method getBeanReadMethod() {
+				return field.getBeanReadMethod();
+			}
+		};
+		assertNull(outsideField.getStringCache());
+	}
+	
+	@Test
+	public void testRecordView() throws IOException, BsvException {
+		BsvRecordView view = context.createRecordView(this.getClass().getResourceAsStream(
+				"/com/github/yantzu/bsv/sample_chinese.txt"));
+		assertTrue(view.advance());
+		assertTrue(view.advance());
+		assertTrue(view.advance());
+		assertEquals("03.0.0", view.getSchema().getFullVersion());
+		assertEquals(87654321, view.getInt("i"));
+		assertEquals(87654321L, view.getLong(1));
+		assertTrue(view.getBoolean("b"));
+		assertTrue(view.isEmpty("n"));
+		assertEquals("A币C", view.getString("s"));
+		byte[] bytes = new byte[16];
+		int length = view.getStringBytes("s", bytes, 0);
+		assertEquals("A币C", new String(bytes, 0, length, "UTF-8"));
+		assertEquals(3, view.listSize("array"));
+		assertEquals("2.4", view.listItemString("array", 1));
+		assertEquals("四", view.mapGet("map", "a"));
+		assertEquals("地", view.mapGet("map", "b"));
+		assertNull(view.mapGet("map", "c"));
+		length = view.mapGet(view.fieldIndex("map"), "a".getBytes("UTF-8"), bytes, 0);
+		assertEquals("四", new String(bytes, 0, length, "UTF-8"));
+		assertFalse(view.advance());
+		view.close();
+	}
+	
+	@Test
+	public void testRecordViewTranscodingAndInvalid() throws IOException, BsvException {
+		BsvRecordView view = context.createRecordView(this.getClass().getResourceAsStream(
+				"/com/github/yantzu/bsv/sample_transcode.txt"));
+		assertTrue(view.advance());
+		assertEquals("AB\nCD", view.getString(0));
+		byte[] bytes = new byte[16];
+		assertEquals(5, view.getStringBytes(0, bytes, 0));
+		assertEquals((byte) '\n', bytes[2]);
+		view.close();
+
+		view = context.createRecordView(this.getClass().getResourceAsStream(
+				"/com/github/yantzu/bsv/sample_invalid.txt"));
+		assertTrue(view.advance());
+		try {
+			view.advance(); //second line has one more field
+			throw new AssertionError("Invalid record accepted");
+		} catch (BsvException expected) {
+		}
+		assertTrue(view.advance());
+		assertEquals(87654321, view.getInt("i"));
+		assertFalse(view.advance());
+		view.close();
+
+		BsvContext minusTranscoding = new BsvContextBuilder()
+			.yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+			.transcoding('-', (char) 0x05)
+			.deserializerEngine(BsvDeserializer.Engine.BYTE)
+			.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		BsvSerializer serializer = minusTranscoding.createSerializer(baos, "03", '0');
+		Schema030x data = new Schema030x();
+		data.setVersion("03.0.0");
+		data.setI(-42);
+		serializer.next(data);
+		serializer.close();
+		//numbers are not transcoded when written, a stream may still carry a transcoded minus
+		bytes = new String(baos.toByteArray(), "UTF-8").replace('-', (char) 0x05).getBytes("UTF-8");
+		assertEquals(-42, ((Schema030x) minusTranscoding.createDeserializer(
+				new ByteArrayInputStream(bytes)).next()).getI());
+		view = minusTranscoding.createRecordView(new ByteArrayInputStream(bytes));
+		assertTrue(view.advance());
+		assertEquals(-42, view.getInt("i"));
+		assertEquals(-42L, view.getLong("i"));
+		assertEquals(-42.0, view.getDouble("i"), 0);
+		view.close();
+	}
+	
+	@Test
+	public void testByteEngineSameAsCharEngine() throws IOException, BsvException {
+		String[] samples = { "sample_single.txt", "sample_batch.txt", "sample_chinese.txt", "sample_emoji.txt",
+				"sample_variants.txt", "sample_invalid.txt", "sample_emptymap.txt", "sample_transcode.txt" };
+		for (String sample : samples) {
+			BsvDeserializer charDeserializer = context.createDeserializer(
+					this.getClass().getResourceAsStream("/com/github/yantzu/bsv/" + sample), BsvDeserializer.Engine.CHAR);
+			BsvDeserializer byteDeserializer = context.createDeserializer(
+					this.getClass().getResourceAsStream("/com/github/yantzu/bsv/" + sample), BsvDeserializer.Engine.BYTE);
+			while (true) {
+				Schema030x charData;
+				try {
+					charData = (Schema030x) charDeserializer.next();
+				} catch (BsvException bsvException) {
+					try {
+						byteDeserializer.next();
+					} catch (BsvException expected) {
+						continue;
+					}
+					throw new AssertionError("Byte engine accepted invalid record in " + sample);
+				}
+				Schema030x byteData = (Schema030x) byteDeserializer.next();
+				if (charData == null) {
+					assertNull(byteData);
+					break;
+				}
+				assertEquals(charData.getVersion(), byteData.getVersion());
+				assertEquals(charData.getS(), byteData.getS());
+				assertEquals(charData.getI(), byteData.getI());
+				assertEquals(charData.isB(), byteData.isB());
+				assertEquals(charData.getN(), byteData.getN());
+				assertEquals(charData.getArray(), byteData.getArray());
+				assertEquals(charData.getMap(), byteData.getMap());
+			}
+		}
+	}
+	
+	@Test
+	public void testGeneratedAccessorSameAsReflection() throws IOException, BsvException {
+		BsvContext reflectionContext = new BsvContextBuilder()
+			.yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+			.transcoding('\n', (char) 0x00)
+			.generatedAccessors(false)
+			.build();
+		assertTrue(reflectionContext.getSchemas("03", '0').get('0').getBeanAccessor() instanceof BsvReflectionAccessor);
+		assertTrue(context.getSchemas("03", '0').get('0').getBeanAccessor() instanceof BsvLambdaAccessor);
+
+		Schema030x data = new Schema030x();
+		data.setVersion("03.0.0");
+		data.setS("AB\nCD");
+		data.setI(-42);
+		data.setB(true);
+		data.setArray(Arrays.asList("x", "y"));
+		byte[][] serialized = new byte[2][];
+		BsvContext[] contexts = { context, reflectionContext };
+		for (int i = 0; i < contexts.length; i++) {
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			BsvSerializer serializer = contexts[i].createSerializer(baos, "03", '0');
+			serializer.next(data);
+			serializer.close();
+			serialized[i] = baos.toByteArray();
+		}
+		assertTrue(Arrays.equals(serialized[0], serialized[1]));
+
+		for (BsvContext each : contexts) {
+			for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+				BsvDeserializer deserializer = each.createDeserializer(new ByteArrayInputStream(serialized[0]), engine);
+				Schema030x dataR = (Schema030x) deserializer.next();
+				assertEquals("03.0.0", dataR.getVersion());
+				assertEquals(data.getS(), dataR.getS());
+				assertEquals(data.getI(), dataR.getI());
+				assertEquals(data.isB(), dataR.isB());
+				assertEquals(data.getArray(), dataR.getArray());
+				assertNull(deserializer.next());
+			}
+		}
+	}
+	
+	@Test
+	public void testNextBatchSameAsNext() throws IOException, BsvException {
+		String[] samples = { "sample_batch.txt", "sample_variants.txt", "sample_invalid.txt", "sample_transcode.txt" };
+		for (String sample : samples) {
+			for (BsvDeserializer.Engine engine : BsvDeserializer.Engine.values()) {
+				List<Object> expected = new ArrayList<Object>();
+				BsvDeserializer deserializer = context.createDeserializer(
+						this.getClass().getResourceAsStream("/com/github/yantzu/bsv/" + sample), engine);
+				while (true) {
+					try {
+						Schema030x data = (Schema030x) deserializer.next();
+						if (data == null) {
+							break;
+						}
+						expected.add(Arrays.asList(data.getVersion(), data.getS(), data.getI(), data.isB(),
+								data.getN(), data.getArray(), data.getMap()));
+					} catch (BsvException bsvException) {
+						expected.add(BsvException.class);
+					}
+				}
+
+				List<Object> actual = new ArrayList<Object>();
+				deserializer = context.createDeserializer(
+						this.getClass().getResourceAsStream("/com/github/yantzu/bsv/" + sample), engine);
+				while (true) {
+					BsvColumnBatch batch;
+					try {
+						batch = deserializer.nextBatch(2);
+					} catch (BsvException bsvException) {
+						actual.add(BsvException.class);
+						continue;
+					}
+					if (batch == null) {
+						break;
+					}
+					assertTrue(batch.size() <= 2);
+					Object[] records = new Object[batch.size()];
+					for (BsvColumnBatch.Group group : batch.getGroups()) {
+						for (int row = 0; row < group.size(); row++) {
+							records[group.position(row)] = toRecord(group, row);
+						}
+					}
+					actual.addAll(Arrays.asList(records));
+				}
+				assertEquals(sample + " " + engine, expected, actual);
+			}
+		}
+	}
+
+	private static List<Object> toRecord(BsvColumnBatch.Group group, int row) {
+		BsvColumnBatch.StringColumn n = (BsvColumnBatch.StringColumn) group.getColumn("n");
+		BsvColumnBatch.ListColumn array = (BsvColumnBatch.ListColumn) group.getColumn("array");
+		BsvColumnBatch.MapColumn map = (BsvColumnBatch.MapColumn) group.getColumn("map");
+		List<String> items = new ArrayList<String>();
+		for (int i = array.getOffsets()[row]; i < array.getOffsets()[row + 1]; i++) {
+			items.add(array.getItems().get(i));
+		}
+		Map<String, String> entries = new HashMap<String, String>();
+		for (int i = map.getOffsets()[row]; i < map.getOffsets()[row + 1]; i++) {
+			entries.put(map.getKeys().get(i), map.getValues().get(i));
+		}
+		return Arrays.asList(group.getSchema().getFullVersion(),
+				((BsvColumnBatch.StringColumn) group.getColumn("s")).get(row),
+				((BsvColumnBatch.IntColumn) group.getColumn("i")).get(row),
+				((BsvColumnBatch.BooleanColumn) group.getColumn("b")).get(row),
+				n == null ? null : n.get(row), items, entries);
+	}
 }
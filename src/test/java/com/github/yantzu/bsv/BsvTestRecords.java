@@ -0,0 +1,68 @@
+package com.github.yantzu.bsv;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Records and contexts shared by tests.
+ */
+final class BsvTestRecords {
+
+    private BsvTestRecords() {
+    }
+
+    /**
+     * @return builder of context with schemas 03.0.0 and 03.0.1
+     */
+    static BsvContextBuilder schema030x() throws IOException {
+        return new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.0.yaml")
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema03.0.1.yaml");
+    }
+
+    /**
+     * record i of schema 03.0.x, every third one of variant 03.0.1, every
+     * fifth one without s and every fourth one without map
+     */
+    static Schema030x record030x(int i) {
+        Schema030x data = new Schema030x();
+        data.setVersion(i % 3 == 0 ? "03.0.1" : "03.0.0");
+        data.setS(i % 5 == 0 ? null : "line" + i);
+        data.setI(i);
+        data.setB(i % 2 == 0);
+        data.setArray(Arrays.asList("a", String.valueOf(i)));
+        if (i % 4 != 0) {
+            Map<String, String> map = new HashMap<String, String>();
+            map.put("k", String.valueOf(i));
+            data.setMap(map);
+        }
+        return data;
+    }
+
+    /**
+     * @return builder of context with schema 04.0.0
+     */
+    static BsvContextBuilder schema040x() throws IOException {
+        return new BsvContextBuilder()
+            .yamlSchema("classpath:com/github/yantzu/bsv/schema04.0.0.yaml");
+    }
+
+    /**
+     * record n of schema 04.0.0, numbers of both signs and random doubles
+     * above 10
+     */
+    static Schema040x record040x(int n) {
+        Random random = new Random(n);
+        Schema040x data = new Schema040x();
+        data.setVersion("04.0.0");
+        data.setS("record" + n);
+        data.setI(n % 2 == 0 ? n : -n);
+        data.setL(random.nextLong());
+        data.setF(random.nextFloat() * n);
+        data.setD(n < 10 ? n / 2.0 : random.nextDouble() * 1e6);
+        return data;
+    }
+}